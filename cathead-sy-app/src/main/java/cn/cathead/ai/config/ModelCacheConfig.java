@@ -0,0 +1,45 @@
+package cn.cathead.ai.config;
+
+import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
+import cn.cathead.ai.domain.model.service.registry.modelcache.config.ModelCacheProperties;
+import cn.cathead.ai.domain.model.service.registry.modelcache.eviction.ModelCacheEvictionPolicy;
+import cn.cathead.ai.domain.model.service.registry.modelcache.loader.ChatModelCacheLoader;
+import cn.cathead.ai.domain.model.service.registry.modelcache.loader.EmbeddingModelCacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模型实例缓存：Caffeine W-TinyLFU + 按成本的权重 + 按提供者的空闲过期
+ */
+@Configuration
+public class ModelCacheConfig {
+    @Bean(name = "chatModelCache")
+    public LoadingCache<String, ModelWrapper<ChatModel>> chatmodelCache(ChatModelCacheLoader chatModelCacheLoader,
+                                                                        ModelCacheEvictionPolicy evictionPolicy,
+                                                                        ModelCacheProperties props) {
+        return Caffeine.newBuilder()
+                .recordStats()
+                .maximumWeight(props.getEviction().getMaximumWeight())
+                .<String, ModelWrapper<ChatModel>>weigher(evictionPolicy)
+                .expireAfter(evictionPolicy)
+                .removalListener(evictionPolicy)
+                .build(chatModelCacheLoader);
+    }
+
+    @Bean(name = "embeddingModelCache")
+    public LoadingCache<String, ModelWrapper<EmbeddingModel>> embeddingModelCache(EmbeddingModelCacheLoader embeddingModelCacheLoader,
+                                                                                  ModelCacheEvictionPolicy evictionPolicy,
+                                                                                  ModelCacheProperties props) {
+        return Caffeine.newBuilder()
+                .recordStats()
+                .maximumWeight(props.getEviction().getMaximumWeight())
+                .<String, ModelWrapper<EmbeddingModel>>weigher(evictionPolicy)
+                .expireAfter(evictionPolicy)
+                .removalListener(evictionPolicy)
+                .build(embeddingModelCacheLoader);
+    }
+}
@@ -0,0 +1,276 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.ClusterNode;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.model.valobj.ShortTermStats;
+import cn.cathead.ai.domain.client.repository.IShortTermSpillRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.ShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.ClusteredShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.ConsistentHashRing;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.IStmPeerClient;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compress.IMemoryCompressor;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 短期记忆集群：一致性哈希、转发与副本同步、故障转移、成员变更交接（进程内节点）
+ */
+@DisplayName("短期记忆集群测试")
+public class ClusteredShortTermMemoryTest {
+
+    /**
+     * 进程内 RPC：直接调用目标节点的服务端入口，down 中的节点视为不可达
+     */
+    static class InProcessPeerClient implements IStmPeerClient {
+        final Map<String, ClusteredShortTermMemoryService> nodes = new ConcurrentHashMap<>();
+        final Set<String> down = ConcurrentHashMap.newKeySet();
+        final AtomicInteger gets = new AtomicInteger();
+
+        private ClusteredShortTermMemoryService target(ClusterNode node) {
+            if (down.contains(node.getId()) || !nodes.containsKey(node.getId())) {
+                throw new IllegalStateException("node unreachable: " + node.getId());
+            }
+            return nodes.get(node.getId());
+        }
+
+        @Override
+        public List<MemoryMessage> get(ClusterNode target, NamespaceKey namespaceKey) {
+            gets.incrementAndGet();
+            return new ArrayList<>(target(target).peerGet(namespaceKey));
+        }
+
+        @Override
+        public ShortTermStats stats(ClusterNode target, NamespaceKey namespaceKey) {
+            return target(target).peerStats(namespaceKey);
+        }
+
+        @Override
+        public void append(ClusterNode target, NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica) {
+            target(target).peerAppend(namespaceKey, messages, replica);
+        }
+
+        @Override
+        public void replace(ClusterNode target, NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica) {
+            target(target).peerReplace(namespaceKey, messages, replica);
+        }
+
+        @Override
+        public void clear(ClusterNode target, NamespaceKey namespaceKey) {
+            target(target).peerClear(namespaceKey);
+        }
+
+        @Override
+        public void compress(ClusterNode target, NamespaceKey namespaceKey, String modelId) {
+            target(target).peerCompress(namespaceKey, modelId);
+        }
+    }
+
+    private final InProcessPeerClient peers = new InProcessPeerClient();
+    private final Map<String, ShortTermMemoryService> locals = new ConcurrentHashMap<>();
+    private final List<ClusterNode> members = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 1; i <= 3; i++) {
+            members.add(ClusterNode.of("node-" + i, null));
+        }
+        for (ClusterNode member : members) {
+            startNode(member.getId(), members);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        peers.nodes.values().forEach(ClusteredShortTermMemoryService::shutdown);
+        locals.values().forEach(ShortTermMemoryService::shutdown);
+    }
+
+    private ClusteredShortTermMemoryService startNode(String id, List<ClusterNode> clusterMembers) {
+        MemoryProperties props = new MemoryProperties();
+        MemoryProperties.Cluster cluster = props.getStm().getCluster();
+        cluster.setEnabled(true);
+        cluster.setSelfId(id);
+        cluster.setReplicas(1);
+        cluster.setSecret("cluster-secret");
+        for (ClusterNode node : clusterMembers) {
+            MemoryProperties.Member member = new MemoryProperties.Member();
+            member.setId(node.getId());
+            cluster.getMembers().add(member);
+        }
+        ShortTermMemoryService local = new ShortTermMemoryService(props, event -> { }, mock(IShortTermSpillRepository.class));
+        local.init();
+        ClusteredShortTermMemoryService service = new ClusteredShortTermMemoryService(local, props, peers,
+                mock(ShortTermPolicyProvider.class), mock(IMemoryCompressor.class));
+        service.init();
+        locals.put(id, local);
+        peers.nodes.put(id, service);
+        return service;
+    }
+
+    private static List<MemoryMessage> turn(String text) {
+        return List.of(MemoryMessage.builder().id(text).payload(new UserMessage(text)).tokenCost(2).build());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private ConsistentHashRing ring() {
+        return new ConsistentHashRing(members, new MemoryProperties().getStm().getCluster().getVirtualNodes());
+    }
+
+    @Test
+    @DisplayName("哈希环：主节点与副本互不相同，新增成员只迁移少量命名空间")
+    public void testRingBalanceAndStability() {
+        ConsistentHashRing before = ring();
+        List<ClusterNode> grown = new ArrayList<>(members);
+        grown.add(ClusterNode.of("node-4", null));
+        ConsistentHashRing after = new ConsistentHashRing(grown, 128);
+        int moved = 0;
+        int total = 4000;
+        Map<String, Integer> load = new ConcurrentHashMap<>();
+        for (int i = 0; i < total; i++) {
+            NamespaceKey ns = NamespaceKey.of("kb", "agent", "s-" + i);
+            List<ClusterNode> owners = before.owners(ns, 2);
+            assertEquals(2, owners.size());
+            assertNotEquals(owners.get(0), owners.get(1));
+            load.merge(owners.get(0).getId(), 1, Integer::sum);
+            ClusterNode newPrimary = after.primary(ns);
+            if (!newPrimary.equals(owners.get(0))) {
+                moved++;
+                assertEquals("node-4", newPrimary.getId());
+            }
+        }
+        assertTrue(moved < total * 0.4, "moved=" + moved);
+        load.values().forEach(n -> assertTrue(n > total / 6, "load=" + load));
+    }
+
+    @Test
+    @DisplayName("任一节点写入都落到主节点并同步到副本，任一节点读取结果一致")
+    public void testForwardAndReplicate() throws Exception {
+        NamespaceKey ns = NamespaceKey.of("kb", "agent", "s-forward");
+        List<ClusterNode> owners = ring().owners(ns, 2);
+        String outsider = members.stream().map(ClusterNode::getId)
+                .filter(id -> owners.stream().noneMatch(o -> o.getId().equals(id))).findFirst().orElseThrow();
+
+        peers.nodes.get(outsider).append(ns, turn("hello"));
+        peers.nodes.get(owners.get(1).getId()).append(ns, turn("world"));
+
+        assertEquals(2, locals.get(owners.get(0).getId()).size(ns));
+        await(() -> locals.get(owners.get(1).getId()).size(ns) == 2);
+        assertEquals(0, locals.get(outsider).size(ns));
+        for (ClusteredShortTermMemoryService node : peers.nodes.values()) {
+            List<MemoryMessage> messages = node.get(ns);
+            assertEquals(List.of("hello", "world"), messages.stream().map(m -> m.getPayload().getText()).toList());
+        }
+        // 条数与 token 总量经 stats 获取，不回传整段消息
+        peers.gets.set(0);
+        for (ClusteredShortTermMemoryService node : peers.nodes.values()) {
+            assertEquals(4.0, node.totalEstimatedTokens(ns), 1e-9);
+            assertEquals(2, node.size(ns));
+        }
+        assertEquals(0, peers.gets.get());
+        Map<String, Object> affinity = peers.nodes.get(outsider).getAffinity(ns);
+        assertEquals(owners.get(0).getId(), affinity.get("owner"));
+        assertEquals(false, affinity.get("local"));
+        assertEquals(List.of(owners.get(1).getId()), affinity.get("replicas"));
+    }
+
+    @Test
+    @DisplayName("主节点不可达时读写转移到副本")
+    public void testFailoverToReplica() throws Exception {
+        NamespaceKey ns = NamespaceKey.of("kb", "agent", "s-failover");
+        List<ClusterNode> owners = ring().owners(ns, 2);
+        String outsider = members.stream().map(ClusterNode::getId)
+                .filter(id -> owners.stream().noneMatch(o -> o.getId().equals(id))).findFirst().orElseThrow();
+        ClusteredShortTermMemoryService entry = peers.nodes.get(outsider);
+
+        entry.append(ns, turn("before"));
+        await(() -> locals.get(owners.get(1).getId()).size(ns) == 1);
+
+        peers.down.add(owners.get(0).getId());
+        entry.append(ns, turn("after"));
+        assertEquals(List.of("before", "after"), entry.get(ns).stream().map(m -> m.getPayload().getText()).toList());
+        assertTrue(((Number) entry.getClusterStats().get("failovers")).longValue() >= 2);
+    }
+
+    @Test
+    @DisplayName("新增成员时原持有者把命名空间交接给新持有者，不再持有的节点丢弃本地副本")
+    public void testHandoffOnMembershipChange() throws Exception {
+        ClusteredShortTermMemoryService entry = peers.nodes.get("node-1");
+        List<NamespaceKey> namespaces = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            NamespaceKey ns = NamespaceKey.of("kb", "agent", "s-" + i);
+            namespaces.add(ns);
+            entry.append(ns, turn("m-" + i));
+        }
+        ConsistentHashRing before = ring();
+        for (NamespaceKey ns : namespaces) {
+            ClusterNode replica = before.owners(ns, 2).get(1);
+            await(() -> locals.get(replica.getId()).size(ns) == 1);
+        }
+
+        members.add(ClusterNode.of("node-4", null));
+        startNode("node-4", members);
+        for (String id : List.of("node-1", "node-2", "node-3")) {
+            peers.nodes.get(id).updateMembership(members);
+        }
+
+        ConsistentHashRing after = ring();
+        int movedToNew = 0;
+        for (NamespaceKey ns : namespaces) {
+            List<ClusterNode> newOwners = after.owners(ns, 2);
+            for (ClusterNode owner : newOwners) {
+                await(() -> locals.get(owner.getId()).size(ns) == 1);
+                if (owner.getId().equals("node-4")) movedToNew++;
+            }
+            for (ClusterNode node : members) {
+                if (!newOwners.contains(node)) {
+                    await(() -> locals.get(node.getId()).size(ns) == 0);
+                }
+            }
+            for (ClusteredShortTermMemoryService node : peers.nodes.values()) {
+                assertEquals(1, node.get(ns).size());
+            }
+        }
+        assertTrue(movedToNew > 0);
+    }
+
+    @Test
+    @DisplayName("节点间请求须携带一致的共享密钥，未配置密钥时拒绝启动集群")
+    public void testPeerSecret() {
+        ClusteredShortTermMemoryService node = peers.nodes.get("node-1");
+        assertTrue(node.isPeerAuthorized("cluster-secret"));
+        assertFalse(node.isPeerAuthorized("other"));
+        assertFalse(node.isPeerAuthorized(null));
+
+        MemoryProperties props = new MemoryProperties();
+        props.getStm().getCluster().setEnabled(true);
+        props.getStm().getCluster().setSelfId("node-x");
+        ClusteredShortTermMemoryService noSecret = new ClusteredShortTermMemoryService(mock(ShortTermMemoryService.class), props,
+                peers, mock(ShortTermPolicyProvider.class), mock(IMemoryCompressor.class));
+        assertThrows(IllegalStateException.class, noSecret::init);
+        assertFalse(noSecret.isPeerAuthorized(null));
+    }
+}
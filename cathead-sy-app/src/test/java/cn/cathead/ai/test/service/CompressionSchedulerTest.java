@@ -0,0 +1,153 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.CompressionScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 短期记忆压缩调度器测试：去重、优先级、背压与统计
+ */
+@DisplayName("CompressionScheduler 测试")
+public class CompressionSchedulerTest {
+
+    private CompressionScheduler scheduler;
+
+    @AfterEach
+    public void tearDown() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    private static NamespaceKey ns(String session) {
+        return NamespaceKey.of("kb", "agent", session);
+    }
+
+    /**
+     * 占住唯一的工作线程，返回释放用的 latch
+     */
+    private CountDownLatch block(CountDownLatch started) {
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(ns("blocker"), 100, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return release;
+    }
+
+    @Test
+    @DisplayName("同一命名空间排队期间重复提交只执行一次")
+    public void testDeduplicateQueued() throws Exception {
+        scheduler = new CompressionScheduler(1, 16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = block(started);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        assertTrue(scheduler.submit(ns("s-1"), 1.0, () -> {
+            runs.incrementAndGet();
+            done.countDown();
+        }));
+        for (int i = 0; i < 10; i++) {
+            assertFalse(scheduler.submit(ns("s-1"), 1.0, runs::incrementAndGet));
+        }
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        assertEquals(1, runs.get());
+        assertEquals(10L, scheduler.getStats().get("deduplicated"));
+    }
+
+    @Test
+    @DisplayName("执行中再次提交：结束后重跑一次")
+    public void testRerunWhenSubmittedWhileRunning() throws Exception {
+        scheduler = new CompressionScheduler(1, 16);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(2);
+        Runnable task = () -> {
+            runs.incrementAndGet();
+            first.countDown();
+            second.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        scheduler.submit(ns("s-1"), 1.0, task);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        scheduler.submit(ns("s-1"), 1.0, task);
+        scheduler.submit(ns("s-1"), 1.0, task);
+        release.countDown();
+
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    @DisplayName("按 token 压力从高到低执行，压力上升时调整顺序")
+    public void testPriorityOrder() throws Exception {
+        scheduler = new CompressionScheduler(1, 16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = block(started);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        scheduler.submit(ns("low"), 0.9, () -> { order.add("low"); done.countDown(); });
+        scheduler.submit(ns("high"), 2.0, () -> { order.add("high"); done.countDown(); });
+        scheduler.submit(ns("mid"), 1.0, () -> { order.add("mid"); done.countDown(); });
+        // low 的压力升到最高
+        scheduler.submit(ns("low"), 3.0, () -> { });
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("low", "high", "mid"), order);
+    }
+
+    @Test
+    @DisplayName("排队达到上限时拒绝新命名空间，并输出队列与耗时统计")
+    public void testBackpressureAndStats() throws Exception {
+        scheduler = new CompressionScheduler(1, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = block(started);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(scheduler.submit(ns("a"), 1.0, () -> { }));
+        assertTrue(scheduler.submit(ns("b"), 1.0, () -> { }));
+        assertFalse(scheduler.submit(ns("c"), 1.0, () -> { }));
+
+        Map<String, Object> stats = scheduler.getStats();
+        assertEquals(2, stats.get("queueDepth"));
+        assertEquals(1, stats.get("inFlight"));
+        assertEquals(1L, stats.get("rejected"));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((int) scheduler.getStats().get("queueDepth") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> wait = (Map<String, Object>) scheduler.getStats().get("wait");
+        assertEquals(3L, wait.get("calls"));
+    }
+}
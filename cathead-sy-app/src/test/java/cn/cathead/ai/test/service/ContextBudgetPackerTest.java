@@ -0,0 +1,240 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.ImportanceScore;
+import cn.cathead.ai.domain.client.model.valobj.PackedContext;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ContextBudgetPacker;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MessageUtils;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.HeuristicTokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
+import cn.cathead.ai.domain.model.service.IModelService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 上下文装箱测试：预算内全部放入、超出预算按分值丢弃与截断、按轮次整体取舍、保持原顺序
+ */
+@DisplayName("上下文装箱测试")
+public class ContextBudgetPackerTest {
+
+    private MemoryProperties props;
+    private ContextBudgetPacker packer;
+    private final List<Message> prompt = List.of(new SystemMessage("你是数据助手"), new UserMessage("订单表在哪"));
+
+    @BeforeEach
+    public void setUp() {
+        props = new MemoryProperties();
+        // 不查询模型：使用默认窗口与估算计数器
+        props.getStm().setDefaultModelId(null);
+        props.getStm().setDefaultWindowTokens(600);
+        props.getAdvisor().getPack().setReservedOutputTokens(100);
+        IModelService modelService = mock(IModelService.class);
+        packer = new ContextBudgetPacker(new ShortTermPolicyProvider(modelService, props),
+                new TokenCounterProvider(modelService, props), props);
+    }
+
+    private static List<Message> turns(int n) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String text = "turn-" + i + " " + "the orders table lives in the warehouse schema ".repeat(3);
+            messages.add(i % 2 == 0 ? UserMessage.builder().text(text).build() : new AssistantMessage(text));
+        }
+        return messages;
+    }
+
+    private static MemoryChunk chunk(String id, String summary, Double importance) {
+        return MemoryChunk.builder()
+                .id(id)
+                .title(id)
+                .summary(summary)
+                .importanceScore(importance == null ? null : ImportanceScore.of(importance, "manual"))
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    private static int tokens(String text) {
+        return HeuristicTokenCounter.INSTANCE.count(text);
+    }
+
+    private int cost(List<Message> messages) {
+        int total = 0;
+        for (Message m : messages) {
+            total += tokens(MessageUtils.extractText(m)) + props.getAdvisor().getPack().getMessageOverheadTokens();
+        }
+        return total;
+    }
+
+    /** 带工具调用的一轮：提问、工具调用、工具结果，可选的最终回答 */
+    private static List<Message> toolTurn(AssistantMessage answer) {
+        List<Message> turn = new ArrayList<>();
+        turn.add(new UserMessage("查一下订单表的分区"));
+        turn.add(new AssistantMessage("", Map.of(), List.of(
+                new AssistantMessage.ToolCall("call-1", "function", "describeTable", "{\"table\":\"orders\"}"))));
+        turn.add(new ToolResponseMessage(List.of(
+                new ToolResponseMessage.ToolResponse("call-1", "describeTable", "partitioned by event_date"))));
+        if (answer != null) {
+            turn.add(answer);
+        }
+        return turn;
+    }
+
+    @Test
+    @DisplayName("预算充足时全部放入，顺序不变")
+    public void testEverythingFits() {
+        props.getStm().setDefaultWindowTokens(100000);
+        List<Message> stm = turns(4);
+        List<MemoryChunk> chunks = List.of(chunk("a", "orders in dw", null), chunk("b", "users in ods", null));
+
+        PackedContext packed = packer.pack(null, "agent", prompt, stm, chunks);
+
+        assertSame(stm.get(0), packed.getShortTerm().get(0));
+        assertEquals(stm, packed.getShortTerm());
+        assertEquals(List.of("a", "b"), packed.getChunks().stream().map(MemoryChunk::getId).toList());
+        assertEquals(0, packed.getDroppedTokens());
+        assertEquals(0, packed.getDroppedItems());
+        assertTrue(packed.getPackedTokens() > 0);
+    }
+
+    @Test
+    @DisplayName("超出预算时保留摘要与最近的消息，丢弃较早的消息，不超预算")
+    public void testDropsOldestWithinBudget() {
+        List<Message> stm = new ArrayList<>();
+        stm.add(new SystemMessage("[Conversation Summary]\n之前讨论了订单表的分区策略"));
+        stm.addAll(turns(30));
+
+        PackedContext packed = packer.pack(null, "agent", prompt, stm, List.of());
+
+        assertTrue(packed.getPackedTokens() <= packed.getBudgetTokens());
+        assertTrue(packed.getDroppedTokens() > 0);
+        List<Message> kept = packed.getShortTerm();
+        assertEquals(stm.size() - packed.getDroppedItems(), kept.size());
+        assertSame(stm.get(0), kept.get(0));
+        assertSame(stm.get(stm.size() - 1), kept.get(kept.size() - 1));
+        // 保留的是连续的最近若干轮完整问答（最早一轮的回答可能被截断）
+        assertEquals(0, (kept.size() - 1) % 2);
+        int firstKept = stm.size() - (kept.size() - 1);
+        for (int i = 1; i < kept.size(); i++) {
+            Message expected = stm.get(firstKept + i - 1);
+            if (i == 2 && kept.get(i) != expected) {
+                assertInstanceOf(AssistantMessage.class, kept.get(i));
+                assertTrue(kept.get(i).getText().endsWith("…"));
+            } else {
+                assertSame(expected, kept.get(i));
+            }
+        }
+        int counted = 0;
+        for (Message m : kept) {
+            counted += tokens(MessageUtils.extractText(m)) + props.getAdvisor().getPack().getMessageOverheadTokens();
+        }
+        assertEquals(packed.getPackedTokens(), counted);
+    }
+
+    @Test
+    @DisplayName("长期片段按相似度与重要性取舍，放不下的长片段截断放入")
+    public void testChunkSelectionAndTruncation() {
+        props.getStm().setDefaultWindowTokens(360);
+        String longText = "partition pruning on the orders fact table by event date ".repeat(40);
+        List<MemoryChunk> chunks = List.of(
+                chunk("top", "orders table is dw.fact_orders", null),
+                chunk("noise", "unrelated note about lunch", 0.0),
+                chunk("long", longText, 1.0));
+
+        PackedContext packed = packer.pack(null, "agent", prompt, List.of(), chunks);
+
+        List<String> ids = packed.getChunks().stream().map(MemoryChunk::getId).toList();
+        assertEquals("top", ids.get(0));
+        assertTrue(ids.contains("long"));
+        MemoryChunk truncated = packed.getChunks().get(ids.indexOf("long"));
+        assertTrue(truncated.getSummary().length() < longText.length());
+        assertTrue(truncated.getSummary().endsWith("…"));
+        assertEquals(1, packed.getTruncatedItems());
+        assertTrue(packed.getPackedTokens() <= packed.getBudgetTokens());
+        assertTrue(packed.getDroppedTokens() > 0);
+        assertEquals(packed.getPackedTokens(), packer.getStats().get("packedTokens") instanceof Long l ? l.intValue() : -1);
+    }
+
+    @Test
+    @DisplayName("工具调用轮次整体保留，只截断末尾回答并保留原类型与元数据")
+    public void testToolTurnTruncatesOnlyFinalAnswer() {
+        String answerText = "the orders table is partitioned by event_date with daily granularity ".repeat(8);
+        AssistantMessage answer = new AssistantMessage(answerText, Map.of("finishReason", "STOP"));
+        List<Message> older = toolTurn(answer);
+        List<Message> latest = turns(2);
+        List<Message> stm = new ArrayList<>(older);
+        stm.addAll(latest);
+        int overhead = props.getAdvisor().getPack().getMessageOverheadTokens();
+        // 预算恰好放下最新一轮、工具轮次的固定部分，以及一半的最终回答
+        props.getStm().setDefaultWindowTokens(props.getAdvisor().getPack().getReservedOutputTokens() + cost(prompt)
+                + cost(latest) + cost(older.subList(0, 3)) + overhead + tokens(answerText) / 2);
+
+        PackedContext packed = packer.pack(null, "agent", prompt, stm, List.of());
+
+        List<Message> kept = packed.getShortTerm();
+        assertEquals(stm.size(), kept.size());
+        for (int i = 0; i < 3; i++) {
+            assertSame(stm.get(i), kept.get(i));
+        }
+        AssistantMessage truncated = assertInstanceOf(AssistantMessage.class, kept.get(3));
+        assertNotSame(answer, truncated);
+        assertTrue(truncated.getText().endsWith("…"));
+        assertEquals("STOP", truncated.getMetadata().get("finishReason"));
+        assertEquals(latest, kept.subList(4, 6));
+        assertEquals(1, packed.getTruncatedItems());
+        assertEquals(0, packed.getDroppedItems());
+        assertTrue(packed.getPackedTokens() <= packed.getBudgetTokens());
+    }
+
+    @Test
+    @DisplayName("以工具结果结尾的轮次放不下时整体丢弃，不留下孤立的工具消息")
+    public void testToolTurnDroppedWhole() {
+        List<Message> older = toolTurn(null);
+        List<Message> latest = turns(2);
+        List<Message> stm = new ArrayList<>(older);
+        stm.addAll(latest);
+        props.getStm().setDefaultWindowTokens(props.getAdvisor().getPack().getReservedOutputTokens() + cost(prompt)
+                + cost(latest) + cost(older) - 1);
+
+        PackedContext packed = packer.pack(null, "agent", prompt, stm, List.of());
+
+        assertEquals(latest, packed.getShortTerm());
+        assertEquals(older.size(), packed.getDroppedItems());
+        assertEquals(0, packed.getTruncatedItems());
+    }
+
+    @Test
+    @DisplayName("短期条目沿用写入时缓存的 token 数，缺少缓存值时才分词")
+    public void testUsesCachedTokenCost() {
+        int overhead = props.getAdvisor().getPack().getMessageOverheadTokens();
+        List<MemoryMessage> entries = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            entries.add(MemoryMessage.builder().payload(new UserMessage("q" + i)).tokenCost(150).build());
+        }
+        Message latest = new AssistantMessage("a3");
+        entries.add(MemoryMessage.builder().payload(latest).build());
+
+        PackedContext packed = packer.packEntries(null, "agent", prompt, entries, List.of());
+
+        // 文本很短，按缓存的 150 tokens 计才会超出预算
+        assertTrue(packed.getDroppedTokens() > 0);
+        assertEquals(4 * (150 + overhead) + tokens("a3") + overhead, packed.getPackedTokens() + packed.getDroppedTokens());
+        List<Message> kept = packed.getShortTerm();
+        assertSame(latest, kept.get(kept.size() - 1));
+    }
+}
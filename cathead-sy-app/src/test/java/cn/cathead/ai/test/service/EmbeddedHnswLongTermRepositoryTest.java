@@ -0,0 +1,323 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
+import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.IModelService;
+import cn.cathead.ai.infrastructure.persistent.hnsw.VectorSegmentLog;
+import cn.cathead.ai.infrastructure.persistent.repository.EmbeddedHnswLongTermRepository;
+import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 进程内 HNSW 长期记忆仓储测试：过滤语义、持久化重放、崩溃截断、段文件压实与 int8 量化重排
+ */
+@DisplayName("EmbeddedHnswLongTermRepository 测试")
+public class EmbeddedHnswLongTermRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private IModelService modelService;
+    private IModelRepository modelRepository;
+    private MemoryProperties props;
+    private EmbeddedHnswLongTermRepository repository;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        modelService = mock(IModelService.class);
+        when(modelService.embedText(any(EmbeddingRequestDTO.class))).thenAnswer(inv -> {
+            EmbeddingRequestDTO request = inv.getArgument(0);
+            List<Embedding> results = new ArrayList<>();
+            for (int i = 0; i < request.getTexts().size(); i++) {
+                results.add(new Embedding(vectorOf(request.getTexts().get(i)), i));
+            }
+            return new EmbeddingResponse(results);
+        });
+        modelRepository = mock(IModelRepository.class);
+        props = new MemoryProperties();
+        props.getLtm().getEmbedded().setDataFile(dir.resolve("ltm.seg").toString());
+        props.getLtm().getEmbedded().setSegmentBytes(64 * 1024);
+        repository = open();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        repository.shutdown();
+        MemoryContextHolder.clear();
+    }
+
+    private EmbeddedHnswLongTermRepository open() throws Exception {
+        EmbeddedHnswLongTermRepository repo = new EmbeddedHnswLongTermRepository(modelService, modelRepository, props);
+        repo.init();
+        return repo;
+    }
+
+    /** 同一文本得到同一向量 */
+    private static float[] vectorOf(String text) {
+        Random random = new Random(text.hashCode());
+        float[] v = new float[32];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = random.nextFloat() - 0.5f;
+        }
+        return v;
+    }
+
+    private static MemoryChunk chunk(String id, String knowledgeId, String agentId, String sessionId) {
+        return MemoryChunk.builder()
+                .id(id)
+                .title("title " + id)
+                .summary("text " + id)
+                .tags(List.of("a", "b"))
+                .knowledgeId(knowledgeId)
+                .agentId(agentId)
+                .sessionId(sessionId)
+                .createdAt(Instant.ofEpochMilli(1_700_000_000_000L))
+                .build();
+    }
+
+    private List<MemoryChunk> corpus() {
+        List<MemoryChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String knowledgeId = i % 3 == 0 ? null : "kb-" + (i % 3);
+            chunks.add(chunk("m-" + i, knowledgeId, i % 5 == 0 ? "agent-x" : null, i % 7 == 0 ? "s-1" : null));
+        }
+        return chunks;
+    }
+
+    @Test
+    @DisplayName("检索按 knowledgeId / agentId / sessionId 过滤，空值记忆全局可见")
+    public void testSearchWithFilters() {
+        repository.saveAllAndEmbed(corpus(), "m1");
+
+        // m-1: kb-1，无 agent/session
+        List<MemoryChunk> hits = repository.semanticSearchByText("kb-1", null, "text m-1", "m1", 5);
+        assertEquals("m-1", hits.get(0).getId());
+        assertEquals(5, hits.size());
+        for (MemoryChunk c : hits) {
+            assertTrue(c.getKnowledgeId() == null || "kb-1".equals(c.getKnowledgeId()));
+            assertNull(c.getAgentId());
+            assertNull(c.getSessionId());
+        }
+
+        // m-2 属于 kb-2，对 kb-1 不可见
+        assertTrue(repository.semanticSearchByText("kb-1", null, "text m-2", "m1", 10).stream()
+                .noneMatch(c -> "m-2".equals(c.getId())));
+
+        // m-35: kb-2 + agent-x + s-1，需三者都匹配
+        assertTrue(repository.semanticSearchByText("kb-2", "agent-x", "text m-35", "m1", 5).stream()
+                .noneMatch(c -> "m-35".equals(c.getId())));
+        MemoryContextHolder.set("s-1", "agent-x", "kb-2");
+        assertEquals("m-35", repository.semanticSearchByText("kb-2", "agent-x", "text m-35", "m1", 5).get(0).getId());
+    }
+
+    @Test
+    @DisplayName("词法检索按 BM25 命中标识符，过滤与删除同样生效")
+    public void testLexicalSearch() {
+        repository.saveAll(List.of(
+                MemoryChunk.builder().id("l-1").summary("订单宽表 dw.fact_orders 每日凌晨刷新").build(),
+                MemoryChunk.builder().id("l-2").summary("任务失败，错误码 ERR_1042：分区不存在").knowledgeId("kb-1").build(),
+                MemoryChunk.builder().id("l-3").summary("用户画像表 dw.dim_user").knowledgeId("kb-2").build()));
+
+        assertEquals(List.of("l-1"), repository.lexicalSearch("kb-1", null, "fact_orders 的刷新时间", 5)
+                .stream().map(MemoryChunk::getId).toList());
+        assertEquals("l-2", repository.lexicalSearch("kb-1", null, "ERR_1042", 5).get(0).getId());
+        assertTrue(repository.lexicalSearch("kb-1", null, "dim_user", 5).isEmpty());
+
+        repository.deleteById("l-2");
+        assertTrue(repository.lexicalSearch("kb-1", null, "ERR_1042", 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("重启后由段文件重放恢复索引，删除与更新同样生效")
+    public void testReplayAfterRestart() throws Exception {
+        repository.saveAllAndEmbed(corpus(), "m1");
+        repository.deleteById("m-3");
+        repository.saveAll(List.of(chunk("m-6", null, null, null)));
+        repository.shutdown();
+
+        repository = open();
+        assertEquals(299, repository.size());
+        assertTrue(repository.semanticSearchByText(null, null, "text m-3", "m1", 10).stream()
+                .noneMatch(c -> "m-3".equals(c.getId())));
+        // 不带向量的更新保留原向量
+        MemoryChunk top = repository.semanticSearchByText(null, null, "text m-6", "m1", 1).get(0);
+        assertEquals("m-6", top.getId());
+        assertEquals(List.of("a", "b"), top.getTags());
+        assertEquals(Instant.ofEpochMilli(1_700_000_000_000L), top.getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("空标签与含逗号的标签经段文件重放原样恢复")
+    public void testTagsRoundTrip() throws Exception {
+        repository.saveAll(List.of(
+                MemoryChunk.builder().id("t-1").summary("empty").tags(List.of()).build(),
+                MemoryChunk.builder().id("t-2").summary("comma").tags(List.of("a,b", "", "c")).build(),
+                MemoryChunk.builder().id("t-3").summary("none").build()));
+        repository.shutdown();
+
+        repository = open();
+        assertEquals(List.of(), repository.lexicalSearch(null, null, "empty", 1).get(0).getTags());
+        assertEquals(List.of("a,b", "", "c"), repository.lexicalSearch(null, null, "comma", 1).get(0).getTags());
+        assertEquals(List.of(), repository.lexicalSearch(null, null, "none", 1).get(0).getTags());
+    }
+
+    @Test
+    @DisplayName("崩溃留下的损坏尾记录在重放时被截断，之后可继续写入")
+    public void testCrashRecovery() throws Exception {
+        repository.saveAllAndEmbed(corpus().subList(0, 20), "m1");
+        repository.shutdown();
+
+        Path file = dir.resolve("ltm.seg");
+        AtomicLong lastVector = new AtomicLong(-1);
+        try (VectorSegmentLog segmentLog = new VectorSegmentLog(file, 64 * 1024, false)) {
+            segmentLog.replay((type, meta, vectorOffset, dims) -> lastVector.set(vectorOffset));
+        }
+        // 模拟最后一条记录未写完：向量区内容被破坏
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), lastVector.get());
+        }
+
+        repository = open();
+        assertEquals(19, repository.size());
+        repository.saveAndEmbed(chunk("m-new", null, null, null), "m1");
+        repository.shutdown();
+
+        repository = open();
+        assertEquals(20, repository.size());
+        assertEquals("m-new", repository.semanticSearchByText(null, null, "text m-new", "m1", 1).get(0).getId());
+    }
+
+    @Test
+    @DisplayName("失效记录超过阈值后后台压实段文件并重建图，压实后的文件可重放")
+    public void testCompaction() throws Exception {
+        props.getLtm().getEmbedded().setCompactMinRecords(100);
+        repository.saveAllAndEmbed(corpus(), "m1");
+        // 200 条记忆换摘要重新向量化，旧节点与旧记录失效
+        List<MemoryChunk> updated = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            updated.add(MemoryChunk.builder().id("m-" + i).summary("text v2 m-" + i).build());
+        }
+        repository.saveAllAndEmbed(updated, "m1");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) repository.getStats().get("compactions") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Map<String, Object> stats = repository.getStats();
+        assertTrue((Long) stats.get("compactions") > 0, stats.toString());
+        assertEquals(300, stats.get("entries"));
+        assertEquals(300, stats.get("vectors"));
+        assertTrue((Integer) stats.get("segmentLogRecords") < 500, stats.toString());
+        assertEquals("m-5", repository.semanticSearchByText(null, null, "text v2 m-5", "m1", 1).get(0).getId());
+        assertEquals("m-201", repository.semanticSearchByText(null, null, "text m-201", "m1", 1).get(0).getId());
+
+        repository.deleteById("m-1");
+        repository.save(MemoryChunk.builder().id("m-2").title("renamed").summary("text v2 m-2").build());
+        repository.shutdown();
+
+        repository = open();
+        assertFalse(dir.resolve("ltm.seg.compact").toFile().exists());
+        assertEquals(299, repository.size());
+        assertTrue(repository.semanticSearchByText(null, null, "text v2 m-1", "m1", 10).stream()
+                .noneMatch(c -> "m-1".equals(c.getId())));
+        MemoryChunk top = repository.semanticSearchByText(null, null, "text v2 m-2", "m1", 1).get(0);
+        assertEquals("m-2", top.getId());
+        assertEquals("renamed", top.getTitle());
+        assertEquals("m-5", repository.semanticSearchByText(null, null, "text v2 m-5", "m1", 1).get(0).getId());
+    }
+
+    @Test
+    @DisplayName("int8 量化：编码内存约为原始向量的 1/4，重排后召回接近精确检索")
+    public void testInt8QuantizationWithRerank() throws Exception {
+        repository.shutdown();
+        props.getLtm().getEmbedded().setDataFile(dir.resolve("ltm-q.seg").toString());
+        props.getLtm().getEmbedded().setSegmentBytes(4 * 1024 * 1024);
+        props.getLtm().getEmbedded().setQuantization("int8");
+        when(modelRepository.queryModelById("m-coarse")).thenReturn(EmbeddingModelEntity.builder()
+                .modelId("m-coarse").dynamicProperties(Map.of("rerankRatio", 1)).build());
+        repository = open();
+
+        int n = 3000;
+        List<MemoryChunk> chunks = new ArrayList<>();
+        List<float[]> corpus = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            chunks.add(chunk("m-" + i, null, null, null));
+            corpus.add(vectorOf("text m-" + i));
+        }
+        repository.saveAllAndEmbed(chunks, "m1");
+
+        Map<String, Object> stats = repository.getStats();
+        long fullBytes = (Long) stats.get("fullVectorBytes");
+        long codeBytes = (Long) stats.get("codeBytes");
+        assertEquals(n, stats.get("vectors"));
+        assertTrue(codeBytes * 3 < fullBytes, stats.toString());
+
+        int queries = 100;
+        int k = 10;
+        double[] recall = new double[2];
+        String[] models = {"m-coarse", "m1"};
+        Random random = new Random(3);
+        for (int q = 0; q < queries; q++) {
+            String text = "query " + random.nextInt();
+            Set<String> truth = exactTopK(text, corpus, k);
+            for (int m = 0; m < models.length; m++) {
+                List<MemoryChunk> hits = repository.semanticSearchByText(null, null, text, models[m], k);
+                recall[m] += hits.stream().filter(c -> truth.contains(c.getId())).count() / (double) (queries * k);
+            }
+        }
+        assertTrue(recall[0] >= 0.8, "不重排 recall=" + recall[0]);
+        assertTrue(recall[1] >= 0.9, "重排x4 recall=" + recall[1]);
+    }
+
+    /** 与 pgvector 的 <=> 排序一致的精确 cosine top-K */
+    private static Set<String> exactTopK(String query, List<float[]> corpus, int k) {
+        float[] q = vectorOf(query);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            ids.add(i);
+        }
+        ids.sort(Comparator.comparingDouble(i -> -cosine(q, corpus.get(i))));
+        Set<String> top = new HashSet<>();
+        for (int i = 0; i < k; i++) {
+            top.add("m-" + ids.get(i));
+        }
+        return top;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, na = 0, nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return dot / Math.sqrt(na * nb);
+    }
+}
@@ -0,0 +1,123 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.EmbeddingBatchDispatcher;
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.config.EmbeddingBatchProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * EmbeddingBatchDispatcher 微批分发测试
+ */
+@DisplayName("EmbeddingBatchDispatcher 微批分发测试")
+public class EmbeddingBatchDispatcherTest {
+
+    private EmbeddingBatchProperties props;
+    private EmbeddingBatchDispatcher dispatcher;
+    private EmbeddingModel model;
+    private List<Integer> batchSizes;
+
+    @BeforeEach
+    public void setUp() {
+        props = new EmbeddingBatchProperties();
+        props.setLingerMs(50);
+        dispatcher = new EmbeddingBatchDispatcher(props);
+        dispatcher.init();
+
+        batchSizes = new CopyOnWriteArrayList<>();
+        model = mock(EmbeddingModel.class);
+        // 向量内容取文本本身的数值，便于校验结果是否回到正确的调用方
+        when(model.call(any(EmbeddingRequest.class))).thenAnswer(inv -> {
+            EmbeddingRequest request = inv.getArgument(0);
+            batchSizes.add(request.getInstructions().size());
+            List<Embedding> results = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                results.add(new Embedding(new float[]{Float.parseFloat(request.getInstructions().get(i))}, i));
+            }
+            return new EmbeddingResponse(results);
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("200 条文本按 maxBatchSize 分批，少量往返")
+    public void testLargeIngestSplitsByMaxBatchSize() {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            texts.add(String.valueOf(i));
+        }
+
+        List<float[]> vectors = dispatcher.embed("m1", model, 64, texts);
+
+        assertEquals(200, vectors.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, vectors.get(i)[0]);
+        }
+        assertEquals(4, batchSizes.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 64));
+    }
+
+    @Test
+    @DisplayName("并发调用方在窗口内合并为一次请求，结果回到各自调用方")
+    public void testConcurrentCallersCoalesced() throws Exception {
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<float[]>>> futures = new ArrayList<>();
+        for (int c = 0; c < callers; c++) {
+            String text = String.valueOf(c);
+            futures.add(pool.submit(() -> {
+                start.await();
+                return dispatcher.embed("m1", model, 32, List.of(text));
+            }));
+        }
+        start.countDown();
+
+        for (int c = 0; c < callers; c++) {
+            assertEquals(c, futures.get(c).get(5, TimeUnit.SECONDS).get(0)[0]);
+        }
+        pool.shutdownNow();
+        assertTrue(batchSizes.size() < callers);
+        assertEquals(callers, batchSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    @DisplayName("模型不支持批量时逐条发送")
+    public void testNoBatchSupport() {
+        dispatcher.embed("m1", model, 1, List.of("1", "2", "3"));
+        assertEquals(List.of(1, 1, 1), batchSizes);
+    }
+
+    @Test
+    @DisplayName("批请求失败时所有调用方都收到异常")
+    public void testFailurePropagates() {
+        EmbeddingModel failing = mock(EmbeddingModel.class);
+        when(failing.call(any(EmbeddingRequest.class))).thenThrow(new IllegalStateException("upstream down"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> dispatcher.embed("m2", failing, 8, List.of("1", "2")));
+        assertEquals("upstream down", e.getMessage());
+    }
+}
@@ -0,0 +1,145 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
+import cn.cathead.ai.domain.model.service.registry.IModelProviderService;
+import cn.cathead.ai.domain.model.service.registry.modelcache.IModelCacheManager;
+import cn.cathead.ai.domain.model.service.runtime.embedding.EmbeddingService;
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.EmbeddingBatchDispatcher;
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.config.EmbeddingBatchProperties;
+import cn.cathead.ai.domain.model.service.runtime.embedding.cache.EmbeddingCache;
+import cn.cathead.ai.domain.model.service.runtime.embedding.cache.config.EmbeddingCacheProperties;
+import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * EmbeddingCache 向量化结果缓存测试
+ */
+@DisplayName("EmbeddingCache 向量化结果缓存测试")
+public class EmbeddingCacheTest {
+
+    private EmbeddingCacheProperties props;
+    private EmbeddingCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        props = new EmbeddingCacheProperties();
+        cache = new EmbeddingCache(props);
+        cache.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("命中与未命中统计，返回副本")
+    public void testHitAndMiss() {
+        assertNull(cache.get("m1", 1L, "hello"));
+        cache.put("m1", 1L, "hello", new float[]{1f, 2f, 3f});
+
+        float[] hit = cache.get("m1", 1L, "hello");
+        assertArrayEquals(new float[]{1f, 2f, 3f}, hit);
+        hit[0] = 99f;
+        assertArrayEquals(new float[]{1f, 2f, 3f}, cache.get("m1", 1L, "hello"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertTrue(cache.getBytesSaved() > 0);
+    }
+
+    @Test
+    @DisplayName("模型版本变化后旧向量失效")
+    public void testVersionInvalidation() {
+        cache.put("m1", 1L, "hello", new float[]{1f});
+        assertNotNull(cache.get("m1", 1L, "hello"));
+
+        assertNull(cache.get("m1", 2L, "hello"));
+        assertNull(cache.get("m1", 1L, "hello"));
+    }
+
+    @Test
+    @DisplayName("堆内淘汰降级到堆外，命中后取回原始向量")
+    public void testOffHeapRoundTrip() throws Exception {
+        cache.shutdown();
+        props.setHeapMaxBytes(4096);
+        props.getOffHeap().setEnabled(true);
+        props.getOffHeap().setCapacityBytes(1024 * 1024);
+        cache = new EmbeddingCache(props);
+        cache.init();
+
+        float[] first = new float[]{0.5f, -1.25f, 3f, 42f};
+        cache.put("m1", 1L, "text-0", first);
+        for (int i = 1; i < 200; i++) {
+            cache.put("m1", 1L, "text-" + i, new float[]{i, i, i, i});
+        }
+
+        float[] restored = null;
+        for (int attempt = 0; attempt < 50 && restored == null; attempt++) {
+            restored = cache.get("m1", 1L, "text-0");
+            if (restored == null) {
+                Thread.sleep(20);
+            }
+        }
+        assertArrayEquals(first, restored);
+        assertTrue(cache.getStats().contains("offHeapHits=1"));
+    }
+
+    @Test
+    @DisplayName("EmbeddingService 只对未命中文本去重后调用一次模型，并返回模型的模型名与用量")
+    public void testServiceEmbedsOnlyMisses() {
+        EmbeddingModel model = mock(EmbeddingModel.class);
+        IModelCacheManager cacheManager = mock(IModelCacheManager.class);
+        when(cacheManager.getEmbeddingModelWrapper("m1")).thenReturn(
+                ModelWrapper.<EmbeddingModel>builder().modelInstance(model).modelId("m1").version(3L).build());
+        when(model.call(any(EmbeddingRequest.class))).thenAnswer(inv -> {
+            EmbeddingRequest request = inv.getArgument(0);
+            List<Embedding> results = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                results.add(new Embedding(new float[]{request.getInstructions().get(i).length()}, i));
+            }
+            return new EmbeddingResponse(results, new EmbeddingResponseMetadata("text-embedding-v3", new DefaultUsage(7, 0, 7)));
+        });
+        EmbeddingBatchDispatcher dispatcher = new EmbeddingBatchDispatcher(new EmbeddingBatchProperties());
+        dispatcher.init();
+        EmbeddingService service = new EmbeddingService(mock(IModelProviderService.class), cacheManager, cache, dispatcher);
+
+        cache.put("m1", 3L, "a", new float[]{100f});
+        EmbeddingResponse response = service.generateEmbedding(model,
+                new EmbeddingRequestDTO("m1", List.of("a", "bb", "bb", "ccc")));
+
+        ArgumentCaptor<EmbeddingRequest> captor = ArgumentCaptor.forClass(EmbeddingRequest.class);
+        verify(model, times(1)).call(captor.capture());
+        assertEquals(List.of("bb", "ccc"), captor.getValue().getInstructions());
+        assertEquals(4, response.getResults().size());
+        assertArrayEquals(new float[]{100f}, response.getResults().get(0).getOutput());
+        assertArrayEquals(new float[]{2f}, response.getResults().get(2).getOutput());
+        assertArrayEquals(new float[]{3f}, response.getResults().get(3).getOutput());
+        assertEquals("text-embedding-v3", response.getMetadata().getModel());
+        assertEquals(7, response.getMetadata().getUsage().getPromptTokens());
+        assertEquals(7, response.getMetadata().getUsage().getTotalTokens());
+
+        EmbeddingResponse cached = service.generateEmbedding(model, new EmbeddingRequestDTO("m1", List.of("bb", "ccc")));
+        verify(model, times(1)).call(any(EmbeddingRequest.class));
+        assertEquals("m1", cached.getMetadata().getModel());
+        assertEquals(0, cached.getMetadata().getUsage().getTotalTokens());
+        dispatcher.shutdown();
+    }
+}
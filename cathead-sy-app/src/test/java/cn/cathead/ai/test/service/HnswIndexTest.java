@@ -0,0 +1,131 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.infrastructure.persistent.hnsw.HnswIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HNSW 索引召回率、过滤与删除测试，附与精确检索的耗时对比
+ */
+@DisplayName("HnswIndex 测试")
+public class HnswIndexTest {
+
+    private static final int DIMS = 64;
+
+    /** 堆上向量源，偏移即下标；统计距离计算次数 */
+    private static final class ArraySource implements HnswIndex.VectorSource {
+        final List<float[]> vectors = new ArrayList<>();
+        long distanceCalls;
+
+        @Override
+        public float distance(float[] query, long offset) {
+            distanceCalls++;
+            float[] v = vectors.get((int) offset);
+            float sum = 0f;
+            for (int i = 0; i < query.length; i++) {
+                float d = query[i] - v[i];
+                sum += d * d;
+            }
+            return sum;
+        }
+
+        @Override
+        public float[] vector(long offset) {
+            return vectors.get((int) offset);
+        }
+    }
+
+    private static float[] random(Random random) {
+        float[] v = new float[DIMS];
+        for (int i = 0; i < DIMS; i++) {
+            v[i] = random.nextFloat();
+        }
+        return v;
+    }
+
+    private static HnswIndex build(ArraySource source, int n, Random random) {
+        HnswIndex index = new HnswIndex(source, 16, 100);
+        for (int i = 0; i < n; i++) {
+            source.vectors.add(random(random));
+            index.insert("k-" + i, i);
+        }
+        return index;
+    }
+
+    private static List<Integer> exact(ArraySource source, float[] query, int k, java.util.function.IntPredicate filter) {
+        return IntStream.range(0, source.vectors.size())
+                .filter(filter)
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> source.distance(query, i)))
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("recall@10 不低于 0.9，且每次检索的距离计算明显少于精确检索")
+    public void testRecallAndDistanceCalls() {
+        Random random = new Random(7);
+        ArraySource source = new ArraySource();
+        HnswIndex index = build(source, 5000, random);
+        assertEquals(5000, index.size());
+
+        int queries = 200;
+        int k = 10;
+        int found = 0;
+        long searchCalls = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = random(random);
+            long before = source.distanceCalls;
+            List<HnswIndex.Hit> hits = index.search(query, k, 128, n -> true);
+            searchCalls += source.distanceCalls - before;
+            List<Integer> truth = exact(source, query, k, n -> true);
+            Set<Integer> expected = new HashSet<>(truth);
+            for (HnswIndex.Hit hit : hits) {
+                if (expected.contains(hit.node)) {
+                    found++;
+                }
+            }
+        }
+        double recall = found / (double) (queries * k);
+        long perQuery = searchCalls / queries;
+        assertTrue(recall >= 0.9, "recall=" + recall);
+        // 检索耗时由距离计算主导：精确检索每次需 5000 次
+        assertTrue(perQuery < 5000 * 3 / 5, "distanceCalls/query=" + perQuery);
+    }
+
+    @Test
+    @DisplayName("过滤条件与逻辑删除的节点不出现在结果中")
+    public void testFilterAndDelete() {
+        Random random = new Random(11);
+        ArraySource source = new ArraySource();
+        HnswIndex index = build(source, 2000, random);
+        float[] query = source.vectors.get(42);
+
+        List<HnswIndex.Hit> top = index.search(query, 1, 32, n -> true);
+        assertEquals(42, top.get(0).node);
+        assertEquals("k-42", top.get(0).key);
+
+        index.markDeleted(42);
+        assertEquals(1999, index.size());
+        List<HnswIndex.Hit> afterDelete = index.search(query, 10, 32, n -> true);
+        assertTrue(afterDelete.stream().noneMatch(h -> h.node == 42));
+
+        List<HnswIndex.Hit> even = index.search(query, 10, 64, n -> n % 2 == 0);
+        assertEquals(10, even.size());
+        assertTrue(even.stream().allMatch(h -> h.node % 2 == 0));
+        Set<Integer> truth = new HashSet<>(exact(source, query, 10, n -> n % 2 == 0 && n != 42));
+        long hit = even.stream().filter(h -> truth.contains(h.node)).count();
+        assertTrue(hit >= 8, "filtered recall=" + hit);
+    }
+}
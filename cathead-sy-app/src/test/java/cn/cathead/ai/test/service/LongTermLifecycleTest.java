@@ -0,0 +1,326 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.event.MemoryForgottenEvent;
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.valobj.ImportanceScore;
+import cn.cathead.ai.domain.client.repository.ILongTermMemoryRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.LongTermAccessRecorder;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.LongTermLifecycleEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 长期记忆生命周期测试：访问统计批量回写、打分、衰减、合并与遗忘
+ */
+@DisplayName("长期记忆生命周期测试")
+public class LongTermLifecycleTest {
+
+    /**
+     * 内存仓储：记录批量调用次数
+     */
+    static class InMemoryRepository implements ILongTermMemoryRepository {
+        final TreeMap<String, MemoryChunk> rows = new TreeMap<>();
+        final List<Map<String, Integer>> accessBatches = new CopyOnWriteArrayList<>();
+        final List<String> embeddedIds = new CopyOnWriteArrayList<>();
+        volatile boolean failAccess;
+
+        @Override
+        public void save(MemoryChunk chunk) {
+            rows.put(chunk.getId(), chunk);
+        }
+
+        @Override
+        public void saveAll(List<MemoryChunk> chunks) {
+            chunks.forEach(this::save);
+        }
+
+        @Override
+        public List<MemoryChunk> semanticSearchByText(String knowledgeId, String agentId, String queryText, String embeddingModelId, int topK) {
+            return List.of();
+        }
+
+        @Override
+        public synchronized void deleteById(String id) {
+            rows.remove(id);
+        }
+
+        @Override
+        public void saveAndEmbed(MemoryChunk chunk, String embeddingModelId) {
+            saveAllAndEmbed(List.of(chunk), embeddingModelId);
+        }
+
+        @Override
+        public synchronized void saveAllAndEmbed(List<MemoryChunk> chunks, String embeddingModelId) {
+            chunks.forEach(c -> embeddedIds.add(c.getId()));
+            saveAll(chunks);
+        }
+
+        @Override
+        public boolean supportsLifecycle() {
+            return true;
+        }
+
+        @Override
+        public synchronized void recordAccess(Map<String, Integer> accessCounts, Instant accessedAt) {
+            if (failAccess) {
+                throw new IllegalStateException("db down");
+            }
+            accessBatches.add(Map.copyOf(accessCounts));
+            accessCounts.forEach((id, count) -> {
+                MemoryChunk c = rows.get(id);
+                if (c != null) {
+                    rows.put(id, copy(c, c.getImportanceScore(), accessedAt, c.getAccessCount() + count));
+                }
+            });
+        }
+
+        @Override
+        public synchronized List<MemoryChunk> scanChunks(String afterId, int limit) {
+            Map<String, MemoryChunk> tail = afterId == null ? rows : rows.tailMap(afterId, false);
+            return tail.values().stream().limit(limit).toList();
+        }
+
+        @Override
+        public synchronized void updateImportance(Map<String, Double> importance) {
+            importance.forEach((id, score) -> {
+                MemoryChunk c = rows.get(id);
+                if (c != null) {
+                    rows.put(id, copy(c, ImportanceScore.of(score, "decayed"), c.getLastAccessAt(), c.getAccessCount()));
+                }
+            });
+        }
+    }
+
+    private static MemoryChunk copy(MemoryChunk c, ImportanceScore importance, Instant lastAccessAt, long accessCount) {
+        return MemoryChunk.builder()
+                .id(c.getId()).title(c.getTitle()).summary(c.getSummary()).tags(c.getTags())
+                .importanceScore(importance).createdAt(c.getCreatedAt()).lastAccessAt(lastAccessAt).accessCount(accessCount)
+                .sessionId(c.getSessionId()).knowledgeId(c.getKnowledgeId()).agentId(c.getAgentId())
+                .build();
+    }
+
+    private final InMemoryRepository repository = new InMemoryRepository();
+    private final List<MemoryForgottenEvent> events = new CopyOnWriteArrayList<>();
+    private MemoryProperties props;
+    private LongTermAccessRecorder recorder;
+    private LongTermLifecycleEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        props = new MemoryProperties();
+        props.getLtm().getLifecycle().setAccessFlushIntervalMs(60_000);
+        props.getLtm().getLifecycle().setAccessFlushBatchSize(1000);
+        props.getLtm().getLifecycle().setScanBatchSize(2);
+        recorder = new LongTermAccessRecorder(repository, props);
+        recorder.init();
+        engine = new LongTermLifecycleEngine(repository, recorder, props, event -> {
+            if (event instanceof MemoryForgottenEvent forgotten) {
+                events.add(forgotten);
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recorder.shutdown();
+    }
+
+    private void put(String id, String session, Double importance, long createdDaysAgo, long accessedDaysAgo, long accessCount) {
+        Instant now = Instant.now();
+        repository.save(MemoryChunk.builder()
+                .id(id)
+                .title("t-" + id)
+                .summary("summary " + id)
+                .tags(List.of("tag-" + id))
+                .importanceScore(importance == null ? null : ImportanceScore.of(importance, "manual"))
+                .createdAt(now.minus(Duration.ofDays(createdDaysAgo)))
+                .lastAccessAt(now.minus(Duration.ofDays(accessedDaysAgo)))
+                .accessCount(accessCount)
+                .sessionId(session)
+                .knowledgeId("kb")
+                .agentId("agent")
+                .build());
+    }
+
+    @Test
+    @DisplayName("价值分随召回频次、近因与重要性单调增加")
+    public void testScore() {
+        Instant now = Instant.now();
+        Instant old = now.minus(Duration.ofDays(90));
+        assertTrue(engine.score(20, now, 0.5, now) > engine.score(0, now, 0.5, now));
+        assertTrue(engine.score(0, now, 0.5, now) > engine.score(0, old, 0.5, now));
+        assertTrue(engine.score(0, old, 0.9, now) > engine.score(0, old, 0.1, now));
+        double top = engine.score(1000, now, 1.0, now);
+        assertTrue(top <= 1.0 && top > 0.99);
+        assertEquals(0.0, engine.score(0, null, 0.0, now), 1e-9);
+    }
+
+    @Test
+    @DisplayName("召回次数在内存中聚合，一次批量回写；回写失败的计数保留到下次")
+    public void testAccessBatched() {
+        put("a", "s1", null, 1, 1, 0);
+        put("b", "s1", null, 1, 1, 0);
+        MemoryChunk a = repository.rows.get("a");
+        MemoryChunk b = repository.rows.get("b");
+        for (int i = 0; i < 5; i++) {
+            recorder.record(List.of(a, b));
+        }
+        recorder.record(List.of(a));
+        assertTrue(repository.accessBatches.isEmpty());
+
+        repository.failAccess = true;
+        assertThrows(IllegalStateException.class, recorder::flush);
+        repository.failAccess = false;
+        recorder.flush();
+
+        assertEquals(1, repository.accessBatches.size());
+        assertEquals(Map.of("a", 6, "b", 5), repository.accessBatches.get(0));
+        assertEquals(6, repository.rows.get("a").getAccessCount());
+        assertTrue(repository.rows.get("a").getLastAccessAt().isAfter(Instant.now().minusSeconds(60)));
+        recorder.flush();
+        assertEquals(1, repository.accessBatches.size());
+    }
+
+    @Test
+    @DisplayName("回写与召回并发时不丢失计数")
+    public void testConcurrentFlushKeepsCounts() throws Exception {
+        put("a", "s1", null, 1, 1, 0);
+        MemoryChunk a = repository.rows.get("a");
+        int threads = 4;
+        int perThread = 5000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    recorder.record(List.of(a));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        while (futures.stream().anyMatch(f -> !f.isDone())) {
+            recorder.flush();
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+        recorder.flush();
+
+        long flushed = repository.accessBatches.stream().mapToLong(m -> m.getOrDefault("a", 0)).sum();
+        assertEquals((long) threads * perThread, flushed);
+        assertEquals((long) threads * perThread, repository.rows.get("a").getAccessCount());
+    }
+
+    @Test
+    @DisplayName("低价值片段删除、同会话中低价值片段合并、闲置片段衰减，新片段不处理")
+    public void testDecayMergeForget() {
+        // 长期闲置且不重要：删除
+        put("dead", "s0", 0.0, 300, 200, 0);
+        // 同会话中等偏低价值：合并
+        put("m1", "s1", 0.3, 60, 40, 0);
+        put("m2", "s1", 0.3, 50, 40, 0);
+        put("m3", "s1", 0.3, 45, 40, 0);
+        // 重要但闲置：衰减后保留
+        put("keep", "s2", 0.9, 30, 10, 2);
+        // 刚创建：即使价值低也不处理
+        put("young", "s3", 0.0, 0, 0, 0);
+        // 常用：保持不变
+        put("hot", "s4", null, 100, 0, 50);
+
+        Map<String, Object> result = engine.runOnce();
+
+        assertEquals(7, result.get("scanned"));
+        assertEquals(1, result.get("forgotten"));
+        assertEquals(3, result.get("merged"));
+        assertEquals(1, result.get("mergedInto"));
+        assertFalse(repository.rows.containsKey("dead"));
+        assertFalse(repository.rows.containsKey("m1"));
+        assertTrue(repository.rows.containsKey("young"));
+        assertTrue(repository.rows.containsKey("hot"));
+        assertNull(repository.rows.get("hot").getImportanceScore());
+        double kept = repository.rows.get("keep").getImportanceScore().getScore();
+        assertTrue(kept < 0.9 && kept > 0.85, "keep=" + kept);
+
+        assertEquals(1, repository.embeddedIds.size());
+        MemoryChunk mergedChunk = repository.rows.get(repository.embeddedIds.get(0));
+        assertEquals("s1", mergedChunk.getSessionId());
+        assertTrue(mergedChunk.getSummary().indexOf("summary m1") < mergedChunk.getSummary().indexOf("summary m3"));
+        assertTrue(mergedChunk.getTags().containsAll(List.of("tag-m1", "tag-m2", "tag-m3", "merged")));
+
+        List<String> forgottenIds = new ArrayList<>();
+        for (MemoryForgottenEvent e : events) {
+            forgottenIds.add(e.getChunkId());
+            if (e.getChunkId().equals("dead")) {
+                assertEquals(MemoryForgottenEvent.REASON_FORGOTTEN, e.getReason());
+                assertTrue(e.getImportanceScore() < props.getLtm().getLifecycle().getForgetThreshold());
+            } else {
+                assertEquals(MemoryForgottenEvent.REASON_MERGED, e.getReason());
+                assertEquals(mergedChunk.getId(), e.getMergedInto());
+            }
+        }
+        assertEquals(List.of("dead", "m1", "m2", "m3"), forgottenIds.stream().sorted().toList());
+        assertEquals(1L, engine.getStats().get("forgotten"));
+        assertEquals(3L, engine.getStats().get("merged"));
+    }
+
+    @Test
+    @DisplayName("无会话与已合并片段不参与合并；超长时拆成多条，原片段内容完整保留")
+    public void testMergeSplitAndSkip() {
+        // 单条拼接后 "t-pN: summary pN" 为 16 字符，上限 40 时每份最多两条
+        props.getLtm().getLifecycle().setMergeMaxChars(40);
+        props.getLtm().getLifecycle().setMergeMinChunks(2);
+        for (int i = 1; i <= 5; i++) {
+            put("p" + i, "s1", 0.3, 60 - i, 40, 0);
+        }
+        put("n1", null, 0.3, 60, 40, 0);
+        put("n2", null, 0.3, 50, 40, 0);
+        put("x1", "s2", 0.3, 60, 40, 0);
+        repository.save(copyWithTags(repository.rows.get("x1"), List.of("merged")));
+        put("x2", "s2", 0.3, 50, 40, 0);
+
+        Map<String, Object> result = engine.runOnce();
+
+        assertEquals(4, result.get("merged"));
+        assertEquals(2, result.get("mergedInto"));
+        // p5 凑不满一份，保持原样；无会话与已合并的片段不动
+        for (String id : List.of("p5", "n1", "n2", "x1", "x2")) {
+            assertTrue(repository.rows.containsKey(id), id);
+        }
+        assertEquals(2, repository.embeddedIds.size());
+        List<String> summaries = repository.embeddedIds.stream().map(id -> repository.rows.get(id).getSummary()).toList();
+        assertEquals(List.of("t-p1: summary p1\nt-p2: summary p2", "t-p3: summary p3\nt-p4: summary p4"), summaries);
+        for (MemoryForgottenEvent e : events) {
+            String target = e.getChunkId().compareTo("p3") < 0 ? repository.embeddedIds.get(0) : repository.embeddedIds.get(1);
+            assertEquals(target, e.getMergedInto());
+        }
+    }
+
+    private static MemoryChunk copyWithTags(MemoryChunk c, List<String> tags) {
+        return MemoryChunk.builder()
+                .id(c.getId()).title(c.getTitle()).summary(c.getSummary()).tags(tags)
+                .importanceScore(c.getImportanceScore()).createdAt(c.getCreatedAt()).lastAccessAt(c.getLastAccessAt())
+                .accessCount(c.getAccessCount()).sessionId(c.getSessionId()).knowledgeId(c.getKnowledgeId()).agentId(c.getAgentId())
+                .build();
+    }
+}
@@ -0,0 +1,193 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.repository.ILongTermMemoryRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.LongTermAccessRecorder;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.LongTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 长期记忆混合检索（向量 + 词法，RRF 融合）测试
+ */
+@DisplayName("LongTermMemoryService 混合检索测试")
+public class LongTermMemoryServiceHybridTest {
+
+    private ILongTermMemoryRepository repository;
+    private MemoryProperties props;
+    private LongTermMemoryService service;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(ILongTermMemoryRepository.class);
+        props = new MemoryProperties();
+        service = new LongTermMemoryService(repository, props, mock(LongTermAccessRecorder.class));
+        service.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+        MemoryContextHolder.clear();
+    }
+
+    private static MemoryChunk chunk(String id) {
+        return MemoryChunk.builder().id(id).summary("summary " + id).build();
+    }
+
+    private static List<String> ids(List<MemoryChunk> chunks) {
+        return chunks.stream().map(MemoryChunk::getId).toList();
+    }
+
+    @Test
+    @DisplayName("两路结果按 RRF 融合，两路都召回的排在前面，候选数为 topK * 倍数")
+    public void testReciprocalRankFusion() {
+        when(repository.semanticSearchByText(eq("kb"), eq("agent"), eq("dw.fact_orders ERR_1042"), eq("m1"), eq(9)))
+                .thenReturn(List.of(chunk("a"), chunk("b"), chunk("c")));
+        when(repository.lexicalSearch("kb", "agent", "dw.fact_orders ERR_1042", 9))
+                .thenReturn(List.of(chunk("d"), chunk("c")));
+
+        List<MemoryChunk> result = service.searchByText("kb", "agent", "dw.fact_orders ERR_1042", "m1", 3);
+
+        assertEquals(List.of("c", "a", "d"), ids(result));
+        Map<String, Object> stats = service.getRetrievalStats();
+        assertEquals(1L, stats.get("hybridSearches"));
+        assertEquals(1L, stats.get("lexicalOnlyHits"));
+        assertEquals(1L, ((Map<?, ?>) stats.get("vector")).get("calls"));
+        assertEquals(1L, ((Map<?, ?>) stats.get("lexical")).get("calls"));
+    }
+
+    @Test
+    @DisplayName("两路并行执行，且工作线程能读到调用方的会话上下文")
+    public void testLegsRunInParallelWithContext() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        AtomicReference<String> vectorSession = new AtomicReference<>();
+        AtomicReference<String> lexicalSession = new AtomicReference<>();
+        when(repository.semanticSearchByText(any(), any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            vectorSession.set(MemoryContextHolder.getSessionId());
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(2, TimeUnit.SECONDS));
+            return List.of(chunk("a"));
+        });
+        when(repository.lexicalSearch(any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            lexicalSession.set(MemoryContextHolder.getSessionId());
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(2, TimeUnit.SECONDS));
+            return List.of(chunk("b"));
+        });
+        MemoryContextHolder.set("s-1", "agent", "kb");
+
+        List<MemoryChunk> result = service.searchByText("kb", "agent", "q", "m1", 5);
+
+        assertEquals(List.of("a", "b"), ids(result));
+        assertEquals("s-1", vectorSession.get());
+        assertEquals("s-1", lexicalSession.get());
+        Map<?, ?> vector = (Map<?, ?>) service.getRetrievalStats().get("vector");
+        assertEquals(0L, vector.get("failures"));
+    }
+
+    @Test
+    @DisplayName("超时或失败的一路按空结果融合，不影响另一路")
+    public void testLegTimeoutAndFailure() {
+        props.getLtm().getHybrid().setLegTimeoutMs(200);
+        when(repository.semanticSearchByText(any(), any(), any(), any(), anyInt())).thenReturn(List.of(chunk("a")));
+        when(repository.lexicalSearch(any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            Thread.sleep(1000);
+            return List.of(chunk("late"));
+        });
+
+        assertEquals(List.of("a"), ids(service.searchByText("kb", null, "q", "m1", 5)));
+
+        when(repository.lexicalSearch(any(), any(), any(), anyInt())).thenThrow(new IllegalStateException("boom"));
+        assertEquals(List.of("a"), ids(service.searchByText("kb", null, "q", "m1", 5)));
+
+        Map<?, ?> lexical = (Map<?, ?>) service.getRetrievalStats().get("lexical");
+        assertEquals(1L, lexical.get("timeouts"));
+        assertEquals(1L, lexical.get("failures"));
+    }
+
+    @Test
+    @DisplayName("超时的一路被取消并中断，工作线程随即释放")
+    public void testTimedOutLegInterrupted() throws Exception {
+        props.getLtm().getHybrid().setLegTimeoutMs(100);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(repository.semanticSearchByText(any(), any(), any(), any(), anyInt())).thenReturn(List.of(chunk("a")));
+        when(repository.lexicalSearch(any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return List.of(chunk("late"));
+        });
+
+        assertEquals(List.of("a"), ids(service.searchByText("kb", null, "q", "m1", 5)));
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("线程池排满时新的检索路被拒绝并按空结果融合，不无限排队")
+    public void testSaturatedPoolRejects() throws Exception {
+        service.shutdown();
+        props.getLtm().getHybrid().setWorkerThreads(2);
+        props.getLtm().getHybrid().setMaxPending(1);
+        props.getLtm().getHybrid().setLegTimeoutMs(100);
+        service = new LongTermMemoryService(repository, props, mock(LongTermAccessRecorder.class));
+        service.init();
+        CountDownLatch release = new CountDownLatch(1);
+        // 忽略中断，模拟无法取消的慢查询占满工作线程
+        when(repository.semanticSearchByText(any(), any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            awaitUninterruptibly(release);
+            return List.of(chunk("a"));
+        });
+        when(repository.lexicalSearch(any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            awaitUninterruptibly(release);
+            return List.of(chunk("b"));
+        });
+
+        try {
+            assertTrue(service.searchByText("kb", null, "q", "m1", 5).isEmpty());
+            assertTrue(service.searchByText("kb", null, "q", "m1", 5).isEmpty());
+            Map<String, Object> stats = service.getRetrievalStats();
+            assertEquals(1L, stats.get("rejectedLegs"));
+            assertEquals(1, stats.get("pendingLegs"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignored) {
+                // 继续等待
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("关闭混合检索时仅走向量检索")
+    public void testHybridDisabled() {
+        props.getLtm().getHybrid().setEnabled(false);
+        when(repository.semanticSearchByText("kb", null, "q", "m1", 5)).thenReturn(List.of(chunk("a")));
+
+        assertEquals(List.of("a"), ids(service.searchByText("kb", null, "q", "m1", 5)));
+        verify(repository, never()).lexicalSearch(any(), any(), any(), anyInt());
+    }
+}
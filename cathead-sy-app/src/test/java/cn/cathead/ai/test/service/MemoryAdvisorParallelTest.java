@@ -0,0 +1,135 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.service.advisor.memory.MemoryAdvisor;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.IMemoryManager;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ContextBudgetPacker;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
+import cn.cathead.ai.domain.model.service.IModelService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MemoryAdvisor.before 上下文来源并行获取与预算丢弃测试
+ */
+@DisplayName("MemoryAdvisor 并行上下文获取测试")
+public class MemoryAdvisorParallelTest {
+
+    private IMemoryManager memoryManager;
+    private MemoryProperties props;
+    private MemoryAdvisor advisor;
+
+    @BeforeEach
+    public void setUp() {
+        memoryManager = mock(IMemoryManager.class);
+        props = new MemoryProperties();
+        props.getAdvisor().setStmBudgetMs(1000);
+        props.getAdvisor().setLtmBudgetMs(1000);
+        IModelService modelService = mock(IModelService.class);
+        advisor = new MemoryAdvisor(memoryManager, props, new ContextBudgetPacker(
+                new ShortTermPolicyProvider(modelService, props), new TokenCounterProvider(modelService, props), props));
+        advisor.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        advisor.shutdown();
+        MemoryContextHolder.clear();
+    }
+
+    private static ChatClientRequest request() {
+        return ChatClientRequest.builder()
+                .prompt(new Prompt(List.of(new SystemMessage("sys"), new UserMessage("订单表在哪"))))
+                .context(Map.of("x-session-id", "s-1", "x-knowledge-id", "kb", "x-agent-id", "agent"))
+                .build();
+    }
+
+    private static MemoryMessage entry(Message message) {
+        return MemoryMessage.builder().payload(message).build();
+    }
+
+    private static MemoryChunk chunk(String title) {
+        return MemoryChunk.builder().id(title).title(title).summary("summary").build();
+    }
+
+    @Test
+    @DisplayName("短期记忆与长期召回并行执行，工作线程可读到请求线程的上下文")
+    public void testSourcesRunConcurrently() {
+        AtomicReference<String> ltmAgent = new AtomicReference<>();
+        when(memoryManager.getContextEntries("s-1")).thenAnswer(inv -> {
+            Thread.sleep(300);
+            return List.of(entry(new AssistantMessage("上一轮回答")));
+        });
+        when(memoryManager.retrieveLongTerm(eq("kb"), eq("agent"), eq("订单表在哪"), anyInt())).thenAnswer(inv -> {
+            ltmAgent.set(MemoryContextHolder.getAgentId());
+            Thread.sleep(300);
+            return List.of(chunk("orders"));
+        });
+        MemoryContextHolder.set("s-1", "agent", "kb");
+
+        long start = System.currentTimeMillis();
+        List<Message> messages = advisor.before(request(), null).prompt().getInstructions();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 550, "elapsed=" + elapsed);
+        assertEquals(4, messages.size());
+        assertTrue(messages.get(1).getText().contains("orders"));
+        assertInstanceOf(AssistantMessage.class, messages.get(2));
+        assertEquals("agent", ltmAgent.get());
+    }
+
+    @Test
+    @DisplayName("长期召回超出预算时被丢弃，prompt 不被阻塞")
+    public void testSlowSourceDropped() {
+        props.getAdvisor().setLtmBudgetMs(150);
+        when(memoryManager.getContextEntries("s-1")).thenReturn(List.of(entry(new AssistantMessage("上一轮回答"))));
+        when(memoryManager.retrieveLongTerm(any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            Thread.sleep(2000);
+            return List.of(chunk("late"));
+        });
+
+        long start = System.currentTimeMillis();
+        List<Message> messages = advisor.before(request(), null).prompt().getInstructions();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 1000, "elapsed=" + elapsed);
+        assertEquals(3, messages.size());
+        assertTrue(messages.stream().noneMatch(m -> m.getText().contains("late")));
+        Map<?, ?> ltm = (Map<?, ?>) advisor.getStats().get("ltm");
+        assertEquals(1L, ltm.get("timeouts"));
+    }
+
+    @Test
+    @DisplayName("来源失败时丢弃该来源，其余上下文照常注入")
+    public void testFailedSourceDropped() {
+        when(memoryManager.getContextEntries("s-1")).thenThrow(new IllegalStateException("stm down"));
+        when(memoryManager.retrieveLongTerm(any(), any(), any(), anyInt())).thenReturn(List.of(chunk("orders")));
+
+        List<Message> messages = advisor.before(request(), null).prompt().getInstructions();
+
+        assertEquals(3, messages.size());
+        assertTrue(messages.get(1).getText().contains("orders"));
+        Map<?, ?> stm = (Map<?, ?>) advisor.getStats().get("stm");
+        assertEquals(1L, stm.get("failures"));
+    }
+}
@@ -0,0 +1,165 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.service.advisor.memory.MemoryAdvisor;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.IMemoryManager;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ContextBudgetPacker;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
+import cn.cathead.ai.domain.model.service.IModelService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MemoryAdvisor 流式调用测试：分片聚合、完成时一次写入、上下文跨线程传递
+ */
+@DisplayName("MemoryAdvisor 流式调用测试")
+public class MemoryAdvisorStreamTest {
+
+    private IMemoryManager memoryManager;
+    private MemoryAdvisor advisor;
+    private StreamAdvisorChain chain;
+
+    @BeforeEach
+    public void setUp() {
+        memoryManager = mock(IMemoryManager.class);
+        MemoryProperties props = new MemoryProperties();
+        IModelService modelService = mock(IModelService.class);
+        advisor = new MemoryAdvisor(memoryManager, props, new ContextBudgetPacker(
+                new ShortTermPolicyProvider(modelService, props), new TokenCounterProvider(modelService, props), props));
+        advisor.init();
+        chain = mock(StreamAdvisorChain.class);
+        when(memoryManager.getContextEntries(anyString())).thenReturn(List.of());
+        when(memoryManager.retrieveLongTerm(any(), any(), any(), anyInt())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        advisor.shutdown();
+        MemoryContextHolder.clear();
+    }
+
+    private static ChatClientRequest request(Map<String, Object> context) {
+        return ChatClientRequest.builder()
+                .prompt(new Prompt(new ArrayList<>(List.of(new UserMessage("订单表在哪")))))
+                .context(context)
+                .build();
+    }
+
+    private static ChatClientResponse chunk(String text) {
+        return ChatClientResponse.builder()
+                .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(text)))))
+                .context(new HashMap<>())
+                .build();
+    }
+
+    @Test
+    @DisplayName("分片原样转发，流结束时把完整回答写入短期记忆一次")
+    @SuppressWarnings("unchecked")
+    public void testCommitOnceOnComplete() {
+        when(chain.nextStream(any())).thenReturn(Flux.just(chunk("在 "), chunk("dw."), chunk("fact_orders")));
+
+        List<ChatClientResponse> out = advisor.adviseStream(request(Map.of("x-session-id", "s-1")), chain)
+                .collectList().block();
+
+        assertEquals(3, out.size());
+        var captor = org.mockito.ArgumentCaptor.forClass(List.class);
+        verify(memoryManager, times(1)).updateMemory(eq("s-1"), captor.capture());
+        List<Message> turn = captor.getValue();
+        assertEquals(2, turn.size());
+        assertEquals("订单表在哪", turn.get(0).getText());
+        assertEquals("在 dw.fact_orders", turn.get(1).getText());
+    }
+
+    @Test
+    @DisplayName("流出错时不写入；无会话时直接透传")
+    public void testNoCommitOnErrorOrWithoutSession() {
+        when(chain.nextStream(any())).thenReturn(Flux.concat(Flux.just(chunk("半截")), Flux.error(new RuntimeException("boom"))));
+        assertThrows(RuntimeException.class,
+                () -> advisor.adviseStream(request(Map.of("x-session-id", "s-1")), chain).collectList().block());
+
+        when(chain.nextStream(any())).thenReturn(Flux.just(chunk("ok")));
+        List<ChatClientResponse> out = advisor.adviseStream(request(Map.of()), chain).collectList().block();
+        assertEquals(1, out.size());
+
+        verify(memoryManager, never()).updateMemory(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("调用线程上的会话上下文传递到写入线程")
+    public void testHolderPropagated() {
+        AtomicReference<String> agentAtCommit = new AtomicReference<>();
+        doAnswer(inv -> {
+            agentAtCommit.set(MemoryContextHolder.getAgentId());
+            return null;
+        }).when(memoryManager).updateMemory(anyString(), anyList());
+        when(chain.nextStream(any())).thenReturn(Flux.just(chunk("a"), chunk("b")).publishOn(reactor.core.scheduler.Schedulers.parallel()));
+
+        MemoryContextHolder.set("s-2", "agent-x", "kb");
+        Flux<ChatClientResponse> flux = advisor.adviseStream(request(Map.of()), chain);
+        MemoryContextHolder.clear();
+        flux.collectList().block();
+
+        verify(memoryManager).updateMemory(eq("s-2"), anyList());
+        assertEquals("agent-x", agentAtCommit.get());
+    }
+
+    @Test
+    @DisplayName("同一调用方上下文内连续两次调用：读写使用请求属性覆盖后的上下文，结束后恢复调用方上下文")
+    public void testCallerHolderRestored() {
+        List<String> modelAtRead = new ArrayList<>();
+        List<String> modelAtWrite = new ArrayList<>();
+        when(memoryManager.getContextEntries(anyString())).thenAnswer(inv -> {
+            modelAtRead.add(MemoryContextHolder.getModelId());
+            return List.of();
+        });
+        doAnswer(inv -> {
+            modelAtWrite.add(MemoryContextHolder.getModelId());
+            return null;
+        }).when(memoryManager).updateMemory(anyString(), anyList());
+
+        MemoryContextHolder.set("s-1", "agent", "kb", "m1");
+        for (String modelId : List.of("m2", "m3")) {
+            Map<String, Object> ctx = new HashMap<>(Map.of("x-model-id", modelId));
+            ChatClientRequest advised = advisor.before(request(ctx), chain);
+            ChatClientResponse response = ChatClientResponse.builder()
+                    .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage("在 dw")))))
+                    .context(advised.context())
+                    .build();
+            advisor.after(response, chain);
+
+            assertEquals("s-1", MemoryContextHolder.getSessionId());
+            assertEquals("agent", MemoryContextHolder.getAgentId());
+            assertEquals("kb", MemoryContextHolder.getKnowledgeId());
+            assertEquals("m1", MemoryContextHolder.getModelId());
+        }
+
+        verify(memoryManager, times(2)).updateMemory(eq("s-1"), anyList());
+        verify(memoryManager, times(2)).retrieveLongTerm(eq("kb"), eq("agent"), eq("订单表在哪"), anyInt());
+        assertEquals(List.of("m2", "m3"), modelAtRead);
+        assertEquals(List.of("m2", "m3"), modelAtWrite);
+    }
+}
@@ -0,0 +1,90 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
+import cn.cathead.ai.domain.model.service.registry.modelcache.config.ModelCacheProperties;
+import cn.cathead.ai.domain.model.service.registry.modelcache.eviction.ModelCacheEvictionPolicy;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
+import cn.cathead.ai.domain.model.service.registry.provider.http.config.ModelHttpProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ModelCacheEvictionPolicy 淘汰策略测试
+ */
+@DisplayName("ModelCacheEvictionPolicy 淘汰策略测试")
+public class ModelCacheEvictionPolicyTest {
+
+    private ModelCacheProperties props;
+    private ModelCacheEvictionPolicy policy;
+
+    @BeforeEach
+    public void setUp() {
+        props = new ModelCacheProperties();
+        policy = new ModelCacheEvictionPolicy(props, new UpstreamHttpClientRegistry(new ModelHttpProperties()));
+    }
+
+    private ModelWrapper<Object> wrapper(String modelId, String provider, Long buildCostMs) {
+        return ModelWrapper.builder()
+                .modelInstance(new Object())
+                .modelId(modelId)
+                .providerName(provider)
+                .buildCostMs(buildCostMs)
+                .version(1L)
+                .build();
+    }
+
+    @Test
+    @DisplayName("构建越昂贵权重越低")
+    public void testWeightDiscountedByBuildCost() {
+        int cheap = policy.weigh("cheap", wrapper("cheap", "ollama", 5L));
+        int expensive = policy.weigh("expensive", wrapper("expensive", "ollama", 1600L));
+
+        assertEquals(10, cheap);
+        assertTrue(expensive < cheap);
+        assertTrue(expensive >= 1);
+    }
+
+    @Test
+    @DisplayName("按提供者覆盖权重与空闲过期")
+    public void testProviderOverrides() {
+        props.getEviction().getProviderWeight().put("openai", 4);
+        props.getEviction().getExpireAfterIdleMs().put("openai", 60000L);
+
+        assertEquals(4, policy.weigh("m", wrapper("m", "OpenAI", null)));
+        assertEquals(TimeUnit.SECONDS.toNanos(60), policy.expireAfterRead("m", wrapper("m", "openai", null), 0, 0));
+        assertEquals(Long.MAX_VALUE, policy.expireAfterCreate("m", wrapper("m", "ollama", null), 0));
+    }
+
+    @Test
+    @DisplayName("突发的一次性模型ID不会挤掉高频模型，且淘汰原因可见")
+    public void testBurstDoesNotEvictHotModel() {
+        Cache<String, ModelWrapper<Object>> cache = Caffeine.newBuilder()
+                .executor(Runnable::run)
+                .maximumWeight(50)
+                .<String, ModelWrapper<Object>>weigher(policy)
+                .expireAfter(policy)
+                .removalListener(policy)
+                .build();
+
+        cache.put("hot", wrapper("hot", "openai", 1600L));
+        for (int i = 0; i < 50; i++) {
+            cache.getIfPresent("hot");
+        }
+        for (int i = 0; i < 200; i++) {
+            cache.put("one-off-" + i, wrapper("one-off-" + i, "ollama", 5L));
+        }
+        cache.cleanUp();
+
+        assertNotNull(cache.getIfPresent("hot"));
+        assertTrue(policy.getRemovalCount(RemovalCause.SIZE) > 0);
+        assertFalse(policy.getRecentEvictions().isEmpty());
+    }
+}
@@ -5,8 +5,13 @@ import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
 import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
 import cn.cathead.ai.domain.model.repository.IModelRepository;
 import cn.cathead.ai.domain.model.service.registry.modelcache.ModelCacheManager;
+import cn.cathead.ai.domain.model.service.registry.modelcache.ModelVersionTable;
+import cn.cathead.ai.domain.model.service.registry.modelcache.loader.ChatModelCacheLoader;
+import cn.cathead.ai.domain.model.service.registry.modelcache.loader.EmbeddingModelCacheLoader;
 import cn.cathead.ai.domain.model.service.registry.provider.IModelProvider;
-import com.google.common.cache.Cache;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,10 +20,19 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,10 +49,19 @@ public class ModelCacheManagerTest {
     private IModelRepository modelRepository;
 
     @Mock
-    private Cache<String, ModelWrapper<ChatModel>> chatModelCache;
+    private ModelVersionTable modelVersionTable;
 
     @Mock
-    private Cache<String, ModelWrapper<EmbeddingModel>> embeddingModelCache;
+    private LoadingCache<String, ModelWrapper<ChatModel>> chatModelCache;
+
+    @Mock
+    private LoadingCache<String, ModelWrapper<EmbeddingModel>> embeddingModelCache;
+
+    @Mock
+    private ChatModelCacheLoader chatModelCacheLoader;
+
+    @Mock
+    private EmbeddingModelCacheLoader embeddingModelCacheLoader;
 
     @Mock
     private Map<String, IModelProvider> modelProviderMap;
@@ -46,6 +69,9 @@ public class ModelCacheManagerTest {
     @Mock
     private IModelProvider mockProvider;
 
+    @Mock
+    private UpstreamHttpClientRegistry httpClientRegistry;
+
     @Mock
     private ChatModel mockChatModel;
 
@@ -351,7 +377,7 @@ public class ModelCacheManagerTest {
     }
 
     @Test
-    @DisplayName("更新Chat模型Bean")
+    @DisplayName("更新Chat模型Bean - 原子替换，不先删除旧实例")
     public void testUpdateChatModelBean() {
         // Given
         ChatModelEntity updatedEntity = ChatModelEntity.builder()
@@ -366,31 +392,48 @@ public class ModelCacheManagerTest {
                 .maxTokens(2048)
                 .version(2L)
                 .build();
+        ChatModel newChatModel = mock(ChatModel.class);
+        ModelWrapper<ChatModel> newWrapper = ModelWrapper.<ChatModel>builder()
+                .modelInstance(newChatModel)
+                .version(2L)
+                .modelId(testModelId)
+                .build();
 
         when(chatModelCache.getIfPresent(testModelId)).thenReturn(testChatModelWrapper);
-        doNothing().when(chatModelCache).invalidate(testModelId);
-        when(modelProviderMap.get("ollama")).thenReturn(mockProvider);
-        when(mockProvider.createChat(any(ChatModelEntity.class))).thenReturn(mockChatModel);
-        when(modelRepository.queryModelById(testModelId)).thenReturn(updatedEntity);
-        doNothing().when(chatModelCache).put(eq(testModelId), any(ModelWrapper.class));
+        when(chatModelCache.refresh(testModelId)).thenReturn(CompletableFuture.completedFuture(newWrapper));
 
         // When
         ChatModel result = modelCacheManager.updateChatModelBean(testModelId, updatedEntity);
 
         // Then
-        assertNotNull(result);
+        assertEquals(newChatModel, result);
+        verify(chatModelCacheLoader, times(1)).hint(updatedEntity);
+        verify(chatModelCache, times(1)).refresh(testModelId);
+        verify(chatModelCache, never()).invalidate(testModelId);
+        verify(chatModelCache, never()).put(anyString(), any());
+        verify(modelRepository, never()).queryModelById(anyString());
+        verify(chatModelCacheLoader, times(1)).clearHint(testModelId, updatedEntity);
+    }
+
+    @Test
+    @DisplayName("更新Chat模型Bean - 缓存未命中时单飞加载")
+    public void testUpdateChatModelBeanCacheMiss() {
+        // Given
+        when(chatModelCache.getIfPresent(testModelId)).thenReturn(null);
+        when(chatModelCache.get(testModelId)).thenReturn(testChatModelWrapper);
+
+        // When
+        ChatModel result = modelCacheManager.updateChatModelBean(testModelId, testChatModelEntity);
+
+        // Then
         assertEquals(mockChatModel, result);
-        
-        verify(chatModelCache, times(1)).getIfPresent(testModelId);
-        verify(chatModelCache, times(1)).invalidate(testModelId);
-        verify(modelProviderMap, times(1)).get("ollama");
-        verify(mockProvider, times(1)).createChat(any(ChatModelEntity.class));
-        verify(modelRepository, times(1)).queryModelById(testModelId);
-        verify(chatModelCache, times(1)).put(eq(testModelId), any(ModelWrapper.class));
+        verify(chatModelCacheLoader, times(1)).hint(testChatModelEntity);
+        verify(chatModelCache, times(1)).get(testModelId);
+        verify(chatModelCache, never()).refresh(anyString());
     }
 
     @Test
-    @DisplayName("更新Embedding模型Bean")
+    @DisplayName("更新Embedding模型Bean - 原子替换，不先删除旧实例")
     public void testUpdateEmbeddingModelBean() {
         // Given
         EmbeddingModelEntity updatedEntity = EmbeddingModelEntity.builder()
@@ -404,27 +447,63 @@ public class ModelCacheManagerTest {
                 .numPredict(1024)
                 .version(2L)
                 .build();
+        EmbeddingModel newEmbeddingModel = mock(EmbeddingModel.class);
+        ModelWrapper<EmbeddingModel> newWrapper = ModelWrapper.<EmbeddingModel>builder()
+                .modelInstance(newEmbeddingModel)
+                .version(2L)
+                .modelId(testModelId)
+                .build();
 
         when(embeddingModelCache.getIfPresent(testModelId)).thenReturn(testEmbeddingModelWrapper);
-        doNothing().when(embeddingModelCache).invalidate(testModelId);
-        when(modelProviderMap.get("ollama")).thenReturn(mockProvider);
-        when(mockProvider.createEmbedding(any(EmbeddingModelEntity.class))).thenReturn(mockEmbeddingModel);
-        when(modelRepository.queryModelById(testModelId)).thenReturn(updatedEntity);
-        doNothing().when(embeddingModelCache).put(eq(testModelId), any(ModelWrapper.class));
+        when(embeddingModelCache.refresh(testModelId)).thenReturn(CompletableFuture.completedFuture(newWrapper));
 
         // When
         EmbeddingModel result = modelCacheManager.updateEmbeddingModelBean(testModelId, updatedEntity);
 
         // Then
-        assertNotNull(result);
-        assertEquals(mockEmbeddingModel, result);
-        
-        verify(embeddingModelCache, times(1)).getIfPresent(testModelId);
-        verify(embeddingModelCache, times(1)).invalidate(testModelId);
-        verify(modelProviderMap, times(1)).get("ollama");
-        verify(mockProvider, times(1)).createEmbedding(any(EmbeddingModelEntity.class));
-        verify(modelRepository, times(1)).queryModelById(testModelId);
-        verify(embeddingModelCache, times(1)).put(eq(testModelId), any(ModelWrapper.class));
+        assertEquals(newEmbeddingModel, result);
+        verify(embeddingModelCacheLoader, times(1)).hint(updatedEntity);
+        verify(embeddingModelCache, times(1)).refresh(testModelId);
+        verify(embeddingModelCache, never()).invalidate(testModelId);
+        verify(embeddingModelCache, never()).put(anyString(), any());
+        verify(modelRepository, never()).queryModelById(anyString());
+    }
+
+    @Test
+    @DisplayName("并发获取同一冷启动模型 - 只构建一次实例")
+    public void testConcurrentColdStartBuildsOnce() throws Exception {
+        // Given: 使用真实的LoadingCache与加载器
+        ChatModelCacheLoader loader = new ChatModelCacheLoader(modelProviderMap, modelRepository, modelVersionTable, httpClientRegistry);
+        LoadingCache<String, ModelWrapper<ChatModel>> realCache = Caffeine.newBuilder().build(loader);
+        ReflectionTestUtils.setField(modelCacheManager, "chatModelCache", realCache);
+        ReflectionTestUtils.setField(modelCacheManager, "chatModelCacheLoader", loader);
+
+        CountDownLatch building = new CountDownLatch(1);
+        when(modelVersionTable.lookup(testModelId)).thenReturn(null);
+        when(modelRepository.queryModelById(testModelId)).thenReturn(testChatModelEntity);
+        when(modelProviderMap.get("ollama")).thenReturn(mockProvider);
+        when(mockProvider.createChat(any(ChatModelEntity.class))).thenAnswer(invocation -> {
+            building.await(200, TimeUnit.MILLISECONDS);
+            return mockChatModel;
+        });
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ChatModel>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> modelCacheManager.ensureLatestChatModel(testModelId)));
+            }
+            building.countDown();
+
+            // Then
+            for (Future<ChatModel> future : futures) {
+                assertEquals(mockChatModel, future.get(5, TimeUnit.SECONDS));
+            }
+            verify(mockProvider, times(1)).createChat(any(ChatModelEntity.class));
+        } finally {
+            pool.shutdownNow();
+        }
     }
 
     @Test
@@ -546,4 +625,38 @@ public class ModelCacheManagerTest {
         assertTrue(testChatModelWrapper.getLastAccessTime() > initialTime);
         verify(chatModelCache, times(1)).getIfPresent(testModelId);
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("版本表新鲜且与缓存版本一致 - 不查库直接返回")
+    public void testEnsureLatestChatModelServedFromVersionTable() {
+        // Given
+        when(modelVersionTable.lookup(testModelId)).thenReturn(1L);
+        when(chatModelCache.getIfPresent(testModelId)).thenReturn(testChatModelWrapper);
+
+        // When
+        ChatModel result = modelCacheManager.ensureLatestChatModel(testModelId);
+
+        // Then
+        assertEquals(mockChatModel, result);
+        verify(modelRepository, never()).queryModelById(anyString());
+        verify(modelVersionTable, times(1)).markLookupAvoided();
+    }
+
+    @Test
+    @DisplayName("版本表陈旧 - 回源数据库校验版本")
+    public void testEnsureLatestChatModelFallsBackToDbWhenStale() {
+        // Given
+        when(modelVersionTable.lookup(testModelId)).thenReturn(null);
+        when(modelRepository.queryModelById(testModelId)).thenReturn(testChatModelEntity);
+        when(chatModelCache.getIfPresent(testModelId)).thenReturn(testChatModelWrapper);
+
+        // When
+        ChatModel result = modelCacheManager.ensureLatestChatModel(testModelId);
+
+        // Then
+        assertEquals(mockChatModel, result);
+        verify(modelRepository, times(1)).queryModelById(testModelId);
+        verify(modelVersionTable, times(1)).markDbLookup();
+        verify(modelVersionTable, never()).markLookupAvoided();
+    }
+}
@@ -0,0 +1,105 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
+import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ModelWarmupResult;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.registry.modelcache.IModelCacheManager;
+import cn.cathead.ai.domain.model.service.registry.modelcache.ModelCacheWarmer;
+import cn.cathead.ai.domain.model.service.registry.modelcache.config.ModelCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ModelCacheWarmer 预热测试
+ * 纯单元测试，使用Mock对象，不需要Spring上下文
+ */
+@DisplayName("ModelCacheWarmer 预热测试")
+public class ModelCacheWarmerTest {
+
+    @Mock
+    private IModelRepository iModelRepository;
+
+    @Mock
+    private IModelCacheManager modelCacheManager;
+
+    @Mock
+    private ChatModel mockChatModel;
+
+    @Mock
+    private EmbeddingModel mockEmbeddingModel;
+
+    private final ModelCacheProperties props = new ModelCacheProperties();
+
+    @InjectMocks
+    private ModelCacheWarmer modelCacheWarmer;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(modelCacheWarmer, "props", props);
+    }
+
+    @Test
+    @DisplayName("一次批量查库并构建全部模型")
+    public void testWarmUpAllBuildsEveryModel() {
+        // Given
+        ChatModelEntity chat = ChatModelEntity.builder().modelId("chat-1").providerName("ollama").type("chat").version(1L).build();
+        EmbeddingModelEntity embedding = EmbeddingModelEntity.builder().modelId("emb-1").providerName("ollama").type("embedding").version(3L).build();
+        when(iModelRepository.queryAllModels()).thenReturn(List.<BaseModelEntity>of(chat, embedding));
+        when(modelCacheManager.getAllChatModelCache()).thenReturn(Map.of("stale-chat", mockChatModel));
+        when(modelCacheManager.getAllEmbeddingModelCache()).thenReturn(Map.of());
+        when(modelCacheManager.updateChatModelBean("chat-1", chat)).thenReturn(mockChatModel);
+        when(modelCacheManager.updateEmbeddingModelBean("emb-1", embedding)).thenReturn(mockEmbeddingModel);
+
+        // When
+        ModelWarmupResult result = modelCacheWarmer.warmUpAll();
+
+        // Then
+        assertEquals(2, result.getTotal());
+        assertEquals(2, result.getSuccess());
+        assertTrue(result.getBuildLatencyMs().containsKey("chat-1"));
+        assertTrue(result.getBuildLatencyMs().containsKey("emb-1"));
+        assertTrue(result.getFailedModelIds().isEmpty());
+        assertEquals(List.of("stale-chat"), result.getEvictedModelIds());
+        verify(iModelRepository, times(1)).queryAllModels();
+        verify(iModelRepository, never()).queryModelById(anyString());
+        verify(modelCacheManager, times(1)).removeChatModelBean("stale-chat");
+    }
+
+    @Test
+    @DisplayName("单个模型构建失败不影响其他模型")
+    public void testWarmUpAllReportsFailures() {
+        // Given
+        ChatModelEntity ok = ChatModelEntity.builder().modelId("chat-ok").providerName("ollama").type("chat").version(1L).build();
+        ChatModelEntity bad = ChatModelEntity.builder().modelId("chat-bad").providerName("ollama").type("chat").version(1L).build();
+        when(iModelRepository.queryAllModels()).thenReturn(List.<BaseModelEntity>of(ok, bad));
+        when(modelCacheManager.getAllChatModelCache()).thenReturn(Map.of());
+        when(modelCacheManager.getAllEmbeddingModelCache()).thenReturn(Map.of());
+        when(modelCacheManager.updateChatModelBean("chat-ok", ok)).thenReturn(mockChatModel);
+        when(modelCacheManager.updateChatModelBean("chat-bad", bad)).thenReturn(null);
+
+        // When
+        ModelWarmupResult result = modelCacheWarmer.warmUpAll();
+
+        // Then
+        assertEquals(2, result.getTotal());
+        assertEquals(1, result.getSuccess());
+        assertEquals(List.of("chat-bad"), result.getFailedModelIds());
+    }
+}
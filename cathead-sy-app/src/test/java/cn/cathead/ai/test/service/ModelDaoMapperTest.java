@@ -0,0 +1,153 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.infrastructure.persistent.po.ModelConfig;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IModelDao.xml 映射测试
+ * 不连接数据库：解析映射文件，按 INSERT/UPDATE 的列与参数对应关系写出一行，再经 SELECT 列与 resultMap 读回
+ */
+@DisplayName("IModelDao 映射测试")
+public class ModelDaoMapperTest {
+
+    private static final String NAMESPACE = "cn.cathead.ai.infrastructure.persistent.dao.IModelDao.";
+    private static final Pattern INSERT = Pattern.compile("\\((.*?)\\)\\s*VALUES\\s*\\((.*?)\\)", Pattern.DOTALL);
+    private static final Pattern SELECT = Pattern.compile("SELECT(.*?)FROM", Pattern.DOTALL);
+    private static final Pattern ASSIGN = Pattern.compile("([`\\w]+)\\s*=\\s*\\?");
+
+    private Configuration configuration;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        configuration = new Configuration();
+        try (InputStream in = Resources.getResourceAsStream("mybatis/mapper/IModelDao.xml")) {
+            new XMLMapperBuilder(in, configuration, "mybatis/mapper/IModelDao.xml", configuration.getSqlFragments()).parse();
+        }
+    }
+
+    private static ModelConfig embeddingRecord() {
+        ModelConfig po = new ModelConfig();
+        po.setModelId("emb-1");
+        po.setModelName("bge-m3");
+        po.setProviderName("ollama");
+        po.setType("embedding");
+        po.setSupportBatch(true);
+        po.setMaxBatchSize(16);
+        po.setSimilarityMetric("l2");
+        po.setVersion(0L);
+        return po;
+    }
+
+    private static String column(String raw) {
+        return raw.trim().replace("`", "").toLowerCase();
+    }
+
+    /**
+     * INSERT 写出的一行：列名 -> 参数值（字面量列忽略）
+     */
+    private Map<String, Object> insertRow(ModelConfig po) {
+        BoundSql sql = configuration.getMappedStatement(NAMESPACE + "saveModelRecord").getBoundSql(po);
+        Matcher m = INSERT.matcher(sql.getSql());
+        assertTrue(m.find());
+        String[] columns = m.group(1).split(",");
+        String[] values = m.group(2).split(",");
+        assertEquals(columns.length, values.length);
+        MetaObject meta = configuration.newMetaObject(po);
+        Map<String, Object> row = new LinkedHashMap<>();
+        int param = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if ("?".equals(values[i].trim())) {
+                ParameterMapping mapping = sql.getParameterMappings().get(param++);
+                row.put(column(columns[i]), meta.getValue(mapping.getProperty()));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * UPDATE 写入的列：列名 -> 属性名
+     */
+    private Map<String, String> updateColumns() {
+        BoundSql sql = configuration.getMappedStatement(NAMESPACE + "updateModelRecord").getBoundSql(embeddingRecord());
+        Map<String, String> columns = new HashMap<>();
+        Matcher m = ASSIGN.matcher(sql.getSql());
+        int param = 0;
+        while (m.find()) {
+            columns.put(column(m.group(1)), sql.getParameterMappings().get(param++).getProperty());
+        }
+        return columns;
+    }
+
+    /**
+     * 按 SELECT 列与 resultMap 把一行读回 PO
+     */
+    private ModelConfig select(String statement, Map<String, Object> row) {
+        BoundSql sql = configuration.getMappedStatement(NAMESPACE + statement).getBoundSql("emb-1");
+        Matcher m = SELECT.matcher(sql.getSql());
+        assertTrue(m.find());
+        List<String> selected = List.of(m.group(1).split(",")).stream().map(ModelDaoMapperTest::column).toList();
+        ModelConfig po = new ModelConfig();
+        MetaObject meta = configuration.newMetaObject(po);
+        for (ResultMapping mapping : configuration.getResultMap(NAMESPACE + "dataMap").getResultMappings()) {
+            if (selected.contains(mapping.getColumn()) && row.containsKey(mapping.getColumn())) {
+                meta.setValue(mapping.getProperty(), row.get(mapping.getColumn()));
+            }
+        }
+        return po;
+    }
+
+    @Test
+    @DisplayName("批量参数经新增、查询往返保留")
+    public void testBatchColumnsRoundTrip() {
+        Map<String, Object> row = insertRow(embeddingRecord());
+        assertEquals(Boolean.TRUE, row.get("support_batch"));
+        assertEquals(16, row.get("max_batch_size"));
+
+        for (String statement : List.of("queryModelById", "queryAllModels")) {
+            ModelConfig loaded = select(statement, row);
+            assertEquals("emb-1", loaded.getModelId());
+            assertEquals(Boolean.TRUE, loaded.getSupportBatch(), statement);
+            assertEquals(16, loaded.getMaxBatchSize(), statement);
+        }
+    }
+
+    @Test
+    @DisplayName("更新语句写入批量参数")
+    public void testUpdateWritesBatchColumns() {
+        Map<String, String> columns = updateColumns();
+        assertEquals("supportBatch", columns.get("support_batch"));
+        assertEquals("maxBatchSize", columns.get("max_batch_size"));
+        assertEquals("modelName", columns.get("model_name"));
+    }
+
+    @Test
+    @DisplayName("相似度度量经新增、更新、查询往返保留")
+    public void testSimilarityMetricRoundTrip() {
+        Map<String, Object> row = insertRow(embeddingRecord());
+        assertEquals("l2", row.get("similarity_metric"));
+        assertEquals("similarityMetric", updateColumns().get("similarity_metric"));
+
+        for (String statement : List.of("queryModelById", "queryAllModels")) {
+            assertEquals("l2", select(statement, row).getSimilarityMetric(), statement);
+        }
+    }
+}
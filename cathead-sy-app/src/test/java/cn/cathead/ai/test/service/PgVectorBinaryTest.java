@@ -0,0 +1,127 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.infrastructure.persistent.pgvector.PgVector;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * pgvector 二进制传输测试，附文本/二进制编码的分配与耗时对比
+ */
+@DisplayName("PgVector 二进制传输测试")
+public class PgVectorBinaryTest {
+
+    private static float[] randomVector(int dims) {
+        Random random = new Random(42);
+        float[] vec = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            vec[i] = (random.nextFloat() - 0.5f) * 0.2f;
+        }
+        return vec;
+    }
+
+    @Test
+    @DisplayName("vector 二进制格式与 pgvector 一致且可往返")
+    public void testVectorRoundTrip() throws Exception {
+        float[] vec = {1.5f, -2.25f, 0f, 3.4028235e38f};
+        PgVector pv = new PgVector(vec, false);
+        byte[] bytes = new byte[pv.lengthInBytes()];
+        pv.toBytes(bytes, 0);
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        assertEquals(4 + 4 * 4, bytes.length);
+        assertEquals(4, buf.getShort());
+        assertEquals(0, buf.getShort());
+        assertEquals(1.5f, buf.getFloat());
+
+        PgVector decoded = new PgVector();
+        decoded.setByteValue(bytes, 0);
+        assertArrayEquals(vec, decoded.toArray());
+    }
+
+    @Test
+    @DisplayName("halfvec 半精度编码误差在容许范围内")
+    public void testHalfPrecision() throws Exception {
+        float[] vec = {0.1f, -0.5f, 1f, 65504f, 6.0e-8f, 0f, 1.0e-3f};
+        PgVector pv = PgVector.of(vec, "halfvec");
+        assertEquals("halfvec", pv.getType());
+        byte[] bytes = new byte[pv.lengthInBytes()];
+        pv.toBytes(bytes, 0);
+        assertEquals(4 + 2 * vec.length, bytes.length);
+
+        PgVector decoded = new PgVector(null, true);
+        decoded.setByteValue(bytes, 0);
+        float[] out = decoded.toArray();
+        for (int i = 0; i < vec.length; i++) {
+            assertEquals(vec[i], out[i], Math.max(Math.abs(vec[i]) * 1e-3, 6.0e-8), "index " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("文本字面量回退可解析")
+    public void testTextFallback() throws Exception {
+        PgVector pv = new PgVector(new float[]{1f, 2.5f}, false);
+        assertEquals("[1.0,2.5]", pv.getValue());
+        PgVector parsed = new PgVector();
+        parsed.setValue("[1, 2.5]");
+        assertArrayEquals(new float[]{1f, 2.5f}, parsed.toArray());
+    }
+
+    @Test
+    @DisplayName("1536 维：二进制编码的报文与分配小于文本字面量")
+    public void testBinarySmallerThanText() {
+        float[] vec = randomVector(1536);
+        assertEquals(4 + 4 * 1536, encodeBinary(vec, false));
+        assertEquals(4 + 2 * 1536, encodeBinary(vec, true));
+        assertTrue(encodeText(vec) > encodeBinary(vec, false));
+
+        int iterations = 2000;
+        // 预热
+        for (int i = 0; i < 500; i++) {
+            encodeText(vec);
+            encodeBinary(vec, false);
+            encodeBinary(vec, true);
+        }
+        long text = allocated(() -> encodeText(vec), iterations);
+        long binary = allocated(() -> encodeBinary(vec, false), iterations);
+        long half = allocated(() -> encodeBinary(vec, true), iterations);
+        if (text > 0) {
+            assertTrue(binary < text, "binary=" + binary + ", text=" + text);
+            assertTrue(half < binary, "halfvec=" + half + ", binary=" + binary);
+        }
+    }
+
+    private static int encodeText(float[] vec) {
+        // 原文本路径：拼接字面量后由驱动按 UTF-8 发送
+        return new PgVector(vec, false).getValue().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int encodeBinary(float[] vec, boolean half) {
+        PgVector pv = new PgVector(vec, half);
+        byte[] bytes = new byte[pv.lengthInBytes()];
+        pv.toBytes(bytes, 0);
+        return bytes.length;
+    }
+
+    /**
+     * @return 执行 iterations 次分配的字节数；JVM 不支持线程分配统计时为0
+     */
+    private static long allocated(Runnable task, int iterations) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean allocBean)) {
+            return 0;
+        }
+        long tid = Thread.currentThread().getId();
+        long before = allocBean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return allocBean.getThreadAllocatedBytes(tid) - before;
+    }
+}
@@ -0,0 +1,108 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.infrastructure.persistent.pgvector.PgVectorIndexManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * PgVectorIndexManager 索引管理测试
+ */
+@DisplayName("PgVectorIndexManager 索引管理测试")
+public class PgVectorIndexManagerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private IModelRepository modelRepository;
+    private MemoryProperties props;
+    private PgVectorIndexManager indexManager;
+
+    private final Map<String, String> existing = new LinkedHashMap<>();
+    private final List<String> executed = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        modelRepository = mock(IModelRepository.class);
+        props = new MemoryProperties();
+        indexManager = new PgVectorIndexManager(jdbcTemplate, modelRepository, props);
+
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Map.Entry<String, String> e : existing.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("relname")).thenReturn(e.getKey());
+                when(rs.getString("def")).thenReturn(e.getValue());
+                when(rs.getBoolean("indisvalid")).thenReturn(true);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        doAnswer(inv -> executed.add(inv.getArgument(0))).when(jdbcTemplate).execute(anyString());
+    }
+
+    @Test
+    @DisplayName("按模型度量创建全表与全局部分 HNSW 索引")
+    public void testCreateIndexesPerMetric() {
+        List<BaseModelEntity> models = List.of(
+                EmbeddingModelEntity.builder().modelId("e1").similarityMetric("L2").build(),
+                EmbeddingModelEntity.builder().modelId("e2").similarityMetric("inner_product").build());
+        when(modelRepository.queryAllModels()).thenReturn(models);
+
+        indexManager.ensureIndexes();
+
+        assertEquals(6, executed.size());
+        assertTrue(executed.contains("CREATE INDEX CONCURRENTLY idx_ltm_hnsw_cosine ON long_term_memory USING hnsw (embedding vector_cosine_ops) WITH (m = 16, ef_construction = 64)"));
+        assertTrue(executed.contains("CREATE INDEX CONCURRENTLY idx_ltm_hnsw_l2_global ON long_term_memory USING hnsw (embedding vector_l2_ops) WITH (m = 16, ef_construction = 64) WHERE knowledge_id IS NULL"));
+        assertTrue(executed.stream().anyMatch(sql -> sql.contains("vector_ip_ops")));
+        assertEquals("l2", indexManager.metricFor("e1"));
+        verify(modelRepository, never()).queryModelById(anyString());
+    }
+
+    @Test
+    @DisplayName("已存在且参数一致的索引不重建，参数变化时并发迁移")
+    public void testMigrateOnParameterChange() {
+        when(modelRepository.queryAllModels()).thenReturn(List.of());
+        existing.put("idx_ltm_hnsw_cosine", "CREATE INDEX idx_ltm_hnsw_cosine ON public.long_term_memory USING hnsw (embedding vector_cosine_ops) WITH (m='16', ef_construction='64')");
+        existing.put("idx_ltm_hnsw_cosine_global", "CREATE INDEX idx_ltm_hnsw_cosine_global ON public.long_term_memory USING hnsw (embedding vector_cosine_ops) WITH (m='8', ef_construction='64') WHERE (knowledge_id IS NULL)");
+
+        indexManager.ensureIndexes();
+
+        assertEquals(List.of(
+                "DROP INDEX CONCURRENTLY IF EXISTS idx_ltm_hnsw_cosine_global_new",
+                "CREATE INDEX CONCURRENTLY idx_ltm_hnsw_cosine_global_new ON long_term_memory USING hnsw (embedding vector_cosine_ops) WITH (m = 16, ef_construction = 64) WHERE knowledge_id IS NULL",
+                "DROP INDEX CONCURRENTLY IF EXISTS idx_ltm_hnsw_cosine_global",
+                "ALTER INDEX idx_ltm_hnsw_cosine_global_new RENAME TO idx_ltm_hnsw_cosine_global"), executed);
+    }
+
+    @Test
+    @DisplayName("热点知识库建部分索引，非法ID被忽略且不内联")
+    public void testPartialKnowledgeIndexes() {
+        when(modelRepository.queryAllModels()).thenReturn(List.of());
+        props.getLtm().getIndex().getPartialKnowledgeIds().addAll(List.of("kb-1", "kb'; DROP TABLE x; --"));
+
+        indexManager.ensureIndexes();
+
+        assertTrue(executed.stream().anyMatch(sql -> sql.endsWith("WHERE knowledge_id = 'kb-1'")));
+        assertFalse(executed.stream().anyMatch(sql -> sql.contains("DROP TABLE")));
+        assertEquals("knowledge_id = 'kb-1'", indexManager.partialIndexPredicate("kb-1"));
+        assertNull(indexManager.partialIndexPredicate("kb'; DROP TABLE x; --"));
+        assertNull(indexManager.partialIndexPredicate("kb-2"));
+    }
+}
@@ -0,0 +1,205 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.IModelService;
+import cn.cathead.ai.infrastructure.persistent.pgvector.PgVectorIndexManager;
+import cn.cathead.ai.infrastructure.persistent.repository.PgVectorLongTermRepository;
+import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * PgVectorLongTermRepository 批量写入与检索测试
+ */
+@DisplayName("PgVectorLongTermRepository 批量写入与检索测试")
+public class PgVectorLongTermRepositoryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private IModelService modelService;
+    private MemoryProperties props;
+    private IModelRepository modelRepository;
+    private PgVectorIndexManager indexManager;
+    private PgVectorLongTermRepository repository;
+
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        modelService = mock(IModelService.class);
+        props = new MemoryProperties();
+        props.getLtm().setWriteBatchSize(100);
+        modelRepository = mock(IModelRepository.class);
+        indexManager = new PgVectorIndexManager(jdbcTemplate, modelRepository, props);
+        repository = new PgVectorLongTermRepository(jdbcTemplate, modelService, props, indexManager);
+        repository.init();
+
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(inv -> {
+            ConnectionCallback<?> callback = inv.getArgument(0);
+            return callback.doInConnection(connection);
+        });
+
+        when(modelService.embedText(any(EmbeddingRequestDTO.class))).thenAnswer(inv -> embed(inv.getArgument(0)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.shutdown();
+    }
+
+    private static EmbeddingResponse embed(EmbeddingRequestDTO request) {
+        List<Embedding> results = new ArrayList<>();
+        for (int i = 0; i < request.getTexts().size(); i++) {
+            results.add(new Embedding(new float[]{i, 0.5f}, i));
+        }
+        return new EmbeddingResponse(results);
+    }
+
+    private static List<MemoryChunk> chunks(int n) {
+        List<MemoryChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            chunks.add(MemoryChunk.builder()
+                    .id("c-" + i)
+                    .summary("summary " + i)
+                    .tags(List.of("a", "b"))
+                    .createdAt(Instant.now())
+                    .build());
+        }
+        return chunks;
+    }
+
+    @Test
+    @DisplayName("按批在单个事务内写入，每批一次向量化请求")
+    public void testSaveAllAndEmbedWritesInBatches() throws Exception {
+        List<Integer> embedSizes = new CopyOnWriteArrayList<>();
+        when(modelService.embedText(any(EmbeddingRequestDTO.class))).thenAnswer(inv -> {
+            EmbeddingRequestDTO request = inv.getArgument(0);
+            embedSizes.add(request.getTexts().size());
+            return embed(request);
+        });
+
+        repository.saveAllAndEmbed(chunks(250), "m1");
+
+        assertEquals(List.of(100, 100, 50), embedSizes);
+        verify(statement, times(250)).addBatch();
+        verify(statement, times(3)).executeBatch();
+        verify(connection, times(3)).commit();
+        verify(connection, times(3)).setAutoCommit(false);
+        verify(connection, never()).rollback();
+    }
+
+    @Test
+    @DisplayName("写入第 N 批时第 N+1 批的向量已在计算")
+    public void testEmbeddingPipelinedWithWrites() throws Exception {
+        CountDownLatch secondEmbedStarted = new CountDownLatch(1);
+        AtomicInteger embedCalls = new AtomicInteger();
+        when(modelService.embedText(any(EmbeddingRequestDTO.class))).thenAnswer(inv -> {
+            if (embedCalls.incrementAndGet() == 2) {
+                secondEmbedStarted.countDown();
+            }
+            return embed(inv.getArgument(0));
+        });
+        AtomicBoolean overlapped = new AtomicBoolean(false);
+        AtomicInteger writes = new AtomicInteger();
+        when(statement.executeBatch()).thenAnswer(inv -> {
+            if (writes.incrementAndGet() == 1) {
+                overlapped.set(secondEmbedStarted.await(5, TimeUnit.SECONDS));
+            }
+            return new int[0];
+        });
+
+        repository.saveAllAndEmbed(chunks(200), "m1");
+
+        assertTrue(overlapped.get());
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    @DisplayName("写库失败时回滚当前批次")
+    public void testRollbackOnFailure() throws Exception {
+        when(statement.executeBatch()).thenThrow(new java.sql.SQLException("boom"));
+
+        assertThrows(Exception.class, () -> repository.saveAll(chunks(10)));
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(connection).setAutoCommit(true);
+    }
+
+    @Test
+    @DisplayName("检索改写为可走索引的分支，并在事务内设置 ef_search")
+    public void testSemanticSearchIndexFriendly() throws Exception {
+        props.getLtm().getIndex().getPartialKnowledgeIds().add("kb-hot");
+        when(modelRepository.queryModelById("m1")).thenReturn(
+                EmbeddingModelEntity.builder().modelId("m1").similarityMetric("euclidean").build());
+        ResultSet rs = mock(ResultSet.class);
+        when(statement.executeQuery()).thenReturn(rs);
+        List<String> sqls = new CopyOnWriteArrayList<>();
+        when(connection.prepareStatement(anyString())).thenAnswer(inv -> {
+            sqls.add(inv.getArgument(0));
+            return statement;
+        });
+
+        repository.semanticSearchByText("kb-hot", "agent", "query", "m1", 5);
+        repository.semanticSearchByText("kb-cold", "agent", "query", "m1", 5);
+
+        assertEquals(4, sqls.size());
+        assertTrue(sqls.get(0).contains("hnsw.ef_search"));
+        String hot = sqls.get(1);
+        assertTrue(hot.contains("knowledge_id IS NULL"));
+        assertTrue(hot.contains("UNION ALL"));
+        assertTrue(hot.contains("knowledge_id = 'kb-hot'"));
+        assertTrue(hot.contains("<->"));
+        assertFalse(hot.contains("knowledge_id IS NULL OR"));
+        assertTrue(sqls.get(3).contains("knowledge_id = ?"));
+        verify(connection, times(2)).commit();
+        verify(modelRepository, times(1)).queryModelById("m1");
+    }
+
+    @Test
+    @DisplayName("词法检索使用全文检索表达式（与 GIN 索引一致），词项取并集")
+    @SuppressWarnings("unchecked")
+    public void testLexicalSearchSql() {
+        when(jdbcTemplate.query(anyString(), any(org.springframework.jdbc.core.RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        repository.lexicalSearch("kb", "agent", "dw.fact_orders ERR_1042 失败", 5);
+        assertTrue(repository.lexicalSearch("kb", "agent", "失败 ！", 5).isEmpty());
+
+        org.mockito.ArgumentCaptor<String> sql = org.mockito.ArgumentCaptor.forClass(String.class);
+        org.mockito.ArgumentCaptor<Object[]> args = org.mockito.ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).query(sql.capture(), any(org.springframework.jdbc.core.RowMapper.class), args.capture());
+        assertTrue(sql.getValue().contains("to_tsvector('simple', coalesce(summary, '')) @@ to_tsquery('simple', ?)"));
+        assertEquals("dw | fact | orders | err_1042 | err | 1042", args.getValue()[0]);
+    }
+}
@@ -0,0 +1,155 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.event.MemoryCompressedEvent;
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.CompressionResult;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compress.SimpleMemoryCompressor;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.CompressedMemoryPersister;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.ILongTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.ITokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
+import cn.cathead.ai.domain.model.service.IModelService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 滚动摘要压缩测试：增量提交、摘要回注、失败保持原样、摘要块写入长期记忆
+ */
+@DisplayName("滚动摘要压缩测试")
+public class RollingSummaryCompressorTest {
+
+    private IModelService modelService;
+    private ChatModel chatModel;
+    private MemoryProperties props;
+    private SimpleMemoryCompressor compressor;
+    private final List<String> prompts = new ArrayList<>();
+    private final NamespaceKey ns = NamespaceKey.of("kb", "agent", "s-1");
+    private final ShortTermPolicy policy = ShortTermPolicy.of(8192, 0.85, 40);
+
+    @BeforeEach
+    public void setUp() {
+        modelService = mock(IModelService.class);
+        chatModel = mock(ChatModel.class);
+        props = new MemoryProperties();
+        when(modelService.getLatestChatModel(anyString())).thenReturn(chatModel);
+        when(chatModel.call(any(Prompt.class))).thenAnswer(inv -> {
+            Prompt prompt = inv.getArgument(0);
+            prompts.add(prompt.getContents());
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("摘要#" + prompts.size()))));
+        });
+        compressor = new SimpleMemoryCompressor(modelService, props, new TokenCounterProvider(modelService, props));
+    }
+
+    private static List<MemoryMessage> turns(int from, int to) {
+        List<MemoryMessage> list = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            String text = "第" + i + "轮：请检查订单事实表 dw.fact_orders 的分区与 ERR_" + (1000 + i) + " 的重试逻辑，并给出修复方案与验证步骤。";
+            list.add(MemoryMessage.builder().id("m" + i).payload(new UserMessage(text)).createdAt(Instant.now()).tokenCost(40).build());
+        }
+        return list;
+    }
+
+    @Test
+    @DisplayName("第二次压缩只提交已有摘要与增量，摘要位于缓冲区首位")
+    public void testIncrementalPrompt() {
+        // 第一次：40 条，保留 4 条
+        CompressionResult first = compressor.compress(ns, turns(0, 40), policy);
+        List<MemoryMessage> retained = first.getRetainedMessages();
+        assertEquals(5, retained.size());
+        assertTrue(retained.get(0).isSummary());
+        assertInstanceOf(SystemMessage.class, retained.get(0).getPayload());
+        assertTrue(retained.get(0).getPayload().getText().contains("摘要#1"));
+        MemoryChunk chunk = first.getNewChunks().get(0);
+        assertEquals("kb", chunk.getKnowledgeId());
+        assertEquals("s-1", chunk.getSessionId());
+
+        // 第二次：摘要 + 4 条保留 + 新增 6 条
+        List<MemoryMessage> next = new ArrayList<>(retained);
+        next.addAll(turns(40, 46));
+        CompressionResult second = compressor.compress(ns, next, policy);
+
+        String incremental = prompts.get(1);
+        assertTrue(incremental.contains("[已有摘要]"));
+        assertTrue(incremental.contains("摘要#1"));
+        assertTrue(incremental.contains("第36轮"));
+        assertFalse(incremental.contains("第35轮"));
+        assertFalse(incremental.contains("第0轮"));
+        assertTrue(incremental.length() * 3 < prompts.get(0).length(), incremental.length() + " vs " + prompts.get(0).length());
+
+        assertEquals(5, second.getRetainedMessages().size());
+        assertTrue(second.getRetainedMessages().get(0).getPayload().getText().contains("摘要#2"));
+        assertEquals(1, second.getRetainedMessages().stream().filter(MemoryMessage::isSummary).count());
+    }
+
+    @Test
+    @DisplayName("摘要 token 数按会话所用模型的分词器计算，而不是默认模型")
+    public void testSummaryCountedWithSessionModel() {
+        TokenCounterProvider counters = mock(TokenCounterProvider.class);
+        ITokenCounter sessionCounter = mock(ITokenCounter.class);
+        when(sessionCounter.count(any())).thenReturn(123);
+        when(counters.forModel("m-session")).thenReturn(sessionCounter);
+        SimpleMemoryCompressor sessionCompressor = new SimpleMemoryCompressor(modelService, props, counters);
+        ShortTermPolicy sessionPolicy = ShortTermPolicy.builder()
+                .contextWindowTokens(8192).compressThresholdRatio(0.85).maxMessages(40).enableCountTrigger(true)
+                .modelId("m-session")
+                .build();
+
+        CompressionResult result = sessionCompressor.compress(ns, turns(0, 40), sessionPolicy);
+
+        assertEquals(123, result.getRetainedMessages().get(0).getTokenCost());
+        verify(counters, never()).forModel(props.getStm().getDefaultModelId());
+    }
+
+    @Test
+    @DisplayName("压缩模型不可用时保持原样，不把原文当作摘要")
+    public void testModelFailureKeepsMessages() {
+        when(chatModel.call(any(Prompt.class))).thenThrow(new RuntimeException("unavailable"));
+        List<MemoryMessage> messages = turns(0, 40);
+
+        CompressionResult result = compressor.compress(ns, messages, policy);
+
+        assertEquals(messages, result.getRetainedMessages());
+        assertTrue(result.getNewChunks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("压缩事件：有 knowledgeId 的摘要块按命名空间覆盖写入长期记忆，每轮不新增行")
+    public void testPersistOnEvent() {
+        ILongTermMemoryService ltm = mock(ILongTermMemoryService.class);
+        CompressedMemoryPersister persister = new CompressedMemoryPersister(ltm, props);
+        MemoryChunk withKb = MemoryChunk.builder().id("c1").title("对话结构化摘要").summary("摘要").knowledgeId("kb").agentId("agent").build();
+        MemoryChunk withoutKb = MemoryChunk.builder().id("c2").title("对话结构化摘要").summary("摘要").build();
+
+        persister.onCompressed(new MemoryCompressedEvent("s-1", "40->5", List.of(withKb, withoutKb)));
+        persister.onCompressed(new MemoryCompressedEvent("s-1", "9->5", List.of(withKb)));
+        persister.onCompressed(new MemoryCompressedEvent("s-2", "40->5", List.of(withKb)));
+
+        String id = CompressedMemoryPersister.summaryChunkId(ns);
+        verify(ltm, times(2)).upsertText(eq(id), eq("s-1"), eq("kb"), eq("agent"), eq("对话结构化摘要"), eq("摘要"),
+                any(), isNull(), eq(props.getLtm().getDefaultEmbeddingModelId()));
+        verify(ltm, times(1)).upsertText(eq(CompressedMemoryPersister.summaryChunkId(NamespaceKey.of("kb", "agent", "s-2"))),
+                eq("s-2"), any(), any(), any(), any(), any(), any(), any());
+        assertNotEquals(id, CompressedMemoryPersister.summaryChunkId(NamespaceKey.of("kb", "agent", "s-2")));
+        verify(ltm, never()).saveText(any(), any(), any(), any(), any(), any(), any(), any(), anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,133 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.CompressionResult;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.repository.IShortTermSpillRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.ShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compress.IMemoryCompressor;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * ShortTermMemoryService 快照读取与并发追加/压缩测试
+ */
+@DisplayName("ShortTermMemoryService 快照与并发测试")
+public class ShortTermMemoryServiceTest {
+
+    private ShortTermMemoryService service;
+    private final NamespaceKey ns = NamespaceKey.of("kb", "agent", "s-1");
+    private final List<Object> events = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        service = new ShortTermMemoryService(new MemoryProperties(), events::add, mock(IShortTermSpillRepository.class));
+        service.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private static MemoryMessage message(String id, double tokens) {
+        return MemoryMessage.builder()
+                .id(id)
+                .payload(new UserMessage(id))
+                .createdAt(Instant.now())
+                .tokenCost(tokens)
+                .build();
+    }
+
+    @Test
+    @DisplayName("读取返回只读快照，后续追加不影响已返回的列表")
+    public void testSnapshotIsolation() {
+        service.append(ns, List.of(message("a", 1), message("b", 2)));
+        List<MemoryMessage> first = service.get(ns);
+
+        service.append(ns, List.of(message("c", 3)));
+
+        assertEquals(2, first.size());
+        assertThrows(UnsupportedOperationException.class, () -> first.add(message("x", 1)));
+        assertEquals(3, service.size(ns));
+        assertEquals(6.0, service.totalEstimatedTokens(ns));
+        assertTrue(service.lastAccessEpochMs(ns) > 0);
+        assertTrue(service.get(NamespaceKey.of("kb", "agent", "none")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("多线程并发追加：消息数与 token 计数一致")
+    public void testConcurrentAppend() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int tid = t;
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    service.append(ns, List.of(message(tid + "-" + i, 1)));
+                    List<MemoryMessage> snapshot = service.get(ns);
+                    assertFalse(snapshot.isEmpty());
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, service.size(ns));
+        assertEquals(threads * perThread, service.totalEstimatedTokens(ns));
+    }
+
+    @Test
+    @DisplayName("压缩期间追加的消息在替换后保留")
+    public void testAppendDuringCompressionIsKept() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            service.append(ns, List.of(message("m" + i, 10)));
+        }
+        CountDownLatch compressing = new CountDownLatch(1);
+        CountDownLatch appended = new CountDownLatch(1);
+        IMemoryCompressor compressor = (messages, policy) -> {
+            compressing.countDown();
+            try {
+                appended.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<MemoryMessage> retained = new ArrayList<>(messages.subList(messages.size() - 2, messages.size()));
+            return CompressionResult.builder().retainedMessages(retained).newChunks(List.of()).compressionRatio("10->2").build();
+        };
+
+        service.compressNamespaceAsync(ns, ShortTermPolicy.of(100, 0.5, 200), compressor);
+        assertTrue(compressing.await(5, TimeUnit.SECONDS));
+        service.append(ns, List.of(message("late", 7)));
+        appended.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.size(ns) != 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<MemoryMessage> after = service.get(ns);
+        assertEquals(List.of("m8", "m9", "late"), after.stream().map(MemoryMessage::getId).toList());
+        assertEquals(27.0, service.totalEstimatedTokens(ns));
+    }
+}
@@ -0,0 +1,90 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import cn.cathead.ai.domain.model.event.ModelConfigChangedEvent;
+import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
+import cn.cathead.ai.domain.model.service.IModelService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 短期记忆策略缓存测试：按 modelId@version 缓存上下文窗口，模型变更后重新解析
+ */
+@DisplayName("短期记忆策略缓存测试")
+public class ShortTermPolicyProviderTest {
+
+    private IModelService modelService;
+    private MemoryProperties props;
+    private ShortTermPolicyProvider provider;
+
+    @BeforeEach
+    public void setUp() {
+        modelService = mock(IModelService.class);
+        props = new MemoryProperties();
+        provider = new ShortTermPolicyProvider(modelService, props);
+    }
+
+    private static ChatModelEntity chat(String modelId, long version, int window) {
+        return ChatModelEntity.builder()
+                .modelId(modelId)
+                .version(version)
+                .dynamicProperties(Map.of("max_context_length", window))
+                .build();
+    }
+
+    @Test
+    @DisplayName("同一模型版本只查询一次模型配置")
+    public void testCachedPerModel() {
+        when(modelService.getModelById("m1")).thenReturn(chat("m1", 1L, 32000));
+        when(modelService.getModelById("m2")).thenReturn(chat("m2", 1L, 8000));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(32000, provider.getPolicy("m1", "agent").getContextWindowTokens());
+            assertEquals(8000, provider.getPolicy("m2", "agent").getContextWindowTokens());
+            assertEquals("m2", provider.getPolicy("m2", "agent").getModelId());
+        }
+        verify(modelService, times(1)).getModelById("m1");
+        verify(modelService, times(1)).getModelById("m2");
+    }
+
+    @Test
+    @DisplayName("模型更新事件后按新版本重新解析，其他模型不受影响")
+    public void testInvalidatedOnModelUpdate() {
+        when(modelService.getModelById("m1")).thenReturn(chat("m1", 1L, 32000));
+        when(modelService.getModelById("m2")).thenReturn(chat("m2", 1L, 8000));
+        provider.getPolicy("m1", "agent");
+        provider.getPolicy("m2", "agent");
+
+        when(modelService.getModelById("m1")).thenReturn(chat("m1", 2L, 128000));
+        provider.onModelConfigChanged(new ModelConfigChangedEvent("m1", 2L));
+
+        assertEquals(128000, provider.getPolicy("m1", "agent").getContextWindowTokens());
+        assertEquals(128000, provider.getPolicy("m1", "agent").getContextWindowTokens());
+        assertEquals(8000, provider.getPolicy("m2", "agent").getContextWindowTokens());
+        verify(modelService, times(2)).getModelById("m1");
+        verify(modelService, times(1)).getModelById("m2");
+    }
+
+    @Test
+    @DisplayName("模型删除后回落到默认窗口，查询失败不缓存")
+    public void testDeleteAndFailure() {
+        when(modelService.getModelById("m1")).thenReturn(chat("m1", 1L, 32000));
+        provider.getPolicy("m1", "agent");
+
+        when(modelService.getModelById("m1")).thenReturn(null);
+        provider.onModelConfigChanged(new ModelConfigChangedEvent("m1", null));
+        assertEquals(props.getStm().getDefaultWindowTokens(), provider.getPolicy("m1", "agent").getContextWindowTokens());
+
+        when(modelService.getModelById("m3")).thenThrow(new RuntimeException("db down"));
+        assertEquals(props.getStm().getDefaultWindowTokens(), provider.getPolicy("m3", "agent").getContextWindowTokens());
+        provider.getPolicy("m3", "agent");
+        verify(modelService, times(2)).getModelById("m3");
+    }
+}
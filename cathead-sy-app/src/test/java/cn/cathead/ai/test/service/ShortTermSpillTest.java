@@ -0,0 +1,211 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.ShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermRecordCodec;
+import cn.cathead.ai.infrastructure.persistent.repository.MmapShortTermSpillRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 短期记忆溢出层：编码、逐出落盘与取回、重启恢复、压实
+ */
+@DisplayName("短期记忆溢出层测试")
+public class ShortTermSpillTest {
+
+    @TempDir
+    Path dir;
+
+    private MemoryProperties props;
+
+    @BeforeEach
+    public void setUp() {
+        props = new MemoryProperties();
+        props.getStm().getSpill().setEnabled(true);
+        props.getStm().getSpill().setDataDir(dir.toString());
+        props.getStm().getSpill().setShards(2);
+        props.getStm().getSpill().setSegmentBytes(64 * 1024);
+    }
+
+    private static List<MemoryMessage> conversation(String prefix) {
+        return List.of(
+                MemoryMessage.builder().id(prefix + "-0").payload(new SystemMessage("[Conversation Summary]\n之前的摘要"))
+                        .tokenCost(12.5).summary(true).build(),
+                MemoryMessage.builder().id(prefix + "-1").payload(new UserMessage(prefix + " 你好"))
+                        .createdAt(Instant.ofEpochMilli(1_700_000_000_123L)).tokenCost(3).build(),
+                MemoryMessage.builder().id(prefix + "-2").payload(new AssistantMessage(prefix + " hi"))
+                        .createdAt(Instant.ofEpochMilli(1_700_000_000_456L)).tokenCost(2).build());
+    }
+
+    private MmapShortTermSpillRepository openRepository() throws Exception {
+        MmapShortTermSpillRepository repository = new MmapShortTermSpillRepository(props);
+        repository.init();
+        return repository;
+    }
+
+    private static void assertConversation(String prefix, List<MemoryMessage> actual) {
+        assertNotNull(actual);
+        assertEquals(3, actual.size());
+        assertTrue(actual.get(0).isSummary());
+        assertEquals(MessageType.SYSTEM, actual.get(0).getPayload().getMessageType());
+        assertEquals(12.5, actual.get(0).getTokenCost(), 1e-6);
+        assertNull(actual.get(0).getCreatedAt());
+        assertEquals(MessageType.USER, actual.get(1).getPayload().getMessageType());
+        assertEquals(prefix + " 你好", actual.get(1).getPayload().getText());
+        assertEquals(Instant.ofEpochMilli(1_700_000_000_123L), actual.get(1).getCreatedAt());
+        assertEquals(MessageType.ASSISTANT, actual.get(2).getPayload().getMessageType());
+        assertEquals(prefix + "-2", actual.get(2).getId());
+        assertFalse(actual.get(2).isSummary());
+    }
+
+    @Test
+    @DisplayName("编码往返保留角色、文本、摘要标记、时间与 token 开销")
+    public void testCodecRoundTrip() {
+        NamespaceKey ns = NamespaceKey.of(null, "agent", "s-1");
+        byte[] record = ShortTermRecordCodec.encode(ns, conversation("a"), 42L);
+
+        ShortTermRecordCodec.Header header = ShortTermRecordCodec.decodeHeader(record);
+        assertEquals(ns, header.namespaceKey);
+        assertEquals(42L, header.spilledAt);
+        assertConversation("a", ShortTermRecordCodec.decodeMessages(record));
+    }
+
+    @Test
+    @DisplayName("超出容量被逐出的命名空间落盘，再次访问时取回")
+    public void testEvictedNamespaceRehydrates() throws Exception {
+        props.getStm().setMaxNamespaces(5);
+        MmapShortTermSpillRepository repository = openRepository();
+        ShortTermMemoryService service = new ShortTermMemoryService(props, event -> { }, repository);
+        service.init();
+        try {
+            for (int i = 0; i < 50; i++) {
+                service.append(NamespaceKey.of("kb", "agent", "s-" + i), conversation("m" + i));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (((Number) repository.getStats().get("namespaces")).longValue() < 45 && System.currentTimeMillis() < deadline) {
+                service.keys();
+                Thread.sleep(20);
+            }
+            assertTrue(((Number) repository.getStats().get("namespaces")).longValue() >= 45);
+            assertTrue(service.keys().size() <= 5);
+
+            assertConversation("m0", service.get(NamespaceKey.of("kb", "agent", "s-0")));
+            assertEquals(3, service.size(NamespaceKey.of("kb", "agent", "s-1")));
+            assertEquals(17.5, service.totalEstimatedTokens(NamespaceKey.of("kb", "agent", "s-2")), 1e-6);
+            assertTrue(service.get(NamespaceKey.of("kb", "agent", "unknown")).isEmpty());
+            assertTrue(service.getSpillStats().containsKey("hotNamespaces"));
+        } finally {
+            service.shutdown();
+            repository.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("停机落盘后重启可取回，清空的命名空间重启后不再出现")
+    public void testSurvivesRestart() throws Exception {
+        NamespaceKey kept = NamespaceKey.of("kb", "agent", "kept");
+        NamespaceKey cleared = NamespaceKey.of("kb", "agent", "cleared");
+        MmapShortTermSpillRepository repository = openRepository();
+        ShortTermMemoryService service = new ShortTermMemoryService(props, event -> { }, repository);
+        service.init();
+        service.append(kept, conversation("k"));
+        service.append(cleared, conversation("c"));
+        service.shutdown();
+        service = new ShortTermMemoryService(props, event -> { }, repository);
+        service.init();
+        service.clear(cleared);
+        service.shutdown();
+        repository.shutdown();
+
+        MmapShortTermSpillRepository reopened = openRepository();
+        try {
+            assertConversation("k", reopened.load(kept));
+            assertNull(reopened.load(cleared));
+            assertEquals(1L, reopened.getStats().get("namespaces"));
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("反复覆盖写入触发后台压实，只保留一代分片文件且数据完整")
+    public void testCompaction() throws Exception {
+        props.getStm().getSpill().setShards(1);
+        props.getStm().getSpill().setSegmentBytes(4096);
+        NamespaceKey ns = NamespaceKey.of("kb", "agent", "hot");
+        MmapShortTermSpillRepository repository = openRepository();
+        for (int i = 0; i < 200; i++) {
+            repository.spill(ns, conversation("v" + i));
+        }
+        // 压实在后台线程执行，写入线程只追加
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) repository.getStats().get("compactions")).longValue() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(((Number) repository.getStats().get("compactions")).longValue() > 0);
+        assertConversation("v199", repository.load(ns));
+        repository.shutdown();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+        MmapShortTermSpillRepository reopened = openRepository();
+        try {
+            assertConversation("v199", reopened.load(ns));
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("压实拷贝期间的覆盖写入与删除在换代时补写，重启后状态一致")
+    public void testWritesDuringCompaction() throws Exception {
+        props.getStm().getSpill().setShards(1);
+        props.getStm().getSpill().setSegmentBytes(4096);
+        MmapShortTermSpillRepository repository = openRepository();
+        int namespaces = 20;
+        for (int round = 0; round < 100; round++) {
+            for (int n = 0; n < namespaces; n++) {
+                repository.spill(NamespaceKey.of("kb", "agent", "s" + n), conversation("r" + round));
+            }
+            if (round == 50) {
+                repository.remove(NamespaceKey.of("kb", "agent", "s0"));
+            }
+        }
+        repository.remove(NamespaceKey.of("kb", "agent", "s1"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) repository.getStats().get("compactions")).longValue() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(((Number) repository.getStats().get("compactions")).longValue() > 0);
+        repository.shutdown();
+
+        MmapShortTermSpillRepository reopened = openRepository();
+        try {
+            assertNull(reopened.load(NamespaceKey.of("kb", "agent", "s1")));
+            for (int n = 0; n < namespaces; n++) {
+                if (n == 1) continue;
+                assertConversation("r99", reopened.load(NamespaceKey.of("kb", "agent", "s" + n)));
+            }
+            assertEquals(namespaces - 1, ((Number) reopened.getStats().get("namespaces")).longValue());
+        } finally {
+            reopened.shutdown();
+        }
+    }
+}
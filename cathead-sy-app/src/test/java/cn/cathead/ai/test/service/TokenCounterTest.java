@@ -0,0 +1,127 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.BpeTokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.HeuristicTokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.ITokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.SentencePieceTokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
+import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
+import cn.cathead.ai.domain.model.service.IModelService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 短期记忆 token 计数器测试：BPE / SentencePiece 词表计数、估算兜底、按模型选择
+ */
+@DisplayName("Token 计数器测试")
+public class TokenCounterTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 256 个单字节 + 给定合并结果，rank 按加入顺序
+     */
+    private Path bpeVocab(String... merges) throws Exception {
+        List<String> lines = new ArrayList<>();
+        int rank = 0;
+        for (int b = 0; b < 256; b++) {
+            lines.add(Base64.getEncoder().encodeToString(new byte[]{(byte) b}) + " " + rank++);
+        }
+        for (String m : merges) {
+            lines.add(Base64.getEncoder().encodeToString(m.getBytes(StandardCharsets.UTF_8)) + " " + rank++);
+        }
+        Path file = dir.resolve("test.tiktoken");
+        Files.write(file, lines);
+        return file;
+    }
+
+    @Test
+    @DisplayName("BPE：按 rank 合并并按 cl100k 规则预切分")
+    public void testBpeCount() throws Exception {
+        BpeTokenCounter counter = BpeTokenCounter.load(bpeVocab("he", "ll", "hell", "hello", " w", "or", " wor", " world", "12", "123"));
+
+        assertEquals(1, counter.count("hello"));
+        // "hello" + " world"
+        assertEquals(2, counter.count("hello world"));
+        // 无合并的字母：逐字节
+        assertEquals(3, counter.count("xyz"));
+        // 数字按最多 3 位切分："123" + "4"
+        assertEquals(2, counter.count("1234"));
+        // 中文按字节回退：每个汉字 3 字节
+        assertEquals(6, counter.count("你好"));
+        assertEquals(0, counter.count(""));
+    }
+
+    @Test
+    @DisplayName("SentencePiece：Viterbi 取最高分切分，未知字符记为一个 token")
+    public void testSentencePieceCount() throws Exception {
+        Path file = dir.resolve("test.vocab");
+        Files.writeString(file, String.join("\n",
+                "<unk>\t0", "<s>\t0", "</s>\t0",
+                "▁\t-2", "▁hello\t-1", "▁world\t-1", "h\t-5", "e\t-5", "l\t-5", "o\t-5",
+                "▁你好\t-1", "世界\t-1.5", "世\t-4", "界\t-4"), StandardCharsets.UTF_8);
+        SentencePieceTokenCounter counter = SentencePieceTokenCounter.load(file);
+
+        assertEquals(2, counter.count("hello world"));
+        assertEquals(2, counter.count("  hello   world "));
+        assertEquals(2, counter.count("你好世界"));
+        // ▁ + h e l l o 中的 "hell" 无整片：▁hello 可用
+        assertEquals(1, counter.count("hello"));
+        // "z" 未知
+        assertEquals(3, counter.count("hello z"));
+    }
+
+    @Test
+    @DisplayName("估算兜底：英文按词长折算，中文按字计数")
+    public void testHeuristic() {
+        ITokenCounter counter = HeuristicTokenCounter.INSTANCE;
+        String english = "The quick brown fox jumps over the lazy dog";
+        String chinese = "订单事实表位于数据仓库";
+        int en = counter.count(english);
+        int zh = counter.count(chinese);
+
+        // 旧算法按 length/2：英文 22、中文 6，与真实 token 数（约 9 / 11）偏差很大
+        assertTrue(en >= 9 && en <= 13, "en=" + en);
+        assertEquals(chinese.length(), zh);
+    }
+
+    @Test
+    @DisplayName("按模型 dynamicProperties 选择分词器，结果缓存，词表缺失回退估算")
+    public void testProviderSelection() throws Exception {
+        Path vocab = bpeVocab("he", "ll", "hell", "hello");
+        IModelService modelService = mock(IModelService.class);
+        when(modelService.getModelById("m-bpe")).thenReturn(ChatModelEntity.builder()
+                .modelId("m-bpe")
+                .dynamicProperties(Map.of("tokenizer", "bpe", "tokenizer_path", vocab.toString()))
+                .build());
+        when(modelService.getModelById("m-missing")).thenReturn(ChatModelEntity.builder()
+                .modelId("m-missing")
+                .dynamicProperties(Map.of("tokenizer", "sentencepiece", "tokenizer_path", dir.resolve("none.vocab").toString()))
+                .build());
+        when(modelService.getModelById("m-plain")).thenReturn(ChatModelEntity.builder().modelId("m-plain").build());
+        TokenCounterProvider provider = new TokenCounterProvider(modelService, new MemoryProperties());
+
+        ITokenCounter bpe = provider.forModel("m-bpe");
+        assertInstanceOf(BpeTokenCounter.class, bpe);
+        assertSame(bpe, provider.forModel("m-bpe"));
+        verify(modelService, times(1)).getModelById("m-bpe");
+        assertEquals(1, bpe.count("hello"));
+
+        assertSame(HeuristicTokenCounter.INSTANCE, provider.forModel("m-missing"));
+        assertSame(HeuristicTokenCounter.INSTANCE, provider.forModel("m-plain"));
+    }
+}
@@ -0,0 +1,84 @@
+package cn.cathead.ai.test.service;
+
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
+import cn.cathead.ai.domain.model.service.registry.provider.http.config.ModelHttpProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.openai.api.OpenAiApi;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UpstreamHttpClientRegistry 共享客户端测试
+ * 纯单元测试，不发起网络请求
+ */
+@DisplayName("UpstreamHttpClientRegistry 共享客户端测试")
+public class UpstreamHttpClientRegistryTest {
+
+    private UpstreamHttpClientRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        ModelHttpProperties props = new ModelHttpProperties();
+        // 不启动后台移除线程，由测试直接调用 evictIdle
+        props.setIdleEvictMs(0);
+        registry = new UpstreamHttpClientRegistry(props);
+        registry.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    @DisplayName("相同baseUrl复用同一个OllamaApi")
+    public void testOllamaApiSharedByBaseUrl() {
+        OllamaApi first = registry.ollamaApi("http://localhost:11434");
+        OllamaApi second = registry.ollamaApi("http://localhost:11434");
+
+        assertSame(first, second);
+        assertEquals(1, registry.getStats().size());
+    }
+
+    @Test
+    @DisplayName("同一上游不同凭证不共用OpenAiApi，但共用上游客户端")
+    public void testOpenAiApiSeparatedByCredential() {
+        OpenAiApi keyA = registry.openAiApi("https://api.example.com", "key-a");
+        OpenAiApi keyA2 = registry.openAiApi("https://api.example.com", "key-a");
+        OpenAiApi keyB = registry.openAiApi("https://api.example.com", "key-b");
+
+        assertSame(keyA, keyA2);
+        assertNotSame(keyA, keyB);
+        Map<String, String> stats = registry.getStats();
+        assertEquals(1, stats.size());
+        assertTrue(stats.containsKey("https://api.example.com:443"));
+        assertTrue(stats.get("https://api.example.com:443").contains("apis=2"));
+    }
+
+    @Test
+    @DisplayName("仍被缓存模型引用的上游不因空闲移除，释放后才移除")
+    public void testEvictIdleKeepsRetainedUpstream() throws InterruptedException {
+        registry.ollamaApi("http://localhost:11434");
+        registry.retain("http://localhost:11434");
+        registry.openAiApi("https://api.example.com", "key-a");
+        Thread.sleep(5);
+
+        registry.evictIdle();
+
+        Map<String, String> stats = registry.getStats();
+        assertEquals(1, stats.size());
+        assertTrue(stats.get("http://localhost:11434").contains("references=1"));
+
+        registry.release("http://localhost:11434");
+        Thread.sleep(5);
+        registry.evictIdle();
+
+        assertTrue(registry.getStats().isEmpty());
+    }
+}
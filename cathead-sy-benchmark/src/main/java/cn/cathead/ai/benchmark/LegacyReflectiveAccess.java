@@ -0,0 +1,110 @@
+package cn.cathead.ai.benchmark;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * 基准对照组：改造前 MemoryAdvisor / MessageUtils 的反射访问方式（仅保留被测路径）
+ */
+final class LegacyReflectiveAccess {
+
+    private LegacyReflectiveAccess() {}
+
+    static String extractText(Message message) {
+        if (message == null) return "";
+        String text = tryInvoke(message, "getContent");
+        if (text != null) return text;
+        text = tryInvoke(message, "getText");
+        if (text != null) return text;
+        return message.toString();
+    }
+
+    private static String tryInvoke(Message message, String methodName) {
+        try {
+            Method m = message.getClass().getMethod(methodName);
+            Object res = m.invoke(message);
+            return res == null ? null : String.valueOf(res);
+        } catch (Exception ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * 原 before() 末尾：反射改写 Prompt.instructions
+     */
+    static ChatClientRequest replaceInstructions(ChatClientRequest request, List<Message> merged) {
+        try {
+            Prompt prompt = request.prompt();
+            Field f = findField(prompt.getClass(), "instructions");
+            if (f == null) f = findField(prompt.getClass(), "messages");
+            if (f != null) {
+                f.setAccessible(true);
+                f.set(prompt, merged);
+                return request;
+            }
+        } catch (Throwable ignore) { }
+        return ChatClientRequest.builder().prompt(Prompt.builder().messages(merged).build()).context(request.context()).build();
+    }
+
+    /**
+     * 原 after()：按候选方法名逐个反射查找请求与回答文本
+     */
+    static String extractResponseText(ChatClientResponse resp) {
+        for (String name : new String[]{"getRequest", "getChatClientRequest", "request", "chatClientRequest"}) {
+            try {
+                resp.getClass().getMethod(name).invoke(resp);
+            } catch (Exception ignore) { }
+        }
+        try {
+            Method m1 = findNoArgMethod(resp.getClass(), "getResults", "results");
+            if (m1 == null) return resp.toString();
+            Object listObj = m1.invoke(resp);
+            if (listObj instanceof List<?> list && !list.isEmpty()) {
+                Object first = list.get(0);
+                Method m2 = findNoArgMethod(first.getClass(), "getOutput", "output");
+                if (m2 == null) return resp.toString();
+                Object output = m2.invoke(first);
+                Method m3 = findNoArgMethod(output.getClass(), "getText", "text");
+                if (m3 == null) return resp.toString();
+                Object text = m3.invoke(output);
+                return text == null ? "" : String.valueOf(text);
+            }
+        } catch (Exception ignore) { }
+        return resp.toString();
+    }
+
+    private static Method findNoArgMethod(Class<?> targetClass, String... candidateNames) {
+        for (String name : candidateNames) {
+            try {
+                Method m = targetClass.getMethod(name);
+                m.setAccessible(true);
+                return m;
+            } catch (NoSuchMethodException ignored) { }
+            for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
+                try {
+                    Method m = c.getDeclaredMethod(name);
+                    m.setAccessible(true);
+                    return m;
+                } catch (NoSuchMethodException ignored) { }
+            }
+        }
+        return null;
+    }
+
+    private static Field findField(Class<?> targetClass, String name) {
+        for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
+            try {
+                Field f = c.getDeclaredField(name);
+                f.setAccessible(true);
+                return f;
+            } catch (NoSuchFieldException ignored) { }
+        }
+        return null;
+    }
+}
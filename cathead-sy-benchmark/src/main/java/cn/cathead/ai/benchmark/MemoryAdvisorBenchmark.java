@@ -0,0 +1,139 @@
+package cn.cathead.ai.benchmark;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.MemoryAdvisor;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.IMemoryManager;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ContextBudgetPacker;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryAdvisor.before()/after() 单次开销（记忆来源为常量桩，串行获取，只衡量 Advisor 自身）
+ * 以及被替换掉的反射片段的对照组
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemoryAdvisorBenchmark {
+
+    private MemoryAdvisor advisor;
+    private ChatClientRequest request;
+    private ChatClientResponse response;
+    private List<Message> merged;
+
+    @Setup
+    public void setUp() {
+        MemoryProperties props = new MemoryProperties();
+        props.getAdvisor().setParallel(false);
+        // 不指定模型：装箱使用默认窗口与估算计数器，不访问模型服务
+        props.getStm().setDefaultModelId(null);
+        ContextBudgetPacker packer = new ContextBudgetPacker(new ShortTermPolicyProvider(null, props),
+                new TokenCounterProvider(null, props), props);
+        advisor = new MemoryAdvisor(new StubMemoryManager(), props, packer);
+        request = ChatClientRequest.builder()
+                .prompt(new Prompt(List.of(new SystemMessage("sys"), new UserMessage("订单事实表在哪个库"))))
+                .context(Map.of("x-session-id", "s-1", "x-knowledge-id", "kb", "x-agent-id", "agent"))
+                .build();
+        response = ChatClientResponse.builder()
+                .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage("在 dw.fact_orders")))))
+                .context(Map.of("x-session-id", "s-1", "x-memory-user-text", "订单事实表在哪个库"))
+                .build();
+        merged = new ArrayList<>(advisor.before(request, null).prompt().getInstructions());
+    }
+
+    @Benchmark
+    public ChatClientRequest before() {
+        return advisor.before(request, null);
+    }
+
+    @Benchmark
+    public ChatClientResponse after() {
+        return advisor.after(response, null);
+    }
+
+    @Benchmark
+    public ChatClientRequest replaceInstructionsReflective() {
+        return LegacyReflectiveAccess.replaceInstructions(request.copy(), merged);
+    }
+
+    @Benchmark
+    public ChatClientRequest replaceInstructionsMutate() {
+        return request.mutate().prompt(request.prompt().mutate().messages(merged).build()).build();
+    }
+
+    @Benchmark
+    public String responseTextReflective() {
+        return LegacyReflectiveAccess.extractResponseText(response);
+    }
+
+    @Benchmark
+    public String responseTextTyped() {
+        return response.chatResponse().getResult().getOutput().getText();
+    }
+
+    /**
+     * 常量记忆来源
+     */
+    private static final class StubMemoryManager implements IMemoryManager {
+
+        private final List<Message> context = List.of(new UserMessage("上一轮问题"), new AssistantMessage("上一轮回答"));
+        private final List<MemoryChunk> chunks = List.of(
+                MemoryChunk.builder().id("c-1").title("orders").summary("订单事实表位于 dw 库").build());
+
+        @Override
+        public List<Message> getContext(String sessionId) {
+            return context;
+        }
+
+        @Override
+        public void updateMemory(String sessionId, List<Message> newMessages) { }
+
+        @Override
+        public void saveShortTermMessages(String sessionId, List<Message> messages) { }
+
+        @Override
+        public void saveShortTermTextAsUser(String sessionId, String text) { }
+
+        @Override
+        public void saveShortTermTextAsAssistant(String sessionId, String text) { }
+
+        @Override
+        public void clear(String sessionId) { }
+
+        @Override
+        public List<MemoryChunk> retrieveLongTerm(String knowledgeId, String agentId, String query, int topK) {
+            return chunks;
+        }
+
+        @Override
+        public NamespaceKey resolveNamespace(String sessionId) {
+            return null;
+        }
+
+        @Override
+        public MemoryChunk saveLongTermText(String sessionId, String knowledgeId, String agentId,
+                                            String title, String text, List<String> tags, Double importance) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package cn.cathead.ai.benchmark;
+
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MessageUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageUtils.extractText：类型化调用 vs 原反射实现
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageAccessBenchmark {
+
+    private List<Message> messages;
+
+    @Setup
+    public void setUp() {
+        messages = List.of(
+                new SystemMessage("你是数据助手"),
+                new UserMessage("订单事实表在哪个库"),
+                new AssistantMessage("在 dw.fact_orders"));
+    }
+
+    @Benchmark
+    public int extractTextTyped() {
+        int len = 0;
+        for (Message m : messages) {
+            len += MessageUtils.extractText(m).length();
+        }
+        return len;
+    }
+
+    @Benchmark
+    public int extractTextReflective() {
+        int len = 0;
+        for (Message m : messages) {
+            len += LegacyReflectiveAccess.extractText(m).length();
+        }
+        return len;
+    }
+}
@@ -1,6 +1,7 @@
 package cn.cathead.ai.domain.client.event;
 
 import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
 import lombok.Getter;
 
 import java.util.List;
@@ -8,11 +9,22 @@ import java.util.List;
 @Getter
 public class MemoryCompressedEvent {
     private final String sessionId;
+    /** 被压缩的命名空间，仅有 sessionId 的事件为null */
+    private final NamespaceKey namespaceKey;
     private final String compressionRatio;
     private final List<MemoryChunk> chunks;
 
     public MemoryCompressedEvent(String sessionId, String compressionRatio, List<MemoryChunk> chunks) {
+        this(sessionId, null, compressionRatio, chunks);
+    }
+
+    public MemoryCompressedEvent(NamespaceKey namespaceKey, String compressionRatio, List<MemoryChunk> chunks) {
+        this(namespaceKey.getSessionId(), namespaceKey, compressionRatio, chunks);
+    }
+
+    private MemoryCompressedEvent(String sessionId, NamespaceKey namespaceKey, String compressionRatio, List<MemoryChunk> chunks) {
         this.sessionId = sessionId;
+        this.namespaceKey = namespaceKey;
         this.compressionRatio = compressionRatio;
         this.chunks = chunks;
     }
@@ -2,14 +2,29 @@ package cn.cathead.ai.domain.client.event;
 
 import lombok.Getter;
 
+/**
+ * 长期记忆被遗忘（删除或合并进其他片段）事件
+ */
 @Getter
 public class MemoryForgottenEvent {
+    public static final String REASON_FORGOTTEN = "forgotten";
+    public static final String REASON_MERGED = "merged";
+
     private final String chunkId;
     private final double importanceScore;
+    /** forgotten：价值过低被删除；merged：合并进 mergedInto */
+    private final String reason;
+    private final String mergedInto;
 
     public MemoryForgottenEvent(String chunkId, double importanceScore) {
+        this(chunkId, importanceScore, REASON_FORGOTTEN, null);
+    }
+
+    public MemoryForgottenEvent(String chunkId, double importanceScore, String reason, String mergedInto) {
         this.chunkId = chunkId;
         this.importanceScore = importanceScore;
+        this.reason = reason;
+        this.mergedInto = mergedInto;
     }
 }
 
@@ -5,38 +5,138 @@ import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
 import lombok.Getter;
 import lombok.ToString;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 会话短期记忆聚合根
+ * 消息、token 计数与版本号封装在不可变快照中，写入以 CAS 替换快照（写时复制）；
+ * 读取直接返回快照视图，不拷贝、不加锁，并发追加与压缩替换下读到的始终是某个完整版本。
  */
-@Getter
 @ToString
 public class ConversationMemory {
+
+    @Getter
     private final NamespaceKey namespaceKey;
-    private final List<MemoryMessage> rollingBuffer;
-    private double totalEstimatedTokens;
+    @ToString.Exclude
+    private final AtomicReference<Snapshot> state = new AtomicReference<>(Snapshot.EMPTY);
+    private volatile long lastAccessEpochMs;
+
+    /**
+     * 不可变快照；generation 在整体替换（压缩、清空）时递增，追加不变
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new MemoryMessage[0], 0.0, 0L);
+
+        private final MemoryMessage[] messages;
+        private final List<MemoryMessage> view;
+        private final double totalEstimatedTokens;
+        private final long generation;
+
+        private Snapshot(MemoryMessage[] messages, double totalEstimatedTokens, long generation) {
+            this.messages = messages;
+            this.view = Collections.unmodifiableList(Arrays.asList(messages));
+            this.totalEstimatedTokens = totalEstimatedTokens;
+            this.generation = generation;
+        }
+
+        public List<MemoryMessage> messages() {
+            return view;
+        }
+
+        public int size() {
+            return messages.length;
+        }
+
+        public double totalEstimatedTokens() {
+            return totalEstimatedTokens;
+        }
+
+        public long generation() {
+            return generation;
+        }
+    }
 
     public ConversationMemory(NamespaceKey namespaceKey) {
         this.namespaceKey = namespaceKey;
-        this.rollingBuffer = new ArrayList<>();
-        this.totalEstimatedTokens = 0.0;
+        this.lastAccessEpochMs = System.currentTimeMillis();
     }
 
-    public List<MemoryMessage> snapshot() {
-        return Collections.unmodifiableList(rollingBuffer);
+    public Snapshot snapshot() {
+        return state.get();
     }
 
-    public void append(MemoryMessage message) {
-        rollingBuffer.add(message);
-        totalEstimatedTokens += Math.max(0.0, message.getTokenCost());
+    public void append(List<MemoryMessage> appended) {
+        if (appended == null || appended.isEmpty()) return;
+        double added = sumTokens(appended);
+        Snapshot current;
+        Snapshot next;
+        do {
+            current = state.get();
+            MemoryMessage[] merged = Arrays.copyOf(current.messages, current.messages.length + appended.size());
+            for (int i = 0; i < appended.size(); i++) {
+                merged[current.messages.length + i] = appended.get(i);
+            }
+            next = new Snapshot(merged, current.totalEstimatedTokens + added, current.generation);
+        } while (!state.compareAndSet(current, next));
+        touch();
     }
 
-    public double getTotalEstimatedTokens() {
-        return totalEstimatedTokens;
+    /**
+     * 整体替换（无条件）
+     */
+    public void replace(List<MemoryMessage> messages) {
+        MemoryMessage[] array = messages == null ? new MemoryMessage[0] : messages.toArray(new MemoryMessage[0]);
+        double tokens = sumTokens(Arrays.asList(array));
+        Snapshot current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, new Snapshot(array, tokens, current.generation + 1)));
+        touch();
     }
-}
 
+    /**
+     * 基于快照 base 计算出的结果替换 base 部分，base 之后追加的消息保留在末尾；
+     * 期间发生过其他整体替换时放弃（返回 false），避免覆盖别人的结果
+     */
+    public boolean replaceIfUnchanged(Snapshot base, List<MemoryMessage> replacement) {
+        MemoryMessage[] head = replacement == null ? new MemoryMessage[0] : replacement.toArray(new MemoryMessage[0]);
+        double headTokens = sumTokens(Arrays.asList(head));
+        Snapshot current;
+        Snapshot next;
+        do {
+            current = state.get();
+            if (current.generation != base.generation) {
+                return false;
+            }
+            int tail = current.messages.length - base.messages.length;
+            MemoryMessage[] merged = Arrays.copyOf(head, head.length + tail);
+            System.arraycopy(current.messages, base.messages.length, merged, head.length, tail);
+            double tailTokens = current.totalEstimatedTokens - base.totalEstimatedTokens;
+            next = new Snapshot(merged, headTokens + tailTokens, current.generation + 1);
+        } while (!state.compareAndSet(current, next));
+        return true;
+    }
+
+    public void touch() {
+        lastAccessEpochMs = System.currentTimeMillis();
+    }
+
+    public long getLastAccessEpochMs() {
+        return lastAccessEpochMs;
+    }
 
+    public double getTotalEstimatedTokens() {
+        return state.get().totalEstimatedTokens;
+    }
+
+    private static double sumTokens(List<MemoryMessage> messages) {
+        double sum = 0.0;
+        for (MemoryMessage m : messages) {
+            sum += Math.max(0.0, m.getTokenCost());
+        }
+        return sum;
+    }
+}
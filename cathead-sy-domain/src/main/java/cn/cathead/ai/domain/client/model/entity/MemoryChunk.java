@@ -22,6 +22,7 @@ public class MemoryChunk {
     private final ImportanceScore importanceScore;
     private final Instant createdAt;
     private final Instant lastAccessAt;
+    private final long accessCount;        // 被召回次数（批量回写，略有延迟）
     private final String sessionId;
     private final String knowledgeId;
     private final String agentId;
@@ -18,6 +18,7 @@ public class MemoryMessage {
     private final Message payload;
     private final Instant createdAt;
     private final double tokenCost; // 估算token开销
+    private final boolean summary;  // 压缩生成的滚动摘要（位于缓冲区首位，下次压缩时作为已有摘要）
 }
 
 
@@ -0,0 +1,27 @@
+package cn.cathead.ai.domain.client.model.valobj;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 短期记忆集群成员
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class ClusterNode {
+
+    private final String id;
+    /** HTTP 根地址；进程内节点可为空 */
+    private final String url;
+
+    public ClusterNode(String id, String url) {
+        this.id = id;
+        this.url = url;
+    }
+
+    public static ClusterNode of(String id, String url) {
+        return new ClusterNode(id, url);
+    }
+}
@@ -0,0 +1,41 @@
+package cn.cathead.ai.domain.client.model.valobj;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 上下文装箱结果：在 token 预算内选中（必要时截断）的短期消息与长期片段，以及本次请求的装箱统计
+ */
+@Getter
+@Builder
+public class PackedContext {
+    /** 按原有时间顺序保留的短期消息 */
+    private final List<Message> shortTerm;
+    /** 按召回排名保留的长期片段 */
+    private final List<MemoryChunk> chunks;
+    /** 模型上下文窗口 */
+    private final int windowTokens;
+    /** 扣除输出预留与原始 prompt 后可用于记忆的预算 */
+    private final int budgetTokens;
+    private final int packedTokens;
+    private final int droppedTokens;
+    private final int droppedItems;
+    private final int truncatedItems;
+
+    public Map<String, Object> toReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("windowTokens", windowTokens);
+        report.put("budgetTokens", budgetTokens);
+        report.put("packedTokens", packedTokens);
+        report.put("droppedTokens", droppedTokens);
+        report.put("droppedItems", droppedItems);
+        report.put("truncatedItems", truncatedItems);
+        return report;
+    }
+}
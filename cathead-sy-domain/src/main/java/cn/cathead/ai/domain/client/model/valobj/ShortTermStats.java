@@ -0,0 +1,26 @@
+package cn.cathead.ai.domain.client.model.valobj;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 命名空间的短期记忆规模：消息条数与估算 token 总量（集群中代替整段消息回传）
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class ShortTermStats {
+
+    private final int size;
+    private final double estimatedTokens;
+
+    public ShortTermStats(int size, double estimatedTokens) {
+        this.size = size;
+        this.estimatedTokens = estimatedTokens;
+    }
+
+    public static ShortTermStats of(int size, double estimatedTokens) {
+        return new ShortTermStats(size, estimatedTokens);
+    }
+}
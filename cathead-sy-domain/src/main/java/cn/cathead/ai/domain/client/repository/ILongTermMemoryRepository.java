@@ -2,7 +2,9 @@ package cn.cathead.ai.domain.client.repository;
 
 import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 长期记忆仓储接口（结构化摘要 + 向量检索）
@@ -18,6 +20,13 @@ public interface ILongTermMemoryRepository {
      */
     List<MemoryChunk> semanticSearchByText(String knowledgeId, String agentId, String queryText, String embeddingModelId, int topK);
 
+    /**
+     * 词法检索（BM25 / 全文检索），结果按相关度降序；过滤语义与 semanticSearchByText 一致
+     */
+    default List<MemoryChunk> lexicalSearch(String knowledgeId, String agentId, String queryText, int topK) {
+        return List.of();
+    }
+
     void deleteById(String id);
 
     /**
@@ -26,6 +35,38 @@ public interface ILongTermMemoryRepository {
     void saveAndEmbed(MemoryChunk chunk, String embeddingModelId);
 
     void saveAllAndEmbed(List<MemoryChunk> chunks, String embeddingModelId);
+
+    /**
+     * 是否支持访问统计与生命周期管理（打分、衰减、合并、遗忘）；不支持时生命周期引擎跳过该存储
+     */
+    default boolean supportsLifecycle() {
+        return false;
+    }
+
+    /**
+     * 批量累加召回次数并刷新最近访问时间
+     * @param accessCounts chunkId -> 本批次内的召回次数
+     */
+    default void recordAccess(Map<String, Integer> accessCounts, Instant accessedAt) {
+    }
+
+    /**
+     * 按 id 升序分页遍历全部片段（keyset 分页）
+     * @param afterId 上一页最后一条的 id，首页为null
+     */
+    default List<MemoryChunk> scanChunks(String afterId, int limit) {
+        return List.of();
+    }
+
+    /**
+     * 批量更新重要性（衰减）
+     */
+    default void updateImportance(Map<String, Double> importance) {
+    }
+
+    default void deleteByIds(List<String> ids) {
+        ids.forEach(this::deleteById);
+    }
 }
 
 
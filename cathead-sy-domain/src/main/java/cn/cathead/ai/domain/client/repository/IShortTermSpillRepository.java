@@ -0,0 +1,34 @@
+package cn.cathead.ai.domain.client.repository;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 短期记忆溢出仓储：被逐出堆的命名空间写入磁盘，未命中时按需取回
+ */
+public interface IShortTermSpillRepository {
+
+    /**
+     * 未启用时短期记忆只在堆上，逐出即丢失
+     */
+    boolean isEnabled();
+
+    /**
+     * 写入命名空间的完整消息列表，覆盖此前的版本
+     */
+    void spill(NamespaceKey namespaceKey, List<MemoryMessage> messages);
+
+    /**
+     * @return 最近一次写入的消息列表，不存在或已过保留期时返回null
+     */
+    List<MemoryMessage> load(NamespaceKey namespaceKey);
+
+    void remove(NamespaceKey namespaceKey);
+
+    default Map<String, Object> getStats() {
+        return Map.of();
+    }
+}
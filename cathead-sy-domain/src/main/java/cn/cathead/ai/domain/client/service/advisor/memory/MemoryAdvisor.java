@@ -1,32 +1,55 @@
 package cn.cathead.ai.domain.client.service.advisor.memory;
 
 import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.PackedContext;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.IMemoryManager;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ContextBudgetPacker;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.LatencyStats;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MessageUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
 import org.springframework.ai.chat.client.advisor.api.AdvisorChain;
 import org.springframework.ai.chat.client.advisor.api.BaseAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.core.Ordered;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * Spring AI 1.0.1 BaseAdvisor：在 before 注入 ST+LT 上下文，在 after 更新短期并触发长期写入。
+ * before 中短期记忆与长期召回（含查询向量化）并行获取，各自有耗时预算，超出预算的来源直接丢弃，
+ * 保证向量库变慢时首 token 时延仍有上界。
+ * 获取结果经 ContextBudgetPacker 按模型窗口装箱后再注入，本次装箱统计写入请求上下文 x-memory-pack。
+ * 流式调用（adviseStream）边转发边累积助手文本，完成时一次性写入短期记忆。
  */
 @Component
 @RequiredArgsConstructor
@@ -36,12 +59,43 @@ public class MemoryAdvisor implements BaseAdvisor {
     private static final String ATTR_SESSION_ID = "x-session-id";
     private static final String ATTR_KNOWLEDGE_ID = "x-knowledge-id";
     private static final String ATTR_AGENT_ID = "x-agent-id";
+    /** 本轮对话的模型ID，由 ClientBuilderService 作为默认参数写入，决定短期记忆的压缩策略与 token 计数 */
+    public static final String ATTR_MODEL_ID = "x-model-id";
     private static final String ATTR_USE_STM = "x-use-stm";      // true/false，默认 true
     private static final String ATTR_USE_LTM = "x-use-ltm";      // true/false，默认 true
     private static final String ATTR_LTM_TOPK = "x-ltm-topk";    // int，默认 props.ltm.defaultTopK
+    // before 写入、after 读取：本轮用户输入（ChatClientResponse 不再携带原请求，经 context 传递）
+    private static final String ATTR_USER_TEXT = "x-memory-user-text";
+    /** before 写入：本次上下文装箱统计（预算、放入与丢弃的 token 数） */
+    public static final String ATTR_PACK = "x-memory-pack";
 
     private final IMemoryManager memoryManager;
     private final MemoryProperties props;
+    private final ContextBudgetPacker contextPacker;
+
+    private static final String SOURCE_STM = "stm";
+    private static final String SOURCE_LTM = "ltm";
+
+    /** 上下文来源并行获取的线程池 */
+    private ExecutorService contextExecutor;
+
+    private final Map<String, LatencyStats> sourceStats = Map.of(
+            SOURCE_STM, new LatencyStats(),
+            SOURCE_LTM, new LatencyStats());
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("memory-advisor-");
+        threadFactory.setDaemon(true);
+        contextExecutor = Executors.newFixedThreadPool(Math.max(2, props.getAdvisor().getWorkerThreads()), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (contextExecutor != null) {
+            contextExecutor.shutdownNow();
+        }
+    }
 
     @Override
     public ChatClientRequest before(ChatClientRequest chatClientRequest, AdvisorChain advisorChain) {
@@ -52,6 +106,7 @@ public class MemoryAdvisor implements BaseAdvisor {
         if (sessionId == null) sessionId = MemoryContextHolder.getSessionId();
         if (knowledgeId == null) knowledgeId = MemoryContextHolder.getKnowledgeId();
         if (agentId == null) agentId = MemoryContextHolder.getAgentId();
+        String modelId = attrOrElse(context.get(ATTR_MODEL_ID), MemoryContextHolder.getModelId());
 
         // 原始全量消息（包含 system/assistant/user），用于保持 MCP/工具链所需的系统指令
         List<Message> originalAllMessages = chatClientRequest.prompt().getInstructions();
@@ -64,26 +119,48 @@ public class MemoryAdvisor implements BaseAdvisor {
         boolean useLtm = getBoolean(context.get(ATTR_USE_LTM), true);
         int topK = getInt(context.get(ATTR_LTM_TOPK), props.getLtm().getDefaultTopK());
 
-        // 短期上下文（可开关）
-        List<Message> shortTerm = (useStm && sessionId != null) ? memoryManager.getContext(sessionId) : List.of();
-
-        // 长期召回（容错：embedding 调用问题不影响主链路）
-        List<MemoryChunk> chunks;
-        try {
-            chunks = useLtm ? memoryManager.retrieveLongTerm(knowledgeId, agentId, queryText, topK) : List.of();
-        } catch (Exception e) {
-            chunks = List.of();
+        // 短期上下文与长期召回并行获取（容错：任一来源失败或超出预算都不影响主链路）
+        long start = System.nanoTime();
+        String stmSessionId = sessionId;
+        String ltmKnowledgeId = knowledgeId;
+        String ltmAgentId = agentId;
+        // 读取与 after 写入使用同一组上下文（请求属性优先，其次调用方设置的上下文），结束后恢复调用方上下文
+        CompletableFuture<List<MemoryMessage>> stmFuture = (useStm && sessionId != null)
+                ? withContext(sessionId, agentId, knowledgeId, modelId,
+                        () -> fetch(SOURCE_STM, () -> memoryManager.getContextEntries(stmSessionId)))
+                : null;
+        CompletableFuture<List<MemoryChunk>> ltmFuture = useLtm
+                ? withContext(sessionId, agentId, knowledgeId, modelId,
+                        () -> fetch(SOURCE_LTM, () -> memoryManager.retrieveLongTerm(ltmKnowledgeId, ltmAgentId, queryText, topK)))
+                : null;
+        List<MemoryMessage> stmEntries = await(SOURCE_STM, stmFuture, start, props.getAdvisor().getStmBudgetMs());
+        List<Message> shortTerm = new ArrayList<>(stmEntries.size());
+        for (MemoryMessage entry : stmEntries) {
+            shortTerm.add(entry.getPayload());
         }
+        List<MemoryChunk> chunks = await(SOURCE_LTM, ltmFuture, start, props.getAdvisor().getLtmBudgetMs());
+        Map<String, Object> nextContext = new HashMap<>(context);
+
+        // 装箱：窗口扣除输出预留与原始 prompt 后，超出预算的记忆按分值丢弃或截断
+        if (props.getAdvisor().getPack().isEnabled() && (!shortTerm.isEmpty() || !chunks.isEmpty())) {
+            // 短期消息沿用写入时缓存的 token 数，只对缺少缓存值的消息分词
+            PackedContext packed = contextPacker.packEntries(modelId, agentId, originalAllMessages, stmEntries, chunks);
+            shortTerm = packed.getShortTerm();
+            chunks = packed.getChunks();
+            nextContext.put(ATTR_PACK, packed.toReport());
+            if (packed.getDroppedTokens() > 0) {
+                log.debug("记忆上下文装箱，会话: {}, 预算: {}, 放入: {}, 丢弃: {} tokens（{} 条，截断 {} 条）", sessionId,
+                        packed.getBudgetTokens(), packed.getPackedTokens(), packed.getDroppedTokens(),
+                        packed.getDroppedItems(), packed.getTruncatedItems());
+            }
+        }
+
         List<Message> longTerm = new ArrayList<>();
         if (!chunks.isEmpty()) {
             StringBuilder ltmContext = new StringBuilder();
-            ltmContext.append("[Retrieved Long-Term Memory]\n");
+            ltmContext.append(ContextBudgetPacker.LTM_HEADER);
             for (MemoryChunk c : chunks) {
-                ltmContext.append("- ")
-                        .append(c.getTitle() == null ? "chunk" : c.getTitle())
-                        .append(": ")
-                        .append(c.getSummary())
-                        .append('\n');
+                ltmContext.append(ContextBudgetPacker.renderChunk(c));
             }
             // 重要：用 SystemMessage 注入检索上下文，避免在最后一个 UserMessage 之前插入 Assistant 角色导致工具调用判定异常
             longTerm.add(new SystemMessage(ltmContext.toString()));
@@ -118,57 +195,66 @@ public class MemoryAdvisor implements BaseAdvisor {
             merged.addAll(originalAllMessages);
         }
 
-        // 优先：尝试原位修改 Prompt 的指令列表，避免替换 ChatClientRequest
-        try {
-            Prompt origPrompt = chatClientRequest.prompt();
-            Field instrField = findField(origPrompt.getClass(), "instructions");
-            if (instrField == null) instrField = findField(origPrompt.getClass(), "messages");
-            if (instrField != null) {
-                instrField.setAccessible(true);
-                instrField.set(origPrompt, merged);
-                return chatClientRequest;
-            }
-        } catch (Throwable ignore) { }
-
-        // 构造新的 Prompt（仅当原位修改失败时）
-        Prompt newPrompt = Prompt.builder().messages(merged).build();
-
-        // 次优先：通过反射直接替换原请求的 prompt，避免丢失工具配置
-        try {
-            Field promptField = findField(chatClientRequest.getClass(), "prompt");
-            if (promptField != null) {
-                promptField.setAccessible(true);
-                promptField.set(chatClientRequest, newPrompt);
-                return chatClientRequest;
-            }
-        } catch (Throwable ignore) { }
-
-        // 回退：新建请求（可能丢失工具配置，仅作为兜底）
-        return ChatClientRequest.builder()
-                .prompt(newPrompt)
-                .context(context)
+        // 基于原 Prompt 变更消息列表，保留 ChatOptions（含工具配置）与请求上下文
+        nextContext.put(ATTR_USER_TEXT, queryText);
+        return chatClientRequest.mutate()
+                .prompt(chatClientRequest.prompt().mutate().messages(merged).build())
+                .context(nextContext)
                 .build();
     }
 
     @Override
     public ChatClientResponse after(ChatClientResponse chatClientResponse, AdvisorChain advisorChain) {
-        try {
-            Object req = getRequestFromResponse(chatClientResponse);
-            String sessionId = MemoryContextHolder.getSessionId();
-            if (sessionId == null && req instanceof ChatClientRequest r) {
-                Map<String, Object> ctx = r.context();
-                if (ctx != null && ctx.get(ATTR_SESSION_ID) != null) {
-                    sessionId = String.valueOf(ctx.get(ATTR_SESSION_ID));
-                }
-            }
-            if (sessionId == null) return chatClientResponse;
+        Map<String, Object> ctx = chatClientResponse.context() == null ? Map.of() : chatClientResponse.context();
+        String sessionId = attrOrElse(ctx.get(ATTR_SESSION_ID), MemoryContextHolder.getSessionId());
+        if (sessionId == null) return chatClientResponse;
+        String agentId = attrOrElse(ctx.get(ATTR_AGENT_ID), MemoryContextHolder.getAgentId());
+        String knowledgeId = attrOrElse(ctx.get(ATTR_KNOWLEDGE_ID), MemoryContextHolder.getKnowledgeId());
+        String modelId = attrOrElse(ctx.get(ATTR_MODEL_ID), MemoryContextHolder.getModelId());
+        Object userText = ctx.get(ATTR_USER_TEXT);
+        StringBuilder assistantText = new StringBuilder();
+        appendText(assistantText, chatClientResponse);
+        withContext(sessionId, agentId, knowledgeId, modelId, () -> {
+            commitTurn(sessionId, userText == null ? null : String.valueOf(userText), assistantText.toString());
+            return null;
+        });
+        return chatClientResponse;
+    }
 
-            List<UserMessage> requestMessages = (req instanceof ChatClientRequest r)
-                    ? r.prompt().getUserMessages()
-                    : List.of();
-            String userText = extractLastUserText(requestMessages);
-            String assistantText = extractResponseText(chatClientResponse);
+    /**
+     * 流式调用：默认实现只在带结束原因的最后一个分片上调用 after，拿不到完整回答。
+     * 这里在转发分片的同时把文本追加到同一个 StringBuilder，流正常结束时写入一次本轮对话；
+     * 出错或被取消的流不写入，避免残缺回答进入上下文。
+     */
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        // 流在其他线程上执行，ThreadLocal 上下文需在调用线程捕获（与 before 一致：请求属性优先）
+        Map<String, Object> context = chatClientRequest.context() == null ? Map.of() : chatClientRequest.context();
+        String sessionId = attrOrElse(context.get(ATTR_SESSION_ID), MemoryContextHolder.getSessionId());
+        String agentId = attrOrElse(context.get(ATTR_AGENT_ID), MemoryContextHolder.getAgentId());
+        String knowledgeId = attrOrElse(context.get(ATTR_KNOWLEDGE_ID), MemoryContextHolder.getKnowledgeId());
+        String modelId = attrOrElse(context.get(ATTR_MODEL_ID), MemoryContextHolder.getModelId());
+
+        return Mono.just(chatClientRequest)
+                .publishOn(getScheduler())
+                .map(request -> withContext(sessionId, agentId, knowledgeId, modelId, () -> before(request, streamAdvisorChain)))
+                .flatMapMany(request -> {
+                    if (sessionId == null) {
+                        return streamAdvisorChain.nextStream(request);
+                    }
+                    String userText = extractLastUserText(request.prompt().getUserMessages());
+                    StringBuilder assistantText = new StringBuilder();
+                    return streamAdvisorChain.nextStream(request)
+                            .doOnNext(response -> appendText(assistantText, response))
+                            .doOnComplete(() -> withContext(sessionId, agentId, knowledgeId, modelId, () -> {
+                                commitTurn(sessionId, userText, assistantText.toString());
+                                return null;
+                            }));
+                });
+    }
 
+    private void commitTurn(String sessionId, String userText, String assistantText) {
+        try {
             List<Message> turn = new ArrayList<>(2);
             if (userText != null && !userText.isEmpty()) {
                 turn.add(UserMessage.builder().text(userText).build());
@@ -176,92 +262,111 @@ public class MemoryAdvisor implements BaseAdvisor {
             if (assistantText != null && !assistantText.isEmpty()) {
                 turn.add(new AssistantMessage(assistantText));
             }
-
             if (!turn.isEmpty()) {
                 memoryManager.updateMemory(sessionId, turn);
             }
         } catch (Exception e) {
-            log.warn("LongTermMemoryAdvisor.after failed: {}", e.getMessage());
+            log.warn("MemoryAdvisor 流式写入短期记忆失败: {}", e.getMessage());
         }
-        return chatClientResponse;
     }
 
-    @Override
-    public int getOrder() {
-        return Ordered.LOWEST_PRECEDENCE - 10;
+    private static void appendText(StringBuilder buffer, ChatClientResponse response) {
+        ChatResponse chatResponse = response.chatResponse();
+        Generation result = chatResponse == null ? null : chatResponse.getResult();
+        if (result != null && result.getOutput() != null && result.getOutput().getText() != null) {
+            buffer.append(result.getOutput().getText());
+        }
     }
 
-    // -------- helper methods --------
-
-    private static Object getRequestFromResponse(ChatClientResponse resp) {
-        for (String methodName : new String[]{"getRequest", "getChatClientRequest", "request", "chatClientRequest"}) {
-            try {
-                Method m = resp.getClass().getMethod(methodName);
-                return m.invoke(resp);
-            } catch (Exception ignore) { }
+    /**
+     * 在给定上下文中执行，结束后恢复调用线程原有的上下文（调用方可能为整个流程设置了上下文）
+     */
+    private static <T> T withContext(String sessionId, String agentId, String knowledgeId, String modelId, Supplier<T> action) {
+        try (MemoryContextHolder.Scope ignored = MemoryContextHolder.open(sessionId, agentId, knowledgeId, modelId)) {
+            return action.get();
         }
-        return null;
     }
 
-    private static String extractLastUserText(List<UserMessage> messages) {
-        if (messages == null || messages.isEmpty()) return "";
-        UserMessage m = messages.get(messages.size() - 1);
-        return MessageUtils.extractText(m);
+    private static String attrOrElse(Object attr, String fallback) {
+        return attr == null ? fallback : String.valueOf(attr);
     }
 
-    private static String extractResponseText(ChatClientResponse resp) {
-        try {
-            Method m1 = findNoArgMethod(resp.getClass(), "getResults", "results");
-            if (m1 == null) return resp.toString();
-            Object listObj = m1.invoke(resp);
-            if (listObj instanceof List<?> list && !list.isEmpty()) {
-                Object first = list.get(0);
-                Method m2 = findNoArgMethod(first.getClass(), "getOutput", "output");
-                if (m2 == null) return resp.toString();
-                Object output = m2.invoke(first);
-                Method m3 = findNoArgMethod(output.getClass(), "getText", "text");
-                if (m3 == null) return resp.toString();
-                Object text = m3.invoke(output);
-                return text == null ? "" : String.valueOf(text);
-            }
-        } catch (Exception ignore) { }
-        return resp.toString();
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 10;
+    }
+
+    /**
+     * 各上下文来源的调用、丢弃（超时）、失败次数与耗时，以及累计装箱统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("parallel", props.getAdvisor().isParallel());
+        stats.put(SOURCE_STM, sourceStats.get(SOURCE_STM).snapshot());
+        stats.put(SOURCE_LTM, sourceStats.get(SOURCE_LTM).snapshot());
+        stats.put("pack", contextPacker.getStats());
+        return stats;
     }
 
-    private static Method findNoArgMethod(Class<?> targetClass, String... candidateNames) {
-        for (String name : candidateNames) {
-            // 1) public 方法（包含父类/接口）
+    // -------- helper methods --------
+
+    /**
+     * 提交一个上下文来源；MemoryContextHolder 基于 ThreadLocal，先在请求线程捕获，再在工作线程还原
+     */
+    private <T> CompletableFuture<T> fetch(String source, Supplier<T> supplier) {
+        LatencyStats stats = sourceStats.get(source);
+        if (!props.getAdvisor().isParallel() || contextExecutor == null) {
+            long start = System.nanoTime();
             try {
-                Method m = targetClass.getMethod(name);
-                m.setAccessible(true);
-                return m;
-            } catch (NoSuchMethodException ignored) { }
-
-            // 2) 在类层次结构中找声明方法（非 public）
-            for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
-                try {
-                    Method m = c.getDeclaredMethod(name);
-                    m.setAccessible(true);
-                    return m;
-                } catch (NoSuchMethodException ignored) { }
+                return CompletableFuture.completedFuture(supplier.get());
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            } finally {
+                stats.record(System.nanoTime() - start);
             }
-
-            // 3) 在所有接口及其父接口中找声明方法
-            Method m = findInInterfaces(targetClass, name);
-            if (m != null) return m;
         }
-        return null;
+        String sessionId = MemoryContextHolder.getSessionId();
+        String agentId = MemoryContextHolder.getAgentId();
+        String knowledgeId = MemoryContextHolder.getKnowledgeId();
+        String modelId = MemoryContextHolder.getModelId();
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try (MemoryContextHolder.Scope ignored = MemoryContextHolder.open(sessionId, agentId, knowledgeId, modelId)) {
+                return supplier.get();
+            } finally {
+                stats.record(System.nanoTime() - start);
+            }
+        }, contextExecutor);
     }
 
-    private static Field findField(Class<?> targetClass, String name) {
-        for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
-            try {
-                Field f = c.getDeclaredField(name);
-                f.setAccessible(true);
-                return f;
-            } catch (NoSuchFieldException ignored) { }
+    /**
+     * 在预算内等待来源结果；超时或失败时丢弃该来源（返回空列表），不阻塞 prompt
+     */
+    private <T> List<T> await(String source, CompletableFuture<List<T>> future, long start, long budgetMs) {
+        if (future == null) {
+            return List.of();
+        }
+        LatencyStats stats = sourceStats.get(source);
+        long remaining = start + TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMs)) - System.nanoTime();
+        try {
+            List<T> result = future.isDone() ? future.get() : future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            return result == null ? List.of() : result;
+        } catch (TimeoutException e) {
+            stats.timeout();
+            log.warn("记忆上下文来源 {} 超出预算 {}ms，已丢弃", source, budgetMs);
+        } catch (ExecutionException e) {
+            stats.failure();
+            log.warn("记忆上下文来源 {} 获取失败，已丢弃: {}", source, e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return null;
+        return List.of();
+    }
+
+    private static String extractLastUserText(List<UserMessage> messages) {
+        if (messages == null || messages.isEmpty()) return "";
+        UserMessage m = messages.get(messages.size() - 1);
+        return MessageUtils.extractText(m);
     }
 
     private static boolean getBoolean(Object v, boolean defaultValue) {
@@ -281,29 +386,4 @@ public class MemoryAdvisor implements BaseAdvisor {
             return defaultValue;
         }
     }
-
-    private static Method findInInterfaces(Class<?> targetClass, String name) {
-        for (Class<?> itf : targetClass.getInterfaces()) {
-            try {
-                Method m = itf.getMethod(name);
-                m.setAccessible(true);
-                return m;
-            } catch (NoSuchMethodException ignored) { }
-            try {
-                Method m = itf.getDeclaredMethod(name);
-                m.setAccessible(true);
-                return m;
-            } catch (NoSuchMethodException ignored) { }
-            Method deeper = findInInterfaces(itf, name);
-            if (deeper != null) return deeper;
-        }
-        Class<?> superClass = targetClass.getSuperclass();
-        if (superClass != null) {
-            Method fromSuper = findInInterfaces(superClass, name);
-            if (fromSuper != null) return fromSuper;
-        }
-        return null;
-    }
 }
-
-
@@ -11,6 +11,8 @@ import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryCo
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MessageUtils;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.ITokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -32,22 +34,29 @@ public class DefaultMemoryManager implements IMemoryManager {
     private final ShortTermPolicyProvider policyProvider;
     private final LongTermMemoryService longTermMemoryService;
     private final MemoryProperties props;
+    private final TokenCounterProvider tokenCounterProvider;
 
 
     @Override
     public List<Message> getContext(String sessionId) {
-        NamespaceKey ns = resolveNamespace(sessionId);
-        return shortTermRepo.get(ns).stream().map(MemoryMessage::getPayload).toList();
+        return getContextEntries(sessionId).stream().map(MemoryMessage::getPayload).toList();
+    }
+
+    @Override
+    public List<MemoryMessage> getContextEntries(String sessionId) {
+        return shortTermRepo.get(resolveNamespace(sessionId));
     }
 
     @Override
     public void updateMemory(String sessionId, List<Message> newMessages) {
         if (newMessages == null || newMessages.isEmpty()) return;
         NamespaceKey ns = resolveNamespace(sessionId);
-        List<MemoryMessage> wrapped = wrap(newMessages);
+        // 策略与 token 计数按本轮实际使用的聊天模型解析（均为按版本缓存，不访问数据库）
+        String modelId = MemoryContextHolder.getModelId();
+        List<MemoryMessage> wrapped = wrap(newMessages, modelId);
         shortTermRepo.append(ns, wrapped);
 
-        ShortTermPolicy policy = policyProvider.getPolicy(ns.getKnowledgeId(), ns.getAgentId());
+        ShortTermPolicy policy = policyProvider.getPolicy(modelId, ns.getAgentId());
         double tokens = shortTermRepo.totalEstimatedTokens(ns);
         int count = shortTermRepo.size(ns);
         if (policy.shouldCompress(tokens, count)) {
@@ -97,25 +106,21 @@ public class DefaultMemoryManager implements IMemoryManager {
         return NamespaceKey.of(knowledgeId, agentId, sessionId);
     }
 
-    private List<MemoryMessage> wrap(List<Message> messages) {
+    private List<MemoryMessage> wrap(List<Message> messages, String modelId) {
+        // token 数在写入时按模型分词器计算一次，随 MemoryMessage 保存，后续只做累加；modelId 为空时使用默认模型
+        ITokenCounter counter = tokenCounterProvider.forModel(modelId);
         List<MemoryMessage> list = new ArrayList<>(messages.size());
         for (Message m : messages) {
             list.add(MemoryMessage.builder()
                     .id(UUID.randomUUID().toString())
                     .payload(m)
                     .createdAt(Instant.now())
-                    .tokenCost(estimateTokens(m))
+                    .tokenCost(counter.count(MessageUtils.extractText(m)))
                     .build());
         }
         return list;
     }
 
-    private double estimateTokens(Message m) {
-        String content = MessageUtils.extractText(m);
-        // 粗略估算：中文约2字/1token，英文约4字/1token，这里统一按 2 字符/token
-        return Math.ceil(content.length() / 2.0);
-    }
-
     // 便捷方法：允许外部在需要时持久化长期记忆
     public MemoryChunk saveLongTermText(String sessionId, String knowledgeId, String agentId, String title, String text,
                                         List<String> tags, Double importance) {
@@ -1,6 +1,7 @@
 package cn.cathead.ai.domain.client.service.advisor.memory.manager;
 
 import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
 import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
 import org.springframework.ai.chat.messages.Message;
 
@@ -13,6 +14,13 @@ public interface IMemoryManager {
 
     List<Message> getContext(String sessionId);
 
+    /**
+     * 短期记忆条目（含写入时计算的 token 数），供上下文装箱复用，避免每轮重新分词
+     */
+    default List<MemoryMessage> getContextEntries(String sessionId) {
+        return getContext(sessionId).stream().map(m -> MemoryMessage.builder().payload(m).build()).toList();
+    }
+
     void updateMemory(String sessionId, List<Message> newMessages);
 
     /**
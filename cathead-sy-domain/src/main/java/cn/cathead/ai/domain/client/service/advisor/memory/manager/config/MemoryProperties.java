@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 @ConfigurationProperties(prefix = "ai.memory")
 @Getter
@@ -14,6 +17,7 @@ public class MemoryProperties {
     private final Stm stm = new Stm();
     private final Compression compression = new Compression();
     private final Ltm ltm = new Ltm();
+    private final Advisor advisor = new Advisor();
 
     @Getter
     @Setter
@@ -24,12 +28,120 @@ public class MemoryProperties {
         private double compressThresholdRatio = 0.85;
         private int maxMessages = 200;
         private String defaultModelId = "7c5d376d-3bf6-41dd-a5dc-a7390ae09a18";
+        /** 模型上下文窗口缓存的兜底过期时间（正常由模型变更事件按版本失效，此项兜底绕过更新模板的直接改库） */
+        private long policyCacheTtlSeconds = 3600;
+        private final Tokenizer tokenizer = new Tokenizer();
+        private final Spill spill = new Spill();
+        private final Cluster cluster = new Cluster();
+    }
+
+    /**
+     * 短期记忆集群：命名空间按一致性哈希分配到主节点 + 副本，非主节点的读写经节点间 RPC 转发到主节点
+     */
+    @Getter
+    @Setter
+    public static class Cluster {
+        private boolean enabled = false;
+        /** 本节点ID，需出现在 members 中 */
+        private String selfId;
+        /** 初始成员，运行期可通过 /api/v1/memory/cluster/members 更新 */
+        private List<Member> members = new ArrayList<>();
+        /** 主节点之外的副本数 */
+        private int replicas = 1;
+        /** 每个成员在哈希环上的虚拟节点数 */
+        private int virtualNodes = 128;
+        private long rpcTimeoutMs = 500;
+        /** 节点间共享密钥：节点 RPC 与成员变更请求须在 X-Memory-Cluster-Secret 头中携带，启用集群时必填 */
+        private String secret;
+        /** 副本同步与成员变更交接的线程数，同一命名空间固定由一个线程处理以保证顺序 */
+        private int workerThreads = 2;
+        /** 每个线程的待同步任务上限，超出时丢弃并计入 replicationFailures */
+        private int maxPending = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class Member {
+        private String id;
+        /** 节点的 HTTP 根地址，如 http://10.0.0.2:8090 */
+        private String url;
+    }
+
+    /**
+     * 短期记忆溢出层：超出 maxNamespaces 或 ttlMinutes 被逐出的命名空间写入内存映射日志，再次访问时取回
+     */
+    @Getter
+    @Setter
+    public static class Spill {
+        private boolean enabled = false;
+        /** 日志目录，每个分片一个文件 */
+        private String dataDir = "data/stm";
+        private int shards = 8;
+        /** 单个映射段大小，单个命名空间的编码结果不能超过该值 */
+        private long segmentBytes = 16L * 1024 * 1024;
+        /** 落盘后超过该时长未取回的命名空间视为过期 */
+        private long retentionHours = 168;
+        /** 分片文件超过一个段且存活记录占比低于该值时压实 */
+        private double compactLiveRatio = 0.5;
+    }
+
+    /**
+     * 短期记忆 token 计数：模型未在 dynamicProperties 中声明 tokenizer 时使用的默认分词器
+     */
+    @Getter
+    @Setter
+    public static class Tokenizer {
+        /** bpe（tiktoken 格式词表）、sentencepiece（.vocab 文本词表）或 heuristic（按字符类别估算） */
+        private String type = "heuristic";
+        /** 本地词表文件路径 */
+        private String path;
+        /** 模型 -> 分词器解析结果的缓存时间 */
+        private long cacheTtlSeconds = 600;
+    }
+
+    /**
+     * MemoryAdvisor.before 中各上下文来源（短期记忆、长期召回）并行获取，超出预算的来源直接丢弃
+     */
+    @Getter
+    @Setter
+    public static class Advisor {
+        private boolean parallel = true;
+        /** 各来源的耗时预算，从 before 开始计时 */
+        private long stmBudgetMs = 200;
+        private long ltmBudgetMs = 800;
+        private int workerThreads = 16;
+        private final Pack pack = new Pack();
+    }
+
+    /**
+     * 上下文装箱：按模型窗口扣除输出预留后，对短期消息与长期片段按近因、重要性、相似度一次选取
+     */
+    @Getter
+    @Setter
+    public static class Pack {
+        private boolean enabled = true;
+        /** 为模型输出预留的 token 数 */
+        private int reservedOutputTokens = 1024;
+        /** 每条消息的角色/分隔符开销 */
+        private int messageOverheadTokens = 4;
+        /** 剩余预算不足该值时不再截断放入，直接丢弃 */
+        private int minTruncateTokens = 32;
+        /** 长期片段评分权重：召回排名（相似度）、重要性、近因 */
+        private double similarityWeight = 0.5;
+        private double importanceWeight = 0.3;
+        private double recencyWeight = 0.2;
+        /** 长期片段近因分的半衰期（按最近访问时间，缺失时按创建时间） */
+        private long recencyHalfLifeHours = 72;
     }
 
     @Getter
     @Setter
     public static class Compression {
         private String modelId = "7c5d376d-3bf6-41dd-a5dc-a7390ae09a18";
+        /** 并发压缩任务数（即压缩模型的最大并发调用数） */
+        private int workerThreads = 2;
+        /** 排队上限，超出后新命名空间暂不入队，下次写入时再触发 */
+        private int maxQueued = 256;
     }
 
     @Getter
@@ -39,7 +151,125 @@ public class MemoryProperties {
         private int chunkSize = 1000;
         private int overlap = 100;
         private int defaultTopK = 5;
+        /** 批量写入时每个事务的行数；向量化与写库按批流水线执行 */
+        private int writeBatchSize = 256;
+        /** embedding 列类型：vector（float4）或 halfvec（float16，需 pgvector 0.7+，存储减半） */
+        private String vectorType = "vector";
+        /** 长期记忆存储：pgvector（默认）或 embedded（进程内 HNSW + 本地段文件） */
+        private String store = "pgvector";
+        private final Index index = new Index();
+        private final Embedded embedded = new Embedded();
+        private final Hybrid hybrid = new Hybrid();
+        private final Lifecycle lifecycle = new Lifecycle();
+    }
+
+    /**
+     * 长期记忆生命周期：召回次数批量回写，后台定期打分，对闲置片段衰减重要性，低价值片段合并或删除
+     */
+    @Getter
+    @Setter
+    public static class Lifecycle {
+        /** 是否启用后台衰减/合并/遗忘（访问统计始终记录） */
+        private boolean enabled = false;
+        private long intervalMinutes = 60;
+        /** 每页扫描的片段数 */
+        private int scanBatchSize = 500;
+        /** 访问统计回写间隔与单批上限 */
+        private long accessFlushIntervalMs = 5000;
+        private int accessFlushBatchSize = 500;
+        /** 价值分 = 频次 * frequencyWeight + 近因 * recencyWeight + 重要性 * importanceWeight */
+        private double frequencyWeight = 0.3;
+        private double recencyWeight = 0.3;
+        private double importanceWeight = 0.4;
+        /** 频次分按 1 - e^(-次数/该值) 饱和 */
+        private double frequencySaturation = 10;
+        /** 近因分的半衰期（按最近访问时间） */
+        private long recencyHalfLifeDays = 30;
+        /** 闲置超过该天数的片段，重要性按每日系数衰减 */
+        private long decayAfterDays = 7;
+        private double dailyDecay = 0.95;
+        /** 创建不足该天数的片段不合并、不删除 */
+        private long minAgeDays = 3;
+        /** 价值分低于该值删除 */
+        private double forgetThreshold = 0.15;
+        /** 价值分低于该值（且不低于 forgetThreshold）的同会话片段合并 */
+        private double mergeThreshold = 0.3;
+        /** 同一会话至少有这么多低价值片段才合并 */
+        private int mergeMinChunks = 3;
+        /** 合并后摘要的最大字符数，超出时拆成多条合并片段 */
+        private int mergeMaxChars = 4000;
+        /** 扫描过程中暂存的待合并片段上限，超出时先合并已达条数的分组，其余留到下一轮 */
+        private int mergeBufferMaxChunks = 2000;
+    }
+
+    /**
+     * 长期记忆混合检索：向量与词法（BM25/全文检索）两路并行召回，按 RRF 融合
+     */
+    @Getter
+    @Setter
+    public static class Hybrid {
+        private boolean enabled = true;
+        /** RRF 常数：score = Σ 1 / (rrfK + rank) */
+        private int rrfK = 60;
+        /** 每一路的候选数 = topK * candidateMultiplier */
+        private int candidateMultiplier = 3;
+        /** 两路共同的截止时间，超时的一路按空结果参与融合 */
+        private long legTimeoutMs = 3000;
+        private int workerThreads = 8;
+        /** 检索线程池的排队上限，排满时新的检索路被拒绝并按空结果融合 */
+        private int maxPending = 256;
+        /** PostgreSQL 全文检索配置（如 simple，安装中文分词扩展后可改为对应配置） */
+        private String textSearchConfig = "simple";
     }
-}
 
+    /**
+     * long_term_memory 向量索引与检索参数
+     */
+    @Getter
+    @Setter
+    public static class Index {
+        /** 启动时创建/迁移 HNSW 索引 */
+        private boolean autoCreate = true;
+        /** 始终建索引的距离度量（另外会加入各 Embedding 模型配置的 similarityMetric） */
+        private List<String> metrics = new ArrayList<>(List.of("cosine"));
+        private int m = 16;
+        private int efConstruction = 64;
+        /** 每次查询的 hnsw.ef_search（不小于候选数） */
+        private int efSearch = 40;
+        /** 每次查询的 ivfflat.probes（手工建 IVFFlat 索引时生效） */
+        private int ivfflatProbes = 10;
+        /** hnsw.iterative_scan（pgvector 0.8+ 可设为 relaxed_order，旧版本留空） */
+        private String iterativeScan = "";
+        /** 每个分支的候选数 = topK * overfetch，用于会话/智能体过滤后仍能凑满 topK */
+        private int overfetch = 4;
+        /** 单独建部分索引的热点 knowledgeId */
+        private List<String> partialKnowledgeIds = new ArrayList<>();
+    }
 
+    /**
+     * 进程内 HNSW 长期记忆存储参数（store=embedded 时生效）
+     */
+    @Getter
+    @Setter
+    public static class Embedded {
+        /** 向量段文件路径，启动时重放重建索引 */
+        private String dataFile = "data/ltm/ltm.seg";
+        /** 单个映射段大小 */
+        private long segmentBytes = 64L * 1024 * 1024;
+        private int m = 16;
+        private int efConstruction = 100;
+        private int efSearch = 64;
+        /** 距离度量：cosine / l2 / ip */
+        private String metric = "cosine";
+        /** 每次写入后强制刷盘；关闭时依赖操作系统回写，进程崩溃不丢数据，掉电可能丢失最近写入 */
+        private boolean fsync = false;
+        /** 索引内向量编码：none（float，直接读映射区）或 int8（堆上标量量化编码，检索后用原始向量重排） */
+        private String quantization = "none";
+        /** 量化检索默认重排倍数：粗排取 topK * rerankRatio 个候选（模型 dynamicProperties.rerankRatio 优先） */
+        private int rerankRatio = 4;
+        /** 段文件中失效记录（或图中逻辑删除节点）占比超过该值时后台压实并重建图，0 表示不压实 */
+        private double compactDeletedRatio = 0.3;
+        /** 记录数低于该值时不压实 */
+        private int compactMinRecords = 1000;
+    }
+}
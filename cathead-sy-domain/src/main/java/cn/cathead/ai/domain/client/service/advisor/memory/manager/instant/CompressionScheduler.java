@@ -0,0 +1,159 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant;
+
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.LatencyStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 短期记忆压缩调度器
+ * - 去重：每个命名空间最多一个排队或执行中的任务；执行中再次提交只标记重跑，结束后重新提交一次
+ * - 优先级：按 token 压力（当前 token / 触发阈值）从高到低，同压力先到先得
+ * - 背压：工作线程数限制压缩模型并发，排队数达到上限时拒绝新命名空间（下次写入会再次触发）
+ */
+@Slf4j
+public class CompressionScheduler {
+
+    private final ThreadPoolExecutor executor;
+    private final int maxQueued;
+
+    private final Map<NamespaceKey, Job> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyStats waitStats = new LatencyStats();
+    private final LatencyStats compressStats = new LatencyStats();
+
+    private final class Job implements Runnable, Comparable<Job> {
+        final NamespaceKey namespace;
+        final Runnable task;
+        final long seq = sequence.incrementAndGet();
+        final long enqueuedAt = System.nanoTime();
+        volatile double pressure;
+        volatile boolean started;
+        /** 以下两项在 synchronized(this) 中读写 */
+        boolean finished;
+        boolean rerun;
+
+        Job(NamespaceKey namespace, Runnable task, double pressure) {
+            this.namespace = namespace;
+            this.task = task;
+            this.pressure = pressure;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byPressure = Double.compare(other.pressure, pressure);
+            return byPressure != 0 ? byPressure : Long.compare(seq, other.seq);
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            queued.decrementAndGet();
+            running.incrementAndGet();
+            waitStats.record(System.nanoTime() - enqueuedAt);
+            long start = System.nanoTime();
+            try {
+                task.run();
+                compressStats.record(System.nanoTime() - start);
+            } catch (Exception e) {
+                compressStats.failure();
+                log.warn("[STM] namespace={} 压缩任务失败: {}", namespace, e.getMessage());
+            } finally {
+                running.decrementAndGet();
+                boolean again;
+                synchronized (this) {
+                    finished = true;
+                    again = rerun;
+                    pending.remove(namespace, this);
+                }
+                if (again) {
+                    submit(namespace, pressure, task);
+                }
+            }
+        }
+    }
+
+    public CompressionScheduler(int workerThreads, int maxQueued) {
+        int workers = Math.max(1, workerThreads);
+        this.maxQueued = Math.max(1, maxQueued);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), new CustomizableThreadFactory("stm-compress-"));
+    }
+
+    /**
+     * 提交压缩任务
+     * @param pressure token 压力，越大越先执行
+     * @return 是否新入队（重复提交或被拒绝时为 false）
+     */
+    public boolean submit(NamespaceKey namespace, double pressure, Runnable task) {
+        Job existing = pending.get(namespace);
+        if (existing != null) {
+            synchronized (existing) {
+                if (!existing.finished) {
+                    deduplicated.increment();
+                    if (existing.started) {
+                        existing.rerun = true;
+                    } else if (pressure > existing.pressure && executor.getQueue().remove(existing)) {
+                        // 压力上升：重新入队以更新位置
+                        existing.pressure = pressure;
+                        executor.execute(existing);
+                    }
+                    return false;
+                }
+            }
+        }
+        if (queued.get() >= maxQueued) {
+            rejected.increment();
+            log.debug("[STM] 压缩队列已满({})，暂缓命名空间 {}", maxQueued, namespace);
+            return false;
+        }
+        Job job = new Job(namespace, task, pressure);
+        if (pending.putIfAbsent(namespace, job) != null) {
+            deduplicated.increment();
+            return false;
+        }
+        submitted.increment();
+        queued.incrementAndGet();
+        executor.execute(job);
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", executor.getMaximumPoolSize());
+        stats.put("queueDepth", queued.get());
+        stats.put("inFlight", running.get());
+        stats.put("maxQueued", maxQueued);
+        stats.put("submitted", submitted.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("wait", waitStats.snapshot());
+        stats.put("compress", compressStats.snapshot());
+        return stats;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(3, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -6,9 +6,13 @@ import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compre
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
 
 import java.util.List;
+import java.util.Map;
 
 public interface IShortTermMemoryService {
 
+    /**
+     * 当前消息的只读快照，后续写入不影响已返回的列表
+     */
     List<MemoryMessage> get(NamespaceKey namespaceKey);
 
     void append(NamespaceKey namespaceKey, List<MemoryMessage> messages);
@@ -28,6 +32,34 @@ public interface IShortTermMemoryService {
     void compressNamespaceAsync(NamespaceKey namespace, ShortTermPolicy policy, IMemoryCompressor memoryCompressor);
 
     void compressAllLruFirst(ShortTermPolicy policy, IMemoryCompressor memoryCompressor);
+
+    /**
+     * 压缩调度统计：排队数、执行中、去重/拒绝次数、排队等待与压缩耗时
+     */
+    default Map<String, Object> getCompressionStats() {
+        return Map.of();
+    }
+
+    /**
+     * 溢出层统计：堆上/磁盘上的命名空间数、日志字节数、溢出与取回次数
+     */
+    default Map<String, Object> getSpillStats() {
+        return Map.of();
+    }
+
+    /**
+     * 集群统计：成员、转发/故障转移/退化次数、副本同步与交接
+     */
+    default Map<String, Object> getClusterStats() {
+        return Map.of("enabled", false);
+    }
+
+    /**
+     * 会话亲和提示：命名空间的主节点与副本
+     */
+    default Map<String, Object> getAffinity(NamespaceKey namespaceKey) {
+        return Map.of("clustered", false);
+    }
 }
 
 
@@ -1,101 +1,97 @@
 package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant;
 
+import cn.cathead.ai.domain.client.event.MemoryCompressedEvent;
+import cn.cathead.ai.domain.client.model.aggregate.ConversationMemory;
 import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
 import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.repository.IShortTermSpillRepository;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compress.IMemoryCompressor;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.RemovalCause;
 import lombok.extern.slf4j.Slf4j;
 import lombok.RequiredArgsConstructor;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
-import org.springframework.context.annotation.Primary;
-import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-
+import java.util.Map;
+
+/**
+ * 短期记忆：每个命名空间一个 ConversationMemory（不可变快照 + 内嵌 token 计数与访问时间），
+ * 读取零拷贝，追加与压缩替换通过 CAS 互不覆盖。
+ * 压缩交给 CompressionScheduler：按命名空间去重、按 token 压力排序、并发受限。
+ * 启用溢出层时，因容量或闲置被逐出的命名空间写入 IShortTermSpillRepository，再次访问时按需取回；
+ * 逐出回调与同一键的读取互斥，取回不会读到写入前的旧版本。
+ */
 @Service
-@Primary
 @Slf4j
 @RequiredArgsConstructor
 public class ShortTermMemoryService implements IShortTermMemoryService {
 
-    private Cache<NamespaceKey, List<MemoryMessage>> buffer;
-    private final ConcurrentMap<NamespaceKey, Double> tokenCounter = new ConcurrentHashMap<>();
-    private final ConcurrentMap<NamespaceKey, Long> lastAccess = new ConcurrentHashMap<>();
+    private Cache<NamespaceKey, ConversationMemory> buffer;
 
-    private final ExecutorService pool = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("stm-compress-"));
+    private CompressionScheduler scheduler;
 
     private final MemoryProperties props;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IShortTermSpillRepository spillRepository;
 
     @PostConstruct
     public void init() {
-        this.buffer = Caffeine.newBuilder()
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
                 .maximumSize(props.getStm().getMaxNamespaces())
-                .expireAfterAccess(Duration.ofMinutes(props.getStm().getTtlMinutes()))
-                .removalListener((NamespaceKey key, List<MemoryMessage> value, RemovalCause cause) -> {
-                    if (key != null) {
-                        tokenCounter.remove(key);
-                        lastAccess.remove(key);
-                    }
-                })
-                .build();
+                .expireAfterAccess(Duration.ofMinutes(props.getStm().getTtlMinutes()));
+        this.buffer = spillRepository.isEnabled()
+                ? builder.<NamespaceKey, ConversationMemory>evictionListener((ns, memory, cause) -> spill(ns, memory)).build()
+                : builder.build();
+        this.scheduler = new CompressionScheduler(props.getCompression().getWorkerThreads(), props.getCompression().getMaxQueued());
     }
 
+    /**
+     * 返回当前快照的只读视图（不拷贝）
+     */
     @Override
     public List<MemoryMessage> get(NamespaceKey namespaceKey) {
-        List<MemoryMessage> list = buffer.getIfPresent(namespaceKey);
-        if (list != null) lastAccess.put(namespaceKey, System.currentTimeMillis());
-        return list == null ? new ArrayList<>() : new ArrayList<>(list);
+        ConversationMemory memory = hot(namespaceKey);
+        if (memory == null) return List.of();
+        memory.touch();
+        return memory.snapshot().messages();
     }
 
     @Override
     public void append(NamespaceKey namespaceKey, List<MemoryMessage> messages) {
-        buffer.asMap().merge(namespaceKey, new ArrayList<>(messages), (oldList, newList) -> {
-            if (oldList == null) oldList = new ArrayList<>();
-            oldList.addAll(newList);
-            return oldList;
-        });
-        double sum = messages.stream().mapToDouble(MemoryMessage::getTokenCost).sum();
-        tokenCounter.merge(namespaceKey, sum, Double::sum);
-        lastAccess.put(namespaceKey, System.currentTimeMillis());
+        buffer.get(namespaceKey, this::rehydrateOrCreate).append(messages);
     }
 
     @Override
     public void replace(NamespaceKey namespaceKey, List<MemoryMessage> messages) {
-        buffer.put(namespaceKey, new ArrayList<>(messages));
-        double sum = messages.stream().mapToDouble(MemoryMessage::getTokenCost).sum();
-        tokenCounter.put(namespaceKey, sum);
-        lastAccess.put(namespaceKey, System.currentTimeMillis());
+        buffer.get(namespaceKey, ConversationMemory::new).replace(messages);
     }
 
     @Override
     public void clear(NamespaceKey namespaceKey) {
         buffer.invalidate(namespaceKey);
-        tokenCounter.remove(namespaceKey);
-        lastAccess.remove(namespaceKey);
+        spillRepository.remove(namespaceKey);
     }
 
     @Override
     public int size(NamespaceKey namespaceKey) {
-        List<MemoryMessage> list = buffer.getIfPresent(namespaceKey);
-        return list == null ? 0 : list.size();
+        ConversationMemory memory = hot(namespaceKey);
+        return memory == null ? 0 : memory.snapshot().size();
     }
 
     @Override
     public double totalEstimatedTokens(NamespaceKey namespaceKey) {
-        return tokenCounter.getOrDefault(namespaceKey, 0.0);
+        ConversationMemory memory = hot(namespaceKey);
+        return memory == null ? 0.0 : memory.getTotalEstimatedTokens();
     }
 
     @Override
@@ -105,40 +101,111 @@ public class ShortTermMemoryService implements IShortTermMemoryService {
 
     @Override
     public long lastAccessEpochMs(NamespaceKey namespaceKey) {
-        return lastAccess.getOrDefault(namespaceKey, 0L);
+        ConversationMemory memory = buffer.getIfPresent(namespaceKey);
+        return memory == null ? 0L : memory.getLastAccessEpochMs();
     }
 
     @Override
     public void compressNamespaceAsync(NamespaceKey namespace, ShortTermPolicy policy, IMemoryCompressor memoryCompressor) {
-        pool.submit(() -> {
-            try {
-                List<MemoryMessage> current = get(namespace);
-                if (current == null || current.isEmpty()) return;
-                double tokens = totalEstimatedTokens(namespace);
-                int count = size(namespace);
-                if (!policy.shouldCompress(tokens, count)) return;
-                var cr = memoryCompressor.compress(current, policy);
-                replace(namespace, cr.getRetainedMessages());
-                log.info("[STM] namespace={} compressed ratio={}", namespace, cr.getCompressionRatio());
-            } catch (Exception e) {
-                log.warn("[STM] namespace={} error:{}", namespace, e.getMessage());
-            }
-        });
+        ConversationMemory memory = buffer.getIfPresent(namespace);
+        if (memory == null) return;
+        ConversationMemory.Snapshot current = memory.snapshot();
+        double pressure = policy.pressure(current.totalEstimatedTokens(), current.size());
+        scheduler.submit(namespace, pressure, () -> compress(namespace, policy, memoryCompressor));
+    }
+
+    private void compress(NamespaceKey namespace, ShortTermPolicy policy, IMemoryCompressor memoryCompressor) {
+        ConversationMemory memory = buffer.getIfPresent(namespace);
+        if (memory == null) return;
+        // 执行时以最新快照重新判断，排队期间可能已被压缩或清空
+        ConversationMemory.Snapshot base = memory.snapshot();
+        if (base.size() == 0) return;
+        if (!policy.shouldCompress(base.totalEstimatedTokens(), base.size())) return;
+        var cr = memoryCompressor.compress(namespace, base.messages(), policy);
+        boolean hasChunks = cr.getNewChunks() != null && !cr.getNewChunks().isEmpty();
+        // 压缩器放弃（如压缩模型不可用）时原样返回
+        if (!hasChunks && cr.getRetainedMessages().size() == base.size()) return;
+        // 只替换参与压缩的那一版，压缩期间新追加的消息保留
+        if (memory.replaceIfUnchanged(base, cr.getRetainedMessages())) {
+            log.info("[STM] namespace={} compressed ratio={}", namespace, cr.getCompressionRatio());
+            eventPublisher.publishEvent(new MemoryCompressedEvent(namespace, cr.getCompressionRatio(), hasChunks ? cr.getNewChunks() : List.of()));
+        } else {
+            log.info("[STM] namespace={} 压缩期间已被替换，丢弃本次结果", namespace);
+        }
     }
 
+    /**
+     * 仅提交达到阈值的命名空间，由调度器按 token 压力排序（同压力时久未访问者优先入队）
+     */
     @Override
     public void compressAllLruFirst(ShortTermPolicy policy, IMemoryCompressor memoryCompressor) {
         List<NamespaceKey> nsKeys = keys();
         nsKeys.sort(Comparator.comparingLong(this::lastAccessEpochMs));
         for (NamespaceKey ns : nsKeys) {
-            compressNamespaceAsync(ns, policy, memoryCompressor);
+            ConversationMemory memory = buffer.getIfPresent(ns);
+            if (memory == null) continue;
+            ConversationMemory.Snapshot current = memory.snapshot();
+            if (policy.shouldCompress(current.totalEstimatedTokens(), current.size())) {
+                compressNamespaceAsync(ns, policy, memoryCompressor);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getCompressionStats() {
+        return scheduler.getStats();
+    }
+
+    @Override
+    public Map<String, Object> getSpillStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(spillRepository.getStats());
+        stats.put("hotNamespaces", buffer.estimatedSize());
+        return stats;
+    }
+
+    /**
+     * 堆上未命中时从溢出层取回；溢出层也没有时不创建空条目
+     */
+    private ConversationMemory hot(NamespaceKey namespaceKey) {
+        ConversationMemory memory = buffer.getIfPresent(namespaceKey);
+        if (memory != null || !spillRepository.isEnabled()) return memory;
+        return buffer.get(namespaceKey, this::rehydrate);
+    }
+
+    private ConversationMemory rehydrateOrCreate(NamespaceKey namespaceKey) {
+        ConversationMemory memory = rehydrate(namespaceKey);
+        return memory != null ? memory : new ConversationMemory(namespaceKey);
+    }
+
+    private ConversationMemory rehydrate(NamespaceKey namespaceKey) {
+        if (!spillRepository.isEnabled()) return null;
+        List<MemoryMessage> messages = spillRepository.load(namespaceKey);
+        if (messages == null) return null;
+        ConversationMemory memory = new ConversationMemory(namespaceKey);
+        memory.replace(messages);
+        log.debug("[STM] namespace={} 从溢出层取回 {} 条消息", namespaceKey, messages.size());
+        return memory;
+    }
+
+    private void spill(NamespaceKey namespaceKey, ConversationMemory memory) {
+        if (memory == null) return;
+        ConversationMemory.Snapshot snapshot = memory.snapshot();
+        if (snapshot.size() == 0) {
+            spillRepository.remove(namespaceKey);
+            return;
         }
+        spillRepository.spill(namespaceKey, snapshot.messages());
     }
 
+    /**
+     * 停机前把堆上的命名空间全部落盘，重启后可继续取回
+     */
+    @PreDestroy
     public void shutdown() {
-        pool.shutdown();
-        try {
-            pool.awaitTermination(3, TimeUnit.SECONDS);
-        } catch (InterruptedException ignored) {}
+        scheduler.shutdown();
+        if (spillRepository.isEnabled()) {
+            buffer.asMap().forEach(this::spill);
+            log.info("[STM] 停机前已溢出 {} 个命名空间", buffer.estimatedSize());
+        }
     }
 }
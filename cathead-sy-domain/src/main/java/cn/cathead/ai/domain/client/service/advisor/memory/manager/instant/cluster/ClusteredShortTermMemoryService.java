@@ -0,0 +1,450 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster;
+
+import cn.cathead.ai.domain.client.event.MemoryCompressedEvent;
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.ClusterNode;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.model.valobj.ShortTermStats;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.IShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.ShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compress.IMemoryCompressor;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicyProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 集群模式的短期记忆：命名空间经一致性哈希映射到 主节点 + 副本，主节点持有权威版本。
+ * 本节点是主节点时直接读写本地 ShortTermMemoryService，并异步把写入同步到副本；
+ * 否则经 IStmPeerClient 转发到主节点，主节点不可达时依次转移到副本，全部不可达时退化为本地读写。
+ * 压缩只在主节点执行，结果以整体替换同步到副本；成员变更时由仍存活的原持有者把命名空间交接给新增的持有者。
+ * 未启用集群时所有调用直接委托本地实现。
+ */
+@Slf4j
+@Service
+@Primary
+@RequiredArgsConstructor
+public class ClusteredShortTermMemoryService implements IShortTermMemoryService {
+
+    private final ShortTermMemoryService local;
+    private final MemoryProperties props;
+    private final IStmPeerClient peerClient;
+    private final ShortTermPolicyProvider policyProvider;
+    private final IMemoryCompressor memoryCompressor;
+
+    /** 未启用集群时为null */
+    private volatile ConsistentHashRing ring;
+
+    private ClusterNode self;
+
+    /** 按命名空间分条的单线程执行器，同一命名空间的副本同步保持顺序 */
+    private ExecutorService[] workers;
+
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong degraded = new AtomicLong();
+    private final AtomicLong replicated = new AtomicLong();
+    private final AtomicLong replicationFailures = new AtomicLong();
+    private final AtomicLong handoffs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        MemoryProperties.Cluster config = props.getStm().getCluster();
+        if (!config.isEnabled()) return;
+        if (config.getSecret() == null || config.getSecret().isBlank()) {
+            throw new IllegalStateException("短期记忆集群未配置 ai.memory.stm.cluster.secret");
+        }
+        List<ClusterNode> members = new ArrayList<>();
+        for (MemoryProperties.Member member : config.getMembers()) {
+            members.add(ClusterNode.of(member.getId(), member.getUrl()));
+        }
+        this.self = members.stream().filter(m -> m.getId().equals(config.getSelfId())).findFirst()
+                .orElseThrow(() -> new IllegalStateException("短期记忆集群成员中不包含本节点: " + config.getSelfId()));
+        this.workers = new ExecutorService[Math.max(1, config.getWorkerThreads())];
+        for (int i = 0; i < workers.length; i++) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("stm-cluster-" + i + "-");
+            threadFactory.setDaemon(true);
+            workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(Math.max(1, config.getMaxPending())), threadFactory,
+                    (task, executor) -> replicationFailures.incrementAndGet());
+        }
+        this.ring = new ConsistentHashRing(members, config.getVirtualNodes());
+        log.info("[STM] 集群模式 self={} members={} replicas={}", self.getId(), members.size(), config.getReplicas());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workers == null) return;
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    @Override
+    public List<MemoryMessage> get(NamespaceKey namespaceKey) {
+        ConsistentHashRing current = ring;
+        if (current == null) return local.get(namespaceKey);
+        for (ClusterNode node : owners(current, namespaceKey)) {
+            if (node.equals(self)) return local.get(namespaceKey);
+            try {
+                forwarded.incrementAndGet();
+                return peerClient.get(node, namespaceKey);
+            } catch (RuntimeException e) {
+                failover(node, namespaceKey, e);
+            }
+        }
+        degraded.incrementAndGet();
+        return local.get(namespaceKey);
+    }
+
+    @Override
+    public void append(NamespaceKey namespaceKey, List<MemoryMessage> messages) {
+        ConsistentHashRing current = ring;
+        if (current == null) {
+            local.append(namespaceKey, messages);
+            return;
+        }
+        for (ClusterNode node : owners(current, namespaceKey)) {
+            if (node.equals(self)) {
+                peerAppend(namespaceKey, messages, false);
+                return;
+            }
+            try {
+                forwarded.incrementAndGet();
+                peerClient.append(node, namespaceKey, messages, false);
+                return;
+            } catch (RuntimeException e) {
+                failover(node, namespaceKey, e);
+            }
+        }
+        degraded.incrementAndGet();
+        local.append(namespaceKey, messages);
+    }
+
+    @Override
+    public void replace(NamespaceKey namespaceKey, List<MemoryMessage> messages) {
+        ConsistentHashRing current = ring;
+        if (current == null) {
+            local.replace(namespaceKey, messages);
+            return;
+        }
+        for (ClusterNode node : owners(current, namespaceKey)) {
+            if (node.equals(self)) {
+                peerReplace(namespaceKey, messages, false);
+                return;
+            }
+            try {
+                forwarded.incrementAndGet();
+                peerClient.replace(node, namespaceKey, messages, false);
+                return;
+            } catch (RuntimeException e) {
+                failover(node, namespaceKey, e);
+            }
+        }
+        degraded.incrementAndGet();
+        local.replace(namespaceKey, messages);
+    }
+
+    /**
+     * 所有持有者都清空；本地可能有退化期间写入的副本，一并清空
+     */
+    @Override
+    public void clear(NamespaceKey namespaceKey) {
+        local.clear(namespaceKey);
+        ConsistentHashRing current = ring;
+        if (current == null) return;
+        for (ClusterNode node : owners(current, namespaceKey)) {
+            if (node.equals(self)) continue;
+            try {
+                peerClient.clear(node, namespaceKey);
+            } catch (RuntimeException e) {
+                log.warn("[STM] 清空远端短期记忆失败 node={} namespace={}: {}", node.getId(), namespaceKey, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int size(NamespaceKey namespaceKey) {
+        if (isLocalPrimary(namespaceKey)) return local.size(namespaceKey);
+        return stats(namespaceKey).getSize();
+    }
+
+    @Override
+    public double totalEstimatedTokens(NamespaceKey namespaceKey) {
+        if (isLocalPrimary(namespaceKey)) return local.totalEstimatedTokens(namespaceKey);
+        return stats(namespaceKey).getEstimatedTokens();
+    }
+
+    /**
+     * 与 get 相同的转发与故障转移，但只回传条数与 token 总量
+     */
+    private ShortTermStats stats(NamespaceKey namespaceKey) {
+        ConsistentHashRing current = ring;
+        for (ClusterNode node : owners(current, namespaceKey)) {
+            if (node.equals(self)) return peerStats(namespaceKey);
+            try {
+                forwarded.incrementAndGet();
+                return peerClient.stats(node, namespaceKey);
+            } catch (RuntimeException e) {
+                failover(node, namespaceKey, e);
+            }
+        }
+        degraded.incrementAndGet();
+        return peerStats(namespaceKey);
+    }
+
+    @Override
+    public List<NamespaceKey> keys() {
+        return local.keys();
+    }
+
+    @Override
+    public long lastAccessEpochMs(NamespaceKey namespaceKey) {
+        return local.lastAccessEpochMs(namespaceKey);
+    }
+
+    /**
+     * 压缩只在主节点执行；非主节点请求主节点按其自身策略压缩
+     */
+    @Override
+    public void compressNamespaceAsync(NamespaceKey namespace, ShortTermPolicy policy, IMemoryCompressor memoryCompressor) {
+        ConsistentHashRing current = ring;
+        if (current == null || isLocalPrimary(namespace)) {
+            local.compressNamespaceAsync(namespace, policy, memoryCompressor);
+            return;
+        }
+        ClusterNode primary = current.primary(namespace);
+        try {
+            peerClient.compress(primary, namespace, MemoryContextHolder.getModelId());
+        } catch (RuntimeException e) {
+            log.warn("[STM] 请求主节点压缩失败 node={} namespace={}: {}", primary.getId(), namespace, e.getMessage());
+        }
+    }
+
+    /**
+     * 只压缩本节点为主节点的命名空间，副本由主节点的压缩结果覆盖
+     */
+    @Override
+    public void compressAllLruFirst(ShortTermPolicy policy, IMemoryCompressor memoryCompressor) {
+        if (ring == null) {
+            local.compressAllLruFirst(policy, memoryCompressor);
+            return;
+        }
+        List<NamespaceKey> nsKeys = keys();
+        nsKeys.sort(Comparator.comparingLong(this::lastAccessEpochMs));
+        for (NamespaceKey ns : nsKeys) {
+            if (isLocalPrimary(ns) && policy.shouldCompress(local.totalEstimatedTokens(ns), local.size(ns))) {
+                local.compressNamespaceAsync(ns, policy, memoryCompressor);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getCompressionStats() {
+        return local.getCompressionStats();
+    }
+
+    @Override
+    public Map<String, Object> getSpillStats() {
+        return local.getSpillStats();
+    }
+
+    /**
+     * 校验节点间请求携带的共享密钥（未启用集群时一律拒绝）
+     */
+    public boolean isPeerAuthorized(String secret) {
+        String expected = props.getStm().getCluster().getSecret();
+        if (self == null || expected == null || expected.isBlank() || secret == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Map<String, Object> getClusterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        ConsistentHashRing current = ring;
+        stats.put("enabled", current != null);
+        if (current == null) return stats;
+        stats.put("self", self.getId());
+        stats.put("members", current.members().stream().map(ClusterNode::getId).toList());
+        stats.put("forwarded", forwarded.get());
+        stats.put("failovers", failovers.get());
+        stats.put("degraded", degraded.get());
+        stats.put("replicated", replicated.get());
+        stats.put("replicationFailures", replicationFailures.get());
+        stats.put("handoffs", handoffs.get());
+        int pending = 0;
+        for (ExecutorService worker : workers) {
+            pending += ((ThreadPoolExecutor) worker).getQueue().size();
+        }
+        stats.put("pending", pending);
+        return stats;
+    }
+
+    /**
+     * 会话亲和提示：负载均衡可按 owner 把同一会话路由到主节点，避免转发
+     */
+    @Override
+    public Map<String, Object> getAffinity(NamespaceKey namespaceKey) {
+        Map<String, Object> affinity = new LinkedHashMap<>();
+        ConsistentHashRing current = ring;
+        affinity.put("clustered", current != null);
+        if (current == null) return affinity;
+        List<ClusterNode> owners = owners(current, namespaceKey);
+        affinity.put("owner", owners.get(0).getId());
+        affinity.put("ownerUrl", owners.get(0).getUrl());
+        affinity.put("replicas", owners.subList(1, owners.size()).stream().map(ClusterNode::getId).toList());
+        affinity.put("local", owners.get(0).equals(self));
+        return affinity;
+    }
+
+    // ---------------- 节点间 RPC 的服务端入口：只操作本地，不再转发 ----------------
+
+    public List<MemoryMessage> peerGet(NamespaceKey namespaceKey) {
+        return local.get(namespaceKey);
+    }
+
+    public ShortTermStats peerStats(NamespaceKey namespaceKey) {
+        return ShortTermStats.of(local.size(namespaceKey), local.totalEstimatedTokens(namespaceKey));
+    }
+
+    /**
+     * @param replica 副本同步只写本地；否则本节点作为（或代替）主节点写入并同步到其余持有者
+     */
+    public void peerAppend(NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica) {
+        local.append(namespaceKey, messages);
+        if (!replica) replicate(namespaceKey, node -> peerClient.append(node, namespaceKey, messages, true));
+    }
+
+    public void peerReplace(NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica) {
+        local.replace(namespaceKey, messages);
+        if (!replica) replicate(namespaceKey, node -> peerClient.replace(node, namespaceKey, messages, true));
+    }
+
+    public void peerClear(NamespaceKey namespaceKey) {
+        local.clear(namespaceKey);
+    }
+
+    public void peerCompress(NamespaceKey namespaceKey, String modelId) {
+        ShortTermPolicy policy = policyProvider.getPolicy(modelId, namespaceKey.getAgentId());
+        local.compressNamespaceAsync(namespaceKey, policy, memoryCompressor);
+    }
+
+    /**
+     * 主节点压缩完成后把结果整体同步到副本
+     */
+    @EventListener
+    public void onCompressed(MemoryCompressedEvent event) {
+        NamespaceKey namespaceKey = event.getNamespaceKey();
+        if (ring == null || namespaceKey == null || !isLocalPrimary(namespaceKey)) return;
+        List<MemoryMessage> snapshot = local.get(namespaceKey);
+        replicate(namespaceKey, node -> peerClient.replace(node, namespaceKey, snapshot, true));
+    }
+
+    /**
+     * 成员变更：重建哈希环；对每个堆上的命名空间，由仍存活的第一个原持有者把快照交给新增的持有者，
+     * 不再持有的节点在交接完成后丢弃本地副本。已溢出到磁盘的命名空间不参与交接。
+     */
+    public synchronized void updateMembership(List<ClusterNode> members) {
+        ConsistentHashRing previous = ring;
+        if (previous == null) {
+            throw new IllegalStateException("未启用短期记忆集群");
+        }
+        ConsistentHashRing next = new ConsistentHashRing(members, props.getStm().getCluster().getVirtualNodes());
+        ring = next;
+        Set<ClusterNode> alive = new HashSet<>(members);
+        int moved = 0;
+        for (NamespaceKey ns : local.keys()) {
+            List<ClusterNode> oldOwners = owners(previous, ns);
+            List<ClusterNode> newOwners = owners(next, ns);
+            boolean keep = newOwners.contains(self);
+            ClusterNode source = oldOwners.stream().filter(alive::contains).findFirst().orElse(null);
+            if (!self.equals(source)) {
+                if (!keep) local.clear(ns);
+                continue;
+            }
+            List<ClusterNode> targets = newOwners.stream()
+                    .filter(node -> !oldOwners.contains(node) && !node.equals(self))
+                    .toList();
+            if (targets.isEmpty() && keep) continue;
+            moved++;
+            submit(ns, () -> handoff(ns, targets, keep));
+        }
+        log.info("[STM] 集群成员变更 members={} 待交接命名空间={}", members.size(), moved);
+    }
+
+    private void handoff(NamespaceKey ns, List<ClusterNode> targets, boolean keep) {
+        List<MemoryMessage> snapshot = local.get(ns);
+        boolean delivered = true;
+        for (ClusterNode target : targets) {
+            try {
+                peerClient.replace(target, ns, snapshot, true);
+                handoffs.incrementAndGet();
+            } catch (RuntimeException e) {
+                delivered = false;
+                log.warn("[STM] 命名空间交接失败 node={} namespace={}: {}", target.getId(), ns, e.getMessage());
+            }
+        }
+        if (!keep && delivered) local.clear(ns);
+    }
+
+    private void replicate(NamespaceKey namespaceKey, Consumer<ClusterNode> call) {
+        ConsistentHashRing current = ring;
+        if (current == null) return;
+        for (ClusterNode node : owners(current, namespaceKey)) {
+            if (node.equals(self)) continue;
+            submit(namespaceKey, () -> {
+                try {
+                    call.accept(node);
+                    replicated.incrementAndGet();
+                } catch (RuntimeException e) {
+                    replicationFailures.incrementAndGet();
+                    log.debug("[STM] 副本同步失败 node={} namespace={}: {}", node.getId(), namespaceKey, e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void submit(NamespaceKey namespaceKey, Runnable task) {
+        workers[Math.floorMod(namespaceKey.hashCode(), workers.length)].execute(task);
+    }
+
+    private List<ClusterNode> owners(ConsistentHashRing current, NamespaceKey namespaceKey) {
+        return current.owners(namespaceKey, props.getStm().getCluster().getReplicas() + 1);
+    }
+
+    private boolean isLocalPrimary(NamespaceKey namespaceKey) {
+        ConsistentHashRing current = ring;
+        return current == null || self.equals(current.primary(namespaceKey));
+    }
+
+    private void failover(ClusterNode node, NamespaceKey namespaceKey, RuntimeException e) {
+        failovers.incrementAndGet();
+        log.warn("[STM] 节点不可达，转移到下一持有者 node={} namespace={}: {}", node.getId(), namespaceKey, e.getMessage());
+    }
+}
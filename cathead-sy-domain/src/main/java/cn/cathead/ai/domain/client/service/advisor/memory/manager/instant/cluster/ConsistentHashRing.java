@@ -0,0 +1,87 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster;
+
+import cn.cathead.ai.domain.client.model.valobj.ClusterNode;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 一致性哈希环（不可变，成员变更时整体重建）
+ * 每个成员在环上放置 virtualNodes 个点，命名空间顺时针取前 N 个不同成员作为 主节点 + 副本；
+ * 成员增减只影响相邻区间的命名空间。
+ */
+public final class ConsistentHashRing {
+
+    private final List<ClusterNode> members;
+    private final long[] points;
+    private final ClusterNode[] owners;
+
+    public ConsistentHashRing(List<ClusterNode> members, int virtualNodes) {
+        this.members = List.copyOf(members);
+        int perNode = Math.max(1, virtualNodes);
+        long[][] entries = new long[this.members.size() * perNode][];
+        int n = 0;
+        for (int m = 0; m < this.members.size(); m++) {
+            for (int v = 0; v < perNode; v++) {
+                entries[n++] = new long[]{hash(this.members.get(m).getId() + "#" + v), m};
+            }
+        }
+        Arrays.sort(entries, Comparator.comparingLong(e -> e[0]));
+        this.points = new long[entries.length];
+        this.owners = new ClusterNode[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = entries[i][0];
+            owners[i] = this.members.get((int) entries[i][1]);
+        }
+    }
+
+    public List<ClusterNode> members() {
+        return members;
+    }
+
+    /**
+     * @return 最多 count 个不同成员，首个为主节点
+     */
+    public List<ClusterNode> owners(NamespaceKey namespaceKey, int count) {
+        int limit = Math.min(Math.max(1, count), members.size());
+        List<ClusterNode> result = new ArrayList<>(limit);
+        if (points.length == 0) return result;
+        int start = Arrays.binarySearch(points, hash(key(namespaceKey)));
+        if (start < 0) start = -start - 1;
+        for (int i = 0; i < points.length && result.size() < limit; i++) {
+            ClusterNode node = owners[(start + i) % points.length];
+            if (!result.contains(node)) result.add(node);
+        }
+        return result;
+    }
+
+    public ClusterNode primary(NamespaceKey namespaceKey) {
+        List<ClusterNode> owners = owners(namespaceKey, 1);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    private static String key(NamespaceKey ns) {
+        return ns.getKnowledgeId() + "|" + ns.getAgentId() + "|" + ns.getSessionId();
+    }
+
+    /**
+     * FNV-1a 64 位 + murmur3 fmix64 打散，只依赖 UTF-8 字节，各节点计算结果一致
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,90 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.ClusterNode;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.model.valobj.ShortTermStats;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermRecordCodec;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 基于 HTTP 的节点间 RPC：请求与响应体均为 ShortTermRecordCodec 编码的二进制（application/octet-stream），
+ * 所有节点共享一个 JDK HttpClient（keep-alive 连接复用），超时即失败，由调用方故障转移。
+ * 每个请求在 SECRET_HEADER 中携带集群共享密钥，对端校验通过才处理。
+ */
+@Component
+@RequiredArgsConstructor
+public class HttpStmPeerClient implements IStmPeerClient {
+
+    public static final String PEER_PATH = "/api/v1/memory/peer/";
+    public static final String SECRET_HEADER = "X-Memory-Cluster-Secret";
+
+    private final MemoryProperties props;
+
+    private RestClient restClient;
+
+    @PostConstruct
+    public void init() {
+        Duration timeout = Duration.ofMillis(props.getStm().getCluster().getRpcTimeoutMs());
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public List<MemoryMessage> get(ClusterNode target, NamespaceKey namespaceKey) {
+        byte[] body = call(target, "get", false, null, ShortTermRecordCodec.encodeKey(namespaceKey, 0L));
+        return body == null ? List.of() : ShortTermRecordCodec.decodeMessages(body);
+    }
+
+    @Override
+    public ShortTermStats stats(ClusterNode target, NamespaceKey namespaceKey) {
+        byte[] body = call(target, "stats", false, null, ShortTermRecordCodec.encodeKey(namespaceKey, 0L));
+        return body == null ? ShortTermStats.of(0, 0.0) : ShortTermRecordCodec.decodeStats(body);
+    }
+
+    @Override
+    public void append(ClusterNode target, NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica) {
+        call(target, "append", replica, null, ShortTermRecordCodec.encode(namespaceKey, messages, 0L));
+    }
+
+    @Override
+    public void replace(ClusterNode target, NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica) {
+        call(target, "replace", replica, null, ShortTermRecordCodec.encode(namespaceKey, messages, 0L));
+    }
+
+    @Override
+    public void clear(ClusterNode target, NamespaceKey namespaceKey) {
+        call(target, "clear", false, null, ShortTermRecordCodec.encodeKey(namespaceKey, 0L));
+    }
+
+    @Override
+    public void compress(ClusterNode target, NamespaceKey namespaceKey, String modelId) {
+        call(target, "compress", false, modelId, ShortTermRecordCodec.encodeKey(namespaceKey, 0L));
+    }
+
+    private byte[] call(ClusterNode target, String operation, boolean replica, String modelId, byte[] body) {
+        return restClient.post()
+                .uri(target.getUrl() + PEER_PATH + "{operation}?replica={replica}&modelId={modelId}",
+                        operation, replica, modelId == null ? "" : modelId)
+                .header(SECRET_HEADER, props.getStm().getCluster().getSecret())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body)
+                .retrieve()
+                .body(byte[].class);
+    }
+}
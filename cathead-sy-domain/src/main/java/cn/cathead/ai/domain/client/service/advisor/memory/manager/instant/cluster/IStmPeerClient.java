@@ -0,0 +1,36 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.ClusterNode;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.model.valobj.ShortTermStats;
+
+import java.util.List;
+
+/**
+ * 短期记忆节点间 RPC；目标节点不可达或超时时抛出运行时异常，由调用方故障转移
+ */
+public interface IStmPeerClient {
+
+    List<MemoryMessage> get(ClusterNode target, NamespaceKey namespaceKey);
+
+    /**
+     * 只取消息条数与 token 总量，避免为 size / totalEstimatedTokens 回传整段消息
+     */
+    ShortTermStats stats(ClusterNode target, NamespaceKey namespaceKey);
+
+    /**
+     * @param replica true 表示副本同步，目标节点只写本地、不再向其他副本扩散
+     */
+    void append(ClusterNode target, NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica);
+
+    void replace(ClusterNode target, NamespaceKey namespaceKey, List<MemoryMessage> messages, boolean replica);
+
+    void clear(ClusterNode target, NamespaceKey namespaceKey);
+
+    /**
+     * 请求主节点检查并压缩
+     * @param modelId 请求方本轮使用的聊天模型，主节点据此解析压缩策略；为空时使用默认模型
+     */
+    void compress(ClusterNode target, NamespaceKey namespaceKey, String modelId);
+}
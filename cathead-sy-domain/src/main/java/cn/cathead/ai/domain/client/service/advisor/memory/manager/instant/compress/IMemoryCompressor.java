@@ -1,6 +1,7 @@
 package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compress;
 
 import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
 import cn.cathead.ai.domain.client.model.valobj.CompressionResult;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
 
@@ -11,6 +12,13 @@ import java.util.List;
  */
 public interface IMemoryCompressor {
     CompressionResult compress(List<MemoryMessage> messages, ShortTermPolicy policy);
+
+    /**
+     * 带命名空间的压缩，摘要块据此归属到会话/知识库/Agent；默认忽略命名空间
+     */
+    default CompressionResult compress(NamespaceKey namespace, List<MemoryMessage> messages, ShortTermPolicy policy) {
+        return compress(messages, policy);
+    }
 }
 
 
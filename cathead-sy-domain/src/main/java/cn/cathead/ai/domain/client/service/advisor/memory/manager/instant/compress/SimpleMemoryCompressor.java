@@ -3,12 +3,15 @@ package cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.compr
 import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
 import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
 import cn.cathead.ai.domain.client.model.valobj.CompressionResult;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MessageUtils;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermPolicy;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
 import cn.cathead.ai.domain.model.service.IModelService;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
@@ -23,9 +26,11 @@ import java.util.List;
 import java.util.UUID;
 
 /**
- * 语义压缩器：
- * - 构造结构化提示词，将旧消息提交给专用压缩模型，返回结构化摘要
+ * 语义压缩器（滚动摘要）：
+ * - 摘要以 SystemMessage 放在短期记忆首位，随上下文注入，下次压缩时作为已有摘要
+ * - 每次只把“已有摘要 + 新增消息”提交给压缩模型做增量更新，不再重发全部历史
  * - 保留近期若干条消息作为短期记忆
+ * 摘要块的持久化与事件发布由调用方在替换成功后完成（见 MemoryCompressedEvent）
  */
 @Component
 @RequiredArgsConstructor
@@ -34,24 +39,49 @@ public class SimpleMemoryCompressor implements IMemoryCompressor {
 
     private final IModelService modelService;
     private final MemoryProperties props;
+    private final TokenCounterProvider tokenCounterProvider;
+
+    static final String SUMMARY_HEADER = "[Conversation Summary]\n";
 
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
             .withZone(ZoneId.systemDefault());
 
     @Override
     public CompressionResult compress(List<MemoryMessage> messages, ShortTermPolicy policy) {
-        int retain = Math.min(messages.size(), Math.max(4, policy.getMaxMessages() / 10));
-        List<MemoryMessage> retained = new ArrayList<>();
-        List<MemoryMessage> toCompress = new ArrayList<>();
+        return compress(null, messages, policy);
+    }
 
-        for (int i = 0; i < messages.size(); i++) {
-            if (i >= messages.size() - retain) retained.add(messages.get(i));
-            else toCompress.add(messages.get(i));
+    @Override
+    public CompressionResult compress(NamespaceKey namespace, List<MemoryMessage> messages, ShortTermPolicy policy) {
+        // 首条为上一轮摘要时，只压缩其后的增量
+        MemoryMessage previous = !messages.isEmpty() && messages.get(0).isSummary() ? messages.get(0) : null;
+        int from = previous == null ? 0 : 1;
+        int retain = Math.min(messages.size() - from, Math.max(4, policy.getMaxMessages() / 10));
+        int split = messages.size() - retain;
+        List<MemoryMessage> toCompress = messages.subList(from, split);
+        if (toCompress.isEmpty()) {
+            return unchanged(messages);
         }
 
-        // 构造结构化提示词与对话内容
-        String promptText = buildCompressionPrompt(toCompress);
+        String previousSummary = previous == null ? null : stripHeader(MessageUtils.extractText(previous.getPayload()));
+        String promptText = buildCompressionPrompt(previousSummary, toCompress);
         String summaryText = callCompressionModel(promptText);
+        if (summaryText == null || summaryText.isBlank()) {
+            // 模型不可用：保持原样，避免把原文当摘要不断累积
+            return unchanged(messages);
+        }
+
+        MemoryMessage summaryMessage = MemoryMessage.builder()
+                .id(UUID.randomUUID().toString())
+                .payload(new SystemMessage(SUMMARY_HEADER + summaryText))
+                .createdAt(Instant.now())
+                // 与本会话其余消息使用同一模型的分词器计数（策略由会话的聊天模型解析而来）
+                .tokenCost(tokenCounterProvider.forModel(policy.getModelId()).count(summaryText))
+                .summary(true)
+                .build();
+        List<MemoryMessage> retained = new ArrayList<>(retain + 1);
+        retained.add(summaryMessage);
+        retained.addAll(messages.subList(split, messages.size()));
 
         // 生成摘要块
         MemoryChunk chunk = MemoryChunk.builder()
@@ -62,8 +92,9 @@ public class SimpleMemoryCompressor implements IMemoryCompressor {
                 .importanceScore(null)
                 .createdAt(Instant.now())
                 .lastAccessAt(Instant.now())
-                .knowledgeId(null)
-                .agentId(null)
+                .sessionId(namespace == null ? null : namespace.getSessionId())
+                .knowledgeId(namespace == null ? null : namespace.getKnowledgeId())
+                .agentId(namespace == null ? null : namespace.getAgentId())
                 .build();
 
         String ratio = String.format("%d->%d", messages.size(), retained.size());
@@ -74,10 +105,28 @@ public class SimpleMemoryCompressor implements IMemoryCompressor {
                 .build();
     }
 
-    private String buildCompressionPrompt(List<MemoryMessage> toCompress) {
+    private static CompressionResult unchanged(List<MemoryMessage> messages) {
+        return CompressionResult.builder()
+                .retainedMessages(messages)
+                .newChunks(List.of())
+                .compressionRatio(messages.size() + "->" + messages.size())
+                .build();
+    }
+
+    private static String stripHeader(String text) {
+        return text.startsWith(SUMMARY_HEADER) ? text.substring(SUMMARY_HEADER.length()) : text;
+    }
+
+    private String buildCompressionPrompt(String previousSummary, List<MemoryMessage> toCompress) {
         StringBuilder sb = new StringBuilder();
-        sb.append("请分析以下对话内容，提供结构化摘要：\n")
-          .append("1. Primary Request and Intent: 用户的主要请求和意图是什么\n")
+        boolean incremental = previousSummary != null && !previousSummary.isBlank();
+        if (incremental) {
+            sb.append("以下是此前对话的结构化摘要与之后新增的对话，请在已有摘要基础上合并新增内容，输出更新后的完整结构化摘要（保持相同的 8 个部分）：\n\n")
+              .append("[已有摘要]\n").append(previousSummary).append("\n\n");
+        } else {
+            sb.append("请分析以下对话内容，提供结构化摘要：\n");
+        }
+        sb.append("1. Primary Request and Intent: 用户的主要请求和意图是什么\n")
           .append("2. Key Technical Concepts: 涉及的关键技术概念和专业术语\n")
           .append("3. Files and Code Sections: 相关的文件路径、代码段和具体位置\n")
           .append("4. Errors and fixes: 出现的错误、问题及其解决方案\n")
@@ -86,7 +135,7 @@ public class SimpleMemoryCompressor implements IMemoryCompressor {
           .append("7. Pending Tasks: 待完成的任务、后续计划和优先级\n")
           .append("8. Current Work: 当前进行的工作、状态和下一步行动\n\n");
 
-        sb.append("[对话原文]\n");
+        sb.append(incremental ? "[新增对话]\n" : "[对话原文]\n");
         for (MemoryMessage mm : toCompress) {
             String role = mm.getPayload() == null ? "message" : mm.getPayload().getClass().getSimpleName();
             String ts = mm.getCreatedAt() == null ? "-" : TS_FMT.format(mm.getCreatedAt());
@@ -102,8 +151,8 @@ public class SimpleMemoryCompressor implements IMemoryCompressor {
         try {
             String compressionModelId = props.getCompression().getModelId();
             if (compressionModelId == null || compressionModelId.isBlank()) {
-                log.warn("Compression model id is not configured. Falling back to raw text.");
-                return promptText;
+                log.warn("Compression model id is not configured. Skip compression.");
+                return null;
             }
             ChatModel chatModel = modelService.getLatestChatModel(compressionModelId);
             UserMessage userMessage = UserMessage.builder().text(promptText).build();
@@ -111,7 +160,7 @@ public class SimpleMemoryCompressor implements IMemoryCompressor {
             return resp.getResults().get(0).getOutput().getText();
         } catch (Exception e) {
             log.warn("Compression model call failed: {}", e.getMessage());
-            return promptText;
+            return null;
         }
     }
 }
@@ -0,0 +1,55 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm;
+
+import cn.cathead.ai.domain.client.event.MemoryCompressedEvent;
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 短期记忆压缩完成后，把摘要块写入长期记忆（无 knowledgeId 的会话跳过，与显式写入一致）
+ * 滚动摘要每轮都包含此前全部内容，因此每个命名空间只保留一条：以命名空间派生的固定 id 覆盖写入。
+ * 在压缩工作线程上同步执行，不占用请求线程。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CompressedMemoryPersister {
+
+    private final ILongTermMemoryService longTermMemoryService;
+    private final MemoryProperties props;
+
+    @EventListener
+    public void onCompressed(MemoryCompressedEvent event) {
+        if (event.getChunks() == null) return;
+        for (MemoryChunk chunk : event.getChunks()) {
+            if (chunk.getKnowledgeId() == null || chunk.getKnowledgeId().isBlank()) {
+                log.debug("压缩摘要无 knowledgeId，跳过长期记忆写入，sessionId: {}", event.getSessionId());
+                continue;
+            }
+            try {
+                NamespaceKey ns = NamespaceKey.of(chunk.getKnowledgeId(), chunk.getAgentId(), event.getSessionId());
+                longTermMemoryService.upsertText(summaryChunkId(ns), event.getSessionId(), chunk.getKnowledgeId(), chunk.getAgentId(),
+                        chunk.getTitle(), chunk.getSummary(), chunk.getTags(),
+                        chunk.getImportanceScore() == null ? null : chunk.getImportanceScore().getScore(),
+                        props.getLtm().getDefaultEmbeddingModelId());
+            } catch (Exception e) {
+                log.warn("压缩摘要写入长期记忆失败，sessionId: {}, 错误: {}", event.getSessionId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 命名空间滚动摘要在长期记忆中的固定 id
+     */
+    public static String summaryChunkId(NamespaceKey ns) {
+        String key = "stm-summary|" + ns.getKnowledgeId() + "|" + ns.getAgentId() + "|" + ns.getSessionId();
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
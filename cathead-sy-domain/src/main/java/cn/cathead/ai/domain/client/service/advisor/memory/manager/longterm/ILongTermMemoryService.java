@@ -4,6 +4,7 @@ import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
 import org.springframework.ai.document.Document;
 
 import java.util.List;
+import java.util.Map;
 
 public interface ILongTermMemoryService {
 
@@ -11,13 +12,22 @@ public interface ILongTermMemoryService {
                   List<String> tags, Double importance, String embeddingModelId,
                   int chunkSize, int overlap);
 
+    /**
+     * 以固定 id 覆盖写入一条片段（不切分），用于只保留最新版本的内容，如会话的滚动摘要
+     */
+    void upsertText(String id, String sessionId, String knowledgeId, String agentId, String title, String text,
+                    List<String> tags, Double importance, String embeddingModelId);
+
     void saveDocuments(String sessionId, String knowledgeId, String agentId, String title,
                        List<Document> documents, List<String> tags, Double importance,
                        String embeddingModelId, int chunkSize, int overlap);
 
     List<MemoryChunk> searchByText(String knowledgeId, String agentId, String query, String embeddingModelId, int topK);
 
-    
+    /**
+     * 检索统计：混合检索各路的调用次数、超时/失败次数与耗时
+     */
+    Map<String, Object> getRetrievalStats();
 }
 
 
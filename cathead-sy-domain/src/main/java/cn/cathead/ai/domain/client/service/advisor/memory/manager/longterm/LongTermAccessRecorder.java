@@ -0,0 +1,149 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.repository.ILongTermMemoryRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 长期记忆访问统计：召回时只在内存中累加次数，定期（或积压达到批大小时）合并成一次批量更新回写，
+ * 召回链路不产生额外的数据库写入。回写失败的计数并回待写表，下次重试。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LongTermAccessRecorder {
+
+    private final ILongTermMemoryRepository longTermRepo;
+    private final MemoryProperties props;
+
+    /**
+     * chunkId -> 待回写的召回次数
+     * 累加（merge）与取走（remove）都是对同一键的原子操作，回写期间并发的召回不会记到已取走的计数上
+     */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        if (!longTermRepo.supportsLifecycle()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ltm-access-");
+        threadFactory.setDaemon(true);
+        flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long period = Math.max(100, props.getLtm().getLifecycle().getAccessFlushIntervalMs());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flushQuietly();
+        }
+    }
+
+    /**
+     * 记录一次召回结果
+     */
+    public void record(List<MemoryChunk> recalled) {
+        if (flusher == null || recalled == null || recalled.isEmpty()) {
+            return;
+        }
+        for (MemoryChunk chunk : recalled) {
+            if (chunk.getId() != null) {
+                pending.merge(chunk.getId(), 1L, Long::sum);
+                recorded.increment();
+            }
+        }
+        if (pending.size() >= batchSize() && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /**
+     * 立即回写全部待写计数
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> batch = new HashMap<>();
+        for (String id : new ArrayList<>(pending.keySet())) {
+            Long count = pending.remove(id);
+            if (count != null) {
+                batch.put(id, (int) Math.min(Integer.MAX_VALUE, count));
+            }
+            if (batch.size() >= batchSize()) {
+                write(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recorded", recorded.sum());
+        stats.put("pending", pending.size());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    private void write(Map<String, Integer> batch) {
+        try {
+            longTermRepo.recordAccess(batch, Instant.now());
+            flushes.increment();
+            flushedRows.add(batch.size());
+        } catch (Exception e) {
+            failures.increment();
+            batch.forEach((id, count) -> pending.merge(id, (long) count, Long::sum));
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("长期记忆访问统计回写失败，稍后重试: {}", e.getMessage());
+        }
+    }
+
+    private int batchSize() {
+        return Math.max(1, props.getLtm().getLifecycle().getAccessFlushBatchSize());
+    }
+}
@@ -0,0 +1,359 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm;
+
+import cn.cathead.ai.domain.client.event.MemoryForgottenEvent;
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.valobj.ImportanceScore;
+import cn.cathead.ai.domain.client.repository.ILongTermMemoryRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 长期记忆生命周期引擎：后台按 id 分页扫描全部片段并打分
+ * 价值分由召回频次、最近访问的近因与重要性（人工标注，未标注按 0.5）加权得到；
+ * 闲置超过 decayAfterDays 的片段按每日系数衰减重要性（按距上次运行的时长折算），
+ * 创建超过 minAgeDays 且价值分低于 forgetThreshold 的删除，介于 forgetThreshold 与 mergeThreshold 之间的
+ * 按会话（knowledgeId/agentId/sessionId）合并为摘要；删除与被合并的片段都发布 MemoryForgottenEvent。
+ * 没有会话的片段彼此无关、已是合并结果的片段不再参与合并；待合并片段的暂存量受 mergeBufferMaxChunks 限制。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LongTermLifecycleEngine {
+
+    private static final double DEFAULT_IMPORTANCE = 0.5;
+    private static final String MERGED_TITLE = "合并记忆";
+    private static final String MERGED_TAG = "merged";
+
+    private final ILongTermMemoryRepository longTermRepo;
+    private final LongTermAccessRecorder accessRecorder;
+    private final MemoryProperties props;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile Instant lastRunAt;
+    private final AtomicLong lastRunMs = new AtomicLong();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder decayed = new LongAdder();
+    private final LongAdder forgotten = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder mergedInto = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        MemoryProperties.Lifecycle cfg = props.getLtm().getLifecycle();
+        if (!cfg.isEnabled() || !longTermRepo.supportsLifecycle()) {
+            log.info("长期记忆生命周期管理未启用");
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ltm-lifecycle-");
+        threadFactory.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long period = Math.max(1, cfg.getIntervalMinutes());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                log.warn("长期记忆生命周期任务失败: {}", e.getMessage());
+            }
+        }, period, period, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行一轮：回写访问统计 -> 分页扫描打分 -> 衰减、删除、合并
+     */
+    public synchronized Map<String, Object> runOnce() {
+        MemoryProperties.Lifecycle cfg = props.getLtm().getLifecycle();
+        long start = System.currentTimeMillis();
+        Instant now = Instant.now();
+        // 衰减按距上次运行的实际时长折算，调度间隔变化或停机后恢复都不会多衰减或漏衰减
+        Duration elapsed = lastRunAt == null ? Duration.ofMinutes(Math.max(1, cfg.getIntervalMinutes())) : Duration.between(lastRunAt, now);
+        double decayFactor = Math.pow(cfg.getDailyDecay(), elapsed.toMillis() / (double) Duration.ofDays(1).toMillis());
+        Instant idleBefore = now.minus(Duration.ofDays(cfg.getDecayAfterDays()));
+        Instant matureBefore = now.minus(Duration.ofDays(cfg.getMinAgeDays()));
+
+        accessRecorder.flush();
+
+        int scannedRows = 0;
+        int decayedRows = 0;
+        int forgottenRows = 0;
+        int[] mergeResult = new int[2];
+        Map<String, List<MemoryChunk>> mergeGroups = new LinkedHashMap<>();
+        Map<String, Double> mergeScores = new HashMap<>();
+        int buffered = 0;
+        String afterId = null;
+        int pageSize = Math.max(1, cfg.getScanBatchSize());
+        while (true) {
+            List<MemoryChunk> page = longTermRepo.scanChunks(afterId, pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            Map<String, Double> decay = new HashMap<>();
+            List<String> forget = new ArrayList<>();
+            List<Double> forgetScores = new ArrayList<>();
+            for (MemoryChunk chunk : page) {
+                double importance = importanceOf(chunk);
+                Instant touched = touchedAt(chunk);
+                if (touched != null && touched.isBefore(idleBefore) && decayFactor < 1.0) {
+                    importance = importance * decayFactor;
+                    decay.put(chunk.getId(), importance);
+                }
+                double score = score(chunk.getAccessCount(), touched, importance, now);
+                boolean mature = chunk.getCreatedAt() == null || chunk.getCreatedAt().isBefore(matureBefore);
+                if (!mature) {
+                    continue;
+                }
+                if (score < cfg.getForgetThreshold()) {
+                    forget.add(chunk.getId());
+                    forgetScores.add(score);
+                    decay.remove(chunk.getId());
+                } else if (score < cfg.getMergeThreshold() && mergeable(chunk)) {
+                    mergeGroups.computeIfAbsent(groupKey(chunk), k -> new ArrayList<>()).add(withImportance(chunk, importance));
+                    mergeScores.put(chunk.getId(), score);
+                    buffered++;
+                }
+            }
+            if (!decay.isEmpty()) {
+                longTermRepo.updateImportance(decay);
+                decayedRows += decay.size();
+            }
+            if (!forget.isEmpty()) {
+                longTermRepo.deleteByIds(forget);
+                for (int i = 0; i < forget.size(); i++) {
+                    eventPublisher.publishEvent(new MemoryForgottenEvent(forget.get(i), forgetScores.get(i)));
+                }
+                forgottenRows += forget.size();
+            }
+            if (buffered >= Math.max(1, cfg.getMergeBufferMaxChunks())) {
+                // 暂存已满：合并已达条数的分组，不足的丢弃，留到下一轮再评估
+                flushMergeGroups(mergeGroups, mergeScores, cfg, mergeResult);
+                mergeGroups.clear();
+                mergeScores.clear();
+                buffered = 0;
+            }
+            scannedRows += page.size();
+            afterId = page.get(page.size() - 1).getId();
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        flushMergeGroups(mergeGroups, mergeScores, cfg, mergeResult);
+        int mergedRows = mergeResult[0];
+        int mergedChunks = mergeResult[1];
+
+        lastRunAt = now;
+        long costMs = System.currentTimeMillis() - start;
+        lastRunMs.set(costMs);
+        runs.increment();
+        scanned.add(scannedRows);
+        decayed.add(decayedRows);
+        forgotten.add(forgottenRows);
+        merged.add(mergedRows);
+        mergedInto.add(mergedChunks);
+        log.info("长期记忆生命周期完成，扫描: {}, 衰减: {}, 删除: {}, 合并: {} -> {}, 耗时: {}ms",
+                scannedRows, decayedRows, forgottenRows, mergedRows, mergedChunks, costMs);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scanned", scannedRows);
+        result.put("decayed", decayedRows);
+        result.put("forgotten", forgottenRows);
+        result.put("merged", mergedRows);
+        result.put("mergedInto", mergedChunks);
+        result.put("costMs", costMs);
+        return result;
+    }
+
+    /**
+     * 片段价值分（0~1）
+     */
+    public double score(long accessCount, Instant lastAccessAt, double importance, Instant now) {
+        MemoryProperties.Lifecycle cfg = props.getLtm().getLifecycle();
+        double frequency = 1.0 - Math.exp(-Math.max(0, accessCount) / Math.max(1e-9, cfg.getFrequencySaturation()));
+        double recency = 0.0;
+        if (lastAccessAt != null) {
+            double ageDays = Math.max(0, Duration.between(lastAccessAt, now).toMillis() / (double) Duration.ofDays(1).toMillis());
+            recency = Math.pow(0.5, ageDays / Math.max(1, cfg.getRecencyHalfLifeDays()));
+        }
+        double total = cfg.getFrequencyWeight() + cfg.getRecencyWeight() + cfg.getImportanceWeight();
+        if (total <= 0) {
+            return importance;
+        }
+        return (cfg.getFrequencyWeight() * frequency + cfg.getRecencyWeight() * recency + cfg.getImportanceWeight() * importance) / total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", scheduler != null);
+        stats.put("runs", runs.sum());
+        stats.put("lastRunAt", lastRunAt == null ? null : lastRunAt.toString());
+        stats.put("lastRunMs", lastRunMs.get());
+        stats.put("scanned", scanned.sum());
+        stats.put("decayed", decayed.sum());
+        stats.put("forgotten", forgotten.sum());
+        stats.put("merged", merged.sum());
+        stats.put("mergedInto", mergedInto.sum());
+        stats.put("access", accessRecorder.getStats());
+        return stats;
+    }
+
+    /**
+     * 合并达到条数的分组；result[0] 累加被合并的原片段数，result[1] 累加生成的合并片段数
+     */
+    private void flushMergeGroups(Map<String, List<MemoryChunk>> mergeGroups, Map<String, Double> mergeScores,
+                                  MemoryProperties.Lifecycle cfg, int[] result) {
+        for (List<MemoryChunk> group : mergeGroups.values()) {
+            if (group.size() < Math.max(2, cfg.getMergeMinChunks())) {
+                continue;
+            }
+            for (List<MemoryChunk> part : split(group, cfg.getMergeMaxChars())) {
+                MemoryChunk target = merge(part);
+                // 先写入合并结果再删除原片段，中途失败最多留下重复而不会丢失
+                longTermRepo.saveAllAndEmbed(List.of(target), props.getLtm().getDefaultEmbeddingModelId());
+                List<String> ids = part.stream().map(MemoryChunk::getId).toList();
+                longTermRepo.deleteByIds(ids);
+                for (String id : ids) {
+                    eventPublisher.publishEvent(new MemoryForgottenEvent(id, mergeScores.get(id),
+                            MemoryForgottenEvent.REASON_MERGED, target.getId()));
+                }
+                result[0] += ids.size();
+                result[1]++;
+            }
+        }
+    }
+
+    private static boolean mergeable(MemoryChunk chunk) {
+        return chunk.getSummary() != null
+                && chunk.getSessionId() != null
+                && (chunk.getTags() == null || !chunk.getTags().contains(MERGED_TAG));
+    }
+
+    private static double importanceOf(MemoryChunk chunk) {
+        return chunk.getImportanceScore() == null ? DEFAULT_IMPORTANCE : chunk.getImportanceScore().getScore();
+    }
+
+    private static Instant touchedAt(MemoryChunk chunk) {
+        return chunk.getLastAccessAt() != null ? chunk.getLastAccessAt() : chunk.getCreatedAt();
+    }
+
+    private static String groupKey(MemoryChunk chunk) {
+        return chunk.getKnowledgeId() + "|" + chunk.getAgentId() + "|" + chunk.getSessionId();
+    }
+
+    private static MemoryChunk withImportance(MemoryChunk chunk, double importance) {
+        return MemoryChunk.builder()
+                .id(chunk.getId())
+                .title(chunk.getTitle())
+                .summary(chunk.getSummary())
+                .tags(chunk.getTags())
+                .importanceScore(ImportanceScore.of(importance, chunk.getImportanceScore() == null ? "default" : chunk.getImportanceScore().getReason()))
+                .createdAt(chunk.getCreatedAt())
+                .lastAccessAt(chunk.getLastAccessAt())
+                .accessCount(chunk.getAccessCount())
+                .sessionId(chunk.getSessionId())
+                .knowledgeId(chunk.getKnowledgeId())
+                .agentId(chunk.getAgentId())
+                .build();
+    }
+
+    /**
+     * 按创建时间排序后切分：每份拼接后不超过 maxChars，保证原片段内容完整进入合并结果；
+     * 单独就超长的片段与凑不满两条的一份保持原样，不参与合并
+     */
+    private static List<List<MemoryChunk>> split(List<MemoryChunk> group, int maxChars) {
+        List<MemoryChunk> ordered = new ArrayList<>(group);
+        ordered.sort(Comparator.comparing(MemoryChunk::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+        List<List<MemoryChunk>> parts = new ArrayList<>();
+        List<MemoryChunk> current = new ArrayList<>();
+        int length = 0;
+        for (MemoryChunk c : ordered) {
+            int entry = entry(c).length();
+            if (entry > maxChars) {
+                continue;
+            }
+            int needed = current.isEmpty() ? entry : length + 1 + entry;
+            if (needed > maxChars) {
+                parts.add(current);
+                current = new ArrayList<>();
+                needed = entry;
+            }
+            current.add(c);
+            length = needed;
+        }
+        parts.add(current);
+        parts.removeIf(part -> part.size() < 2);
+        return parts;
+    }
+
+    private static String entry(MemoryChunk c) {
+        return c.getTitle() != null && !c.getTitle().isBlank() ? c.getTitle() + ": " + c.getSummary() : c.getSummary();
+    }
+
+    /**
+     * 同会话的低价值片段合并为一条：摘要按原顺序拼接，标签取并集，
+     * 重要性取最大值，访问次数求和，创建时间取最早、最近访问取最晚
+     */
+    private static MemoryChunk merge(List<MemoryChunk> ordered) {
+        StringBuilder summary = new StringBuilder();
+        Set<String> tags = new LinkedHashSet<>();
+        double importance = 0;
+        long accessCount = 0;
+        Instant createdAt = null;
+        Instant lastAccessAt = null;
+        for (MemoryChunk c : ordered) {
+            if (summary.length() > 0) summary.append('\n');
+            summary.append(entry(c));
+            if (c.getTags() != null) tags.addAll(c.getTags());
+            importance = Math.max(importance, importanceOf(c));
+            accessCount += c.getAccessCount();
+            if (c.getCreatedAt() != null && (createdAt == null || c.getCreatedAt().isBefore(createdAt))) createdAt = c.getCreatedAt();
+            if (c.getLastAccessAt() != null && (lastAccessAt == null || c.getLastAccessAt().isAfter(lastAccessAt))) lastAccessAt = c.getLastAccessAt();
+        }
+        tags.add(MERGED_TAG);
+        MemoryChunk first = ordered.get(0);
+        return MemoryChunk.builder()
+                .id(UUID.randomUUID().toString())
+                .title(MERGED_TITLE)
+                .summary(summary.toString())
+                .tags(new ArrayList<>(tags))
+                .importanceScore(ImportanceScore.of(importance, "merged"))
+                .createdAt(createdAt == null ? Instant.now() : createdAt)
+                .lastAccessAt(lastAccessAt)
+                .accessCount(accessCount)
+                .sessionId(first.getSessionId())
+                .knowledgeId(first.getKnowledgeId())
+                .agentId(first.getAgentId())
+                .build();
+    }
+}
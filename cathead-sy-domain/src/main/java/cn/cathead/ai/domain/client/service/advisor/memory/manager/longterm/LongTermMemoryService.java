@@ -2,9 +2,14 @@
 
 import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
 import cn.cathead.ai.domain.client.repository.ILongTermMemoryRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.LatencyStats;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
@@ -13,8 +18,21 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -23,6 +41,36 @@ public class LongTermMemoryService implements ILongTermMemoryService {
 
     private final ILongTermMemoryRepository longTermRepo;
     private final MemoryProperties props;
+    private final LongTermAccessRecorder accessRecorder;
+
+    /** 混合检索两路并行执行的线程池，队列有界，排满时拒绝并按空结果融合 */
+    private ThreadPoolExecutor recallExecutor;
+
+    private final LatencyStats vectorStats = new LatencyStats();
+    private final LatencyStats lexicalStats = new LatencyStats();
+    private final LongAdder hybridSearches = new LongAdder();
+    /** 融合结果中来自词法一路、未被向量一路召回的条数 */
+    private final LongAdder lexicalOnlyHits = new LongAdder();
+    /** 线程池排满被拒绝的检索路数 */
+    private final LongAdder rejectedLegs = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ltm-recall-");
+        threadFactory.setDaemon(true);
+        MemoryProperties.Hybrid hybrid = props.getLtm().getHybrid();
+        int threads = Math.max(2, hybrid.getWorkerThreads());
+        recallExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, hybrid.getMaxPending())), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (recallExecutor != null) {
+            recallExecutor.shutdownNow();
+        }
+    }
 
     @Override
     public void saveText(String sessionId, String knowledgeId, String agentId, String title, String text,
@@ -46,6 +94,24 @@ public class LongTermMemoryService implements ILongTermMemoryService {
         persistDocumentsAsChunks(splits, sessionId, knowledgeId, agentId, title, tags, importance, embeddingModelId);
     }
 
+    @Override
+    public void upsertText(String id, String sessionId, String knowledgeId, String agentId, String title, String text,
+                           List<String> tags, Double importance, String embeddingModelId) {
+        MemoryChunk chunk = MemoryChunk.builder()
+                .id(id)
+                .sessionId(sessionId)
+                .knowledgeId(knowledgeId)
+                .agentId(agentId)
+                .title(title)
+                .summary(buildFullText(title, text))
+                .tags(tags)
+                .importanceScore(importance == null ? null : cn.cathead.ai.domain.client.model.valobj.ImportanceScore.of(importance, "manual"))
+                .createdAt(Instant.now())
+                .lastAccessAt(Instant.now())
+                .build();
+        longTermRepo.saveAllAndEmbed(List.of(chunk), embeddingModelId);
+    }
+
     @Override
     public void saveDocuments(String sessionId, String knowledgeId, String agentId, String title,
                               List<Document> documents, List<String> tags, Double importance,
@@ -55,8 +121,125 @@ public class LongTermMemoryService implements ILongTermMemoryService {
         persistDocumentsAsChunks(splits, sessionId, knowledgeId, agentId, title, tags, importance, embeddingModelId);
     }
 
+    /**
+     * 混合检索：向量与词法两路并行召回，按 RRF（Reciprocal Rank Fusion）融合排名；
+     * 标识符、表名、错误码等向量相似度难以区分的查询由词法一路补足。未启用混合检索时仅走向量检索。
+     * 召回结果计入访问统计（批量回写），供生命周期引擎打分。
+     */
+    @Override
     public List<MemoryChunk> searchByText(String knowledgeId, String agentId, String query, String embeddingModelId, int topK) {
-        return longTermRepo.semanticSearchByText(knowledgeId, agentId, query, embeddingModelId, topK);
+        List<MemoryChunk> recalled = recall(knowledgeId, agentId, query, embeddingModelId, topK);
+        accessRecorder.record(recalled);
+        return recalled;
+    }
+
+    private List<MemoryChunk> recall(String knowledgeId, String agentId, String query, String embeddingModelId, int topK) {
+        MemoryProperties.Hybrid hybrid = props.getLtm().getHybrid();
+        if (!hybrid.isEnabled() || recallExecutor == null) {
+            return longTermRepo.semanticSearchByText(knowledgeId, agentId, query, embeddingModelId, topK);
+        }
+        int candidates = topK * Math.max(1, hybrid.getCandidateMultiplier());
+        Future<List<MemoryChunk>> vectorLeg = submitLeg(vectorStats, "vector",
+                () -> longTermRepo.semanticSearchByText(knowledgeId, agentId, query, embeddingModelId, candidates));
+        Future<List<MemoryChunk>> lexicalLeg = submitLeg(lexicalStats, "lexical",
+                () -> longTermRepo.lexicalSearch(knowledgeId, agentId, query, candidates));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1, hybrid.getLegTimeoutMs()));
+        List<MemoryChunk> vectorHits = await(vectorLeg, deadline, vectorStats, "vector");
+        List<MemoryChunk> lexicalHits = await(lexicalLeg, deadline, lexicalStats, "lexical");
+        hybridSearches.increment();
+        return fuse(vectorHits, lexicalHits, hybrid.getRrfK(), topK);
+    }
+
+    /**
+     * 在线程池中执行一路检索；MemoryContextHolder 基于 ThreadLocal，需在提交前捕获并在工作线程中还原。
+     * 队列已满时不排队等待，该路按空结果参与融合
+     */
+    private Future<List<MemoryChunk>> submitLeg(LatencyStats stats, String name, Supplier<List<MemoryChunk>> leg) {
+        String sessionId = MemoryContextHolder.getSessionId();
+        String agentId = MemoryContextHolder.getAgentId();
+        String knowledgeId = MemoryContextHolder.getKnowledgeId();
+        try {
+            return recallExecutor.submit(() -> {
+                MemoryContextHolder.set(sessionId, agentId, knowledgeId);
+                long start = System.nanoTime();
+                try {
+                    return leg.get();
+                } finally {
+                    stats.record(System.nanoTime() - start);
+                    MemoryContextHolder.clear();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedLegs.increment();
+            stats.failure();
+            log.warn("长期记忆 {} 检索线程池已满，按空结果融合", name);
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+
+    /**
+     * 超时的一路被取消并中断工作线程，不再占用线程池
+     */
+    private static List<MemoryChunk> await(Future<List<MemoryChunk>> future, long deadline, LatencyStats stats, String leg) {
+        try {
+            List<MemoryChunk> hits = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return hits == null ? List.of() : hits;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            stats.timeout();
+            log.warn("长期记忆 {} 检索超时，按空结果融合", leg);
+        } catch (ExecutionException e) {
+            stats.failure();
+            log.warn("长期记忆 {} 检索失败，按空结果融合: {}", leg, e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return List.of();
+    }
+
+    private List<MemoryChunk> fuse(List<MemoryChunk> vectorHits, List<MemoryChunk> lexicalHits, int rrfK, int topK) {
+        Map<String, MemoryChunk> chunks = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        int k = Math.max(1, rrfK);
+        for (int rank = 0; rank < vectorHits.size(); rank++) {
+            MemoryChunk c = vectorHits.get(rank);
+            chunks.putIfAbsent(c.getId(), c);
+            scores.merge(c.getId(), 1.0 / (k + rank + 1), Double::sum);
+        }
+        for (int rank = 0; rank < lexicalHits.size(); rank++) {
+            MemoryChunk c = lexicalHits.get(rank);
+            chunks.putIfAbsent(c.getId(), c);
+            scores.merge(c.getId(), 1.0 / (k + rank + 1), Double::sum);
+        }
+        List<String> ids = new ArrayList<>(chunks.keySet());
+        // 稳定排序：同分时保持向量一路在前
+        ids.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        Set<String> vectorIds = new HashSet<>();
+        for (MemoryChunk c : vectorHits) {
+            vectorIds.add(c.getId());
+        }
+        List<MemoryChunk> fused = new ArrayList<>(Math.min(topK, ids.size()));
+        for (int i = 0; i < ids.size() && i < topK; i++) {
+            fused.add(chunks.get(ids.get(i)));
+            if (!vectorIds.contains(ids.get(i))) {
+                lexicalOnlyHits.increment();
+            }
+        }
+        return fused;
+    }
+
+    @Override
+    public Map<String, Object> getRetrievalStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hybridEnabled", props.getLtm().getHybrid().isEnabled());
+        stats.put("hybridSearches", hybridSearches.sum());
+        stats.put("lexicalOnlyHits", lexicalOnlyHits.sum());
+        stats.put("rejectedLegs", rejectedLegs.sum());
+        stats.put("pendingLegs", recallExecutor == null ? 0 : recallExecutor.getQueue().size());
+        stats.put("vector", vectorStats.snapshot());
+        stats.put("lexical", lexicalStats.snapshot());
+        return stats;
     }
 
     private static String buildFullText(String title, String summary) {
@@ -0,0 +1,348 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.PackedContext;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.ITokenCounter;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer.TokenCounterProvider;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上下文装箱：在模型窗口内为短期消息与长期片段分配 token 预算
+ * 预算 = 上下文窗口 - 输出预留 - 原始 prompt（系统指令与本轮用户输入始终保留）。
+ * 候选统一打分后按分值从高到低一次遍历：放得下则放入，放不下且剩余预算足够时截断放入，否则丢弃；
+ * 最终按原顺序（短期按时间、长期按召回排名）输出。
+ * 短期消息：以轮次为单位（用户消息及其后的助手/工具消息）整体打分与取舍，避免留下孤立的问答或工具调用；
+ * 滚动摘要（SystemMessage）记 1 分，其余轮次按位置线性近因，最新一轮 1 分。截断只作用于轮次中最后一条纯文本消息，
+ * 保留原消息类型与元数据，带工具调用的助手消息与工具结果不截断；
+ * 长期片段：召回排名（相似度）、重要性（未标注按 0.5）、近因（按半衰期衰减）加权。
+ * token 计数：短期消息沿用写入时缓存的 MemoryMessage.tokenCost，只对没有缓存值的消息分词；
+ * prompt 中的系统指令每轮相同，按 (分词器, 文本) 缓存计数。
+ */
+@Component
+@RequiredArgsConstructor
+public class ContextBudgetPacker {
+
+    public static final String LTM_HEADER = "[Retrieved Long-Term Memory]\n";
+    private static final String TRUNCATED_MARK = "…";
+
+    private final ShortTermPolicyProvider policyProvider;
+    private final TokenCounterProvider tokenCounterProvider;
+    private final MemoryProperties props;
+
+    /** (分词器, 系统指令文本) -> token 数；分词器随模型版本替换，旧条目自然过期 */
+    private final Cache<PromptKey, Integer> promptTokens = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private record PromptKey(ITokenCounter counter, String text) {
+    }
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder packedTokens = new LongAdder();
+    private final LongAdder droppedTokens = new LongAdder();
+    private final LongAdder droppedItems = new LongAdder();
+    private final LongAdder truncatedItems = new LongAdder();
+
+    /**
+     * 装箱候选：一个短期轮次 [index, end) 或一条长期片段
+     */
+    private static class Candidate {
+        final int index;
+        final int end;
+        final boolean shortTerm;
+        /** 可截断的消息下标（短期），无可截断消息时为 -1 */
+        final int target;
+        /** 可截断部分的文本，无可截断部分时为 null */
+        final String text;
+        final int tokens;
+        /** 不可截断部分的 token 数 */
+        final int fixedTokens;
+        final double score;
+        boolean kept;
+        String packedText;
+
+        Candidate(int index, int end, boolean shortTerm, int target, String text, int tokens, int fixedTokens, double score) {
+            this.index = index;
+            this.end = end;
+            this.shortTerm = shortTerm;
+            this.target = target;
+            this.text = text;
+            this.tokens = tokens;
+            this.fixedTokens = fixedTokens;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 短期消息没有缓存的 token 数时使用，每条消息按当前模型分词
+     */
+    public PackedContext pack(String modelId, String agentId, List<Message> prompt,
+                              List<Message> shortTerm, List<MemoryChunk> chunks) {
+        List<MemoryMessage> entries = new ArrayList<>(shortTerm.size());
+        for (Message m : shortTerm) {
+            entries.add(MemoryMessage.builder().payload(m).build());
+        }
+        return packEntries(modelId, agentId, prompt, entries, chunks);
+    }
+
+    /**
+     * @param prompt    原始 prompt 消息（必保留，只计入开销）
+     * @param entries   短期记忆条目（时间顺序），tokenCost 大于 0 时直接使用
+     * @param chunks    长期片段（召回排名顺序）
+     */
+    public PackedContext packEntries(String modelId, String agentId, List<Message> prompt,
+                                     List<MemoryMessage> entries, List<MemoryChunk> chunks) {
+        MemoryProperties.Pack cfg = props.getAdvisor().getPack();
+        ITokenCounter counter = tokenCounterProvider.forModel(modelId);
+        ShortTermPolicy policy = policyProvider.getPolicy(modelId, agentId);
+        int window = policy == null ? props.getStm().getDefaultWindowTokens() : policy.getContextWindowTokens();
+        int overhead = Math.max(0, cfg.getMessageOverheadTokens());
+
+        int promptTokens = 0;
+        for (Message m : prompt) {
+            promptTokens += promptCost(counter, m) + overhead;
+        }
+        List<Message> shortTerm = new ArrayList<>(entries.size());
+        for (MemoryMessage e : entries) {
+            shortTerm.add(e.getPayload());
+        }
+        int budget = Math.max(0, window - Math.max(0, cfg.getReservedOutputTokens()) - promptTokens);
+
+        List<Candidate> candidates = new ArrayList<>(shortTerm.size() + chunks.size());
+        List<Integer> turnStarts = turnStarts(shortTerm);
+        for (int u = 0; u < turnStarts.size(); u++) {
+            int from = turnStarts.get(u);
+            int end = u + 1 < turnStarts.size() ? turnStarts.get(u + 1) : shortTerm.size();
+            int target = -1;
+            int tokens = 0;
+            int targetTokens = 0;
+            for (int i = from; i < end; i++) {
+                Message m = shortTerm.get(i);
+                int cost = cost(counter, entries.get(i)) + overhead;
+                tokens += cost;
+                if (truncatable(m)) {
+                    target = i;
+                    targetTokens = cost;
+                } else if (target >= 0) {
+                    // 只截断轮次末尾的纯文本消息，其后还有工具往来时整轮只能整体取舍
+                    target = -1;
+                    targetTokens = 0;
+                }
+            }
+            String text = target < 0 ? null : nullToEmpty(MessageUtils.extractText(shortTerm.get(target)));
+            double score = shortTerm.get(from) instanceof SystemMessage ? 1.0 : (u + 1) / (double) turnStarts.size();
+            candidates.add(new Candidate(from, end, true, target, text, tokens, tokens - targetTokens, score));
+        }
+        Instant now = Instant.now();
+        for (int i = 0; i < chunks.size(); i++) {
+            String line = renderChunk(chunks.get(i));
+            int tokens = counter.count(line);
+            candidates.add(new Candidate(i, i + 1, false, -1, line, tokens, 0, scoreChunk(chunks.get(i), i, chunks.size(), now, cfg)));
+        }
+        // 长期片段合并为一条 SystemMessage，其标题与消息开销在有片段时预先扣除
+        int remaining = chunks.isEmpty() ? budget : budget - counter.count(LTM_HEADER) - overhead;
+
+        // 稳定排序：同分时短期在前、各自保持原顺序
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        int packed = 0;
+        int dropped = 0;
+        int droppedCount = 0;
+        int truncated = 0;
+        for (Candidate c : candidates) {
+            if (c.tokens <= remaining) {
+                c.kept = true;
+                c.packedText = c.text;
+                remaining -= c.tokens;
+                packed += c.tokens;
+                continue;
+            }
+            int room = remaining - c.fixedTokens - (c.shortTerm ? overhead : 0);
+            if (c.text != null && room >= Math.max(1, cfg.getMinTruncateTokens())) {
+                String cut = truncate(counter, c.text, room);
+                int used = c.fixedTokens + counter.count(cut) + (c.shortTerm ? overhead : 0);
+                c.kept = true;
+                c.packedText = cut;
+                remaining -= used;
+                packed += used;
+                dropped += c.tokens - used;
+                truncated++;
+                continue;
+            }
+            dropped += c.tokens;
+            droppedCount += c.end - c.index;
+        }
+
+        candidates.sort(Comparator.comparingInt((Candidate c) -> c.index));
+        List<Message> keptMessages = new ArrayList<>(shortTerm.size());
+        List<MemoryChunk> keptChunks = new ArrayList<>(chunks.size());
+        for (Candidate c : candidates) {
+            if (!c.kept) continue;
+            if (!c.shortTerm) {
+                MemoryChunk chunk = chunks.get(c.index);
+                keptChunks.add(c.packedText.equals(c.text) ? chunk : withSummary(chunk, c.packedText));
+                continue;
+            }
+            for (int i = c.index; i < c.end; i++) {
+                Message m = shortTerm.get(i);
+                keptMessages.add(i == c.target && !c.packedText.equals(c.text) ? rewrite(m, c.packedText) : m);
+            }
+        }
+
+        requests.increment();
+        packedTokens.add(packed);
+        droppedTokens.add(dropped);
+        droppedItems.add(droppedCount);
+        truncatedItems.add(truncated);
+        return PackedContext.builder()
+                .shortTerm(keptMessages)
+                .chunks(keptChunks)
+                .windowTokens(window)
+                .budgetTokens(budget)
+                .packedTokens(packed)
+                .droppedTokens(dropped)
+                .droppedItems(droppedCount)
+                .truncatedItems(truncated)
+                .build();
+    }
+
+    /**
+     * 长期片段在 prompt 中的渲染形式（与 MemoryAdvisor 注入格式一致）
+     */
+    public static String renderChunk(MemoryChunk c) {
+        return "- " + (c.getTitle() == null ? "chunk" : c.getTitle()) + ": " + c.getSummary() + "\n";
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", props.getAdvisor().getPack().isEnabled());
+        stats.put("requests", requests.sum());
+        stats.put("packedTokens", packedTokens.sum());
+        stats.put("droppedTokens", droppedTokens.sum());
+        stats.put("droppedItems", droppedItems.sum());
+        stats.put("truncatedItems", truncatedItems.sum());
+        return stats;
+    }
+
+    private static int cost(ITokenCounter counter, MemoryMessage entry) {
+        if (entry.getTokenCost() > 0) {
+            return (int) Math.ceil(entry.getTokenCost());
+        }
+        return counter.count(nullToEmpty(MessageUtils.extractText(entry.getPayload())));
+    }
+
+    private int promptCost(ITokenCounter counter, Message m) {
+        String text = nullToEmpty(MessageUtils.extractText(m));
+        if (!(m instanceof SystemMessage)) {
+            return counter.count(text);
+        }
+        return promptTokens.get(new PromptKey(counter, text), key -> counter.count(key.text()));
+    }
+
+    private static double scoreChunk(MemoryChunk chunk, int rank, int total, Instant now, MemoryProperties.Pack cfg) {
+        double similarity = 1.0 - rank / (double) Math.max(1, total);
+        double importance = chunk.getImportanceScore() == null ? 0.5 : chunk.getImportanceScore().getScore();
+        Instant touched = chunk.getLastAccessAt() != null ? chunk.getLastAccessAt() : chunk.getCreatedAt();
+        double recency = 0.5;
+        if (touched != null && cfg.getRecencyHalfLifeHours() > 0) {
+            double ageHours = Math.max(0, Duration.between(touched, now).toMinutes() / 60.0);
+            recency = Math.pow(0.5, ageHours / cfg.getRecencyHalfLifeHours());
+        }
+        return cfg.getSimilarityWeight() * similarity + cfg.getImportanceWeight() * importance + cfg.getRecencyWeight() * recency;
+    }
+
+    /**
+     * 按 token 数截断文本（保留开头）；先按比例估算长度，再逐步收缩直到不超过上限
+     */
+    private static String truncate(ITokenCounter counter, String text, int maxTokens) {
+        int total = Math.max(1, counter.count(text));
+        int length = (int) ((long) text.length() * maxTokens / total);
+        while (length > 0) {
+            String cut = text.substring(0, length) + TRUNCATED_MARK;
+            if (counter.count(cut) <= maxTokens) {
+                return cut;
+            }
+            length = length * 9 / 10;
+        }
+        return "";
+    }
+
+    /**
+     * 轮次起点：每条用户消息开启新轮次，滚动摘要等系统消息单独成轮，开头无用户消息的部分自成一轮
+     */
+    private static List<Integer> turnStarts(List<Message> messages) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message m = messages.get(i);
+            if (i == 0 || m instanceof UserMessage || m instanceof SystemMessage
+                    || messages.get(i - 1) instanceof SystemMessage) {
+                starts.add(i);
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * 只有纯文本消息可以截断；工具调用与工具结果截断后会破坏调用链，只能整体取舍
+     */
+    private static boolean truncatable(Message m) {
+        if (m instanceof AssistantMessage assistant) {
+            return !assistant.hasToolCalls();
+        }
+        return m instanceof UserMessage || m instanceof SystemMessage;
+    }
+
+    /**
+     * 替换文本，保留原消息类型、元数据与媒体
+     */
+    private static Message rewrite(Message original, String text) {
+        if (original instanceof SystemMessage system) {
+            return system.mutate().text(text).build();
+        }
+        if (original instanceof UserMessage user) {
+            return user.mutate().text(text).build();
+        }
+        AssistantMessage assistant = (AssistantMessage) original;
+        return new AssistantMessage(text, assistant.getMetadata(), assistant.getToolCalls(), assistant.getMedia());
+    }
+
+    private static MemoryChunk withSummary(MemoryChunk chunk, String line) {
+        String prefix = "- " + (chunk.getTitle() == null ? "chunk" : chunk.getTitle()) + ": ";
+        String summary = line.startsWith(prefix) ? line.substring(prefix.length()) : line;
+        return MemoryChunk.builder()
+                .id(chunk.getId())
+                .title(chunk.getTitle())
+                .summary(summary.endsWith("\n") ? summary.substring(0, summary.length() - 1) : summary)
+                .tags(chunk.getTags())
+                .importanceScore(chunk.getImportanceScore())
+                .createdAt(chunk.getCreatedAt())
+                .lastAccessAt(chunk.getLastAccessAt())
+                .sessionId(chunk.getSessionId())
+                .knowledgeId(chunk.getKnowledgeId())
+                .agentId(chunk.getAgentId())
+                .build();
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
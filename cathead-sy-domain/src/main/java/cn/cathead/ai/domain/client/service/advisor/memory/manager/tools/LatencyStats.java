@@ -0,0 +1,46 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个检索来源的调用次数、失败/超时次数与耗时统计
+ */
+public class LatencyStats {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long lastNanos;
+
+    public void record(long nanos) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        lastNanos = nanos;
+    }
+
+    public void failure() {
+        failures.increment();
+    }
+
+    public void timeout() {
+        timeouts.increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = calls.sum();
+        stats.put("calls", count);
+        stats.put("failures", failures.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("avgMs", count == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / count);
+        stats.put("maxMs", maxNanos.get() / 1_000_000.0);
+        stats.put("lastMs", lastNanos / 1_000_000.0);
+        return stats;
+    }
+}
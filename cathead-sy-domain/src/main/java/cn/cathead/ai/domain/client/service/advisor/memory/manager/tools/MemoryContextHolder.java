@@ -1,13 +1,14 @@
 package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools;
 
 /**
- * 记忆上下文持有者：通过 ThreadLocal 贯穿 sessionId/agentId/knowledgeId
+ * 记忆上下文持有者：通过 ThreadLocal 贯穿 sessionId/agentId/knowledgeId，以及本轮对话使用的 modelId
  */
 public final class MemoryContextHolder {
 
     private static final ThreadLocal<String> SESSION_ID = new ThreadLocal<>();
     private static final ThreadLocal<String> AGENT_ID = new ThreadLocal<>();
     private static final ThreadLocal<String> KNOWLEDGE_ID = new ThreadLocal<>();
+    private static final ThreadLocal<String> MODEL_ID = new ThreadLocal<>();
 
     private MemoryContextHolder() {}
 
@@ -17,14 +18,54 @@ public final class MemoryContextHolder {
         KNOWLEDGE_ID.set(knowledgeId);
     }
 
+    public static void set(String sessionId, String agentId, String knowledgeId, String modelId) {
+        set(sessionId, agentId, knowledgeId);
+        MODEL_ID.set(modelId);
+    }
+
     public static String getSessionId() { return SESSION_ID.get(); }
     public static String getAgentId() { return AGENT_ID.get(); }
     public static String getKnowledgeId() { return KNOWLEDGE_ID.get(); }
+    public static String getModelId() { return MODEL_ID.get(); }
 
     public static void clear() {
         SESSION_ID.remove();
         AGENT_ID.remove();
         KNOWLEDGE_ID.remove();
+        MODEL_ID.remove();
+    }
+
+    /**
+     * 在当前线程临时设置上下文，close 时恢复进入前的值（进入前未设置则清除）。
+     * 嵌套在外层调用方（如 AutoAgentLoopExecutor）设置的整段上下文内使用，不会把外层上下文清掉。
+     */
+    public static Scope open(String sessionId, String agentId, String knowledgeId, String modelId) {
+        Scope scope = new Scope(getSessionId(), getAgentId(), getKnowledgeId(), getModelId());
+        set(sessionId, agentId, knowledgeId, modelId);
+        return scope;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final String sessionId;
+        private final String agentId;
+        private final String knowledgeId;
+        private final String modelId;
+
+        private Scope(String sessionId, String agentId, String knowledgeId, String modelId) {
+            this.sessionId = sessionId;
+            this.agentId = agentId;
+            this.knowledgeId = knowledgeId;
+            this.modelId = modelId;
+        }
+
+        @Override
+        public void close() {
+            if (sessionId == null && agentId == null && knowledgeId == null && modelId == null) {
+                clear();
+            } else {
+                set(sessionId, agentId, knowledgeId, modelId);
+            }
+        }
     }
 }
 
@@ -2,30 +2,16 @@ package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools;
 
 import org.springframework.ai.chat.messages.Message;
 
-import java.lang.reflect.Method;
-
 public final class MessageUtils {
 
     private MessageUtils() {}
 
+    /**
+     * 读取消息文本；Spring AI 1.0 起 Message 统一通过 Content#getText 暴露文本，直接调用即可
+     */
     public static String extractText(Message message) {
         if (message == null) return "";
-        String text = tryInvoke(message, "getContent");
-        if (text != null) return text;
-        text = tryInvoke(message, "getText");
-        if (text != null) return text;
-        return message.toString();
-    }
-
-    private static String tryInvoke(Message message, String methodName) {
-        try {
-            Method m = message.getClass().getMethod(methodName);
-            Object res = m.invoke(message);
-            return res == null ? null : String.valueOf(res);
-        } catch (Exception ignore) {
-            return null;
-        }
+        String text = message.getText();
+        return text == null ? "" : text;
     }
 }
-
-
@@ -17,6 +17,8 @@ public class ShortTermPolicy {
     private final int maxMessages;
     /** 是否启用条数触发 */
     private final boolean enableCountTrigger;
+    /** 策略所属的聊天模型ID（为空表示默认模型），压缩时按该模型的分词器计数 */
+    private final String modelId;
 
     public boolean shouldCompress(double currentTokens, int currentCount) {
         double threshold = contextWindowTokens * compressThresholdRatio;
@@ -25,6 +27,16 @@ public class ShortTermPolicy {
         return byToken || byCount;
     }
 
+    /**
+     * 压缩紧迫度：token 或条数相对触发阈值的比例，取较大者（≥1 表示已达阈值）
+     */
+    public double pressure(double currentTokens, int currentCount) {
+        double threshold = contextWindowTokens * compressThresholdRatio;
+        double byToken = threshold <= 0 ? 0.0 : currentTokens / threshold;
+        double byCount = (!enableCountTrigger || maxMessages <= 0) ? 0.0 : (double) currentCount / maxMessages;
+        return Math.max(byToken, byCount);
+    }
+
     public static ShortTermPolicy of(int windowTokens, double ratio, int maxMessages) {
         return ShortTermPolicy.builder()
                 .contextWindowTokens(windowTokens)
@@ -1,30 +1,72 @@
 package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools;
 
+import cn.cathead.ai.domain.model.event.ModelConfigChangedEvent;
 import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
 import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
 import cn.cathead.ai.domain.model.service.IModelService;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 动态策略提供器：根据模型上下文能力与配置生成压缩触发策略
+ * 上下文窗口按 modelId@version 缓存，模型经 AbstractModelUpdateTemplate 更新后以新版本重新解析，
+ * 每轮对话的记忆记账不访问数据库。
  */
 @Component
-@RequiredArgsConstructor
+@Slf4j
 public class ShortTermPolicyProvider {
 
     private final IModelService modelService;
     private final MemoryProperties props;
 
+    /** 模型ID -> 当前版本；变更事件写入新版本，旧版本的缓存条目随之不再命中 */
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    /** modelId@version -> 上下文窗口 token 数 */
+    private final Cache<String, Integer> windows;
+
+    public ShortTermPolicyProvider(IModelService modelService, MemoryProperties props) {
+        this.modelService = modelService;
+        this.props = props;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(Math.max(1, props.getStm().getPolicyCacheTtlSeconds())))
+                .build();
+    }
+
     /**
      * 根据 modelId/agentId 与模型域配置动态返回策略
+     * @param modelId 本轮对话的聊天模型ID，为空时使用 ai.memory.stm.default-model-id
      */
     public ShortTermPolicy getPolicy(String modelId, String agentId) {
         int windowTokens = resolveContextWindowTokens(modelId);
-        return ShortTermPolicy.of(windowTokens, props.getStm().getCompressThresholdRatio(), props.getStm().getMaxMessages());
+        return ShortTermPolicy.builder()
+                .contextWindowTokens(windowTokens)
+                .compressThresholdRatio(props.getStm().getCompressThresholdRatio())
+                .maxMessages(props.getStm().getMaxMessages())
+                .enableCountTrigger(true)
+                .modelId(modelId)
+                .build();
+    }
+
+    @EventListener
+    public void onModelConfigChanged(ModelConfigChangedEvent event) {
+        if (event.getModelId() == null) return;
+        Long previous = event.getVersion() == null
+                ? versions.remove(event.getModelId())
+                : versions.put(event.getModelId(), event.getVersion());
+        if (previous != null) {
+            windows.invalidate(key(event.getModelId(), previous));
+        }
+        log.debug("模型配置变更，短期记忆策略缓存失效，模型ID: {}, 版本: {}", event.getModelId(), event.getVersion());
     }
 
     private int resolveContextWindowTokens(String modelId) {
@@ -32,8 +74,32 @@ public class ShortTermPolicyProvider {
         if (useModelId == null || useModelId.isBlank()) {
             return props.getStm().getDefaultWindowTokens();
         }
+        Long version = versions.get(useModelId);
+        if (version != null) {
+            Integer cached = windows.getIfPresent(key(useModelId, version));
+            if (cached != null) return cached;
+        }
+        BaseModelEntity base;
+        try {
+            base = modelService.getModelById(useModelId);
+        } catch (Exception e) {
+            // 查询失败不缓存，下次重试
+            return props.getStm().getDefaultWindowTokens();
+        }
+        int windowTokens = parseContextWindowTokens(base);
+        long resolvedVersion = base == null || base.getVersion() == null ? 0L : base.getVersion();
+        // 解析期间可能已收到更新事件，版本只前进不倒退
+        versions.merge(useModelId, resolvedVersion, Math::max);
+        windows.put(key(useModelId, resolvedVersion), windowTokens);
+        return windowTokens;
+    }
+
+    private static String key(String modelId, long version) {
+        return modelId + "@" + version;
+    }
+
+    private int parseContextWindowTokens(BaseModelEntity base) {
         try {
-            BaseModelEntity base = modelService.getModelById(useModelId);
             if (base instanceof ChatModelEntity chat) {
                 Map<String, Object> props = chat.getDynamicProperties();
                 if (props != null) {
@@ -0,0 +1,194 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.model.valobj.ShortTermStats;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 短期记忆的二进制编码（溢出层记录与集群节点间 RPC 共用）
+ * 格式：spilledAt | knowledgeId | agentId | sessionId | count | count * (role | flags | id | createdAt | tokenCost | text)
+ * 整数为 varint，字符串为 varint(长度+1) + UTF-8（0 表示null），tokenCost 为 float。
+ * 消息只保留角色与文本：工具调用等其他类型按助手消息文本落盘。
+ * 集群 stats RPC 的响应只含消息条数与 token 总量，见 encodeStats。
+ */
+public final class ShortTermRecordCodec {
+
+    private static final byte ROLE_USER = 1;
+    private static final byte ROLE_ASSISTANT = 2;
+    private static final byte ROLE_SYSTEM = 3;
+
+    private static final int FLAG_SUMMARY = 1;
+    private static final int FLAG_CREATED_AT = 2;
+
+    private ShortTermRecordCodec() {
+    }
+
+    /**
+     * 记录头：只解析到命名空间，重放建索引时不解码消息
+     */
+    public static final class Header {
+        public final long spilledAt;
+        public final NamespaceKey namespaceKey;
+
+        Header(long spilledAt, NamespaceKey namespaceKey) {
+            this.spilledAt = spilledAt;
+            this.namespaceKey = namespaceKey;
+        }
+    }
+
+    public static byte[] encode(NamespaceKey ns, List<MemoryMessage> messages, long spilledAt) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + messages.size() * 128);
+        writeHeader(out, ns, spilledAt);
+        writeVarLong(out, messages.size());
+        for (MemoryMessage m : messages) {
+            out.write(role(m.getPayload()));
+            int flags = (m.isSummary() ? FLAG_SUMMARY : 0) | (m.getCreatedAt() != null ? FLAG_CREATED_AT : 0);
+            out.write(flags);
+            writeString(out, m.getId());
+            if (m.getCreatedAt() != null) {
+                writeVarLong(out, m.getCreatedAt().toEpochMilli());
+            }
+            int bits = Float.floatToIntBits((float) m.getTokenCost());
+            out.write(bits >>> 24);
+            out.write(bits >>> 16);
+            out.write(bits >>> 8);
+            out.write(bits);
+            writeString(out, MessageUtils.extractText(m.getPayload()));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 只含记录头（溢出层的删除标记、RPC 中只携带命名空间的请求）
+     */
+    public static byte[] encodeKey(NamespaceKey ns, long timestamp) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeHeader(out, ns, timestamp);
+        return out.toByteArray();
+    }
+
+    public static Header decodeHeader(byte[] record) {
+        return readHeader(ByteBuffer.wrap(record));
+    }
+
+    public static List<MemoryMessage> decodeMessages(byte[] record) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        readHeader(in);
+        int count = (int) readVarLong(in);
+        List<MemoryMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte role = in.get();
+            int flags = in.get();
+            String id = readString(in);
+            Instant createdAt = (flags & FLAG_CREATED_AT) != 0 ? Instant.ofEpochMilli(readVarLong(in)) : null;
+            float tokenCost = in.getFloat();
+            String text = readString(in);
+            messages.add(MemoryMessage.builder()
+                    .id(id)
+                    .payload(message(role, text == null ? "" : text))
+                    .createdAt(createdAt)
+                    .tokenCost(tokenCost)
+                    .summary((flags & FLAG_SUMMARY) != 0)
+                    .build());
+        }
+        return messages;
+    }
+
+    /**
+     * 集群 stats 响应：varint(size) | double(estimatedTokens)
+     */
+    public static byte[] encodeStats(ShortTermStats stats) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        writeVarLong(out, stats.getSize());
+        long bits = Double.doubleToLongBits(stats.getEstimatedTokens());
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (bits >>> shift));
+        }
+        return out.toByteArray();
+    }
+
+    public static ShortTermStats decodeStats(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        int size = (int) readVarLong(in);
+        return ShortTermStats.of(size, in.getDouble());
+    }
+
+    private static void writeHeader(ByteArrayOutputStream out, NamespaceKey ns, long spilledAt) {
+        writeVarLong(out, spilledAt);
+        writeString(out, ns.getKnowledgeId());
+        writeString(out, ns.getAgentId());
+        writeString(out, ns.getSessionId());
+    }
+
+    private static Header readHeader(ByteBuffer in) {
+        long spilledAt = readVarLong(in);
+        String knowledgeId = readString(in);
+        String agentId = readString(in);
+        String sessionId = readString(in);
+        return new Header(spilledAt, NamespaceKey.of(knowledgeId, agentId, sessionId));
+    }
+
+    private static byte role(Message message) {
+        if (message == null) return ROLE_ASSISTANT;
+        MessageType type = message.getMessageType();
+        if (type == MessageType.USER) return ROLE_USER;
+        if (type == MessageType.SYSTEM) return ROLE_SYSTEM;
+        return ROLE_ASSISTANT;
+    }
+
+    private static Message message(byte role, String text) {
+        return switch (role) {
+            case ROLE_USER -> new UserMessage(text);
+            case ROLE_SYSTEM -> new SystemMessage(text);
+            default -> new AssistantMessage(text);
+        };
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = (int) readVarLong(in) - 1;
+        if (len < 0) return null;
+        String value = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return value;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalStateException("varint 过长");
+    }
+}
@@ -0,0 +1,228 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 字节级 BPE 计数器（cl100k 风格）
+ * 词表为 tiktoken 格式：每行 "base64(token字节) rank"。
+ * 预切分按 cl100k 的规则手写扫描（缩写 / 字母段 / 1-3位数字 / 标点段 / 空白），
+ * 每段转 UTF-8 后按 rank 最小优先合并，合并结束时的片段数即 token 数。
+ */
+public final class BpeTokenCounter implements ITokenCounter {
+
+    private static final int NO_RANK = Integer.MAX_VALUE;
+
+    private final String name;
+    private final ByteSliceTable vocab;
+    private int[] ranks;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /** 线程本地缓冲区：UTF-8 字节、片段边界与相邻对 rank */
+    private static final class Scratch {
+        byte[] bytes = new byte[1024];
+        int[] bounds = new int[256];
+        int[] pairRanks = new int[256];
+
+        void ensure(int chars) {
+            if (bytes.length < chars * 3) {
+                bytes = new byte[chars * 3 * 2];
+            }
+        }
+
+        void ensureParts(int n) {
+            if (bounds.length < n + 1) {
+                bounds = new int[(n + 1) * 2];
+                pairRanks = new int[(n + 1) * 2];
+            }
+        }
+    }
+
+    private BpeTokenCounter(String name, ByteSliceTable vocab, int[] ranks) {
+        this.name = name;
+        this.vocab = vocab;
+        this.ranks = ranks;
+    }
+
+    /**
+     * 从本地 tiktoken 词表文件加载
+     */
+    public static BpeTokenCounter load(Path file) throws IOException {
+        ByteSliceTable vocab = new ByteSliceTable();
+        int[] ranks = new int[1 << 17];
+        Base64.Decoder decoder = Base64.getDecoder();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int sp = line.indexOf(' ');
+                if (sp <= 0) continue;
+                int id = vocab.put(decoder.decode(line.substring(0, sp)));
+                if (id >= ranks.length) {
+                    ranks = Arrays.copyOf(ranks, ranks.length * 2);
+                }
+                ranks[id] = Integer.parseInt(line.substring(sp + 1).trim());
+            }
+        }
+        if (vocab.size() == 0) {
+            throw new IOException("BPE 词表为空: " + file);
+        }
+        return new BpeTokenCounter("bpe:" + file.getFileName(), vocab, ranks);
+    }
+
+    @Override
+    public int count(CharSequence text) {
+        if (text == null || text.length() == 0) return 0;
+        Scratch s = scratch.get();
+        int tokens = 0;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            int end = nextPiece(text, i, n);
+            s.ensure(end - i);
+            int len = Utf8.encode(text, i, end, s.bytes, 0);
+            tokens += countPiece(s, len);
+            i = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * 对一个预切分片段做 BPE 合并，返回 token 数
+     */
+    private int countPiece(Scratch s, int len) {
+        if (len <= 1 || vocab.find(s.bytes, 0, len) >= 0) {
+            return 1;
+        }
+        s.ensureParts(len);
+        byte[] bytes = s.bytes;
+        int[] bounds = s.bounds;
+        int[] pairRanks = s.pairRanks;
+        int parts = len; // 片段数，边界数 = parts + 1
+        for (int b = 0; b <= len; b++) {
+            bounds[b] = b;
+        }
+        for (int p = 0; p < parts - 1; p++) {
+            pairRanks[p] = rank(bytes, bounds[p], bounds[p + 2]);
+        }
+        while (parts > 1) {
+            int best = -1;
+            int bestRank = NO_RANK;
+            for (int p = 0; p < parts - 1; p++) {
+                if (pairRanks[p] < bestRank) {
+                    bestRank = pairRanks[p];
+                    best = p;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            // 合并片段 best 与 best+1：删除边界 best+1
+            System.arraycopy(bounds, best + 2, bounds, best + 1, parts - best - 1);
+            System.arraycopy(pairRanks, best + 1, pairRanks, best, parts - best - 2);
+            parts--;
+            if (best < parts - 1) {
+                pairRanks[best] = rank(bytes, bounds[best], bounds[best + 2]);
+            }
+            if (best > 0) {
+                pairRanks[best - 1] = rank(bytes, bounds[best - 1], bounds[best + 1]);
+            }
+        }
+        return parts;
+    }
+
+    private int rank(byte[] bytes, int from, int to) {
+        int id = vocab.find(bytes, from, to - from);
+        return id < 0 ? NO_RANK : ranks[id];
+    }
+
+    /**
+     * cl100k 预切分：返回从 start 开始的片段结束位置
+     */
+    static int nextPiece(CharSequence text, int start, int n) {
+        char c = text.charAt(start);
+        // 英文缩写 's 't 're 've 'm 'll 'd
+        if (c == '\'' && start + 1 < n) {
+            char a = Character.toLowerCase(text.charAt(start + 1));
+            if (a == 's' || a == 't' || a == 'm' || a == 'd') {
+                return start + 2;
+            }
+            if (start + 2 < n) {
+                char b = Character.toLowerCase(text.charAt(start + 2));
+                if ((a == 'r' && b == 'e') || (a == 'v' && b == 'e') || (a == 'l' && b == 'l')) {
+                    return start + 3;
+                }
+            }
+        }
+        int cp = Character.codePointAt(text, start);
+        int next = start + Character.charCount(cp);
+        // [^\r\n\p{L}\p{N}]?\p{L}+
+        if (Character.isLetter(cp)) {
+            return skipLetters(text, next, n);
+        }
+        if (cp != '\r' && cp != '\n' && !Character.isDigit(cp) && next < n && Character.isLetter(Character.codePointAt(text, next))) {
+            return skipLetters(text, next, n);
+        }
+        // \p{N}{1,3}
+        if (Character.isDigit(cp)) {
+            int end = next;
+            for (int k = 1; k < 3 && end < n && Character.isDigit(text.charAt(end)); k++) {
+                end++;
+            }
+            return end;
+        }
+        // ' ?[^\s\p{L}\p{N}]+[\r\n]*'
+        int p = start;
+        if (c == ' ' && next < n && isSymbol(Character.codePointAt(text, next))) {
+            p = next;
+        }
+        if (isSymbol(Character.codePointAt(text, p))) {
+            while (p < n && isSymbol(Character.codePointAt(text, p))) {
+                p += Character.charCount(Character.codePointAt(text, p));
+            }
+            while (p < n && (text.charAt(p) == '\r' || text.charAt(p) == '\n')) {
+                p++;
+            }
+            return p;
+        }
+        // 空白：含换行时取到最后一个换行；否则留最后一个空白给后续片段（\s+(?!\S)）
+        int end = start;
+        int lastNewline = -1;
+        while (end < n && Character.isWhitespace(text.charAt(end))) {
+            if (text.charAt(end) == '\r' || text.charAt(end) == '\n') {
+                lastNewline = end;
+            }
+            end++;
+        }
+        if (lastNewline >= 0) {
+            return lastNewline + 1;
+        }
+        if (end < n && end - start > 1) {
+            return end - 1;
+        }
+        return Math.max(end, start + 1);
+    }
+
+    private static int skipLetters(CharSequence text, int i, int n) {
+        while (i < n) {
+            int cp = Character.codePointAt(text, i);
+            if (!Character.isLetter(cp)) break;
+            i += Character.charCount(cp);
+        }
+        return i;
+    }
+
+    private static boolean isSymbol(int cp) {
+        return !Character.isWhitespace(cp) && !Character.isLetter(cp) && !Character.isDigit(cp);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+}
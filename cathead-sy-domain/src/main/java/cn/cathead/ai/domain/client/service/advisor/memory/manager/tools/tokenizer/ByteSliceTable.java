@@ -0,0 +1,100 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * 以字节片段为键的只读开放寻址表：词表加载后不再修改，查询时直接比较调用方缓冲区中的片段，不构造键对象
+ */
+final class ByteSliceTable {
+
+    private byte[] data = new byte[1 << 16];
+    private int dataSize;
+    private int[] offsets = new int[1024];
+    private int[] lengths = new int[1024];
+    private int size;
+    private int maxKeyLength;
+
+    /** 槽位存放 id + 1，0 表示空 */
+    private int[] slots = new int[2048];
+
+    /**
+     * 加入一个键，返回其 id（按加入顺序从 0 开始）；重复键返回已有 id
+     */
+    int put(byte[] key) {
+        int existing = find(key, 0, key.length);
+        if (existing >= 0) {
+            return existing;
+        }
+        if (dataSize + key.length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataSize + key.length));
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        System.arraycopy(key, 0, data, dataSize, key.length);
+        int id = size++;
+        offsets[id] = dataSize;
+        lengths[id] = key.length;
+        dataSize += key.length;
+        maxKeyLength = Math.max(maxKeyLength, key.length);
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insertSlot(id);
+        }
+        return id;
+    }
+
+    int find(byte[] buf, int off, int len) {
+        if (len <= 0 || len > maxKeyLength) {
+            return -1;
+        }
+        int mask = slots.length - 1;
+        int slot = hash(buf, off, len) & mask;
+        while (true) {
+            int v = slots[slot];
+            if (v == 0) {
+                return -1;
+            }
+            int id = v - 1;
+            if (lengths[id] == len && Arrays.equals(data, offsets[id], offsets[id] + len, buf, off, off + len)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int maxKeyLength() {
+        return maxKeyLength;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            insertSlot(id);
+        }
+    }
+
+    private void insertSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = hash(data, offsets[id], lengths[id]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private static int hash(byte[] buf, int off, int len) {
+        int h = 0x811C9DC5;
+        for (int i = off; i < off + len; i++) {
+            h ^= buf[i];
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,53 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer;
+
+/**
+ * 无词表时的兜底估算：按字符类别计数而不是按总长度折算
+ * - CJK/假名/谚文：每字约 1 token
+ * - 字母数字连续段：每 4 字符约 1 token
+ * - 标点符号：每个 1 token；空白不单独计数
+ */
+public final class HeuristicTokenCounter implements ITokenCounter {
+
+    public static final HeuristicTokenCounter INSTANCE = new HeuristicTokenCounter();
+
+    private HeuristicTokenCounter() {}
+
+    @Override
+    public int count(CharSequence text) {
+        if (text == null) return 0;
+        int tokens = 0;
+        int wordLen = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+            if (Character.isLetterOrDigit(cp) && !isCjk(cp)) {
+                wordLen++;
+                continue;
+            }
+            if (wordLen > 0) {
+                tokens += (wordLen + 3) / 4;
+                wordLen = 0;
+            }
+            if (!Character.isWhitespace(cp)) {
+                tokens++;
+            }
+        }
+        if (wordLen > 0) {
+            tokens += (wordLen + 3) / 4;
+        }
+        return tokens;
+    }
+
+    static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    @Override
+    public String name() {
+        return "heuristic";
+    }
+}
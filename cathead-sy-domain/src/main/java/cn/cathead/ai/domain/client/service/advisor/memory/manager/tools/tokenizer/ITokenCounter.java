@@ -0,0 +1,15 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer;
+
+/**
+ * Token 计数器
+ * 只计数不产出 token 序列，实现需线程安全且在热路径上不分配对象（线程本地缓冲区复用）。
+ */
+public interface ITokenCounter {
+
+    int count(CharSequence text);
+
+    /**
+     * 计数器名称（用于日志与统计）
+     */
+    String name();
+}
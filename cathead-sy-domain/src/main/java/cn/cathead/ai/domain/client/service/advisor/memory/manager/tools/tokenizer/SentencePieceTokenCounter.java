@@ -0,0 +1,160 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * SentencePiece（unigram）计数器
+ * 词表为 spm_export_vocab 导出的文本格式：每行 "piece\tscore"。
+ * 空白归一为 ▁ 并在开头补一个 ▁，按 Viterbi 求最大得分切分；
+ * 没有任何片段覆盖的字符按字节回退（词表含 <0x..> 时）或记为一个未知 token。
+ */
+public final class SentencePieceTokenCounter implements ITokenCounter {
+
+    private static final char SPACE = '▁';
+
+    private final String name;
+    private final ByteSliceTable vocab;
+    private final float[] scores;
+    private final float unknownScore;
+    private final boolean byteFallback;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /** 线程本地缓冲区：归一化文本的 UTF-8 字节与 Viterbi 状态 */
+    private static final class Scratch {
+        final StringBuilder normalized = new StringBuilder(256);
+        byte[] bytes = new byte[1024];
+        float[] best = new float[1025];
+        int[] tokens = new int[1025];
+
+        void ensure(int bytesNeeded) {
+            if (bytes.length < bytesNeeded) {
+                bytes = new byte[bytesNeeded * 2];
+                best = new float[bytesNeeded * 2 + 1];
+                tokens = new int[bytesNeeded * 2 + 1];
+            }
+        }
+    }
+
+    private SentencePieceTokenCounter(String name, ByteSliceTable vocab, float[] scores, boolean byteFallback) {
+        this.name = name;
+        this.vocab = vocab;
+        this.scores = scores;
+        this.byteFallback = byteFallback;
+        float min = 0f;
+        for (int i = 0; i < vocab.size(); i++) {
+            min = Math.min(min, scores[i]);
+        }
+        this.unknownScore = min - 10f;
+    }
+
+    /**
+     * 从本地 .vocab 文件加载
+     */
+    public static SentencePieceTokenCounter load(Path file) throws IOException {
+        ByteSliceTable vocab = new ByteSliceTable();
+        float[] scores = new float[1 << 15];
+        boolean byteFallback = false;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) continue;
+                String piece = line.substring(0, tab);
+                if (piece.startsWith("<0x") && piece.endsWith(">")) {
+                    byteFallback = true;
+                    continue;
+                }
+                if (piece.startsWith("<") && piece.endsWith(">")) {
+                    // <unk> <s> </s> 等控制符不参与切分
+                    continue;
+                }
+                int id = vocab.put(piece.getBytes(StandardCharsets.UTF_8));
+                if (id >= scores.length) {
+                    scores = Arrays.copyOf(scores, scores.length * 2);
+                }
+                scores[id] = Float.parseFloat(line.substring(tab + 1).trim());
+            }
+        }
+        if (vocab.size() == 0) {
+            throw new IOException("SentencePiece 词表为空: " + file);
+        }
+        return new SentencePieceTokenCounter("sentencepiece:" + file.getFileName(), vocab, scores, byteFallback);
+    }
+
+    @Override
+    public int count(CharSequence text) {
+        if (text == null || text.length() == 0) return 0;
+        Scratch s = scratch.get();
+        StringBuilder normalized = s.normalized;
+        normalized.setLength(0);
+        normalized.append(SPACE);
+        boolean lastSpace = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!lastSpace) normalized.append(SPACE);
+                lastSpace = true;
+            } else {
+                normalized.append(c);
+                lastSpace = false;
+            }
+        }
+        if (lastSpace && normalized.length() > 1) {
+            normalized.setLength(normalized.length() - 1);
+        }
+
+        s.ensure(normalized.length() * 3);
+        byte[] bytes = s.bytes;
+        int len = Utf8.encode(normalized, 0, normalized.length(), bytes, 0);
+        float[] best = s.best;
+        int[] tokens = s.tokens;
+        Arrays.fill(best, 0, len + 1, Float.NEGATIVE_INFINITY);
+        best[0] = 0f;
+        tokens[0] = 0;
+        int maxPiece = vocab.maxKeyLength();
+
+        for (int from = 0; from < len; from++) {
+            if (best[from] == Float.NEGATIVE_INFINITY || Utf8.isContinuation(bytes[from])) {
+                continue;
+            }
+            int charEnd = from + 1;
+            while (charEnd < len && Utf8.isContinuation(bytes[charEnd])) {
+                charEnd++;
+            }
+            boolean covered = false;
+            for (int to = charEnd; to <= len && to - from <= maxPiece; to++) {
+                if (to < len && Utf8.isContinuation(bytes[to])) {
+                    continue;
+                }
+                int id = vocab.find(bytes, from, to - from);
+                if (id < 0) continue;
+                covered |= to == charEnd;
+                relax(best, tokens, from, to, scores[id], 1);
+            }
+            if (!covered) {
+                // 单字符不在词表：字节回退每字节一个 token，否则整体记为未知
+                relax(best, tokens, from, charEnd, unknownScore, byteFallback ? charEnd - from : 1);
+            }
+        }
+        return tokens[len];
+    }
+
+    private static void relax(float[] best, int[] tokens, int from, int to, float score, int cost) {
+        float candidate = best[from] + score;
+        if (candidate > best[to]) {
+            best[to] = candidate;
+            tokens[to] = tokens[from] + cost;
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+}
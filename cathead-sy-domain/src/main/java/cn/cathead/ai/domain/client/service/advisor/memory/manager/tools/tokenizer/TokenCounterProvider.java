@@ -0,0 +1,119 @@
+package cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.tokenizer;
+
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.model.event.ModelConfigChangedEvent;
+import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
+import cn.cathead.ai.domain.model.service.IModelService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按模型选择 token 计数器
+ * 模型 dynamicProperties 中的 tokenizer（bpe / sentencepiece / heuristic）与 tokenizer_path（本地词表文件）决定实现，
+ * 未配置时使用 ai.memory.stm.tokenizer 的默认值；词表按文件只加载一次，加载失败回退到估算。
+ */
+@Component
+@Slf4j
+public class TokenCounterProvider {
+
+    public static final String TYPE_BPE = "bpe";
+    public static final String TYPE_SENTENCEPIECE = "sentencepiece";
+    public static final String TYPE_HEURISTIC = "heuristic";
+
+    private final IModelService modelService;
+    private final MemoryProperties props;
+
+    /** 模型ID -> 计数器 */
+    private final Cache<String, ITokenCounter> byModel;
+
+    /** type:path -> 已加载的词表 */
+    private final Map<String, ITokenCounter> loaded = new ConcurrentHashMap<>();
+
+    public TokenCounterProvider(IModelService modelService, MemoryProperties props) {
+        this.modelService = modelService;
+        this.props = props;
+        this.byModel = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(Math.max(1, props.getStm().getTokenizer().getCacheTtlSeconds())))
+                .build();
+    }
+
+    public ITokenCounter forModel(String modelId) {
+        String useModelId = (modelId != null && !modelId.isBlank()) ? modelId : props.getStm().getDefaultModelId();
+        if (useModelId == null || useModelId.isBlank()) {
+            return defaultCounter();
+        }
+        return byModel.get(useModelId, this::resolve);
+    }
+
+    private ITokenCounter resolve(String modelId) {
+        try {
+            BaseModelEntity base = modelService.getModelById(modelId);
+            if (base instanceof ChatModelEntity chat && chat.getDynamicProperties() != null) {
+                Map<String, Object> dynamic = chat.getDynamicProperties();
+                Object type = dynamic.get("tokenizer");
+                Object path = dynamic.containsKey("tokenizer_path") ? dynamic.get("tokenizer_path") : dynamic.get("tokenizerPath");
+                if (type != null) {
+                    return counterFor(String.valueOf(type), path == null ? null : String.valueOf(path));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("查询模型分词配置失败，使用默认计数器，模型ID: {}, 错误: {}", modelId, e.getMessage());
+        }
+        return defaultCounter();
+    }
+
+    private ITokenCounter defaultCounter() {
+        MemoryProperties.Tokenizer cfg = props.getStm().getTokenizer();
+        return counterFor(cfg.getType(), cfg.getPath());
+    }
+
+    private ITokenCounter counterFor(String type, String path) {
+        String t = type == null ? TYPE_HEURISTIC : type.trim().toLowerCase();
+        if (TYPE_HEURISTIC.equals(t) || path == null || path.isBlank()) {
+            return HeuristicTokenCounter.INSTANCE;
+        }
+        return loaded.computeIfAbsent(t + ":" + path, key -> load(t, path));
+    }
+
+    private ITokenCounter load(String type, String path) {
+        try {
+            ITokenCounter counter = switch (type) {
+                case TYPE_BPE, "cl100k", "tiktoken" -> BpeTokenCounter.load(Path.of(path));
+                case TYPE_SENTENCEPIECE, "spm" -> SentencePieceTokenCounter.load(Path.of(path));
+                default -> {
+                    log.warn("未知的分词器类型: {}，使用估算", type);
+                    yield HeuristicTokenCounter.INSTANCE;
+                }
+            };
+            log.info("分词词表加载完成: {}", counter.name());
+            return counter;
+        } catch (Exception e) {
+            log.warn("分词词表加载失败，使用估算，类型: {}, 文件: {}, 错误: {}", type, path, e.getMessage());
+            return HeuristicTokenCounter.INSTANCE;
+        }
+    }
+
+    @EventListener
+    public void onModelConfigChanged(ModelConfigChangedEvent event) {
+        invalidate(event.getModelId());
+    }
+
+    /**
+     * 模型配置变更后调用，下次计数重新解析
+     */
+    public void invalidate(String modelId) {
+        if (modelId != null) {
+            byModel.invalidate(modelId);
+        }
+    }
+}
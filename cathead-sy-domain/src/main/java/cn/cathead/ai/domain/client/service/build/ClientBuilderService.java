@@ -3,6 +3,8 @@ package cn.cathead.ai.domain.client.service.build;
 import cn.cathead.ai.domain.client.service.advisor.memory.MemoryAdvisor;
 import cn.cathead.ai.domain.client.service.mcp.tools.McpAdvisorRegistry;
 import cn.cathead.ai.domain.model.service.registry.IModelProviderService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -12,6 +14,8 @@ import org.springframework.stereotype.Service;
 
 /**
  * 默认实现：通过模型领域获取 ChatModel，构建 ChatClient，并注册记忆 Advisor。
+ * 按模型构建的 ChatClient 以 ChatModel 实例为键缓存：模型版本更新时缓存中换入新的 ChatModel，
+ * 随之构建新的 ChatClient，旧实例不再被引用后由弱引用键回收。
  */
 @Service
 @RequiredArgsConstructor
@@ -22,14 +26,22 @@ public class ClientBuilderService implements IClientBuilderService {
     private final MemoryAdvisor memoryAdvisor;
     private final McpAdvisorRegistry mcpAdvisorRegistry;
 
+    /** ChatModel（按实例比较）-> ChatClient */
+    private final Cache<ChatModel, ChatClient> clients = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(256)
+            .build();
+
     @Override
     public ChatClient build(String modelId) {
         ChatModel chatModel = modelProviderService.getAndValidateChatModel(modelId);
-        ChatClient client = ChatClient.builder(chatModel)
-                .defaultAdvisors(memoryAdvisor)
-                .build();
-        log.debug("ChatClient 构建完成，模型ID: {}，已启用记忆Advisor", modelId);
-        return client;
+        return clients.get(chatModel, model -> {
+            ChatClient client = ChatClient.builder(model)
+                    .defaultAdvisors(a -> a.advisors(memoryAdvisor).param(MemoryAdvisor.ATTR_MODEL_ID, modelId))
+                    .build();
+            log.debug("ChatClient 构建完成，模型ID: {}，已启用记忆Advisor", modelId);
+            return client;
+        });
     }
 
     @Override
@@ -45,7 +57,7 @@ public class ClientBuilderService implements IClientBuilderService {
             for (int i = 0; i < extraAdvisors.size(); i++) advisors[i + 1] = extraAdvisors.get(i);
         }
         ChatClient client = ChatClient.builder(chatModel)
-                .defaultAdvisors(advisors)
+                .defaultAdvisors(a -> a.advisors(advisors).param(MemoryAdvisor.ATTR_MODEL_ID, modelId))
                 .build();
         log.debug("ChatClient 构建完成，模型ID: {}，AgentID: {}，附加工具Advisor数量: {}", modelId, agentId, extraAdvisors == null ? 0 : extraAdvisors.size());
         return client;
@@ -45,7 +45,7 @@ public class AutoAgentLoopExecutor {
         ChainContext chainCtx = execFactory.createChainContext(chatClient, params);
         LoopChain chain = execFactory.createLoopChain();
         try {
-            MemoryContextHolder.set(cmd.getSessionId(), cmd.getAgentId(), cmd.getKnowledgeId());
+            MemoryContextHolder.set(cmd.getSessionId(), cmd.getAgentId(), cmd.getKnowledgeId(), cmd.getModelId());
             // 将用户任务写入短期记忆，作为会话起点
             if (cmd.getTask() != null && !cmd.getTask().isBlank()) {
                 memoryManager.saveShortTermTextAsUser(cmd.getSessionId(), cmd.getTask());
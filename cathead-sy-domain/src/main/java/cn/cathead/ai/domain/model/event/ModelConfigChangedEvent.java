@@ -0,0 +1,18 @@
+package cn.cathead.ai.domain.model.event;
+
+import lombok.Getter;
+
+/**
+ * 模型配置变更（更新或删除）事件，按模型缓存派生配置的组件据此失效
+ */
+@Getter
+public class ModelConfigChangedEvent {
+    private final String modelId;
+    /** 变更后的版本号；模型被删除时为null */
+    private final Long version;
+
+    public ModelConfigChangedEvent(String modelId, Long version) {
+        this.modelId = modelId;
+        this.version = version;
+    }
+}
@@ -26,4 +26,34 @@ public class EmbeddingModelEntity extends BaseModelEntity {
     
     // 动态属性，存储模型的扩展参数
     private Map<String, Object> dynamicProperties;
+
+    /**
+     * 单次向量化请求允许的最大文本数：不支持批量时为1，未配置时返回null（使用全局默认值）
+     */
+    public Integer resolveBatchLimit() {
+        if (Boolean.FALSE.equals(supportBatch)) {
+            return 1;
+        }
+        return maxBatchSize != null && maxBatchSize > 0 ? maxBatchSize : null;
+    }
+
+    /**
+     * 量化检索的重排倍数（dynamicProperties.rerankRatio）：粗排取 topK * ratio 个候选，再用原始向量精排；未配置时返回null（使用全局默认值）
+     */
+    public Integer resolveRerankRatio() {
+        Object value = dynamicProperties == null ? null : dynamicProperties.get("rerankRatio");
+        int ratio;
+        if (value instanceof Number n) {
+            ratio = n.intValue();
+        } else if (value instanceof String s && !s.isBlank()) {
+            try {
+                ratio = Integer.parseInt(s.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        return ratio > 0 ? ratio : null;
+    }
 }
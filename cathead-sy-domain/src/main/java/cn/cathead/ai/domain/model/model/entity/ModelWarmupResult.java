@@ -0,0 +1,53 @@
+package cn.cathead.ai.domain.model.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型缓存预热/批量刷新结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModelWarmupResult {
+    /**
+     * 数据库中的模型总数
+     */
+    private int total;
+
+    /**
+     * 构建成功数量
+     */
+    private int success;
+
+    /**
+     * 本次预热总耗时（毫秒）
+     */
+    private long elapsedMs;
+
+    /**
+     * 各模型实例构建耗时（modelId -> 毫秒）
+     */
+    @Builder.Default
+    private Map<String, Long> buildLatencyMs = new LinkedHashMap<>();
+
+    /**
+     * 构建失败或超时的模型ID
+     */
+    @Builder.Default
+    private List<String> failedModelIds = new ArrayList<>();
+
+    /**
+     * 数据库中已不存在、被移出缓存的模型ID
+     */
+    @Builder.Default
+    private List<String> evictedModelIds = new ArrayList<>();
+}
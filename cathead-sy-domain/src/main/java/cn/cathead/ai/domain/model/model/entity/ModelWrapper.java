@@ -28,6 +28,26 @@ public class ModelWrapper<T> {
      */
     private String modelId;
     
+    /**
+     * 模型提供者（用于按提供者配置空闲过期）
+     */
+    private String providerName;
+
+    /**
+     * 上游地址，实例移出缓存时据此释放共享的上游HTTP客户端
+     */
+    private String upstreamUrl;
+
+    /**
+     * 实例构建耗时（毫秒），用于缓存权重计算
+     */
+    private Long buildCostMs;
+
+    /**
+     * 单次请求最大文本数（仅Embedding模型；不支持批量时为1，为空则使用全局默认值）
+     */
+    private Integer maxBatchSize;
+
     /**
      * 创建时间
      */
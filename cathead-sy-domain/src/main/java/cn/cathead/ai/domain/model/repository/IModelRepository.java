@@ -4,6 +4,9 @@ import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
 import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
 import cn.cathead.ai.domain.model.model.entity.ChatRequestEntity;
 
+import java.util.List;
+import java.util.Map;
+
 
 public interface IModelRepository {
 
@@ -17,4 +20,15 @@ public interface IModelRepository {
     
     BaseModelEntity queryModelById(String modelId);
 
+    /**
+     * 批量查询所有模型的版本号
+     * @return modelId -> version
+     */
+    Map<String, Long> queryAllModelVersions();
+
+    /**
+     * 批量查询全部模型配置（一次查询），用于缓存预热
+     */
+    List<BaseModelEntity> queryAllModels();
+
 }
@@ -1,5 +1,6 @@
 package cn.cathead.ai.domain.model.service;
 import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ModelWarmupResult;
 import cn.cathead.ai.types.dto.ChatRequestDTO;
 import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
 import org.springframework.ai.chat.model.ChatModel;
@@ -28,6 +29,13 @@ public interface IModelService {
 
     public void refreshModelCache(String modelId);
 
+    /**
+     * 批量刷新全部模型缓存（一次查库，并行构建）
+     *
+     * @return 刷新结果，含各模型构建耗时
+     */
+    public ModelWarmupResult refreshAllModelCache();
+
 
     public EmbeddingModel getLatestEmbeddingModel(String modelId);
 
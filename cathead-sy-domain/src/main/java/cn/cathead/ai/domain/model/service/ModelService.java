@@ -1,11 +1,14 @@
 package cn.cathead.ai.domain.model.service;
 
 import cn.cathead.ai.types.dto.ChatRequestDTO;
+import cn.cathead.ai.domain.model.event.ModelConfigChangedEvent;
 import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ModelWarmupResult;
 import cn.cathead.ai.domain.model.repository.IModelRepository;
 import cn.cathead.ai.domain.model.service.runtime.chat.IChatService;
 import cn.cathead.ai.domain.model.service.runtime.embedding.IEmbeddingService;
 import cn.cathead.ai.domain.model.service.registry.modelcache.IModelCacheManager;
+import cn.cathead.ai.domain.model.service.registry.modelcache.ModelCacheWarmer;
 import cn.cathead.ai.domain.model.service.registry.IModelProviderService;
 import cn.cathead.ai.domain.model.service.registry.modelcreation.IModelCreationService;
 import cn.cathead.ai.domain.model.service.registry.update.impl.ChatModelUpdateService;
@@ -17,6 +20,7 @@ import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import cn.cathead.ai.types.dto.ChatModelDTO;
@@ -38,6 +42,12 @@ public class ModelService implements IModelService {
     @Resource
     private IModelProviderService modelProviderService;
 
+    @Resource
+    private ModelCacheWarmer modelCacheWarmer;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
 
     // 模型创建服务
     @Resource
@@ -92,6 +102,7 @@ public class ModelService implements IModelService {
 
         // 2. 删除数据库记录
         modelRepository.deleteModelRecord(modelId);
+        eventPublisher.publishEvent(new ModelConfigChangedEvent(modelId, null));
 
         log.info("模型删除成功，模型ID: {}", modelId);
     }
@@ -135,6 +146,11 @@ public class ModelService implements IModelService {
         modelBeanManager.refreshModelCache(modelId);
     }
 
+    @Override
+    public ModelWarmupResult refreshAllModelCache() {
+        return modelCacheWarmer.warmUpAll();
+    }
+
     // 统一入口：委托给 ModelCreationService
     @Override
     public String createChatModel(ChatModelDTO chatModelDTO) {
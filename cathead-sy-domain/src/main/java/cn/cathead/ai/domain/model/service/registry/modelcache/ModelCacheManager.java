@@ -4,11 +4,15 @@ import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
 import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
 import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
 import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.registry.modelcache.loader.ChatModelCacheLoader;
+import cn.cathead.ai.domain.model.service.registry.modelcache.loader.EmbeddingModelCacheLoader;
 import cn.cathead.ai.domain.model.service.registry.provider.IModelProvider;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
 import cn.cathead.ai.types.enums.ResponseCode;
 import cn.cathead.ai.types.exception.AppException;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheStats;
+import cn.cathead.ai.domain.model.service.registry.modelcache.eviction.ModelCacheEvictionPolicy;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatModel;
@@ -18,6 +22,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
 
@@ -34,15 +39,30 @@ public class ModelCacheManager implements IModelCacheManager {
 
     @Autowired
     @Qualifier("chatModelCache")
-    private Cache<String, ModelWrapper<ChatModel>> chatModelCache;
+    private LoadingCache<String, ModelWrapper<ChatModel>> chatModelCache;
 
     @Autowired
     @Qualifier("embeddingModelCache")
-    private Cache<String, ModelWrapper<EmbeddingModel>> embeddingModelCache;
+    private LoadingCache<String, ModelWrapper<EmbeddingModel>> embeddingModelCache;
 
     @Resource
     private IModelRepository iModelRepository;
 
+    @Resource
+    private ModelVersionTable modelVersionTable;
+
+    @Resource
+    private ChatModelCacheLoader chatModelCacheLoader;
+
+    @Resource
+    private EmbeddingModelCacheLoader embeddingModelCacheLoader;
+
+    @Resource
+    private ModelCacheEvictionPolicy evictionPolicy;
+
+    @Resource
+    private UpstreamHttpClientRegistry httpClientRegistry;
+
     @Override
     public ChatModel createChatModelInstance(ChatModelEntity chatModelEntity) {
         try {
@@ -86,11 +106,15 @@ public class ModelCacheManager implements IModelCacheManager {
                 .modelInstance(chatModel)
                 .version(chatModelEntity.getVersion())
                 .modelId(chatModelEntity.getModelId())
+                .providerName(chatModelEntity.getProviderName())
+                .upstreamUrl(chatModelEntity.getUrl())
                 .createTime(System.currentTimeMillis())
                 .lastAccessTime(System.currentTimeMillis())
                 .build();
-        
+
+        httpClientRegistry.retain(chatModelEntity.getUrl());
         chatModelCache.put(chatModelEntity.getModelId(), wrapper);
+        modelVersionTable.record(chatModelEntity.getModelId(), chatModelEntity.getVersion());
         log.info("成功将Chat模型存入缓存，模型ID: {}, 版本: {}", chatModelEntity.getModelId(), chatModelEntity.getVersion());
     }
 
@@ -100,11 +124,16 @@ public class ModelCacheManager implements IModelCacheManager {
                 .modelInstance(embeddingModel)
                 .version(embeddingModelEntity.getVersion())
                 .modelId(embeddingModelEntity.getModelId())
+                .providerName(embeddingModelEntity.getProviderName())
+                .upstreamUrl(embeddingModelEntity.getUrl())
+                .maxBatchSize(embeddingModelEntity.resolveBatchLimit())
                 .createTime(System.currentTimeMillis())
                 .lastAccessTime(System.currentTimeMillis())
                 .build();
-        
+
+        httpClientRegistry.retain(embeddingModelEntity.getUrl());
         embeddingModelCache.put(embeddingModelEntity.getModelId(), wrapper);
+        modelVersionTable.record(embeddingModelEntity.getModelId(), embeddingModelEntity.getVersion());
         log.info("成功将Embedding模型存入缓存，模型ID: {}, 版本: {}", embeddingModelEntity.getModelId(), embeddingModelEntity.getVersion());
     }
 
@@ -148,6 +177,7 @@ public class ModelCacheManager implements IModelCacheManager {
 
     @Override
     public void removeChatModelBean(String modelId) {
+        modelVersionTable.remove(modelId);
         ModelWrapper<ChatModel> removed = chatModelCache.getIfPresent(modelId);
         if (removed != null) {
             chatModelCache.invalidate(modelId);
@@ -157,6 +187,7 @@ public class ModelCacheManager implements IModelCacheManager {
 
     @Override
     public void removeEmbeddingModelBean(String modelId) {
+        modelVersionTable.remove(modelId);
         ModelWrapper<EmbeddingModel> removed = embeddingModelCache.getIfPresent(modelId);
         if (removed != null) {
             embeddingModelCache.invalidate(modelId);
@@ -165,49 +196,76 @@ public class ModelCacheManager implements IModelCacheManager {
     }
 
     /**
-     *
+     * 单飞更新：同一modelId同时只会有一个线程构建实例。
+     * 缓存中已有旧实例时通过refresh原子替换，替换完成前其他读请求继续拿到旧实例，不存在先删后建的空窗。
      * @param modelId 模型ID
-     * @param chatModelEntity 新的模型实体
-     * @return 创建新的model到缓存中
+     * @param chatModelEntity 新的模型实体（作为加载提示，避免加载时再次查库）
+     * @return 缓存中的最新model；构建失败且无旧实例时返回null
      */
     @Override
     public ChatModel updateChatModelBean(String modelId, ChatModelEntity chatModelEntity) {
-        // 先移除旧的Bean
-        removeChatModelBean(modelId);
-        // 创建新的实例
-        ChatModel chatModel = createChatModelInstance(chatModelEntity);
-        if (chatModel != null) {
-            // 从数据库获取最新版本信息
-            ChatModelEntity latestEntity = (ChatModelEntity) iModelRepository.queryModelById(modelId);
-            if (latestEntity != null) {
-                // 使用最新的实体信息（包含正确的版本号）存入缓存
-                saveChatModelToCache(chatModel, latestEntity);
-            } else {
-                // 如果数据库中没有找到，使用传入的实体（向后兼容）
-                saveChatModelToCache(chatModel, chatModelEntity);
+        chatModelCacheLoader.hint(chatModelEntity);
+        try {
+            if (chatModelCache.getIfPresent(modelId) == null) {
+                return chatModelCache.get(modelId).getModelInstance();
+            }
+            // 若已有线程在刷新该模型，refresh返回同一个进行中的结果，不会重复构建
+            ModelWrapper<ChatModel> wrapper;
+            try {
+                wrapper = chatModelCache.refresh(modelId).join();
+            } catch (CompletionException e) {
+                log.warn("刷新Chat模型实例失败，继续使用旧实例，模型ID: {}, 错误: {}", modelId, e.getMessage());
+                wrapper = chatModelCache.getIfPresent(modelId);
             }
+            if (wrapper == null) {
+                return null;
+            }
+            if (isOlder(wrapper.getVersion(), chatModelEntity.getVersion())) {
+                log.warn("Chat模型尚未替换为新版本，继续使用旧实例，模型ID: {}, 缓存版本: {}, 目标版本: {}",
+                        modelId, wrapper.getVersion(), chatModelEntity.getVersion());
+            }
+            return wrapper.getModelInstance();
+        } catch (Exception e) {
+            log.error("加载Chat模型实例失败，模型ID: {}, 错误: {}", modelId, e.getMessage(), e);
+            return null;
+        } finally {
+            chatModelCacheLoader.clearHint(modelId, chatModelEntity);
         }
-        return chatModel;
     }
 
     @Override
     public EmbeddingModel updateEmbeddingModelBean(String modelId, EmbeddingModelEntity embeddingModelEntity) {
-        // 先移除旧的Bean
-        removeEmbeddingModelBean(modelId);
-        // 创建新的实例
-        EmbeddingModel embeddingModel = createEmbeddingModelInstance(embeddingModelEntity);
-        if (embeddingModel != null) {
-            // 从数据库获取最新版本信息
-            EmbeddingModelEntity latestEntity = (EmbeddingModelEntity) iModelRepository.queryModelById(modelId);
-            if (latestEntity != null) {
-                // 使用最新的实体信息（包含正确的版本号）存入缓存
-                saveEmbeddingModelToCache(embeddingModel, latestEntity);
-            } else {
-                // 如果数据库中没有找到，使用传入的实体（向后兼容）
-                saveEmbeddingModelToCache(embeddingModel, embeddingModelEntity);
+        embeddingModelCacheLoader.hint(embeddingModelEntity);
+        try {
+            if (embeddingModelCache.getIfPresent(modelId) == null) {
+                return embeddingModelCache.get(modelId).getModelInstance();
+            }
+            // 若已有线程在刷新该模型，refresh返回同一个进行中的结果，不会重复构建
+            ModelWrapper<EmbeddingModel> wrapper;
+            try {
+                wrapper = embeddingModelCache.refresh(modelId).join();
+            } catch (CompletionException e) {
+                log.warn("刷新Embedding模型实例失败，继续使用旧实例，模型ID: {}, 错误: {}", modelId, e.getMessage());
+                wrapper = embeddingModelCache.getIfPresent(modelId);
+            }
+            if (wrapper == null) {
+                return null;
+            }
+            if (isOlder(wrapper.getVersion(), embeddingModelEntity.getVersion())) {
+                log.warn("Embedding模型尚未替换为新版本，继续使用旧实例，模型ID: {}, 缓存版本: {}, 目标版本: {}",
+                        modelId, wrapper.getVersion(), embeddingModelEntity.getVersion());
             }
+            return wrapper.getModelInstance();
+        } catch (Exception e) {
+            log.error("加载Embedding模型实例失败，模型ID: {}, 错误: {}", modelId, e.getMessage(), e);
+            return null;
+        } finally {
+            embeddingModelCacheLoader.clearHint(modelId, embeddingModelEntity);
         }
-        return embeddingModel;
+    }
+
+    private static boolean isOlder(Long cachedVersion, Long targetVersion) {
+        return cachedVersion != null && targetVersion != null && cachedVersion < targetVersion;
     }
 
     @Override
@@ -241,12 +299,19 @@ public class ModelCacheManager implements IModelCacheManager {
         CacheStats embeddingStats = embeddingModelCache.stats();
         
         return String.format(
-            "Chat模型缓存: size=%d, hitRate=%.2f%%, Embedding模型缓存: size=%d, hitRate=%.2f%%",
-            chatModelCache.size(), chatStats.hitRate() * 100,
-            embeddingModelCache.size(), embeddingStats.hitRate() * 100
+            "Chat模型缓存: size=%d, weight=%d, hitRate=%.2f%%, evictions=%d, Embedding模型缓存: size=%d, weight=%d, hitRate=%.2f%%, evictions=%d, %s, %s",
+            chatModelCache.estimatedSize(), weightedSize(chatModelCache), chatStats.hitRate() * 100, chatStats.evictionCount(),
+            embeddingModelCache.estimatedSize(), weightedSize(embeddingModelCache), embeddingStats.hitRate() * 100, embeddingStats.evictionCount(),
+            modelVersionTable.getStats(), evictionPolicy.getStats()
         );
     }
 
+    private static long weightedSize(LoadingCache<String, ?> cache) {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(-1L))
+                .orElse(-1L);
+    }
+
     @Override
     public Long getCachedModelVersion(String modelId) {
         // 先检查Chat模型缓存
@@ -266,7 +331,19 @@ public class ModelCacheManager implements IModelCacheManager {
     @Override
     public ChatModel ensureLatestChatModel(String modelId) {
         log.debug("检查Chat模型版本，模型ID: {}", modelId);
-        
+
+        // 0. 热路径：版本表在陈旧上限内且与缓存版本一致，直接返回，不访问数据库
+        Long knownVersion = modelVersionTable.lookup(modelId);
+        if (knownVersion != null) {
+            ModelWrapper<ChatModel> wrapper = chatModelCache.getIfPresent(modelId);
+            if (wrapper != null && knownVersion.equals(wrapper.getVersion())) {
+                modelVersionTable.markLookupAvoided();
+                wrapper.updateLastAccessTime();
+                return wrapper.getModelInstance();
+            }
+        }
+        modelVersionTable.markDbLookup();
+
         // 1. 从数据库获取当前版本
         ChatModelEntity currentEntity = (ChatModelEntity) iModelRepository.queryModelById(modelId);
         if (currentEntity == null) {
@@ -298,7 +375,19 @@ public class ModelCacheManager implements IModelCacheManager {
     @Override
     public EmbeddingModel ensureLatestEmbeddingModel(String modelId) {
         log.debug("检查Embedding模型版本，模型ID: {}", modelId);
-        
+
+        // 0. 热路径：版本表在陈旧上限内且与缓存版本一致，直接返回，不访问数据库
+        Long knownVersion = modelVersionTable.lookup(modelId);
+        if (knownVersion != null) {
+            ModelWrapper<EmbeddingModel> wrapper = embeddingModelCache.getIfPresent(modelId);
+            if (wrapper != null && knownVersion.equals(wrapper.getVersion())) {
+                modelVersionTable.markLookupAvoided();
+                wrapper.updateLastAccessTime();
+                return wrapper.getModelInstance();
+            }
+        }
+        modelVersionTable.markDbLookup();
+
         // 1. 从数据库获取当前版本
         EmbeddingModelEntity currentEntity = (EmbeddingModelEntity) iModelRepository.queryModelById(modelId);
         if (currentEntity == null) {
@@ -0,0 +1,148 @@
+package cn.cathead.ai.domain.model.service.registry.modelcache;
+
+import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
+import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ModelWarmupResult;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.registry.modelcache.config.ModelCacheProperties;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型缓存预热器
+ * 启动时及 model/refresh-all 时一次批量查出全部模型，在有界线程池中并行构建实例并写入缓存，
+ * 避免重启后每个模型的首个请求同时承担查库与客户端构建开销。
+ */
+@Component
+@Slf4j
+public class ModelCacheWarmer implements ApplicationRunner {
+
+    @Resource
+    private IModelRepository iModelRepository;
+
+    @Resource
+    private IModelCacheManager modelCacheManager;
+
+    @Resource
+    private ModelCacheProperties props;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!props.getWarmup().isOnStartup()) {
+            log.info("模型缓存启动预热未启用");
+            return;
+        }
+        try {
+            warmUpAll();
+        } catch (Exception e) {
+            // 预热失败不影响启动，后续请求按需加载
+            log.warn("模型缓存启动预热失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 全量预热/刷新模型缓存
+     * 已缓存的模型会被原子替换为新实例，数据库中已删除的模型同步移出缓存
+     * @return 预热结果（含各模型构建耗时）
+     */
+    public ModelWarmupResult warmUpAll() {
+        long start = System.currentTimeMillis();
+        List<BaseModelEntity> models = iModelRepository.queryAllModels();
+        ModelWarmupResult result = ModelWarmupResult.builder().total(models.size()).build();
+
+        Set<String> liveIds = new HashSet<>();
+        List<String> modelIds = new ArrayList<>();
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (BaseModelEntity model : models) {
+            liveIds.add(model.getModelId());
+            modelIds.add(model.getModelId());
+            tasks.add(() -> buildOne(model));
+        }
+        evictRemoved(liveIds, result);
+
+        if (!tasks.isEmpty()) {
+            int parallelism = Math.max(1, Math.min(props.getWarmup().getParallelism(), tasks.size()));
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("model-warmup-");
+            threadFactory.setDaemon(true);
+            ExecutorService pool = Executors.newFixedThreadPool(parallelism, threadFactory);
+            try {
+                List<Future<Long>> futures = pool.invokeAll(tasks, props.getWarmup().getTimeoutMs(), TimeUnit.MILLISECONDS);
+                for (int i = 0; i < futures.size(); i++) {
+                    collect(modelIds.get(i), futures.get(i), result);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("模型缓存预热被中断");
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        log.info("模型缓存预热完成，总数: {}, 成功: {}, 失败: {}, 移除: {}, 耗时: {}ms, 各模型构建耗时: {}",
+                result.getTotal(), result.getSuccess(), result.getFailedModelIds().size(),
+                result.getEvictedModelIds().size(), result.getElapsedMs(), result.getBuildLatencyMs());
+        return result;
+    }
+
+    /**
+     * 构建单个模型实例
+     * @return 构建耗时（毫秒），失败返回null
+     */
+    private Long buildOne(BaseModelEntity model) {
+        long begin = System.currentTimeMillis();
+        Object instance = null;
+        if (model instanceof ChatModelEntity chat) {
+            instance = modelCacheManager.updateChatModelBean(chat.getModelId(), chat);
+        } else if (model instanceof EmbeddingModelEntity embedding) {
+            instance = modelCacheManager.updateEmbeddingModelBean(embedding.getModelId(), embedding);
+        } else {
+            log.warn("未知的模型类型，跳过预热，模型ID: {}, 类型: {}", model.getModelId(), model.getType());
+        }
+        return instance == null ? null : System.currentTimeMillis() - begin;
+    }
+
+    private void collect(String modelId, Future<Long> future, ModelWarmupResult result) {
+        try {
+            Long latency = future.isCancelled() ? null : future.get();
+            if (latency != null) {
+                result.getBuildLatencyMs().put(modelId, latency);
+                result.setSuccess(result.getSuccess() + 1);
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("模型预热失败，模型ID: {}, 错误: {}", modelId, e.getMessage());
+        }
+        result.getFailedModelIds().add(modelId);
+    }
+
+    private void evictRemoved(Set<String> liveIds, ModelWarmupResult result) {
+        for (String modelId : modelCacheManager.getAllChatModelCache().keySet()) {
+            if (!liveIds.contains(modelId)) {
+                modelCacheManager.removeChatModelBean(modelId);
+                result.getEvictedModelIds().add(modelId);
+            }
+        }
+        for (String modelId : modelCacheManager.getAllEmbeddingModelCache().keySet()) {
+            if (!liveIds.contains(modelId)) {
+                modelCacheManager.removeEmbeddingModelBean(modelId);
+                result.getEvictedModelIds().add(modelId);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package cn.cathead.ai.domain.model.service.registry.modelcache;
+
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.registry.modelcache.config.ModelCacheProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地模型版本表
+ * 定时批量拉取 model.version 到内存，缓存命中时直接对比本地版本，避免每次请求都查库。
+ * 若超过 maxStalenessMs 未成功刷新，则视为不可信，调用方需回源数据库校验。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ModelVersionTable {
+
+    private final IModelRepository modelRepository;
+    private final ModelCacheProperties props;
+
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+    private volatile long lastRefreshEpochMs = 0L;
+
+    private final LongAdder avoidedLookups = new LongAdder();
+    private final LongAdder dbLookups = new LongAdder();
+    private final LongAdder pollCount = new LongAdder();
+    private final LongAdder pollFailures = new LongAdder();
+
+    private ScheduledExecutorService poller;
+
+    @PostConstruct
+    public void init() {
+        ModelCacheProperties.Version cfg = props.getVersion();
+        if (!cfg.isEnabled() || cfg.getPollIntervalMs() <= 0) {
+            log.info("模型版本表未启用，每次获取模型都将查库校验版本");
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("model-version-poll-");
+        threadFactory.setDaemon(true);
+        poller = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        poller.scheduleWithFixedDelay(this::refresh, 0, cfg.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("模型版本表已启用，轮询间隔: {}ms，最大陈旧时间: {}ms", cfg.getPollIntervalMs(), cfg.getMaxStalenessMs());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * 全量刷新版本表（一次批量查询）
+     */
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, Long> latest = modelRepository.queryAllModelVersions();
+            latest.forEach((modelId, version) -> versions.merge(modelId, version, Math::max));
+            // 数据库中已不存在的模型同步移除
+            versions.keySet().retainAll(latest.keySet());
+            lastRefreshEpochMs = start;
+            pollCount.increment();
+        } catch (Exception e) {
+            pollFailures.increment();
+            log.warn("刷新模型版本表失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 版本表当前是否在最大陈旧时间之内
+     */
+    public boolean isFresh() {
+        if (!props.getVersion().isEnabled()) return false;
+        return System.currentTimeMillis() - lastRefreshEpochMs <= props.getVersion().getMaxStalenessMs();
+    }
+
+    /**
+     * 获取模型的可信版本号
+     * @param modelId 模型ID
+     * @return 版本号；版本表陈旧或未收录该模型时返回null，调用方需查库
+     */
+    public Long lookup(String modelId) {
+        if (modelId == null || !isFresh()) return null;
+        return versions.get(modelId);
+    }
+
+    /**
+     * 本节点写入/更新模型后立即同步版本，无需等待下次轮询
+     */
+    public void record(String modelId, Long version) {
+        if (modelId == null || version == null) return;
+        versions.merge(modelId, version, Math::max);
+    }
+
+    public void remove(String modelId) {
+        if (modelId != null) versions.remove(modelId);
+    }
+
+    public void markLookupAvoided() {
+        avoidedLookups.increment();
+    }
+
+    public void markDbLookup() {
+        dbLookups.increment();
+    }
+
+    public long getAvoidedLookups() {
+        return avoidedLookups.sum();
+    }
+
+    public long getDbLookups() {
+        return dbLookups.sum();
+    }
+
+    public String getStats() {
+        long age = lastRefreshEpochMs == 0L ? -1 : System.currentTimeMillis() - lastRefreshEpochMs;
+        return String.format(
+            "版本表: size=%d, fresh=%s, lastRefreshAgeMs=%d, polls=%d, pollFailures=%d, avoidedDbLookups=%d, dbLookups=%d",
+            versions.size(), isFresh(), age, pollCount.sum(), pollFailures.sum(), avoidedLookups.sum(), dbLookups.sum()
+        );
+    }
+}
@@ -0,0 +1,64 @@
+package cn.cathead.ai.domain.model.service.registry.modelcache.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型缓存相关配置
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.model.cache")
+@Getter
+@Setter
+public class ModelCacheProperties {
+
+    private final Version version = new Version();
+
+    private final Warmup warmup = new Warmup();
+
+    private final Eviction eviction = new Eviction();
+
+    @Getter
+    @Setter
+    public static class Version {
+        /** 是否启用本地版本表（关闭后每次取模型都回源数据库校验版本） */
+        private boolean enabled = true;
+        /** 版本表轮询 model.version 的间隔（毫秒） */
+        private long pollIntervalMs = 2000;
+        /** 最大允许陈旧时间（毫秒），超过该时间未成功刷新则回退为逐次查库 */
+        private long maxStalenessMs = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Warmup {
+        /** 启动时是否预热全部模型实例 */
+        private boolean onStartup = true;
+        /** 并行构建模型实例的线程数 */
+        private int parallelism = 4;
+        /** 单次预热的最长等待时间（毫秒），超时未完成的模型计为失败，后续请求时再按需加载 */
+        private long timeoutMs = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class Eviction {
+        /** 每个模型缓存的总权重上限（默认权重10，约等于原先50个模型） */
+        private long maximumWeight = 500;
+        /** 单个模型的默认权重（内存占用估计） */
+        private int defaultWeight = 10;
+        /** 按提供者覆盖单个模型的权重，key为提供者名（小写） */
+        private Map<String, Integer> providerWeight = new HashMap<>();
+        /** 构建耗时每翻一倍所折减的权重对应的基准耗时（毫秒），构建越贵权重越低、同等容量下能留住更多 */
+        private long buildCostUnitMs = 100;
+        /** 按提供者配置空闲过期时间（毫秒），key为提供者名（小写），未配置则不过期 */
+        private Map<String, Long> expireAfterIdleMs = new HashMap<>();
+        /** 保留最近多少条淘汰记录用于排查 */
+        private int recentEvents = 50;
+    }
+}
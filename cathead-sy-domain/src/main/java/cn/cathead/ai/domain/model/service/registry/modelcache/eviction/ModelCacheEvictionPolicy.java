@@ -0,0 +1,125 @@
+package cn.cathead.ai.domain.model.service.registry.modelcache.eviction;
+
+import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
+import cn.cathead.ai.domain.model.service.registry.modelcache.config.ModelCacheProperties;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模型缓存淘汰策略
+ * 1. 权重：按提供者估计实例占用，并按构建耗时折减——构建越贵的模型占用预算越少，同等容量下能留住更多；
+ * 2. 过期：可按提供者配置空闲过期，每次读取都会重置；
+ * 3. 记录：按 RemovalCause 统计移除次数，并保留最近的淘汰记录；
+ * 4. 释放：任何原因移出缓存的实例都释放其对上游HTTP客户端的引用。
+ * 准入由 Caffeine 的 W-TinyLFU 负责，突发的一次性模型ID不会挤掉高频模型。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ModelCacheEvictionPolicy implements Weigher<String, ModelWrapper<?>>, Expiry<String, ModelWrapper<?>>,
+        RemovalListener<String, ModelWrapper<?>> {
+
+    private final ModelCacheProperties props;
+    private final UpstreamHttpClientRegistry httpClientRegistry;
+
+    private final Map<RemovalCause, LongAdder> removalCounts = new EnumMap<>(RemovalCause.class);
+    private final Deque<String> recentEvictions = new ArrayDeque<>();
+
+    {
+        for (RemovalCause cause : RemovalCause.values()) {
+            removalCounts.put(cause, new LongAdder());
+        }
+    }
+
+    @Override
+    public int weigh(String modelId, ModelWrapper<?> wrapper) {
+        ModelCacheProperties.Eviction cfg = props.getEviction();
+        int weight = cfg.getDefaultWeight();
+        if (wrapper.getProviderName() != null) {
+            weight = cfg.getProviderWeight().getOrDefault(wrapper.getProviderName().toLowerCase(), weight);
+        }
+        Long cost = wrapper.getBuildCostMs();
+        if (cost != null && cost > 0 && cfg.getBuildCostUnitMs() > 0) {
+            // 构建耗时每翻一倍折减1
+            int discount = 63 - Long.numberOfLeadingZeros(1 + cost / cfg.getBuildCostUnitMs());
+            weight -= discount;
+        }
+        return Math.max(1, weight);
+    }
+
+    @Override
+    public long expireAfterCreate(String modelId, ModelWrapper<?> wrapper, long currentTime) {
+        return idleNanos(wrapper);
+    }
+
+    @Override
+    public long expireAfterUpdate(String modelId, ModelWrapper<?> wrapper, long currentTime, long currentDuration) {
+        return idleNanos(wrapper);
+    }
+
+    @Override
+    public long expireAfterRead(String modelId, ModelWrapper<?> wrapper, long currentTime, long currentDuration) {
+        return idleNanos(wrapper);
+    }
+
+    private long idleNanos(ModelWrapper<?> wrapper) {
+        if (wrapper.getProviderName() == null) {
+            return Long.MAX_VALUE;
+        }
+        Long idleMs = props.getEviction().getExpireAfterIdleMs().get(wrapper.getProviderName().toLowerCase());
+        return idleMs == null || idleMs <= 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(idleMs);
+    }
+
+    @Override
+    public void onRemoval(String modelId, ModelWrapper<?> wrapper, RemovalCause cause) {
+        removalCounts.get(cause).increment();
+        if (wrapper != null) {
+            httpClientRegistry.release(wrapper.getUpstreamUrl());
+        }
+        if (!cause.wasEvicted()) {
+            return;
+        }
+        String event = String.format("%s(%s, v%s, cost=%sms, at=%d)", modelId, cause,
+                wrapper == null ? null : wrapper.getVersion(),
+                wrapper == null ? null : wrapper.getBuildCostMs(), System.currentTimeMillis());
+        log.info("模型缓存淘汰，模型ID: {}, 原因: {}", modelId, cause);
+        synchronized (recentEvictions) {
+            recentEvictions.addFirst(event);
+            while (recentEvictions.size() > Math.max(0, props.getEviction().getRecentEvents())) {
+                recentEvictions.removeLast();
+            }
+        }
+    }
+
+    public long getRemovalCount(RemovalCause cause) {
+        return removalCounts.get(cause).sum();
+    }
+
+    public List<String> getRecentEvictions() {
+        synchronized (recentEvictions) {
+            return new ArrayList<>(recentEvictions);
+        }
+    }
+
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("淘汰统计: ");
+        removalCounts.forEach((cause, count) -> sb.append(cause.name().toLowerCase()).append('=').append(count.sum()).append(", "));
+        sb.append("recent=").append(getRecentEvictions());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package cn.cathead.ai.domain.model.service.registry.modelcache.loader;
+
+import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.registry.modelcache.ModelVersionTable;
+import cn.cathead.ai.domain.model.service.registry.provider.IModelProvider;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
+import cn.cathead.ai.types.enums.ResponseCode;
+import cn.cathead.ai.types.exception.AppException;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Chat模型缓存加载器
+ * 由 LoadingCache 保证同一 modelId 同时只有一个线程执行构建，其余线程等待结果或继续使用旧实例。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ChatModelCacheLoader implements CacheLoader<String, ModelWrapper<ChatModel>> {
+
+    private final Map<String, IModelProvider> modelProviderMap;
+    private final IModelRepository iModelRepository;
+    private final ModelVersionTable modelVersionTable;
+    private final UpstreamHttpClientRegistry httpClientRegistry;
+
+    /**
+     * 调用方已持有的最新实体，加载时优先使用，避免再次查库
+     */
+    private final ConcurrentMap<String, ChatModelEntity> entityHints = new ConcurrentHashMap<>();
+
+    public void hint(ChatModelEntity entity) {
+        if (entity != null && entity.getModelId() != null) {
+            entityHints.put(entity.getModelId(), entity);
+        }
+    }
+
+    public void clearHint(String modelId, ChatModelEntity entity) {
+        entityHints.remove(modelId, entity);
+    }
+
+    @Override
+    public ModelWrapper<ChatModel> load(String modelId) {
+        ChatModelEntity entity = entityHints.remove(modelId);
+        if (entity == null) {
+            BaseModelEntity base = iModelRepository.queryModelById(modelId);
+            if (!(base instanceof ChatModelEntity chat)) {
+                throw new AppException(ResponseCode.MODEL_NOT_FOUND.getCode(), ResponseCode.MODEL_NOT_FOUND.getInfo());
+            }
+            entity = chat;
+        }
+
+        IModelProvider modelProvider = modelProviderMap.get(entity.getProviderName().toLowerCase());
+        if (modelProvider == null) {
+            throw new AppException(ResponseCode.FAILED_CHAT.getCode(), "未找到模型提供者: " + entity.getProviderName());
+        }
+
+        long start = System.currentTimeMillis();
+        ChatModel chatModel = modelProvider.createChat(entity);
+        if (chatModel == null) {
+            throw new AppException(ResponseCode.FAILED_CHAT.getCode(), "创建Chat模型实例失败，模型ID: " + modelId);
+        }
+        long now = System.currentTimeMillis();
+        log.info("加载Chat模型实例完成，模型ID: {}, 版本: {}, 耗时: {}ms", modelId, entity.getVersion(), now - start);
+
+        modelVersionTable.record(modelId, entity.getVersion());
+        httpClientRegistry.retain(entity.getUrl());
+        return ModelWrapper.<ChatModel>builder()
+                .modelInstance(chatModel)
+                .version(entity.getVersion())
+                .modelId(modelId)
+                .providerName(entity.getProviderName())
+                .upstreamUrl(entity.getUrl())
+                .buildCostMs(now - start)
+                .createTime(now)
+                .lastAccessTime(now)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package cn.cathead.ai.domain.model.service.registry.provider.http;
+
+import lombok.Getter;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个上游主机（scheme://host:port）共享的 HTTP 客户端及其调用指标
+ */
+@Getter
+public class UpstreamClient {
+
+    private final String origin;
+
+    /** 同一上游的所有模型实例共享此客户端，从而共享连接池、keep-alive 与 HTTP/2 连接 */
+    private final HttpClient httpClient;
+
+    /** 按 baseUrl + 凭证指纹缓存的 OllamaApi/OpenAiApi 实例 */
+    private final ConcurrentMap<String, Object> apis = new ConcurrentHashMap<>();
+
+    private final long createTime = System.currentTimeMillis();
+    private volatile long lastUsedTime = createTime;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalLatencyMs = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** 模型缓存中引用此上游的模型实例数 */
+    private final AtomicInteger references = new AtomicInteger();
+
+    public UpstreamClient(String origin, HttpClient httpClient) {
+        this.origin = origin;
+        this.httpClient = httpClient;
+    }
+
+    public void touch() {
+        lastUsedTime = System.currentTimeMillis();
+    }
+
+    public long begin() {
+        touch();
+        requests.increment();
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void end(long startNanos, boolean failed) {
+        inFlight.decrementAndGet();
+        totalLatencyMs.add((System.nanoTime() - startNanos) / 1_000_000);
+        if (failed) {
+            failures.increment();
+        }
+        touch();
+    }
+
+    public String getStats() {
+        long count = requests.sum();
+        return String.format("requests=%d, failures=%d, inFlight=%d, avgLatencyMs=%d, apis=%d, references=%d, idleMs=%d",
+                count, failures.sum(), inFlight.get(), count == 0 ? 0 : totalLatencyMs.sum() / count,
+                apis.size(), references.get(), System.currentTimeMillis() - lastUsedTime);
+    }
+}
@@ -0,0 +1,242 @@
+package cn.cathead.ai.domain.model.service.registry.provider.http;
+
+import cn.cathead.ai.domain.model.service.registry.provider.http.config.ModelHttpProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 模型上游HTTP客户端注册表
+ * 同一上游主机的所有模型实例共享一个JDK HttpClient（连接池、keep-alive、HTTP/2多路复用），
+ * OllamaApi/OpenAiApi 按 baseUrl + 凭证指纹复用，避免每个模型各自建池、重复TLS握手。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UpstreamHttpClientRegistry {
+
+    private final ModelHttpProperties props;
+
+    private final ConcurrentMap<String, UpstreamClient> upstreams = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService evictor;
+
+    @PostConstruct
+    public void init() {
+        if (props.getIdleEvictMs() > 0) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("upstream-http-evict-");
+            threadFactory.setDaemon(true);
+            evictor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            long period = Math.max(1000L, props.getIdleEvictMs() / 2);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        upstreams.clear();
+    }
+
+    /**
+     * 获取共享的 OllamaApi（Ollama 无需凭证，按 baseUrl 复用）
+     */
+    public OllamaApi ollamaApi(String baseUrl) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+            return new OllamaApi.Builder().build();
+        }
+        UpstreamClient upstream = upstream(baseUrl);
+        return (OllamaApi) upstream.getApis().computeIfAbsent("ollama|" + baseUrl, k -> new OllamaApi.Builder()
+                .baseUrl(baseUrl)
+                .restClientBuilder(restClientBuilder(upstream))
+                .webClientBuilder(webClientBuilder(upstream))
+                .build());
+    }
+
+    /**
+     * 获取共享的 OpenAiApi（按 baseUrl + apiKey 指纹复用，不同凭证不共用实例，但共用连接池）
+     */
+    public OpenAiApi openAiApi(String baseUrl, String apiKey) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+            return OpenAiApi.builder().apiKey(apiKey).build();
+        }
+        UpstreamClient upstream = upstream(baseUrl);
+        return (OpenAiApi) upstream.getApis().computeIfAbsent("openai|" + baseUrl + "|" + fingerprint(apiKey), k -> OpenAiApi.builder()
+                .baseUrl(baseUrl)
+                .apiKey(apiKey)
+                .restClientBuilder(restClientBuilder(upstream))
+                .webClientBuilder(webClientBuilder(upstream))
+                .build());
+    }
+
+    /**
+     * 基于共享 HttpClient 的 RestClient.Builder（每次返回新 Builder，调用方可自由追加默认头）
+     */
+    public RestClient.Builder restClientBuilder(String baseUrl) {
+        return restClientBuilder(upstream(baseUrl));
+    }
+
+    /**
+     * 基于共享 HttpClient 的 WebClient.Builder（每次返回新 Builder）
+     */
+    public WebClient.Builder webClientBuilder(String baseUrl) {
+        return webClientBuilder(upstream(baseUrl));
+    }
+
+    /**
+     * 各上游主机的调用指标
+     */
+    public Map<String, String> getStats() {
+        Map<String, String> stats = new TreeMap<>();
+        upstreams.forEach((origin, upstream) -> stats.put(origin, upstream.getStats()));
+        return stats;
+    }
+
+    /**
+     * 模型实例进入模型缓存时登记其上游，仍被引用的上游客户端不会因空闲被移除
+     */
+    public void retain(String baseUrl) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+            return;
+        }
+        upstreams.compute(origin(baseUrl), (o, upstream) -> {
+            UpstreamClient target = upstream != null ? upstream : newUpstream(o);
+            target.getReferences().incrementAndGet();
+            target.touch();
+            return target;
+        });
+    }
+
+    /**
+     * 模型实例移出模型缓存时释放登记，与 retain 成对调用
+     */
+    public void release(String baseUrl) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+            return;
+        }
+        upstreams.computeIfPresent(origin(baseUrl), (o, upstream) -> {
+            upstream.getReferences().updateAndGet(n -> Math.max(0, n - 1));
+            upstream.touch();
+            return upstream;
+        });
+    }
+
+    /**
+     * 移除长时间未使用且没有缓存模型引用的上游客户端；
+     * 仍被引用的上游保留在注册表中，保证同一上游新建的模型继续与其共享连接池
+     */
+    public void evictIdle() {
+        long deadline = System.currentTimeMillis() - props.getIdleEvictMs();
+        for (String origin : upstreams.keySet()) {
+            upstreams.computeIfPresent(origin, (o, upstream) -> {
+                boolean idle = upstream.getReferences().get() == 0
+                        && upstream.getInFlight().get() == 0
+                        && upstream.getLastUsedTime() < deadline;
+                if (idle) {
+                    log.info("移除空闲上游HTTP客户端: {}", o);
+                    return null;
+                }
+                return upstream;
+            });
+        }
+    }
+
+    private UpstreamClient upstream(String baseUrl) {
+        UpstreamClient upstream = upstreams.computeIfAbsent(origin(baseUrl), this::newUpstream);
+        upstream.touch();
+        return upstream;
+    }
+
+    private UpstreamClient newUpstream(String origin) {
+        log.info("创建共享上游HTTP客户端: {}", origin);
+        return new UpstreamClient(origin, newHttpClient(origin));
+    }
+
+    private HttpClient newHttpClient(String origin) {
+        boolean http2 = props.isHttp2() && origin.startsWith("https:");
+        return HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(props.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    private RestClient.Builder restClientBuilder(UpstreamClient upstream) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(upstream.getHttpClient());
+        requestFactory.setReadTimeout(Duration.ofMillis(props.getReadTimeoutMs()));
+        return RestClient.builder()
+                .requestFactory(requestFactory)
+                .requestInterceptor((request, body, execution) -> {
+                    long start = upstream.begin();
+                    boolean failed = true;
+                    try {
+                        ClientHttpResponse response = execution.execute(request, body);
+                        failed = response.getStatusCode().isError();
+                        return response;
+                    } finally {
+                        upstream.end(start, failed);
+                    }
+                });
+    }
+
+    private WebClient.Builder webClientBuilder(UpstreamClient upstream) {
+        return WebClient.builder()
+                .clientConnector(new JdkClientHttpConnector(upstream.getHttpClient()))
+                // 流式响应只统计到响应头返回（首包延迟）
+                .filter((request, next) -> Mono.defer(() -> {
+                    long start = upstream.begin();
+                    AtomicBoolean failed = new AtomicBoolean(true);
+                    return next.exchange(request)
+                            .doOnNext(response -> failed.set(response.statusCode().isError()))
+                            .doFinally(signal -> upstream.end(start, failed.get()));
+                }));
+    }
+
+    static String origin(String baseUrl) {
+        URI uri = URI.create(baseUrl.trim());
+        String scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase();
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(scheme) ? 443 : 80);
+        String host = uri.getHost() == null ? baseUrl.trim() : uri.getHost().toLowerCase();
+        return scheme + "://" + host + ":" + port;
+    }
+
+    private static String fingerprint(String apiKey) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return "-";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (Exception e) {
+            throw new IllegalStateException("计算凭证指纹失败", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package cn.cathead.ai.domain.model.service.registry.provider.http.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 模型上游HTTP客户端配置
+ * JDK HttpClient 的连接池大小与空闲保活时间是 JVM 级参数，只能在启动命令中指定，例如
+ * -Djdk.httpclient.connectionPoolSize=64 -Djdk.httpclient.keepalive.timeout=60
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.model.http")
+@Getter
+@Setter
+public class ModelHttpProperties {
+
+    /** https 上游是否启用 HTTP/2 多路复用（明文 http 上游固定使用 HTTP/1.1，避免 h2c 升级问题） */
+    private boolean http2 = true;
+
+    /** 建连超时（毫秒） */
+    private long connectTimeoutMs = 5000;
+
+    /** 同步调用读超时（毫秒），大模型生成耗时较长，默认5分钟 */
+    private long readTimeoutMs = 300000;
+
+    /** 上游客户端空闲多久后从注册表移除（毫秒），0表示不移除；仍被缓存中的模型实例引用的上游不会移除 */
+    private long idleEvictMs = 30 * 60 * 1000L;
+}
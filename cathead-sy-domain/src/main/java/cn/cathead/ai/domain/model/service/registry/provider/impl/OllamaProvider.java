@@ -4,8 +4,10 @@ import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
 import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
 import cn.cathead.ai.domain.model.model.valobj.ModelPropertyVo;
 import cn.cathead.ai.domain.model.service.registry.provider.IModelProvider;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
 import cn.cathead.ai.types.utils.ReflectionUtils;
 import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.ollama.OllamaChatModel;
@@ -26,12 +28,13 @@ import java.util.Map;
 @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class OllamaProvider implements IModelProvider {
 
+    @Resource
+    private UpstreamHttpClientRegistry httpClientRegistry;
+
     //初次创建
     @Override
     public OllamaChatModel createChat(ChatModelEntity chatModelEntity) {
-        OllamaApi ollamaApi = new OllamaApi.Builder()
-                .baseUrl(chatModelEntity.getUrl())
-                .build();
+        OllamaApi ollamaApi = httpClientRegistry.ollamaApi(chatModelEntity.getUrl());
 
         OllamaOptions.Builder optionsBuilder = OllamaOptions.builder()
                 .model(chatModelEntity.getModelName())
@@ -74,9 +77,8 @@ public class OllamaProvider implements IModelProvider {
 
     @Override
     public OllamaEmbeddingModel createEmbedding(EmbeddingModelEntity embeddingModelEntity) {
-        OllamaApi ollamaApi = new OllamaApi.Builder()
-                .baseUrl(embeddingModelEntity.getUrl())
-                .build(); // Ollama 也不需要 key
+        // Ollama 也不需要 key，同一 baseUrl 复用同一个 OllamaApi
+        OllamaApi ollamaApi = httpClientRegistry.ollamaApi(embeddingModelEntity.getUrl());
 
 
 
@@ -4,8 +4,10 @@ import cn.cathead.ai.domain.model.model.entity.ChatModelEntity;
 import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
 import cn.cathead.ai.domain.model.model.valobj.ModelPropertyVo;
 import cn.cathead.ai.domain.model.service.registry.provider.IModelProvider;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
 import cn.cathead.ai.types.utils.ReflectionUtils;
 import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.MetadataMode;
@@ -29,14 +31,13 @@ import java.util.Map;
 @Component("openai")
 @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class OpenaiProvider implements IModelProvider {
-    
+
+    @Resource
+    private UpstreamHttpClientRegistry httpClientRegistry;
+
     @Override
     public ChatModel createChat(ChatModelEntity chatModelEntity) {
-         OpenAiApi openAiApi= OpenAiApi
-                 .builder()
-                .baseUrl(chatModelEntity.getUrl())
-                .apiKey(chatModelEntity.getKey())
-                .build();
+        OpenAiApi openAiApi = httpClientRegistry.openAiApi(chatModelEntity.getUrl(), chatModelEntity.getKey());
 
         OpenAiChatOptions.Builder optionsBuilder = OpenAiChatOptions
                 .builder()
@@ -80,10 +81,7 @@ public class OpenaiProvider implements IModelProvider {
 
     @Override
     public EmbeddingModel createEmbedding(EmbeddingModelEntity embeddingModelEntity) {
-        OpenAiApi client = OpenAiApi.builder()
-                .baseUrl(embeddingModelEntity.getUrl())
-                .apiKey(embeddingModelEntity.getKey())
-                .build();
+        OpenAiApi client = httpClientRegistry.openAiApi(embeddingModelEntity.getUrl(), embeddingModelEntity.getKey());
 
         MetadataMode metadataMode=MetadataMode.ALL;
         OpenAiEmbeddingOptions.Builder optionsBuilder = OpenAiEmbeddingOptions.builder()
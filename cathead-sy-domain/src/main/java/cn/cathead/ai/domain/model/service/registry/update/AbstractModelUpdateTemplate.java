@@ -1,4 +1,5 @@
 package cn.cathead.ai.domain.model.service.registry.update;
+import cn.cathead.ai.domain.model.event.ModelConfigChangedEvent;
 import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
 import cn.cathead.ai.domain.model.model.entity.ValidationResult;
 import cn.cathead.ai.domain.model.repository.IModelRepository;
@@ -6,6 +7,7 @@ import cn.cathead.ai.domain.model.service.registry.modelcache.IModelCacheManager
 import cn.cathead.ai.types.exception.OptimisticLockException;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import java.util.Map;
 
 @Slf4j
@@ -17,6 +19,9 @@ public abstract class AbstractModelUpdateTemplate<T extends BaseModelEntity, D>
     @Resource
     protected IModelCacheManager modelCacheManager;
 
+    @Resource
+    protected ApplicationEventPublisher eventPublisher;
+
 
     // 动态表单已下线
 
@@ -135,6 +140,9 @@ public abstract class AbstractModelUpdateTemplate<T extends BaseModelEntity, D>
             T typedEntity = (T) latestEntity;
             updateCache(modelId, typedEntity);
 
+            // 4. 通知按模型缓存派生配置的组件（如短期记忆策略、分词器）
+            eventPublisher.publishEvent(new ModelConfigChangedEvent(modelId, latestEntity.getVersion()));
+
         } catch (OptimisticLockException e) {
             log.warn("{}模型配置更新失败，存在并发冲突，模型ID: {}", getModelType(), modelId);
             throw e;
@@ -1,17 +1,27 @@
 package cn.cathead.ai.domain.model.service.runtime.embedding;
 
+import cn.cathead.ai.domain.model.model.entity.ModelWrapper;
 import cn.cathead.ai.domain.model.service.registry.IModelProviderService;
+import cn.cathead.ai.domain.model.service.registry.modelcache.IModelCacheManager;
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.EmbeddingBatchDispatcher;
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.EmbeddingBatchResult;
+import cn.cathead.ai.domain.model.service.runtime.embedding.cache.EmbeddingCache;
 import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
 import cn.cathead.ai.types.enums.ResponseCode;
 import cn.cathead.ai.types.exception.AppException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.embedding.Embedding;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @Service
@@ -20,8 +30,20 @@ public class EmbeddingService implements IEmbeddingService {
 
     private final IModelProviderService modelProviderService;
 
-    public EmbeddingService(IModelProviderService modelProviderService) {
+    private final IModelCacheManager modelCacheManager;
+
+    private final EmbeddingCache embeddingCache;
+
+    private final EmbeddingBatchDispatcher embeddingBatchDispatcher;
+
+    public EmbeddingService(IModelProviderService modelProviderService,
+                            IModelCacheManager modelCacheManager,
+                            EmbeddingCache embeddingCache,
+                            EmbeddingBatchDispatcher embeddingBatchDispatcher) {
         this.modelProviderService = modelProviderService;
+        this.modelCacheManager = modelCacheManager;
+        this.embeddingCache = embeddingCache;
+        this.embeddingBatchDispatcher = embeddingBatchDispatcher;
     }
 
     @Override
@@ -41,8 +63,7 @@ public class EmbeddingService implements IEmbeddingService {
                 throw new AppException(ResponseCode.FAILED_EMBEDDING.getCode(), "没有提供要向量化的文本");
             }
 
-            EmbeddingRequest embeddingRequest = new EmbeddingRequest(textsToEmbed, null);
-            return embeddingModel.call(embeddingRequest);
+            return generateVectors(embeddingModel, request.getModelId(), textsToEmbed);
         } catch (Exception e) {
             String errorMsg = String.format("文本向量化处理失败: %s", e.getMessage());
             log.error(errorMsg, e);
@@ -50,6 +71,96 @@ public class EmbeddingService implements IEmbeddingService {
         }
     }
 
+    /**
+     * 先查向量化结果缓存，未命中的文本（去重后）交给微批分发器按模型的 maxBatchSize 合并发送，再按原顺序组装结果
+     */
+    private EmbeddingResponse generateVectors(EmbeddingModel embeddingModel, String modelId, List<String> texts) {
+        ModelWrapper<EmbeddingModel> wrapper = resolveWrapper(embeddingModel, modelId);
+        Long version = wrapper != null && embeddingCache.isEnabled() ? wrapper.getVersion() : null;
+
+        float[][] vectors = new float[texts.size()][];
+        List<EmbeddingResponseMetadata> upstream = List.of();
+        Map<String, List<Integer>> missIndexes = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            List<Integer> pending = missIndexes.get(text);
+            if (pending != null) {
+                pending.add(i);
+                continue;
+            }
+            if (version != null) {
+                vectors[i] = embeddingCache.get(modelId, version, text);
+            }
+            if (vectors[i] == null) {
+                missIndexes.computeIfAbsent(text, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!missIndexes.isEmpty()) {
+            List<String> missTexts = new ArrayList<>(missIndexes.keySet());
+            Integer maxBatchSize = wrapper != null ? wrapper.getMaxBatchSize() : null;
+            EmbeddingBatchResult batchResult = embeddingBatchDispatcher.embedWithMetadata(modelId, embeddingModel, maxBatchSize, missTexts);
+            List<float[]> results = batchResult.getVectors();
+            upstream = batchResult.getMetadata();
+            for (int m = 0; m < missTexts.size(); m++) {
+                String text = missTexts.get(m);
+                float[] vector = results.get(m);
+                if (version != null) {
+                    embeddingCache.put(modelId, version, text, vector);
+                }
+                for (Integer i : missIndexes.get(text)) {
+                    vectors[i] = vector;
+                }
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings, mergeMetadata(upstream, modelId));
+    }
+
+    /**
+     * 汇总本次涉及的各批次模型响应元数据：模型名取模型返回值（未调用模型时为模型ID），
+     * 用量按批次求和（全部命中缓存时为 0），其余元数据项按批次顺序合并
+     */
+    private static EmbeddingResponseMetadata mergeMetadata(List<EmbeddingResponseMetadata> upstream, String modelId) {
+        String model = null;
+        int promptTokens = 0;
+        int totalTokens = 0;
+        Map<String, Object> extra = new LinkedHashMap<>();
+        for (EmbeddingResponseMetadata metadata : upstream) {
+            if (model == null && metadata.getModel() != null && !metadata.getModel().isBlank()) {
+                model = metadata.getModel();
+            }
+            Usage usage = metadata.getUsage();
+            if (usage != null) {
+                promptTokens += usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+                totalTokens += usage.getTotalTokens() == null ? 0 : usage.getTotalTokens();
+            }
+            for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+                extra.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        return new EmbeddingResponseMetadata(model != null ? model : modelId,
+                new DefaultUsage(promptTokens, 0, totalTokens), extra);
+    }
+
+    /**
+     * 获取当前缓存中的模型包装器（版本、批大小）；传入的模型实例不是缓存中的实例时返回null（不走结果缓存）
+     */
+    private ModelWrapper<EmbeddingModel> resolveWrapper(EmbeddingModel embeddingModel, String modelId) {
+        if (modelId == null) {
+            return null;
+        }
+        ModelWrapper<EmbeddingModel> wrapper = modelCacheManager.getEmbeddingModelWrapper(modelId);
+        if (wrapper == null || wrapper.getVersion() == null || wrapper.getModelInstance() != embeddingModel) {
+            return null;
+        }
+        return wrapper;
+    }
+
     private List<String> buildTextsList(EmbeddingRequestDTO request) {
         List<String> textsToEmbed = new ArrayList<>();
 
@@ -0,0 +1,285 @@
+package cn.cathead.ai.domain.model.service.runtime.embedding.batch;
+
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.config.EmbeddingBatchProperties;
+import cn.cathead.ai.types.enums.ResponseCode;
+import cn.cathead.ai.types.exception.AppException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 向量化微批分发器
+ * 同一模型实例上并发调用方提交的文本在 lingerMs 窗口内合并（上限为模型的 maxBatchSize），
+ * 以一次 EmbeddingRequest 发送，再把结果按文本分发回各调用方。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class EmbeddingBatchDispatcher {
+
+    private final EmbeddingBatchProperties props;
+
+    private ScheduledExecutorService lingerScheduler;
+    private ExecutorService batchExecutor;
+
+    /** 每个模型一个批队列；模型实例刷新后替换为新队列，旧队列发送完剩余文本后回收 */
+    private final ConcurrentMap<String, BatchQueue> queues = new ConcurrentHashMap<>();
+
+    private final LongAdder submittedTexts = new LongAdder();
+    private final LongAdder sentTexts = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory lingerFactory = new CustomizableThreadFactory("embedding-batch-linger-");
+        lingerFactory.setDaemon(true);
+        lingerScheduler = Executors.newSingleThreadScheduledExecutor(lingerFactory);
+        CustomizableThreadFactory workerFactory = new CustomizableThreadFactory("embedding-batch-");
+        workerFactory.setDaemon(true);
+        batchExecutor = Executors.newFixedThreadPool(Math.max(1, props.getWorkerThreads()), workerFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (lingerScheduler != null) {
+            lingerScheduler.shutdownNow();
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 向量化一组文本，可能与其他调用方的文本合并发送
+     * @param modelId 模型ID（仅用于日志）
+     * @param embeddingModel 模型实例
+     * @param maxBatchSize 模型单次请求最大文本数，为空使用默认值
+     * @param texts 待向量化文本
+     * @return 与 texts 一一对应的向量
+     */
+    public List<float[]> embed(String modelId, EmbeddingModel embeddingModel, Integer maxBatchSize, List<String> texts) {
+        return embedWithMetadata(modelId, embeddingModel, maxBatchSize, texts).getVectors();
+    }
+
+    /**
+     * 同 embed，另返回这些文本所在各批次的模型响应元数据（模型名、用量）
+     */
+    public EmbeddingBatchResult embedWithMetadata(String modelId, EmbeddingModel embeddingModel, Integer maxBatchSize, List<String> texts) {
+        if (texts.isEmpty()) {
+            return new EmbeddingBatchResult(List.of(), List.of());
+        }
+        submittedTexts.add(texts.size());
+        int limit = maxBatchSize != null && maxBatchSize > 0 ? maxBatchSize : Math.max(1, props.getDefaultMaxBatchSize());
+        List<BatchVector> results = new ArrayList<>(texts.size());
+        if (!props.isEnabled()) {
+            for (int from = 0; from < texts.size(); from += limit) {
+                results.addAll(callModel(embeddingModel, texts.subList(from, Math.min(texts.size(), from + limit))));
+            }
+            return toResult(results);
+        }
+
+        BatchQueue queue = queues.compute(String.valueOf(modelId), (k, current) ->
+                current != null && current.embeddingModel == embeddingModel && current.limit == limit
+                        ? current : new BatchQueue(modelId, embeddingModel, limit));
+        List<CompletableFuture<BatchVector>> futures = queue.submit(texts);
+        try {
+            for (CompletableFuture<BatchVector> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new AppException(ResponseCode.FAILED_EMBEDDING.getCode(), cause.getMessage());
+        }
+        return toResult(results);
+    }
+
+    private static EmbeddingBatchResult toResult(List<BatchVector> results) {
+        List<float[]> vectors = new ArrayList<>(results.size());
+        List<EmbeddingResponseMetadata> metadata = new ArrayList<>();
+        Set<EmbeddingResponseMetadata> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BatchVector result : results) {
+            vectors.add(result.output);
+            if (result.metadata != null && seen.add(result.metadata)) {
+                metadata.add(result.metadata);
+            }
+        }
+        return new EmbeddingBatchResult(vectors, metadata);
+    }
+
+    private List<BatchVector> callModel(EmbeddingModel embeddingModel, List<String> texts) {
+        batches.increment();
+        sentTexts.add(texts.size());
+        EmbeddingResponse response = embeddingModel.call(new EmbeddingRequest(texts, null));
+        List<Embedding> results = response.getResults();
+        if (results == null || results.size() != texts.size()) {
+            throw new AppException(ResponseCode.FAILED_EMBEDDING.getCode(), "向量化结果数量与请求文本数量不一致");
+        }
+        BatchVector[] vectors = new BatchVector[texts.size()];
+        for (Embedding embedding : results) {
+            vectors[embedding.getIndex()] = new BatchVector(embedding.getOutput(), response.getMetadata());
+        }
+        return Arrays.asList(vectors);
+    }
+
+    private void send(String modelId, EmbeddingModel embeddingModel, List<Pending> batch) {
+        // 合并后的批次内再按文本去重
+        Map<String, List<CompletableFuture<BatchVector>>> byText = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byText.computeIfAbsent(pending.text, k -> new ArrayList<>()).add(pending.future);
+        }
+        List<String> texts = new ArrayList<>(byText.keySet());
+        try {
+            List<BatchVector> vectors = callModel(embeddingModel, texts);
+            for (int i = 0; i < texts.size(); i++) {
+                for (CompletableFuture<BatchVector> future : byText.get(texts.get(i))) {
+                    future.complete(vectors.get(i));
+                }
+            }
+        } catch (Throwable e) {
+            failedBatches.increment();
+            log.warn("批量向量化失败，模型ID: {}, 文本数: {}, 错误: {}", modelId, texts.size(), e.getMessage());
+            for (Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    public String getStats() {
+        long batchCount = batches.sum();
+        return String.format(
+            "向量化微批: enabled=%s, lingerMs=%d, submittedTexts=%d, sentTexts=%d, batches=%d, failedBatches=%d, avgBatchSize=%.2f",
+            props.isEnabled(), props.getLingerMs(), submittedTexts.sum(), sentTexts.sum(), batchCount, failedBatches.sum(),
+            batchCount == 0 ? 0.0 : sentTexts.sum() / (double) batchCount
+        );
+    }
+
+    /**
+     * 单条文本的向量及其所在批次的响应元数据
+     */
+    private static final class BatchVector {
+        final float[] output;
+        final EmbeddingResponseMetadata metadata;
+
+        BatchVector(float[] output, EmbeddingResponseMetadata metadata) {
+            this.output = output;
+            this.metadata = metadata;
+        }
+    }
+
+    private static final class Pending {
+        final String text;
+        final CompletableFuture<BatchVector> future = new CompletableFuture<>();
+
+        Pending(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * 单个模型实例的攒批队列
+     */
+    private final class BatchQueue {
+        private final String modelId;
+        private final EmbeddingModel embeddingModel;
+        private final int limit;
+
+        private List<Pending> pending = new ArrayList<>();
+        private ScheduledFuture<?> lingerTask;
+
+        BatchQueue(String modelId, EmbeddingModel embeddingModel, int limit) {
+            this.modelId = modelId;
+            this.embeddingModel = embeddingModel;
+            this.limit = limit;
+        }
+
+        List<CompletableFuture<BatchVector>> submit(List<String> texts) {
+            List<CompletableFuture<BatchVector>> futures = new ArrayList<>(texts.size());
+            List<List<Pending>> full = new ArrayList<>();
+            synchronized (this) {
+                for (String text : texts) {
+                    Pending p = new Pending(text);
+                    futures.add(p.future);
+                    pending.add(p);
+                    if (pending.size() >= limit) {
+                        full.add(drain());
+                    }
+                }
+                if (pending.isEmpty()) {
+                    cancelLinger();
+                } else if (lingerTask == null) {
+                    lingerTask = lingerScheduler.schedule(this::flush, props.getLingerMs(), TimeUnit.MILLISECONDS);
+                }
+            }
+            // 攒满的批次在锁外提交
+            for (List<Pending> batch : full) {
+                dispatch(batch);
+            }
+            return futures;
+        }
+
+        private void flush() {
+            List<Pending> batch;
+            synchronized (this) {
+                lingerTask = null;
+                batch = drain();
+            }
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+            }
+        }
+
+        private List<Pending> drain() {
+            List<Pending> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        }
+
+        private void cancelLinger() {
+            if (lingerTask != null) {
+                lingerTask.cancel(false);
+                lingerTask = null;
+            }
+        }
+
+        private void dispatch(List<Pending> batch) {
+            try {
+                batchExecutor.execute(() -> send(modelId, embeddingModel, batch));
+            } catch (Exception e) {
+                for (Pending p : batch) {
+                    p.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
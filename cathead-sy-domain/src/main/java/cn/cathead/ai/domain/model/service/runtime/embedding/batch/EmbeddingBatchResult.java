@@ -0,0 +1,19 @@
+package cn.cathead.ai.domain.model.service.runtime.embedding.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.util.List;
+
+/**
+ * 微批向量化结果：与请求文本一一对应的向量，以及这些文本所在各批次的模型响应元数据
+ * 与其他调用方合并发送时，元数据中的用量为整批的用量。
+ */
+@Getter
+@AllArgsConstructor
+public class EmbeddingBatchResult {
+    private final List<float[]> vectors;
+    /** 按批次去重，未调用模型时为空 */
+    private final List<EmbeddingResponseMetadata> metadata;
+}
@@ -0,0 +1,28 @@
+package cn.cathead.ai.domain.model.service.runtime.embedding.batch.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 向量化微批配置
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.model.embedding.batch")
+@Getter
+@Setter
+public class EmbeddingBatchProperties {
+
+    /** 是否合并并发调用方的向量化请求 */
+    private boolean enabled = true;
+
+    /** 攒批等待窗口（毫秒），窗口内到达的文本合并为一次请求；攒满 maxBatchSize 立即发送 */
+    private long lingerMs = 5;
+
+    /** 模型未配置 maxBatchSize 时的默认批大小 */
+    private int defaultMaxBatchSize = 32;
+
+    /** 发送批请求的线程数 */
+    private int workerThreads = 4;
+}
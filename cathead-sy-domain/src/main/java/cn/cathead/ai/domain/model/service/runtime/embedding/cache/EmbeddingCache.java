@@ -0,0 +1,182 @@
+package cn.cathead.ai.domain.model.service.runtime.embedding.cache;
+
+import cn.cathead.ai.domain.model.service.runtime.embedding.cache.config.EmbeddingCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 向量化结果缓存（内容寻址）
+ * 键为 (modelId, 模型版本, 文本SHA-256)，值为原始 float[]。
+ * 一级为堆内 Caffeine（按向量字节数限容），可选二级为堆外/内存映射环形缓冲区：堆内按容量淘汰的向量降级到二级，二级命中后提升回堆内。
+ * 模型版本变化后旧版本的向量全部失效。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class EmbeddingCache {
+
+    /** 每条堆内缓存除向量外的估算开销（键、数组头等） */
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final EmbeddingCacheProperties props;
+
+    private Cache<EmbeddingCacheKey, float[]> heap;
+    private OffHeapVectorStore offHeap;
+
+    /** 每个模型最近一次看到的版本，用于版本变化时主动清理 */
+    private final ConcurrentMap<String, Long> modelVersions = new ConcurrentHashMap<>();
+
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder offHeapHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!props.isEnabled()) {
+            log.info("向量化结果缓存未启用");
+            return;
+        }
+        EmbeddingCacheProperties.OffHeap offHeapCfg = props.getOffHeap();
+        if (offHeapCfg.isEnabled()) {
+            try {
+                offHeap = new OffHeapVectorStore(offHeapCfg.getCapacityBytes(), offHeapCfg.getMmapFile());
+                log.info("向量化结果堆外缓存已启用，容量: {} bytes, 映射文件: {}", offHeap.getCapacity(), offHeapCfg.getMmapFile());
+            } catch (Exception e) {
+                log.warn("向量化结果堆外缓存初始化失败，仅使用堆内缓存: {}", e.getMessage());
+            }
+        }
+        heap = Caffeine.newBuilder()
+                .maximumWeight(props.getHeapMaxBytes())
+                .<EmbeddingCacheKey, float[]>weigher((key, vector) -> ENTRY_OVERHEAD_BYTES + vector.length * Float.BYTES)
+                .expireAfterWrite(props.getTtlMs(), TimeUnit.MILLISECONDS)
+                .removalListener((EmbeddingCacheKey key, float[] vector, RemovalCause cause) -> {
+                    // 仅容量淘汰降级到堆外，降级时重新计时
+                    if (cause == RemovalCause.SIZE && offHeap != null && key != null && vector != null) {
+                        offHeap.put(key, vector, System.currentTimeMillis());
+                        demotions.increment();
+                    }
+                })
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (offHeap != null) {
+            try {
+                offHeap.close();
+            } catch (Exception e) {
+                log.warn("关闭向量化结果堆外缓存失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return heap != null;
+    }
+
+    /**
+     * 查询缓存
+     * @return 向量副本，未命中返回null
+     */
+    public float[] get(String modelId, long version, String text) {
+        if (!isEnabled()) return null;
+        observeVersion(modelId, version);
+        EmbeddingCacheKey key = new EmbeddingCacheKey(modelId, version, hash(text));
+        float[] vector = heap.getIfPresent(key);
+        if (vector != null) {
+            heapHits.increment();
+            recordSaved(text, vector);
+            return vector.clone();
+        }
+        if (offHeap != null) {
+            vector = offHeap.get(key, System.currentTimeMillis() - props.getTtlMs());
+            if (vector != null) {
+                offHeapHits.increment();
+                recordSaved(text, vector);
+                offHeap.remove(key);
+                heap.put(key, vector.clone());
+                return vector;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String modelId, long version, String text, float[] vector) {
+        if (!isEnabled() || vector == null) return;
+        observeVersion(modelId, version);
+        heap.put(new EmbeddingCacheKey(modelId, version, hash(text)), vector.clone());
+    }
+
+    /**
+     * 清空某个模型的全部缓存向量
+     */
+    public void invalidateModel(String modelId) {
+        if (!isEnabled()) return;
+        modelVersions.remove(modelId);
+        heap.asMap().keySet().removeIf(k -> k.getModelId().equals(modelId));
+        if (offHeap != null) {
+            offHeap.removeModel(modelId, Long.MIN_VALUE);
+        }
+    }
+
+    private void observeVersion(String modelId, long version) {
+        Long previous = modelVersions.put(modelId, version);
+        if (previous != null && previous != version) {
+            log.info("Embedding模型版本变化，清理旧版本向量缓存，模型ID: {}, {} -> {}", modelId, previous, version);
+            heap.asMap().keySet().removeIf(k -> k.getModelId().equals(modelId) && k.getVersion() != version);
+            if (offHeap != null) {
+                offHeap.removeModel(modelId, version);
+            }
+        }
+    }
+
+    private void recordSaved(String text, float[] vector) {
+        bytesSaved.add((long) vector.length * Float.BYTES + text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static String hash(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8).toString();
+    }
+
+    public long getHits() {
+        return heapHits.sum() + offHeapHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public String getStats() {
+        if (!isEnabled()) {
+            return "向量化缓存: disabled";
+        }
+        long hits = getHits();
+        long total = hits + misses.sum();
+        return String.format(
+            "向量化缓存: heapSize=%d, heapHits=%d, offHeapHits=%d, misses=%d, hitRate=%.2f%%, bytesSaved=%d, demotions=%d, offHeapSize=%d, offHeapUsedBytes=%d",
+            heap.estimatedSize(), heapHits.sum(), offHeapHits.sum(), misses.sum(),
+            total == 0 ? 0.0 : hits * 100.0 / total, bytesSaved.sum(), demotions.sum(),
+            offHeap == null ? 0 : offHeap.size(), offHeap == null ? 0 : offHeap.usedBytes()
+        );
+    }
+}
@@ -0,0 +1,22 @@
+package cn.cathead.ai.domain.model.service.runtime.embedding.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 向量化结果缓存键：(modelId, 模型版本, 文本SHA-256)
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class EmbeddingCacheKey {
+
+    private final String modelId;
+
+    private final long version;
+
+    private final String textHash;
+}
@@ -0,0 +1,144 @@
+package cn.cathead.ai.domain.model.service.runtime.embedding.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 堆外向量存储
+ * 以追加写的环形缓冲区保存原始 float 向量（DirectByteBuffer 或内存映射文件），索引保留在堆内。
+ * 写满后从头覆盖最旧的数据；读取时通过写指针判断是否已被覆盖，读完再校验一次，避免读到被并发覆盖的数据。
+ */
+@Slf4j
+public class OffHeapVectorStore implements Closeable {
+
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final FileChannel channel;
+
+    private final ConcurrentMap<EmbeddingCacheKey, Slot> index = new ConcurrentHashMap<>();
+
+    /** 逻辑写指针（单调递增），仅在 synchronized 中修改 */
+    private volatile long head = 0L;
+    private long writes = 0L;
+
+    private static final class Slot {
+        final long position;
+        final int dims;
+        final long writeTime;
+
+        Slot(long position, int dims, long writeTime) {
+            this.position = position;
+            this.dims = dims;
+            this.writeTime = writeTime;
+        }
+    }
+
+    public OffHeapVectorStore(long capacityBytes, String mmapFile) throws IOException {
+        // ByteBuffer 最大 2GB，按 float 对齐
+        this.capacity = (int) (Math.min(capacityBytes, Integer.MAX_VALUE - 8L) & ~3L);
+        if (mmapFile != null && !mmapFile.isBlank()) {
+            this.channel = FileChannel.open(Path.of(mmapFile), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity).order(ByteOrder.nativeOrder());
+        } else {
+            this.channel = null;
+            this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    public synchronized void put(EmbeddingCacheKey key, float[] vector, long now) {
+        int bytes = vector.length * Float.BYTES;
+        if (bytes == 0 || bytes > capacity) {
+            return;
+        }
+        long offset = head % capacity;
+        if (offset + bytes > capacity) {
+            // 尾部放不下，跳到下一圈起点
+            head += capacity - offset;
+        }
+        long position = head;
+        // 先推进写指针再写数据，使并发读者能识别出即将被覆盖的区域
+        head = position + bytes;
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.nativeOrder());
+        view.position((int) (position % capacity));
+        view.asFloatBuffer().put(vector);
+        index.put(key, new Slot(position, vector.length, now));
+        if (++writes % SWEEP_INTERVAL == 0) {
+            sweep(0L);
+        }
+    }
+
+    /**
+     * @param minWriteTime 早于该时间写入的向量视为过期
+     * @return 向量副本；不存在、已过期或已被覆盖时返回null
+     */
+    public float[] get(EmbeddingCacheKey key, long minWriteTime) {
+        Slot slot = index.get(key);
+        if (slot == null) {
+            return null;
+        }
+        if (slot.writeTime < minWriteTime || overwritten(slot)) {
+            index.remove(key, slot);
+            return null;
+        }
+        float[] vector = new float[slot.dims];
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.nativeOrder());
+        view.position((int) (slot.position % capacity));
+        view.asFloatBuffer().get(vector);
+        if (overwritten(slot)) {
+            index.remove(key, slot);
+            return null;
+        }
+        return vector;
+    }
+
+    public void remove(EmbeddingCacheKey key) {
+        index.remove(key);
+    }
+
+    public void removeModel(String modelId, long keepVersion) {
+        index.keySet().removeIf(k -> k.getModelId().equals(modelId) && k.getVersion() != keepVersion);
+    }
+
+    /**
+     * 清理已被覆盖或过期的索引项
+     */
+    public void sweep(long minWriteTime) {
+        index.values().removeIf(slot -> slot.writeTime < minWriteTime || overwritten(slot));
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long usedBytes() {
+        return Math.min(head, capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private boolean overwritten(Slot slot) {
+        return slot.position < head - capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.clear();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
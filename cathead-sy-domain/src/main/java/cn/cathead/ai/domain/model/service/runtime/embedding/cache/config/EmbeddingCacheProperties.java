@@ -0,0 +1,38 @@
+package cn.cathead.ai.domain.model.service.runtime.embedding.cache.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 向量化结果缓存配置
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.model.embedding.cache")
+@Getter
+@Setter
+public class EmbeddingCacheProperties {
+
+    /** 是否启用向量化结果缓存 */
+    private boolean enabled = true;
+
+    /** 堆内缓存上限（向量字节数） */
+    private long heapMaxBytes = 64L * 1024 * 1024;
+
+    /** 缓存有效期（毫秒），两级缓存共用 */
+    private long ttlMs = 24 * 60 * 60 * 1000L;
+
+    private final OffHeap offHeap = new OffHeap();
+
+    @Getter
+    @Setter
+    public static class OffHeap {
+        /** 是否启用堆外二级缓存（堆内淘汰的向量降级到此处，命中后再提升回堆内） */
+        private boolean enabled = false;
+        /** 堆外环形缓冲区容量（字节），写满后从头覆盖最旧的向量 */
+        private long capacityBytes = 256L * 1024 * 1024;
+        /** 内存映射文件路径，为空则使用 DirectByteBuffer */
+        private String mmapFile = "";
+    }
+}
@@ -3,6 +3,8 @@ import cn.cathead.ai.infrastructure.persistent.po.ModelConfig;
 import cn.cathead.ai.infrastructure.persistent.po.ChatRequest;
 import org.apache.ibatis.annotations.Mapper;
 
+import java.util.List;
+
 @Mapper
 public interface IModelDao {
 
@@ -16,4 +18,10 @@ public interface IModelDao {
     void deleteModelRecord(String modelId);
     
     ModelConfig queryModelById(String modelId);
+
+    // 仅返回 model_id 与 version，供版本表轮询使用
+    List<ModelConfig> queryAllModelVersions();
+
+    // 一次性查询全部模型配置，供缓存预热/批量刷新使用
+    List<ModelConfig> queryAllModels();
 }
\ No newline at end of file
@@ -0,0 +1,334 @@
+package cn.cathead.ai.infrastructure.persistent.hnsw;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 进程内 HNSW 近似最近邻索引
+ * 图结构在堆上，向量通过 VectorSource 按偏移读取（可位于堆外映射区）。
+ * 删除为逻辑删除：节点继续参与图的连通，但不会出现在结果中。
+ * 写入互斥、检索并发（读写锁）。
+ */
+public class HnswIndex {
+
+    /**
+     * 向量访问与距离计算，距离越小越相似
+     */
+    public interface VectorSource {
+        float distance(float[] query, long offset);
+
+        float[] vector(long offset);
+    }
+
+    private static final int MAX_LEVEL = 16;
+
+    private final VectorSource source;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private int entryPoint = -1;
+    private int topLevel = -1;
+    private int deletedCount = 0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static final class Node {
+        final String key;
+        final long offset;
+        final int[][] links;
+        final int[] linkCounts;
+        volatile boolean deleted;
+
+        Node(String key, long offset, int level, int m, int maxM0) {
+            this.key = key;
+            this.offset = offset;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                links[l] = new int[(l == 0 ? maxM0 : m) + 1];
+            }
+        }
+
+        int level() {
+            return links.length - 1;
+        }
+    }
+
+    /**
+     * 检索结果
+     */
+    public static final class Hit {
+        public final int node;
+        public final String key;
+        public final float distance;
+
+        Hit(int node, String key, float distance) {
+            this.node = node;
+            this.key = key;
+            this.distance = distance;
+        }
+    }
+
+    private static final class Candidate {
+        final int node;
+        final float distance;
+
+        Candidate(int node, float distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(c -> c.distance);
+    private static final Comparator<Candidate> FARTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    public HnswIndex(VectorSource source, int m, int efConstruction) {
+        this.source = source;
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1 / Math.log(this.m);
+    }
+
+    /**
+     * 插入一个向量
+     * @param key 业务键（记忆ID）
+     * @param offset 向量在 VectorSource 中的偏移
+     * @return 节点编号
+     */
+    public int insert(String key, long offset) {
+        float[] query = source.vector(offset);
+        int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier));
+        lock.writeLock().lock();
+        try {
+            int id = nodes.size();
+            Node node = new Node(key, offset, level, m, maxM0);
+            nodes.add(node);
+            if (entryPoint < 0) {
+                entryPoint = id;
+                topLevel = level;
+                return id;
+            }
+
+            int ep = entryPoint;
+            for (int l = topLevel; l > level; l--) {
+                ep = greedy(query, ep, l);
+            }
+            for (int l = Math.min(level, topLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(query, ep, efConstruction, l, n -> true);
+                List<Candidate> neighbors = selectNeighbors(candidates, m);
+                for (Candidate nb : neighbors) {
+                    node.links[l][node.linkCounts[l]++] = nb.node;
+                }
+                for (Candidate nb : neighbors) {
+                    connect(nb.node, id, l);
+                }
+                ep = candidates.get(0).node;
+            }
+            if (level > topLevel) {
+                topLevel = level;
+                entryPoint = id;
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void markDeleted(int node) {
+        lock.writeLock().lock();
+        try {
+            Node n = nodes.get(node);
+            if (!n.deleted) {
+                n.deleted = true;
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 近似 k 近邻检索
+     * @param filter 节点过滤条件（已删除节点总是被排除）
+     */
+    public List<Hit> search(float[] query, int k, int ef, IntPredicate filter) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int ep = entryPoint;
+            for (int l = topLevel; l > 0; l--) {
+                ep = greedy(query, ep, l);
+            }
+            List<Candidate> found = searchLayer(query, ep, Math.max(ef, k), 0,
+                    n -> !nodes.get(n).deleted && filter.test(n));
+            List<Hit> hits = new ArrayList<>(Math.min(k, found.size()));
+            for (int i = 0; i < found.size() && i < k; i++) {
+                Candidate c = found.get(i);
+                hits.add(new Hit(c.node, nodes.get(c.node).key, c.distance));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String keyOf(int node) {
+        lock.readLock().lock();
+        try {
+            return nodes.get(node).key;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size() - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int greedy(float[] query, int ep, int level) {
+        int current = ep;
+        float best = source.distance(query, nodes.get(current).offset);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Node node = nodes.get(current);
+            if (level > node.level()) {
+                break;
+            }
+            for (int i = 0; i < node.linkCounts[level]; i++) {
+                int nb = node.links[level][i];
+                float d = source.distance(query, nodes.get(nb).offset);
+                if (d < best) {
+                    best = d;
+                    current = nb;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层 beam search；只有满足 accept 的节点进入结果集，其余节点仍用于图遍历
+     * @return 按距离升序的结果
+     */
+    private List<Candidate> searchLayer(float[] query, int ep, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FARTHEST_FIRST);
+
+        Candidate start = new Candidate(ep, source.distance(query, nodes.get(ep).offset));
+        visited.set(ep);
+        candidates.add(start);
+        if (accept.test(ep)) {
+            results.add(start);
+        }
+        float bound = results.isEmpty() ? Float.MAX_VALUE : start.distance;
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (current.distance > bound && results.size() >= ef) {
+                break;
+            }
+            Node node = nodes.get(current.node);
+            if (level > node.level()) {
+                continue;
+            }
+            for (int i = 0; i < node.linkCounts[level]; i++) {
+                int nb = node.links[level][i];
+                if (visited.get(nb)) {
+                    continue;
+                }
+                visited.set(nb);
+                float d = source.distance(query, nodes.get(nb).offset);
+                if (results.size() < ef || d < bound) {
+                    Candidate c = new Candidate(nb, d);
+                    candidates.add(c);
+                    if (accept.test(nb)) {
+                        results.add(c);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                        bound = results.peek().distance;
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * 启发式选邻居：候选只有在比已选邻居更接近查询点时才保留，使邻居分布在不同方向上
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> sortedCandidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        for (Candidate c : sortedCandidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            float[] cv = source.vector(nodes.get(c.node).offset);
+            boolean good = true;
+            for (Candidate s : selected) {
+                if (source.distance(cv, nodes.get(s.node).offset) < c.distance) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) {
+                selected.add(c);
+            }
+        }
+        return selected;
+    }
+
+    private void connect(int from, int to, int level) {
+        Node node = nodes.get(from);
+        int max = level == 0 ? maxM0 : m;
+        node.links[level][node.linkCounts[level]++] = to;
+        if (node.linkCounts[level] <= max) {
+            return;
+        }
+        // 邻居超限：按到 from 的距离重新筛选
+        float[] base = source.vector(node.offset);
+        List<Candidate> candidates = new ArrayList<>(node.linkCounts[level]);
+        for (int i = 0; i < node.linkCounts[level]; i++) {
+            int nb = node.links[level][i];
+            candidates.add(new Candidate(nb, source.distance(base, nodes.get(nb).offset)));
+        }
+        candidates.sort(NEAREST_FIRST);
+        List<Candidate> kept = selectNeighbors(candidates, max);
+        node.linkCounts[level] = 0;
+        for (Candidate c : kept) {
+            node.links[level][node.linkCounts[level]++] = c.node;
+        }
+    }
+}
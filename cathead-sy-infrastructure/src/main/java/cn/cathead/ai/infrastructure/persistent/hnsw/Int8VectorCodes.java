@@ -0,0 +1,98 @@
+package cn.cathead.ai.infrastructure.persistent.hnsw;
+
+/**
+ * int8 标量量化向量（堆上，每维1字节 + 每个向量一个缩放系数）
+ * 编码：c[i] = round(v[i] / max|v| * 127)，距离计算为非对称形式（查询保持 float），误差只来自被检索向量一侧。
+ * 只追加，追加由调用方串行执行；扩容时整体替换数组，读线程通过 volatile 引用看到新数组。
+ */
+public class Int8VectorCodes {
+
+    private final int dims;
+
+    private volatile byte[] codes;
+
+    private volatile float[] scales;
+
+    private int count;
+
+    public Int8VectorCodes(int dims, int initialCapacity) {
+        this.dims = dims;
+        int capacity = Math.max(16, initialCapacity);
+        this.codes = new byte[capacity * dims];
+        this.scales = new float[capacity];
+    }
+
+    /**
+     * @return 编码槽位
+     */
+    public synchronized int add(float[] vector) {
+        if (vector.length != dims) {
+            throw new IllegalArgumentException("向量维度不一致: " + vector.length + " != " + dims);
+        }
+        if (count == scales.length) {
+            int capacity = scales.length * 2;
+            byte[] grownCodes = new byte[capacity * dims];
+            float[] grownScales = new float[capacity];
+            System.arraycopy(codes, 0, grownCodes, 0, count * dims);
+            System.arraycopy(scales, 0, grownScales, 0, count);
+            codes = grownCodes;
+            scales = grownScales;
+        }
+        float max = 0f;
+        for (float v : vector) {
+            max = Math.max(max, Math.abs(v));
+        }
+        float scale = max == 0f ? 0f : max / 127f;
+        byte[] target = codes;
+        int base = count * dims;
+        for (int i = 0; i < dims; i++) {
+            target[base + i] = scale == 0f ? 0 : (byte) Math.round(vector[i] / scale);
+        }
+        scales[count] = scale;
+        return count++;
+    }
+
+    public float dot(float[] query, int slot) {
+        byte[] c = codes;
+        int base = slot * dims;
+        float sum = 0f;
+        for (int i = 0; i < dims; i++) {
+            sum += query[i] * c[base + i];
+        }
+        return sum * scales[slot];
+    }
+
+    public float squaredL2(float[] query, int slot) {
+        byte[] c = codes;
+        float scale = scales[slot];
+        int base = slot * dims;
+        float sum = 0f;
+        for (int i = 0; i < dims; i++) {
+            float d = query[i] - c[base + i] * scale;
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    public float[] decode(int slot) {
+        byte[] c = codes;
+        float scale = scales[slot];
+        int base = slot * dims;
+        float[] out = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            out[i] = c[base + i] * scale;
+        }
+        return out;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * 已使用的编码字节数（不含预留容量）
+     */
+    public synchronized long usedBytes() {
+        return (long) count * (dims + Float.BYTES);
+    }
+}
@@ -0,0 +1,293 @@
+package cn.cathead.ai.infrastructure.persistent.hnsw;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 内存映射的追加写日志（向量段文件）
+ * 文件按固定大小分段映射，记录不跨段；向量以 float 形式留在映射区（堆外），索引只保存其偏移。
+ * 记录格式（4字节对齐）：magic | type(1) + 3字节填充 | metaLen | dims | meta | 填充 | float[dims] | crc32
+ * magic 最后写入，崩溃时未写完的记录 magic 为0或 CRC 不符，重放在此处截断。
+ * 也可只写 meta（dims=0）作为通用的追加日志使用，按记录位置随机读取。
+ */
+@Slf4j
+public class VectorSegmentLog implements Closeable {
+
+    public static final byte PUT = 1;
+    public static final byte DELETE = 2;
+
+    private static final int MAGIC = 0x4C544D31;
+    private static final int HEADER_BYTES = 16;
+
+    private final FileChannel channel;
+    private final long segmentBytes;
+    private final boolean fsync;
+
+    /** 已映射的段，扩容时整体替换 */
+    private volatile MappedByteBuffer[] segments;
+
+    /** 全局写位置，仅在 synchronized 中修改 */
+    private long writePos;
+
+    public interface RecordVisitor {
+        /**
+         * @param vectorOffset 向量在日志中的偏移，无向量时为-1
+         */
+        void visit(byte type, byte[] meta, long vectorOffset, int dims);
+    }
+
+    /**
+     * 带记录位置的重放回调
+     */
+    public interface PositionedVisitor {
+        void visit(long recordPos, byte type, byte[] meta);
+    }
+
+    public VectorSegmentLog(Path file, long segmentBytes, boolean fsync) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE - 8L) & ~3L;
+        this.fsync = fsync;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        int count = (int) Math.max(1, (size + this.segmentBytes - 1) / this.segmentBytes);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            mapped[i] = map(i);
+        }
+        this.segments = mapped;
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, index * segmentBytes, segmentBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * 重放全部有效记录，并把写位置定位到最后一条有效记录之后
+     * @return 有效记录数
+     */
+    public int replay(RecordVisitor visitor) {
+        return replay((pos, type, meta, vectorOffset, dims) -> visitor.visit(type, meta, vectorOffset, dims));
+    }
+
+    public int replayPositioned(PositionedVisitor visitor) {
+        return replay((pos, type, meta, vectorOffset, dims) -> visitor.visit(pos, type, meta));
+    }
+
+    private interface RawVisitor {
+        void visit(long recordPos, byte type, byte[] meta, long vectorOffset, int dims);
+    }
+
+    private synchronized int replay(RawVisitor visitor) {
+        int records = 0;
+        long end = 0;
+        MappedByteBuffer[] segs = segments;
+        outer:
+        for (int s = 0; s < segs.length; s++) {
+            MappedByteBuffer buf = segs[s];
+            int pos = 0;
+            while (pos + HEADER_BYTES <= segmentBytes) {
+                if (buf.getInt(pos) != MAGIC) {
+                    // 本段结束；下一段首条有效才继续
+                    if (s + 1 < segs.length && segs[s + 1].getInt(0) == MAGIC) {
+                        continue outer;
+                    }
+                    break outer;
+                }
+                byte type = buf.get(pos + 4);
+                int metaLen = buf.getInt(pos + 8);
+                int dims = buf.getInt(pos + 12);
+                if (metaLen < 0 || dims < 0) {
+                    log.warn("向量段日志记录头损坏，截断于 {}", s * segmentBytes + pos);
+                    break outer;
+                }
+                int total = recordBytes(metaLen, dims);
+                if (pos + (long) total > segmentBytes) {
+                    log.warn("向量段日志记录越界，截断于 {}", s * segmentBytes + pos);
+                    break outer;
+                }
+                int vectorPos = pos + HEADER_BYTES + align(metaLen);
+                int crcPos = vectorPos + dims * Float.BYTES;
+                if (crc(buf, pos, metaLen, vectorPos, dims) != buf.getInt(crcPos)) {
+                    log.warn("向量段日志 CRC 校验失败（可能为崩溃时未写完的记录），截断于 {}", s * segmentBytes + pos);
+                    break outer;
+                }
+                byte[] meta = new byte[metaLen];
+                buf.get(pos + HEADER_BYTES, meta);
+                visitor.visit(s * segmentBytes + pos, type, meta, dims == 0 ? -1 : s * segmentBytes + vectorPos, dims);
+                records++;
+                pos += total;
+                end = s * segmentBytes + pos;
+            }
+        }
+        writePos = end;
+        return records;
+    }
+
+    /**
+     * 追加一条记录
+     * @return 向量偏移，无向量时为-1
+     */
+    public long append(byte type, byte[] meta, float[] vector) throws IOException {
+        long recordPos = appendRecord(type, meta, vector);
+        if (vector == null || vector.length == 0) {
+            return -1;
+        }
+        int s = (int) (recordPos / segmentBytes);
+        int pos = (int) (recordPos % segmentBytes);
+        return s * segmentBytes + pos + HEADER_BYTES + align(meta.length);
+    }
+
+    /**
+     * 追加一条记录
+     * @return 记录起始位置（可用于 readMeta）
+     */
+    public synchronized long appendRecord(byte type, byte[] meta, float[] vector) throws IOException {
+        int dims = vector == null ? 0 : vector.length;
+        int total = recordBytes(meta.length, dims);
+        if (total > segmentBytes) {
+            throw new IllegalArgumentException("记录大小超过段大小: " + total);
+        }
+        int s = (int) (writePos / segmentBytes);
+        int pos = (int) (writePos % segmentBytes);
+        if (pos + (long) total > segmentBytes) {
+            s++;
+            pos = 0;
+        }
+        MappedByteBuffer buf = segment(s);
+
+        buf.put(pos + 4, type);
+        buf.putInt(pos + 8, meta.length);
+        buf.putInt(pos + 12, dims);
+        buf.put(pos + HEADER_BYTES, meta);
+        int vectorPos = pos + HEADER_BYTES + align(meta.length);
+        for (int i = 0; i < dims; i++) {
+            buf.putFloat(vectorPos + i * Float.BYTES, vector[i]);
+        }
+        buf.putInt(vectorPos + dims * Float.BYTES, crc(buf, pos, meta.length, vectorPos, dims));
+        // magic 最后写入，标记记录完整
+        buf.putInt(pos, MAGIC);
+        if (fsync) {
+            buf.force();
+        }
+        writePos = s * segmentBytes + pos + total;
+        return s * segmentBytes + pos;
+    }
+
+    /**
+     * 读取指定位置记录的 meta（位置来自 appendRecord 或 replayPositioned）
+     */
+    public byte[] readMeta(long recordPos) {
+        MappedByteBuffer buf = segments[(int) (recordPos / segmentBytes)];
+        int pos = (int) (recordPos % segmentBytes);
+        if (buf.getInt(pos) != MAGIC) {
+            throw new IllegalStateException("无效的记录位置: " + recordPos);
+        }
+        byte[] meta = new byte[buf.getInt(pos + 8)];
+        buf.get(pos + HEADER_BYTES, meta);
+        return meta;
+    }
+
+    /**
+     * 记录占用的字节数（用于统计存活比例）
+     */
+    public static long recordSize(int metaLen, int dims) {
+        return recordBytes(metaLen, dims);
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer[] segs = segments;
+        if (index < segs.length) {
+            return segs[index];
+        }
+        MappedByteBuffer[] grown = new MappedByteBuffer[index + 1];
+        System.arraycopy(segs, 0, grown, 0, segs.length);
+        for (int i = segs.length; i <= index; i++) {
+            grown[i] = map(i);
+        }
+        segments = grown;
+        return grown[index];
+    }
+
+    public float getFloat(long vectorOffset, int i) {
+        return segments[(int) (vectorOffset / segmentBytes)].getFloat((int) (vectorOffset % segmentBytes) + i * Float.BYTES);
+    }
+
+    public float[] readVector(long vectorOffset, int dims) {
+        MappedByteBuffer buf = segments[(int) (vectorOffset / segmentBytes)];
+        int base = (int) (vectorOffset % segmentBytes);
+        float[] out = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            out[i] = buf.getFloat(base + i * Float.BYTES);
+        }
+        return out;
+    }
+
+    /**
+     * 直接在映射区上计算点积，避免把向量拷贝到堆上
+     */
+    public float dot(float[] query, long vectorOffset) {
+        MappedByteBuffer buf = segments[(int) (vectorOffset / segmentBytes)];
+        int base = (int) (vectorOffset % segmentBytes);
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * buf.getFloat(base + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    public float squaredL2(float[] query, long vectorOffset) {
+        MappedByteBuffer buf = segments[(int) (vectorOffset / segmentBytes)];
+        int base = (int) (vectorOffset % segmentBytes);
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            float d = query[i] - buf.getFloat(base + i * Float.BYTES);
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    public synchronized long size() {
+        return writePos;
+    }
+
+    public synchronized void flush() {
+        for (MappedByteBuffer buf : segments) {
+            buf.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private static int recordBytes(int metaLen, int dims) {
+        return HEADER_BYTES + align(metaLen) + dims * Float.BYTES + Integer.BYTES;
+    }
+
+    private static int align(int n) {
+        return (n + 3) & ~3;
+    }
+
+    private static int crc(MappedByteBuffer buf, int pos, int metaLen, int vectorPos, int dims) {
+        CRC32 crc = new CRC32();
+        crc.update(buf.slice(pos + 4, HEADER_BYTES - 4));
+        crc.update(buf.slice(pos + HEADER_BYTES, metaLen));
+        crc.update(buf.slice(vectorPos, dims * Float.BYTES));
+        return (int) crc.getValue();
+    }
+}
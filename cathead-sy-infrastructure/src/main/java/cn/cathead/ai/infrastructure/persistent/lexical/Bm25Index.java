@@ -0,0 +1,158 @@
+package cn.cathead.ai.infrastructure.persistent.lexical;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 进程内 BM25 倒排索引
+ * 以文档ID为键，重复写入同一ID时替换旧内容；写入互斥、检索并发（读写锁）。
+ */
+public class Bm25Index {
+
+    private final double k1;
+    private final double b;
+
+    /** 词 -> (文档ID -> 词频) */
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+
+    /** 文档ID -> 文档中出现的词（去重），用于删除 */
+    private final Map<String, String[]> docTerms = new HashMap<>();
+
+    private final Map<String, Integer> docLengths = new HashMap<>();
+
+    private long totalLength = 0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 检索结果
+     */
+    public static final class Hit {
+        public final String id;
+        public final double score;
+
+        Hit(String id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    public Bm25Index() {
+        this(1.2, 0.75);
+    }
+
+    public Bm25Index(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    public void put(String id, String text) {
+        List<String> tokens = LexicalTokenizer.tokenize(text);
+        Map<String, Integer> tf = new HashMap<>();
+        for (String token : tokens) {
+            tf.merge(token, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            for (Map.Entry<String, Integer> e : tf.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(id, e.getValue());
+            }
+            docTerms.put(id, tf.keySet().toArray(new String[0]));
+            docLengths.put(id, tokens.size());
+            totalLength += tokens.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(String id) {
+        String[] terms = docTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<String, Integer> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(id);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        Integer length = docLengths.remove(id);
+        totalLength -= length == null ? 0 : length;
+    }
+
+    /**
+     * @param filter 文档过滤条件
+     * @return 按 BM25 得分降序
+     */
+    public List<Hit> search(String query, int topK, Predicate<String> filter) {
+        List<String> terms = LexicalTokenizer.tokenize(query);
+        if (terms.isEmpty() || topK <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int docCount = docLengths.size();
+            if (docCount == 0) {
+                return List.of();
+            }
+            double avgLength = totalLength / (double) docCount;
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : terms.stream().distinct().toList()) {
+                Map<String, Integer> docs = postings.get(term);
+                if (docs == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docCount - docs.size() + 0.5) / (docs.size() + 0.5));
+                for (Map.Entry<String, Integer> e : docs.entrySet()) {
+                    int tf = e.getValue();
+                    double norm = k1 * (1 - b + b * docLengths.get(e.getKey()) / avgLength);
+                    scores.merge(e.getKey(), idf * tf * (k1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+            PriorityQueue<Hit> top = new PriorityQueue<>((x, y) -> Double.compare(x.score, y.score));
+            for (Map.Entry<String, Double> e : scores.entrySet()) {
+                if (top.size() < topK || e.getValue() > top.peek().score) {
+                    if (!filter.test(e.getKey())) {
+                        continue;
+                    }
+                    top.add(new Hit(e.getKey(), e.getValue()));
+                    if (top.size() > topK) {
+                        top.poll();
+                    }
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort((x, y) -> Double.compare(y.score, x.score));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docLengths.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
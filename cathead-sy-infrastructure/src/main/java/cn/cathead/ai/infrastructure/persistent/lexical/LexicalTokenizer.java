@@ -0,0 +1,88 @@
+package cn.cathead.ai.infrastructure.persistent.lexical;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 词法检索分词
+ * 1. 字母/数字/下划线连续串（小写）作为一个词，含下划线或点号的标识符（表名、错误码等）同时保留整体和各段；
+ * 2. 中日韩文字按二元组切分（单字时保留单字）。
+ */
+public final class LexicalTokenizer {
+
+    private LexicalTokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < n && isCjk(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    tokens.add(text.substring(start, i));
+                } else {
+                    for (int j = start; j + 1 < i; j++) {
+                        tokens.add(text.substring(j, j + 2));
+                    }
+                }
+            } else if (isWordChar(c)) {
+                int start = i;
+                // 标识符内部的点号（如 schema.table、com.foo.Error）视为词的一部分
+                while (i < n && (isWordChar(text.charAt(i))
+                        || (text.charAt(i) == '.' && i + 1 < n && isWordChar(text.charAt(i + 1)) && i > start))) {
+                    i++;
+                }
+                addWord(tokens, text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 仅字母/数字/下划线组成的词（不含中日韩二元组与点号），可安全拼接为 tsquery
+     */
+    public static List<String> asciiTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String token : tokenize(text)) {
+            if (token.chars().allMatch(ch -> ch < 128 && (Character.isLetterOrDigit(ch) || ch == '_'))) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    private static void addWord(List<String> tokens, String word) {
+        tokens.add(word);
+        if (word.indexOf('_') < 0 && word.indexOf('.') < 0) {
+            return;
+        }
+        for (String part : word.split("[_.]")) {
+            if (!part.isEmpty() && !part.equals(word)) {
+                tokens.add(part);
+            }
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return (Character.isLetterOrDigit(c) || c == '_') && !isCjk(c);
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
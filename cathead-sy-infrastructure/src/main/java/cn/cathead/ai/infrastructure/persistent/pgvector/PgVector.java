@@ -0,0 +1,201 @@
+package cn.cathead.ai.infrastructure.persistent.pgvector;
+
+import org.postgresql.util.PGBinaryObject;
+import org.postgresql.util.PGobject;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * pgvector 参数类型
+ * 连接已为 vector/halfvec 开启二进制发送时，驱动调用 toBytes 按 pgvector 二进制格式传输：
+ * int16 维度 + int16 保留位 + 维度个 float4（halfvec 为 float16），均为大端序；
+ * 未开启时回退为文本字面量。
+ */
+public class PgVector extends PGobject implements PGBinaryObject {
+
+    public static final String VECTOR = "vector";
+    public static final String HALFVEC = "halfvec";
+
+    private static final int HEADER_BYTES = 4;
+
+    private float[] vec;
+
+    /**
+     * 驱动反序列化时使用
+     */
+    public PgVector() {
+        setType(VECTOR);
+    }
+
+    public PgVector(float[] vec, boolean half) {
+        setType(half ? HALFVEC : VECTOR);
+        this.vec = vec;
+    }
+
+    public static PgVector of(float[] vec, String type) {
+        return new PgVector(vec, HALFVEC.equalsIgnoreCase(type));
+    }
+
+    public float[] toArray() {
+        return vec;
+    }
+
+    private boolean isHalf() {
+        return HALFVEC.equals(type);
+    }
+
+    @Override
+    public int lengthInBytes() {
+        return vec == null ? 0 : HEADER_BYTES + vec.length * (isHalf() ? 2 : 4);
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        int dims = vec.length;
+        bytes[offset] = (byte) (dims >>> 8);
+        bytes[offset + 1] = (byte) dims;
+        bytes[offset + 2] = 0;
+        bytes[offset + 3] = 0;
+        int p = offset + HEADER_BYTES;
+        if (isHalf()) {
+            for (float f : vec) {
+                short h = toHalf(f);
+                bytes[p++] = (byte) (h >>> 8);
+                bytes[p++] = (byte) h;
+            }
+        } else {
+            for (float f : vec) {
+                int bits = Float.floatToRawIntBits(f);
+                bytes[p++] = (byte) (bits >>> 24);
+                bytes[p++] = (byte) (bits >>> 16);
+                bytes[p++] = (byte) (bits >>> 8);
+                bytes[p++] = (byte) bits;
+            }
+        }
+    }
+
+    @Override
+    public void setByteValue(byte[] bytes, int offset) throws SQLException {
+        int dims = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+        float[] out = new float[dims];
+        int p = offset + HEADER_BYTES;
+        for (int i = 0; i < dims; i++) {
+            if (isHalf()) {
+                out[i] = fromHalf((short) (((bytes[p] & 0xFF) << 8) | (bytes[p + 1] & 0xFF)));
+                p += 2;
+            } else {
+                int bits = ((bytes[p] & 0xFF) << 24) | ((bytes[p + 1] & 0xFF) << 16) | ((bytes[p + 2] & 0xFF) << 8) | (bytes[p + 3] & 0xFF);
+                out[i] = Float.intBitsToFloat(bits);
+                p += 4;
+            }
+        }
+        this.vec = out;
+    }
+
+    @Override
+    public String getValue() {
+        if (vec == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(vec.length * 12);
+        sb.append('[');
+        for (int i = 0; i < vec.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(vec[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override
+    public void setValue(String value) throws SQLException {
+        if (value == null) {
+            this.vec = null;
+            return;
+        }
+        String body = value.trim();
+        if (body.startsWith("[")) body = body.substring(1);
+        if (body.endsWith("]")) body = body.substring(0, body.length() - 1);
+        if (body.isBlank()) {
+            this.vec = new float[0];
+            return;
+        }
+        String[] parts = body.split(",");
+        float[] out = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Float.parseFloat(parts[i].trim());
+        }
+        this.vec = out;
+    }
+
+    @Override
+    public boolean isNull() {
+        return vec == null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PgVector other && type.equals(other.type) && Arrays.equals(vec, other.vec);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + Arrays.hashCode(vec);
+    }
+
+    /**
+     * float32 -> IEEE 754 float16（就近舍入），JDK 17 无 Float.floatToFloat16
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+        if (exp == 0xFF) {
+            // Inf / NaN
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int halfExp = exp - 127 + 15;
+        if (halfExp >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExp <= 0) {
+            if (halfExp < -10) {
+                return (short) sign;
+            }
+            // 非规格化数
+            mantissa |= 0x800000;
+            int shift = 14 - halfExp;
+            int half = mantissa >> shift;
+            if (((mantissa >> (shift - 1)) & 1) != 0) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = sign | (halfExp << 10) | (mantissa >> 13);
+        if ((mantissa & 0x1000) != 0) {
+            // 进位可能溢出到指数，结果仍是正确的就近值
+            half++;
+        }
+        return (short) half;
+    }
+
+    static float fromHalf(short half) {
+        int h = half & 0xFFFF;
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1F;
+        int mantissa = h & 0x3FF;
+        if (exp == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // 非规格化数：m * 2^-24
+            float f = mantissa / 16777216f;
+            return sign == 0 ? f : -f;
+        }
+        if (exp == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exp - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
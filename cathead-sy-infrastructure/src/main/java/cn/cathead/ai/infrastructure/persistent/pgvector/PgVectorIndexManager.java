@@ -0,0 +1,283 @@
+package cn.cathead.ai.infrastructure.persistent.pgvector;
+
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.Hashing;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * long_term_memory 向量索引管理
+ * 1. 启动时按距离度量创建 HNSW 索引：全表索引、knowledge_id IS NULL 的全局记忆部分索引、热点 knowledgeId 的部分索引；
+ *    参数或度量变化时并发重建（CREATE INDEX CONCURRENTLY 新索引 -> 删除旧索引 -> 重命名），失效索引直接重建。
+ * 2. 查询前在事务内设置 hnsw.ef_search / ivfflat.probes（SET LOCAL 语义）。
+ * 3. 提供按模型解析距离度量、运算符，以及热点 knowledgeId 的部分索引谓词。
+ * 4. 启用混合检索时创建 summary 全文检索 GIN 索引。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ai.memory.ltm", name = "store", havingValue = "pgvector", matchIfMissing = true)
+public class PgVectorIndexManager implements ApplicationRunner {
+
+    public static final String TABLE = "long_term_memory";
+
+    private static final Pattern SAFE_KNOWLEDGE_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private static final Pattern SAFE_TEXT_SEARCH_CONFIG = Pattern.compile("[a-z_]{1,63}");
+
+    private static final String LEXICAL_INDEX = "idx_ltm_summary_fts";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final IModelRepository modelRepository;
+
+    private final MemoryProperties props;
+
+    /** modelId -> 距离度量，避免每次检索查库 */
+    private final Cache<String, String> metricCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!props.getLtm().getIndex().isAutoCreate()) {
+            log.info("长期记忆向量索引自动创建未启用");
+            return;
+        }
+        // 大表建索引耗时较长，放到后台执行；索引缺失只影响检索性能，不阻塞启动
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ltm-index-");
+        threadFactory.setDaemon(true);
+        threadFactory.newThread(() -> {
+            try {
+                ensureIndexes();
+            } catch (Exception e) {
+                log.warn("长期记忆向量索引检查失败: {}", e.getMessage());
+            }
+            if (props.getLtm().getHybrid().isEnabled()) {
+                try {
+                    ensureLexicalIndex();
+                } catch (Exception e) {
+                    log.warn("长期记忆全文检索索引检查失败: {}", e.getMessage());
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * 创建或迁移全部 HNSW 索引
+     */
+    public void ensureIndexes() {
+        Map<String, String> existing = existingIndexes();
+        for (String metric : metricsInUse()) {
+            ensureIndex(existing, indexName(metric, null), metric, null);
+            ensureIndex(existing, indexName(metric, "global"), metric, "knowledge_id IS NULL");
+            for (String knowledgeId : props.getLtm().getIndex().getPartialKnowledgeIds()) {
+                if (!SAFE_KNOWLEDGE_ID.matcher(knowledgeId).matches()) {
+                    log.warn("忽略非法的热点 knowledgeId（仅允许字母数字、下划线、短横线）: {}", knowledgeId);
+                    continue;
+                }
+                ensureIndex(existing, indexName(metric, "k_" + shortHash(knowledgeId)), metric, knowledgePredicate(knowledgeId));
+            }
+        }
+    }
+
+    /**
+     * 创建 summary 全文检索 GIN 索引；表达式需与 lexicalTsVector() 完全一致才会被规划器选用
+     */
+    public void ensureLexicalIndex() {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + LEXICAL_INDEX + " ON " + TABLE
+                + " USING gin (" + lexicalTsVector() + ")");
+        log.info("长期记忆全文检索索引检查完成: {}, 耗时: {}ms", LEXICAL_INDEX, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 全文检索配置，非法值回退为 simple（配置会内联进 SQL）
+     */
+    public String textSearchConfig() {
+        String config = props.getLtm().getHybrid().getTextSearchConfig();
+        if (config == null || !SAFE_TEXT_SEARCH_CONFIG.matcher(config).matches()) {
+            return "simple";
+        }
+        return config;
+    }
+
+    public String lexicalTsVector() {
+        return "to_tsvector('" + textSearchConfig() + "', coalesce(summary, ''))";
+    }
+
+    private void ensureIndex(Map<String, String> existing, String name, String metric, String predicate) {
+        String opclass = opclass(metric);
+        String expectedWith = String.format("WITH (m='%d', ef_construction='%d')",
+                props.getLtm().getIndex().getM(), props.getLtm().getIndex().getEfConstruction());
+        String definition = existing.get(name);
+        if (definition != null && definition.contains(opclass) && definition.contains(expectedWith)) {
+            return;
+        }
+
+        String ddl = String.format("CREATE INDEX CONCURRENTLY %%s ON %s USING hnsw (embedding %s) WITH (m = %d, ef_construction = %d)%s",
+                TABLE, opclass, props.getLtm().getIndex().getM(), props.getLtm().getIndex().getEfConstruction(),
+                predicate == null ? "" : " WHERE " + predicate);
+        long start = System.currentTimeMillis();
+        if (definition == null) {
+            jdbcTemplate.execute(String.format(ddl, name));
+            log.info("创建长期记忆向量索引: {}, 耗时: {}ms", name, System.currentTimeMillis() - start);
+            return;
+        }
+        // 定义不符（或上次并发建索引失败留下的无效索引）：建新索引后替换，期间旧索引继续服务
+        String tmp = name + "_new";
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + tmp);
+        jdbcTemplate.execute(String.format(ddl, tmp));
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+        jdbcTemplate.execute("ALTER INDEX " + tmp + " RENAME TO " + name);
+        log.info("迁移长期记忆向量索引: {}, 旧定义: {}, 耗时: {}ms", name, definition, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return 索引名 -> 定义；无效索引的定义记为空串，以触发重建
+     */
+    private Map<String, String> existingIndexes() {
+        Map<String, String> indexes = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT c.relname, pg_get_indexdef(i.indexrelid) AS def, i.indisvalid " +
+                        "FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+                        "WHERE i.indrelid = '" + TABLE + "'::regclass",
+                rs -> {
+                    indexes.put(rs.getString("relname"), rs.getBoolean("indisvalid") ? rs.getString("def") : "");
+                });
+        return indexes;
+    }
+
+    private Set<String> metricsInUse() {
+        Set<String> metrics = new LinkedHashSet<>();
+        for (String metric : props.getLtm().getIndex().getMetrics()) {
+            metrics.add(normalizeMetric(metric));
+        }
+        try {
+            List<BaseModelEntity> models = modelRepository.queryAllModels();
+            for (BaseModelEntity model : models) {
+                if (model instanceof EmbeddingModelEntity embedding && embedding.getSimilarityMetric() != null) {
+                    metrics.add(normalizeMetric(embedding.getSimilarityMetric()));
+                    metricCache.put(embedding.getModelId(), normalizeMetric(embedding.getSimilarityMetric()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取Embedding模型距离度量失败，仅使用配置的度量: {}", e.getMessage());
+        }
+        return metrics;
+    }
+
+    /**
+     * 解析模型的距离度量，未配置时为 cosine
+     */
+    public String metricFor(String embeddingModelId) {
+        if (embeddingModelId == null) {
+            return "cosine";
+        }
+        return metricCache.get(embeddingModelId, id -> {
+            try {
+                BaseModelEntity entity = modelRepository.queryModelById(id);
+                if (entity instanceof EmbeddingModelEntity embedding) {
+                    return normalizeMetric(embedding.getSimilarityMetric());
+                }
+            } catch (Exception e) {
+                log.warn("查询模型距离度量失败，使用 cosine，模型ID: {}, 错误: {}", id, e.getMessage());
+            }
+            return "cosine";
+        });
+    }
+
+    public static String normalizeMetric(String metric) {
+        if (metric == null) {
+            return "cosine";
+        }
+        return switch (metric.trim().toLowerCase(Locale.ROOT)) {
+            case "l2", "euclidean" -> "l2";
+            case "ip", "inner_product", "dot", "dot_product" -> "ip";
+            default -> "cosine";
+        };
+    }
+
+    public static String operator(String metric) {
+        return switch (metric) {
+            case "l2" -> "<->";
+            case "ip" -> "<#>";
+            default -> "<=>";
+        };
+    }
+
+    private String opclass(String metric) {
+        String prefix = PgVector.HALFVEC.equalsIgnoreCase(props.getLtm().getVectorType()) ? "halfvec" : "vector";
+        return switch (metric) {
+            case "l2" -> prefix + "_l2_ops";
+            case "ip" -> prefix + "_ip_ops";
+            default -> prefix + "_cosine_ops";
+        };
+    }
+
+    /**
+     * 热点 knowledgeId 的部分索引谓词；非热点返回null
+     * 部分索引只有在查询中出现同一常量时才会被规划器选用，因此这里返回内联常量（仅限配置中校验过的ID）
+     */
+    public String partialIndexPredicate(String knowledgeId) {
+        if (knowledgeId == null || !props.getLtm().getIndex().getPartialKnowledgeIds().contains(knowledgeId)
+                || !SAFE_KNOWLEDGE_ID.matcher(knowledgeId).matches()) {
+            return null;
+        }
+        return knowledgePredicate(knowledgeId);
+    }
+
+    private static String knowledgePredicate(String knowledgeId) {
+        return "knowledge_id = '" + knowledgeId + "'";
+    }
+
+    /**
+     * 在当前事务内设置检索参数，需在关闭自动提交的连接上调用
+     */
+    public void applySearchSettings(Connection con, int candidates) throws SQLException {
+        MemoryProperties.Index index = props.getLtm().getIndex();
+        boolean iterative = index.getIterativeScan() != null && !index.getIterativeScan().isBlank();
+        String sql = "SELECT set_config('hnsw.ef_search', ?, true), set_config('ivfflat.probes', ?, true)"
+                + (iterative ? ", set_config('hnsw.iterative_scan', ?, true)" : "");
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, String.valueOf(Math.max(index.getEfSearch(), candidates)));
+            ps.setString(2, String.valueOf(Math.max(1, index.getIvfflatProbes())));
+            if (iterative) {
+                ps.setString(3, index.getIterativeScan());
+            }
+            ps.execute();
+        }
+    }
+
+    private static String indexName(String metric, String suffix) {
+        return "idx_ltm_hnsw_" + metric + (suffix == null ? "" : "_" + suffix);
+    }
+
+    private static String shortHash(String value) {
+        return Hashing.sha256().hashString(value, StandardCharsets.UTF_8).toString().substring(0, 12);
+    }
+}
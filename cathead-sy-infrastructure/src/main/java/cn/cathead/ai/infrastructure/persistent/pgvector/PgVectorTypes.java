@@ -0,0 +1,45 @@
+package cn.cathead.ai.infrastructure.persistent.pgvector;
+
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Oid;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.core.TypeInfo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 为 PostgreSQL 连接注册 pgvector 类型，并对 vector/halfvec 开启二进制发送
+ * vector 为扩展类型，OID 因库而异，无法通过 binaryTransferEnable 连接参数静态配置，
+ * 因此在使用连接前按连接注册（驱动按连接缓存类型信息，已注册的连接只做一次类型表查找）。
+ * 仅开启发送方向，读取 embedding 列仍走文本格式。
+ */
+public final class PgVectorTypes {
+
+    private PgVectorTypes() {
+    }
+
+    public static void register(Connection con) throws SQLException {
+        if (!con.isWrapperFor(BaseConnection.class)) {
+            return;
+        }
+        BaseConnection pg = con.unwrap(BaseConnection.class);
+        QueryExecutor executor = pg.getQueryExecutor();
+        registerType(pg, executor, PgVector.VECTOR);
+        registerType(pg, executor, PgVector.HALFVEC);
+    }
+
+    private static void registerType(BaseConnection pg, QueryExecutor executor, String typeName) throws SQLException {
+        TypeInfo typeInfo = pg.getTypeInfo();
+        // 类型映射与二进制发送总是一起注册，映射已存在说明该连接已注册过
+        if (typeInfo.getPGobject(typeName) == PgVector.class) {
+            return;
+        }
+        int oid = typeInfo.getPGType(typeName);
+        if (oid == Oid.UNSPECIFIED) {
+            return;
+        }
+        executor.addBinarySendOid(oid);
+        pg.addDataType(typeName, PgVector.class);
+    }
+}
@@ -0,0 +1,758 @@
+package cn.cathead.ai.infrastructure.persistent.repository;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.valobj.ImportanceScore;
+import cn.cathead.ai.domain.client.repository.ILongTermMemoryRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
+import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.EmbeddingModelEntity;
+import cn.cathead.ai.domain.model.repository.IModelRepository;
+import cn.cathead.ai.domain.model.service.IModelService;
+import cn.cathead.ai.infrastructure.persistent.hnsw.HnswIndex;
+import cn.cathead.ai.infrastructure.persistent.hnsw.Int8VectorCodes;
+import cn.cathead.ai.infrastructure.persistent.hnsw.VectorSegmentLog;
+import cn.cathead.ai.infrastructure.persistent.lexical.Bm25Index;
+import cn.cathead.ai.infrastructure.persistent.pgvector.PgVectorIndexManager;
+import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内 HNSW 长期记忆仓储（ai.memory.ltm.store=embedded）
+ * 向量与元数据追加写入内存映射的段文件，向量留在映射区（堆外），堆上只保存 HNSW 图与元数据；
+ * 启动时重放段文件重建索引，崩溃留下的半条记录在重放时截断。
+ * 过滤语义与 pgvector 实现一致：knowledgeId / agentId / sessionId 为空的记忆对所有查询可见。
+ * quantization=int8 时图遍历使用堆上 int8 编码，粗排 topK * rerankRatio 个候选后再读取原始向量精排。
+ * 摘要同时写入进程内 BM25 倒排索引，供混合检索的词法一路使用。
+ * 更新与删除只追加记录并逻辑删除旧节点；失效记录或删除节点占比超过 compactDeletedRatio 时，
+ * 后台把存活记忆写入新段文件并重建 HNSW 图，替换后旧文件与旧图随之释放。
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ai.memory.ltm", name = "store", havingValue = "embedded")
+public class EmbeddedHnswLongTermRepository implements ILongTermMemoryRepository {
+
+    private final IModelService modelService;
+
+    private final IModelRepository modelRepository;
+
+    private final MemoryProperties props;
+
+    /** 元数据中标签列表的格式标记（旧格式此处为逗号拼接字符串的长度） */
+    private static final int TAG_LIST = -2;
+
+    private static final class Entry {
+        final MemoryChunk chunk;
+        final int node;
+        final long vectorOffset;
+
+        Entry(MemoryChunk chunk, int node, long vectorOffset) {
+            this.chunk = chunk;
+            this.node = node;
+            this.vectorOffset = vectorOffset;
+        }
+    }
+
+    private static final class Scored {
+        final MemoryChunk chunk;
+        final float distance;
+
+        Scored(MemoryChunk chunk, float distance) {
+            this.chunk = chunk;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * 压实开始后的写入，换代前补放到新一代
+     */
+    private static final class TailRecord {
+        final byte type;
+        final byte[] meta;
+        final float[] vector;
+
+        TailRecord(byte type, byte[] meta, float[] vector) {
+            this.type = type;
+            this.meta = meta;
+            this.vector = vector;
+        }
+    }
+
+    /**
+     * 一代段文件及由其重放得到的 HNSW 图与元数据；压实时整体替换，检索线程取一次引用后始终使用同一代
+     */
+    private final class Generation {
+        final VectorSegmentLog log;
+        final HnswIndex index;
+
+        /** 记忆ID -> 当前版本 */
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        /** HNSW 节点 -> 记忆（同一ID更新向量后旧节点被逻辑删除） */
+        final Map<Integer, Entry> byNode = new ConcurrentHashMap<>();
+
+        /** int8 编码，首个向量写入时按维度创建；未启用量化时为null */
+        volatile Int8VectorCodes codes;
+
+        /** 段文件中的记录数，含已被覆盖或删除的记录 */
+        int records;
+
+        Generation(VectorSegmentLog log) {
+            this.log = log;
+            MemoryProperties.Embedded config = props.getLtm().getEmbedded();
+            // 量化时索引中的偏移为编码槽位，否则为向量在段文件中的偏移
+            HnswIndex.VectorSource source = quantized
+                    ? new HnswIndex.VectorSource() {
+                        @Override
+                        public float distance(float[] query, long slot) {
+                            return quantizedDistance(query, (int) slot);
+                        }
+
+                        @Override
+                        public float[] vector(long slot) {
+                            return codes.decode((int) slot);
+                        }
+                    }
+                    : new HnswIndex.VectorSource() {
+                        @Override
+                        public float distance(float[] query, long offset) {
+                            return Generation.this.distance(query, offset);
+                        }
+
+                        @Override
+                        public float[] vector(long offset) {
+                            return log.readVector(offset, dims);
+                        }
+                    };
+            this.index = new HnswIndex(source, config.getM(), config.getEfConstruction());
+        }
+
+        /**
+         * 追加到本代段文件并更新本代索引（词法索引由调用方维护）
+         */
+        MemoryChunk append(byte type, byte[] meta, float[] vector) throws IOException {
+            long offset = log.append(type, meta, vector);
+            records++;
+            if (vector != null) {
+                dims = vector.length;
+            }
+            return apply(type, meta, offset);
+        }
+
+        /**
+         * @return 写入的记忆，删除时为null
+         */
+        MemoryChunk apply(byte type, byte[] meta, long vectorOffset) {
+            if (type == VectorSegmentLog.DELETE) {
+                Entry removed = entries.remove(new String(meta, StandardCharsets.UTF_8));
+                if (removed != null && removed.node >= 0) {
+                    index.markDeleted(removed.node);
+                    byNode.remove(removed.node);
+                }
+                return null;
+            }
+            MemoryChunk chunk = decode(meta);
+            Entry previous = entries.get(chunk.getId());
+            Entry entry;
+            if (vectorOffset < 0) {
+                // 与 pgvector 实现一致：不带向量的更新保留原有向量
+                entry = previous == null ? new Entry(chunk, -1, -1) : new Entry(chunk, previous.node, previous.vectorOffset);
+            } else {
+                if (previous != null && previous.node >= 0) {
+                    index.markDeleted(previous.node);
+                    byNode.remove(previous.node);
+                }
+                entry = new Entry(chunk, index.insert(chunk.getId(), quantized ? quantize(vectorOffset) : vectorOffset), vectorOffset);
+            }
+            entries.put(chunk.getId(), entry);
+            if (entry.node >= 0) {
+                byNode.put(entry.node, entry);
+            }
+            return chunk;
+        }
+
+        private long quantize(long vectorOffset) {
+            Int8VectorCodes current = codes;
+            if (current == null) {
+                current = new Int8VectorCodes(dims, 1024);
+                codes = current;
+            }
+            return current.add(log.readVector(vectorOffset, dims));
+        }
+
+        private float quantizedDistance(float[] query, int slot) {
+            return switch (metric) {
+                case "l2" -> codes.squaredL2(query, slot);
+                case "ip" -> -codes.dot(query, slot);
+                default -> 1f - codes.dot(query, slot);
+            };
+        }
+
+        float distance(float[] query, long offset) {
+            return switch (metric) {
+                case "l2" -> log.squaredL2(query, offset);
+                case "ip" -> -log.dot(query, offset);
+                default -> 1f - log.dot(query, offset);
+            };
+        }
+    }
+
+    /** modelId -> 重排倍数 */
+    private final Cache<String, Integer> rerankRatioCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    private final Bm25Index lexicalIndex = new Bm25Index();
+
+    private final AtomicLong compactions = new AtomicLong();
+
+    private Path dataFile;
+
+    private volatile Generation generation;
+
+    /** 进行中压实的尾部写入，未在压实时为null；在 this 锁内读写 */
+    private List<TailRecord> compactionTail;
+
+    private ExecutorService compactor;
+
+    private volatile boolean closed;
+
+    private String metric;
+
+    private boolean quantized;
+
+    /** 向量维度，首个向量写入时确定 */
+    private volatile int dims = 0;
+
+    @PostConstruct
+    public void init() throws IOException {
+        MemoryProperties.Embedded config = props.getLtm().getEmbedded();
+        metric = PgVectorIndexManager.normalizeMetric(config.getMetric());
+        quantized = "int8".equalsIgnoreCase(config.getQuantization());
+        dataFile = Path.of(config.getDataFile());
+        // 压实中途崩溃留下的新文件不完整，以原文件为准
+        Files.deleteIfExists(compactFile());
+
+        long start = System.currentTimeMillis();
+        Generation loaded = new Generation(new VectorSegmentLog(dataFile, config.getSegmentBytes(), config.isFsync()));
+        loaded.records = loaded.log.replay((type, meta, vectorOffset, vectorDims) -> {
+            if (vectorDims > 0) {
+                dims = vectorDims;
+            }
+            indexLexical(type, meta, loaded.apply(type, meta, vectorOffset));
+        });
+        generation = loaded;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ltm-embedded-compact-");
+        threadFactory.setDaemon(true);
+        compactor = Executors.newSingleThreadExecutor(threadFactory);
+        log.info("进程内长期记忆索引加载完成，文件: {}, 记录数: {}, 记忆数: {}, 维度: {}, 量化: {}, 耗时: {}ms",
+                config.getDataFile(), loaded.records, loaded.entries.size(), dims, quantized ? "int8" : "none", System.currentTimeMillis() - start);
+        synchronized (this) {
+            compactIfNeeded(loaded);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        closed = true;
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Generation current = generation;
+        if (current != null) {
+            current.log.close();
+        }
+    }
+
+    @Override
+    public void save(MemoryChunk chunk) {
+        saveAll(List.of(chunk));
+    }
+
+    @Override
+    public void saveAll(List<MemoryChunk> chunks) {
+        if (chunks == null || chunks.isEmpty()) return;
+        write(chunks, null);
+    }
+
+    @Override
+    public List<MemoryChunk> semanticSearchByText(String knowledgeId, String agentId, String queryText, String embeddingModelId, int topK) {
+        String modelId = (embeddingModelId == null || embeddingModelId.isBlank()) ? props.getLtm().getDefaultEmbeddingModelId() : embeddingModelId;
+        if (modelId == null || modelId.isBlank()) {
+            // 未配置 embedding 模型，直接返回空结果，避免打断主链路
+            return List.of();
+        }
+        if (dims == 0) {
+            // 尚无带向量的记忆
+            return List.of();
+        }
+        float[] query;
+        try {
+            query = prepare(toFloatArray(modelService.embedText(new EmbeddingRequestDTO(modelId, List.of(queryText))).getResults().get(0).getOutput()));
+        } catch (Exception e) {
+            // 调用向量模型失败，返回空结果
+            return List.of();
+        }
+        if (query.length != dims) {
+            log.warn("查询向量维度与索引不一致，忽略检索，查询维度: {}, 索引维度: {}", query.length, dims);
+            return List.of();
+        }
+        Generation gen = generation;
+        String sessionId = MemoryContextHolder.getSessionId();
+        int candidates = quantized ? topK * rerankRatio(modelId) : topK;
+        int ef = Math.max(props.getLtm().getEmbedded().getEfSearch(), candidates);
+        List<HnswIndex.Hit> hits = gen.index.search(query, candidates, ef, node -> {
+            Entry entry = gen.byNode.get(node);
+            return entry != null && visible(entry.chunk, knowledgeId, agentId, sessionId);
+        });
+        if (!quantized) {
+            List<MemoryChunk> result = new ArrayList<>(hits.size());
+            for (HnswIndex.Hit hit : hits) {
+                Entry entry = gen.byNode.get(hit.node);
+                if (entry != null) {
+                    result.add(entry.chunk);
+                }
+            }
+            return result;
+        }
+
+        // 用段文件中的原始向量对粗排候选精排
+        List<Scored> scored = new ArrayList<>(hits.size());
+        for (HnswIndex.Hit hit : hits) {
+            Entry entry = gen.byNode.get(hit.node);
+            if (entry != null) {
+                scored.add(new Scored(entry.chunk, gen.distance(query, entry.vectorOffset)));
+            }
+        }
+        scored.sort(Comparator.comparingDouble(s -> s.distance));
+        List<MemoryChunk> result = new ArrayList<>(Math.min(topK, scored.size()));
+        for (int i = 0; i < scored.size() && i < topK; i++) {
+            result.add(scored.get(i).chunk);
+        }
+        return result;
+    }
+
+    @Override
+    public List<MemoryChunk> lexicalSearch(String knowledgeId, String agentId, String queryText, int topK) {
+        Generation gen = generation;
+        String sessionId = MemoryContextHolder.getSessionId();
+        List<Bm25Index.Hit> hits = lexicalIndex.search(queryText, topK, id -> {
+            Entry entry = gen.entries.get(id);
+            return entry != null && visible(entry.chunk, knowledgeId, agentId, sessionId);
+        });
+        List<MemoryChunk> result = new ArrayList<>(hits.size());
+        for (Bm25Index.Hit hit : hits) {
+            Entry entry = gen.entries.get(hit.id);
+            if (entry != null) {
+                result.add(entry.chunk);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        if (id == null || !generation.entries.containsKey(id)) return;
+        synchronized (this) {
+            byte[] meta = id.getBytes(StandardCharsets.UTF_8);
+            try {
+                append(VectorSegmentLog.DELETE, meta, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            compactIfNeeded(generation);
+        }
+    }
+
+    @Override
+    public void saveAndEmbed(MemoryChunk chunk, String embeddingModelId) {
+        if (chunk == null) return;
+        saveAllAndEmbed(List.of(chunk), embeddingModelId);
+    }
+
+    @Override
+    public void saveAllAndEmbed(List<MemoryChunk> chunks, String embeddingModelId) {
+        if (chunks == null || chunks.isEmpty()) return;
+        String modelId = (embeddingModelId == null || embeddingModelId.isBlank()) ? props.getLtm().getDefaultEmbeddingModelId() : embeddingModelId;
+        int batchSize = Math.max(1, props.getLtm().getWriteBatchSize());
+        long start = System.currentTimeMillis();
+        for (int from = 0; from < chunks.size(); from += batchSize) {
+            List<MemoryChunk> batch = chunks.subList(from, Math.min(chunks.size(), from + batchSize));
+            List<String> texts = new ArrayList<>(batch.size());
+            for (MemoryChunk c : batch) {
+                texts.add(c.getSummary());
+            }
+            List<Embedding> results = modelService.embedText(new EmbeddingRequestDTO(modelId, texts)).getResults();
+            List<float[]> vectors = new ArrayList<>(results.size());
+            for (Embedding e : results) {
+                vectors.add(prepare(toFloatArray(e.getOutput())));
+            }
+            write(batch, vectors);
+        }
+        log.info("进程内长期记忆写入完成，行数: {}, 耗时: {}ms", chunks.size(), System.currentTimeMillis() - start);
+    }
+
+    public int size() {
+        return generation.entries.size();
+    }
+
+    /**
+     * 索引统计：记忆数、维度、原始向量字节数（位于映射区）、堆上量化编码字节数、段文件记录数与压实次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Generation gen = generation;
+        int vectors = gen.byNode.size();
+        Int8VectorCodes current = gen.codes;
+        stats.put("entries", gen.entries.size());
+        stats.put("vectors", vectors);
+        stats.put("deletedNodes", gen.index.deletedCount());
+        stats.put("dims", dims);
+        stats.put("quantization", quantized ? "int8" : "none");
+        stats.put("fullVectorBytes", (long) vectors * dims * Float.BYTES);
+        stats.put("codeBytes", current == null ? 0L : current.usedBytes());
+        stats.put("segmentLogBytes", gen.log.size());
+        stats.put("segmentLogRecords", gen.records);
+        stats.put("compactions", compactions.get());
+        return stats;
+    }
+
+    private int rerankRatio(String modelId) {
+        int defaultRatio = Math.max(1, props.getLtm().getEmbedded().getRerankRatio());
+        int ratio = rerankRatioCache.get(modelId, id -> {
+            try {
+                BaseModelEntity entity = modelRepository.queryModelById(id);
+                if (entity instanceof EmbeddingModelEntity embedding && embedding.resolveRerankRatio() != null) {
+                    return embedding.resolveRerankRatio();
+                }
+            } catch (Exception e) {
+                log.warn("查询模型重排倍数失败，使用默认值，模型ID: {}, 错误: {}", id, e.getMessage());
+            }
+            return 0;
+        });
+        return ratio <= 0 ? defaultRatio : ratio;
+    }
+
+    /**
+     * 先追加日志再更新索引，并串行执行，保证重放顺序与内存状态一致
+     */
+    private synchronized void write(List<MemoryChunk> chunks, List<float[]> vectors) {
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                float[] vector = vectors == null ? null : vectors.get(i);
+                if (vector != null && dims != 0 && vector.length != dims) {
+                    throw new IllegalArgumentException("向量维度与索引不一致: " + vector.length + " != " + dims);
+                }
+                append(VectorSegmentLog.PUT, encode(chunks.get(i)), vector);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        compactIfNeeded(generation);
+    }
+
+    /**
+     * 在 this 锁内调用：写入当前代，压实进行中时同时记入尾部
+     */
+    private void append(byte type, byte[] meta, float[] vector) throws IOException {
+        indexLexical(type, meta, generation.append(type, meta, vector));
+        if (compactionTail != null) {
+            compactionTail.add(new TailRecord(type, meta, vector));
+        }
+    }
+
+    private void indexLexical(byte type, byte[] meta, MemoryChunk chunk) {
+        if (type == VectorSegmentLog.DELETE) {
+            lexicalIndex.remove(new String(meta, StandardCharsets.UTF_8));
+        } else {
+            lexicalIndex.put(chunk.getId(), chunk.getSummary());
+        }
+    }
+
+    /**
+     * 在 this 锁内调用：图中逻辑删除节点或段文件中失效记录的占比超过阈值时提交后台压实
+     */
+    private void compactIfNeeded(Generation gen) {
+        if (closed || compactionTail != null) return;
+        MemoryProperties.Embedded config = props.getLtm().getEmbedded();
+        double ratio = config.getCompactDeletedRatio();
+        int deleted = gen.index.deletedCount();
+        int nodes = gen.index.size() + deleted;
+        int dead = gen.records - gen.entries.size();
+        boolean graph = nodes >= config.getCompactMinRecords() && deleted > nodes * ratio;
+        boolean segment = gen.records >= config.getCompactMinRecords() && dead > gen.records * ratio;
+        if (ratio > 0 && (graph || segment)) {
+            compactionTail = new ArrayList<>();
+            compactor.execute(this::compact);
+        }
+    }
+
+    /**
+     * 后台压实：锁内取存活记忆快照，锁外把快照写入新文件并重建 HNSW 图，
+     * 再回到锁内补放快照之后的写入、原子替换段文件并换代。失败时保留原文件与原索引。
+     */
+    private void compact() {
+        long start = System.currentTimeMillis();
+        Generation old;
+        List<Entry> snapshot;
+        synchronized (this) {
+            old = generation;
+            snapshot = new ArrayList<>(old.entries.values());
+            // 提交压实到取快照之间的写入已包含在快照中
+            compactionTail.clear();
+        }
+        MemoryProperties.Embedded config = props.getLtm().getEmbedded();
+        Path file = compactFile();
+        Generation next = null;
+        boolean swapped = false;
+        try {
+            Files.deleteIfExists(file);
+            next = new Generation(new VectorSegmentLog(file, config.getSegmentBytes(), config.isFsync()));
+            for (Entry entry : snapshot) {
+                float[] vector = entry.vectorOffset < 0 ? null : old.log.readVector(entry.vectorOffset, dims);
+                next.append(VectorSegmentLog.PUT, encode(entry.chunk), vector);
+            }
+            synchronized (this) {
+                if (!closed) {
+                    for (TailRecord record : compactionTail) {
+                        next.append(record.type, record.meta, record.vector);
+                    }
+                    next.log.flush();
+                    Files.move(file, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    generation = next;
+                    swapped = true;
+                }
+                compactionTail = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("进程内长期记忆段文件压实失败，继续使用原文件: {}", dataFile, e);
+            synchronized (this) {
+                compactionTail = null;
+            }
+        }
+        try {
+            // 检索线程可能仍持有旧一代，映射区在通道关闭后依然有效
+            (swapped ? old : next).log.close();
+            if (!swapped) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("关闭压实前后的段文件失败: {}", dataFile, e);
+        }
+        if (swapped) {
+            compactions.incrementAndGet();
+            log.info("进程内长期记忆段文件压实完成，记录数: {} -> {}, 图节点: {} -> {}, 耗时: {}ms",
+                    old.records, next.records, old.index.size() + old.index.deletedCount(), next.index.size(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    private Path compactFile() {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".compact");
+    }
+
+    private static boolean visible(MemoryChunk chunk, String knowledgeId, String agentId, String sessionId) {
+        return matches(chunk.getKnowledgeId(), knowledgeId)
+                && matches(chunk.getAgentId(), agentId)
+                && matches(chunk.getSessionId(), sessionId);
+    }
+
+    private static boolean matches(String stored, String requested) {
+        return stored == null || (requested != null && stored.equals(requested));
+    }
+
+    /**
+     * cosine 度量下写入与查询前归一化，距离退化为 1 - 点积
+     */
+    private float[] prepare(float[] vector) {
+        if (!"cosine".equals(metric)) {
+            return vector;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] out = Arrays.copyOf(vector, vector.length);
+        for (int i = 0; i < out.length; i++) {
+            out[i] *= scale;
+        }
+        return out;
+    }
+
+    private static byte[] encode(MemoryChunk c) {
+        Objects.requireNonNull(c.getId(), "记忆ID不能为空");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, c.getId());
+            writeString(out, c.getSessionId());
+            writeString(out, c.getKnowledgeId());
+            writeString(out, c.getAgentId());
+            writeString(out, c.getTitle());
+            writeString(out, c.getSummary());
+            writeTags(out, c.getTags());
+            out.writeBoolean(c.getImportanceScore() != null);
+            if (c.getImportanceScore() != null) {
+                out.writeDouble(c.getImportanceScore().getScore());
+                writeString(out, c.getImportanceScore().getReason());
+            }
+            out.writeLong(c.getCreatedAt() == null ? Long.MIN_VALUE : c.getCreatedAt().toEpochMilli());
+            out.writeLong(c.getLastAccessAt() == null ? Long.MIN_VALUE : c.getLastAccessAt().toEpochMilli());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static MemoryChunk decode(byte[] meta) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(meta))) {
+            MemoryChunk.MemoryChunkBuilder builder = MemoryChunk.builder()
+                    .id(readString(in))
+                    .sessionId(readString(in))
+                    .knowledgeId(readString(in))
+                    .agentId(readString(in))
+                    .title(readString(in))
+                    .summary(readString(in));
+            builder.tags(readTags(in));
+            if (in.readBoolean()) {
+                double score = in.readDouble();
+                builder.importanceScore(ImportanceScore.of(score, readString(in)));
+            }
+            long createdAt = in.readLong();
+            long lastAccessAt = in.readLong();
+            return builder
+                    .createdAt(createdAt == Long.MIN_VALUE ? null : Instant.ofEpochMilli(createdAt))
+                    .lastAccessAt(lastAccessAt == Long.MIN_VALUE ? null : Instant.ofEpochMilli(lastAccessAt))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 标签写为 TAG_LIST 标记 + 个数 + 逐个长度前缀字符串；null 沿用 writeString 的 -1
+     */
+    private static void writeTags(DataOutputStream out, List<String> tags) throws IOException {
+        if (tags == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(TAG_LIST);
+        out.writeInt(tags.size());
+        for (String tag : tags) {
+            writeString(out, tag);
+        }
+    }
+
+    /**
+     * 兼容旧段文件：旧格式为逗号拼接的单个字符串（长度前缀非负）
+     */
+    private static List<String> readTags(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len == TAG_LIST) {
+            int count = in.readInt();
+            List<String> tags = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tags.add(readString(in));
+            }
+            return tags;
+        }
+        if (len < 0) {
+            return new ArrayList<>();
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        List<String> tags = new ArrayList<>();
+        for (String tag : new String(bytes, StandardCharsets.UTF_8).split(",")) {
+            if (!tag.isEmpty()) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static float[] toFloatArray(Object output) {
+        if (output == null) return new float[0];
+        if (output instanceof float[] f) {
+            return f;
+        }
+        if (output instanceof double[] d) {
+            float[] f = new float[d.length];
+            for (int i = 0; i < d.length; i++) f[i] = (float) d[i];
+            return f;
+        }
+        if (output instanceof List<?> list) {
+            float[] f = new float[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                Object v = list.get(i);
+                if (v instanceof Number n) f[i] = n.floatValue();
+                else f[i] = 0f;
+            }
+            return f;
+        }
+        throw new IllegalArgumentException("Unsupported embedding output type: " + output.getClass());
+    }
+}
@@ -0,0 +1,406 @@
+package cn.cathead.ai.infrastructure.persistent.repository;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.repository.IShortTermSpillRepository;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermRecordCodec;
+import cn.cathead.ai.infrastructure.persistent.hnsw.VectorSegmentLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 短期记忆溢出层：按命名空间哈希分片，每个分片一个内存映射的追加日志（复用 VectorSegmentLog，只写 meta）。
+ * 堆上只保留 命名空间 -> 最新记录位置 的索引，消息本身在映射区；重复写入与删除标记让旧记录失效，
+ * 分片存活比例过低时写入新一代文件并删除旧文件（不覆盖仍被映射的文件），新一代以 COMPACTED 标记结束拷贝。
+ * 溢出由缓存逐出回调在请求线程上触发，因此写入只做追加，压实交给后台线程，且只在取快照与换代时持有分片锁。
+ * 启动时重放各分片最新的完整一代日志重建索引；修改分片数后原有溢出数据按新分片规则不再可见。
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class MmapShortTermSpillRepository implements IShortTermSpillRepository {
+
+    /** 压实拷贝完成标记，缺少该标记的新一代文件为压实中途崩溃的产物 */
+    private static final byte COMPACTED = 3;
+
+    private static final Pattern SHARD_FILE = Pattern.compile("shard-(\\d+)\\.(\\d+)\\.log");
+
+    private final MemoryProperties props;
+
+    private static final class Slot {
+        final long pos;
+        final long bytes;
+        final long spilledAt;
+
+        Slot(long pos, long bytes, long spilledAt) {
+            this.pos = pos;
+            this.bytes = bytes;
+            this.spilledAt = spilledAt;
+        }
+    }
+
+    /**
+     * 分片内的读写与压实在分片锁内串行
+     */
+    private static final class Shard {
+        final int id;
+        long generation;
+        VectorSegmentLog log;
+        Map<NamespaceKey, Slot> index = new HashMap<>();
+        long liveBytes;
+        /** 已提交后台压实、尚未执行 */
+        final AtomicBoolean compactScheduled = new AtomicBoolean(false);
+
+        Shard(int id) {
+            this.id = id;
+        }
+    }
+
+    private Shard[] shards;
+
+    private Path dataDir;
+
+    private long retentionMs;
+
+    private ExecutorService compactor;
+
+    private volatile boolean closed;
+
+    private final AtomicLong spills = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        MemoryProperties.Spill config = props.getStm().getSpill();
+        if (!config.isEnabled()) return;
+        dataDir = Path.of(config.getDataDir());
+        Files.createDirectories(dataDir);
+        retentionMs = TimeUnit.HOURS.toMillis(config.getRetentionHours());
+        Shard[] opened = new Shard[Math.max(1, config.getShards())];
+        int namespaces = 0;
+        for (int i = 0; i < opened.length; i++) {
+            opened[i] = open(i);
+            namespaces += opened[i].index.size();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("stm-spill-compact-");
+        threadFactory.setDaemon(true);
+        compactor = Executors.newSingleThreadExecutor(threadFactory);
+        shards = opened;
+        log.info("[STM] 溢出层已加载 dir={} shards={} namespaces={}", dataDir, opened.length, namespaces);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (shards == null) return;
+        closed = true;
+        compactor.shutdown();
+        try {
+            // 等待进行中的压实完成，避免留下未封口的新一代文件
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                try {
+                    shard.log.close();
+                } catch (IOException e) {
+                    log.warn("[STM] 关闭溢出分片失败 shard={}", shard.id, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return shards != null;
+    }
+
+    @Override
+    public void spill(NamespaceKey namespaceKey, List<MemoryMessage> messages) {
+        if (shards == null) return;
+        long now = System.currentTimeMillis();
+        byte[] record = ShortTermRecordCodec.encode(namespaceKey, messages, now);
+        Shard shard = shardOf(namespaceKey);
+        synchronized (shard) {
+            try {
+                long pos = shard.log.appendRecord(VectorSegmentLog.PUT, record, null);
+                Slot slot = new Slot(pos, VectorSegmentLog.recordSize(record.length, 0), now);
+                Slot previous = shard.index.put(namespaceKey, slot);
+                shard.liveBytes += slot.bytes - (previous == null ? 0 : previous.bytes);
+                spills.incrementAndGet();
+                if (!closed && needsCompaction(shard) && shard.compactScheduled.compareAndSet(false, true)) {
+                    compactor.execute(() -> compact(shard));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("[STM] 命名空间溢出写入失败，记忆将丢失 namespace={}", namespaceKey, e);
+            }
+        }
+    }
+
+    @Override
+    public List<MemoryMessage> load(NamespaceKey namespaceKey) {
+        if (shards == null) return null;
+        Shard shard = shardOf(namespaceKey);
+        byte[] record;
+        synchronized (shard) {
+            Slot slot = shard.index.get(namespaceKey);
+            if (slot == null) return null;
+            if (expired(slot, System.currentTimeMillis())) {
+                removeLocked(shard, namespaceKey);
+                return null;
+            }
+            record = shard.log.readMeta(slot.pos);
+        }
+        loads.incrementAndGet();
+        return ShortTermRecordCodec.decodeMessages(record);
+    }
+
+    @Override
+    public void remove(NamespaceKey namespaceKey) {
+        if (shards == null) return;
+        Shard shard = shardOf(namespaceKey);
+        synchronized (shard) {
+            removeLocked(shard, namespaceKey);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", shards != null);
+        if (shards == null) return stats;
+        long namespaces = 0, bytes = 0, liveBytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                namespaces += shard.index.size();
+                bytes += shard.log.size();
+                liveBytes += shard.liveBytes;
+            }
+        }
+        stats.put("shards", shards.length);
+        stats.put("namespaces", namespaces);
+        stats.put("bytes", bytes);
+        stats.put("liveBytes", liveBytes);
+        stats.put("spills", spills.get());
+        stats.put("loads", loads.get());
+        stats.put("compactions", compactions.get());
+        return stats;
+    }
+
+    private Shard shardOf(NamespaceKey namespaceKey) {
+        return shards[Math.floorMod(namespaceKey.hashCode(), shards.length)];
+    }
+
+    private boolean expired(Slot slot, long now) {
+        return now - slot.spilledAt > retentionMs;
+    }
+
+    private void removeLocked(Shard shard, NamespaceKey namespaceKey) {
+        Slot previous = shard.index.remove(namespaceKey);
+        if (previous == null) return;
+        shard.liveBytes -= previous.bytes;
+        try {
+            shard.log.appendRecord(VectorSegmentLog.DELETE, ShortTermRecordCodec.encodeKey(namespaceKey, System.currentTimeMillis()), null);
+        } catch (IOException e) {
+            log.warn("[STM] 写入删除标记失败，重启后可能恢复已删除的记忆 namespace={}", namespaceKey, e);
+        }
+    }
+
+    /**
+     * 打开分片最新的完整一代日志并重放；未完成的新一代与残留的旧代文件（上次压实后未能删除）在此清理
+     */
+    private Shard open(int id) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dataDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher m = SHARD_FILE.matcher(file.getFileName().toString());
+                if (m.matches() && Integer.parseInt(m.group(1)) == id) {
+                    generations.add(Long.parseLong(m.group(2)));
+                }
+            }
+        }
+        generations.sort(Comparator.reverseOrder());
+        Shard shard = null;
+        for (long generation : generations) {
+            if (shard != null) {
+                Files.deleteIfExists(shardFile(id, generation));
+                continue;
+            }
+            Shard candidate = new Shard(id);
+            candidate.generation = generation;
+            candidate.log = new VectorSegmentLog(shardFile(id, generation), props.getStm().getSpill().getSegmentBytes(), false);
+            if (replay(candidate) || generation == 0) {
+                shard = candidate;
+            } else {
+                log.warn("[STM] 溢出分片 shard={} generation={} 压实未完成，回退到上一代", id, generation);
+                candidate.log.close();
+                Files.deleteIfExists(shardFile(id, generation));
+            }
+        }
+        if (shard == null) {
+            shard = new Shard(id);
+            shard.log = new VectorSegmentLog(shardFile(id, 0), props.getStm().getSpill().getSegmentBytes(), false);
+        }
+        return shard;
+    }
+
+    /**
+     * @return 是否读到压实完成标记
+     */
+    private boolean replay(Shard shard) {
+        long now = System.currentTimeMillis();
+        boolean[] sealed = {false};
+        shard.log.replayPositioned((pos, type, meta) -> {
+            if (type == COMPACTED) {
+                sealed[0] = true;
+                return;
+            }
+            ShortTermRecordCodec.Header header = ShortTermRecordCodec.decodeHeader(meta);
+            Slot previous;
+            if (type == VectorSegmentLog.PUT) {
+                Slot slot = new Slot(pos, VectorSegmentLog.recordSize(meta.length, 0), header.spilledAt);
+                if (expired(slot, now)) {
+                    previous = shard.index.remove(header.namespaceKey);
+                } else {
+                    previous = shard.index.put(header.namespaceKey, slot);
+                    shard.liveBytes += slot.bytes;
+                }
+            } else {
+                previous = shard.index.remove(header.namespaceKey);
+            }
+            if (previous != null) shard.liveBytes -= previous.bytes;
+        });
+        return sealed[0];
+    }
+
+    private boolean needsCompaction(Shard shard) {
+        MemoryProperties.Spill config = props.getStm().getSpill();
+        long size = shard.log.size();
+        return size > config.getSegmentBytes() && shard.liveBytes < size * config.getCompactLiveRatio();
+    }
+
+    /**
+     * 后台压实：锁内取索引快照，锁外把快照中的存活记录拷贝到新一代文件，
+     * 再回到锁内补写快照之后变化的命名空间（覆盖写入重新拷贝，删除补写删除标记）并换代，
+     * 拷贝期间 spill / load 不被阻塞
+     */
+    private void compact(Shard shard) {
+        shard.compactScheduled.set(false);
+        VectorSegmentLog source;
+        Map<NamespaceKey, Slot> snapshot;
+        long generation;
+        synchronized (shard) {
+            if (closed || !needsCompaction(shard)) return;
+            source = shard.log;
+            snapshot = new HashMap<>(shard.index);
+            generation = shard.generation + 1;
+        }
+        MemoryProperties.Spill config = props.getStm().getSpill();
+        long size = source.size();
+        VectorSegmentLog next = null;
+        try {
+            next = new VectorSegmentLog(shardFile(shard.id, generation), config.getSegmentBytes(), false);
+            long now = System.currentTimeMillis();
+            Map<NamespaceKey, Slot> copied = new HashMap<>();
+            for (Map.Entry<NamespaceKey, Slot> e : snapshot.entrySet()) {
+                Slot slot = e.getValue();
+                if (expired(slot, now)) continue;
+                // 旧一代只在换代后由本线程关闭，锁外读取快照中的记录是安全的
+                long pos = next.appendRecord(VectorSegmentLog.PUT, source.readMeta(slot.pos), null);
+                copied.put(e.getKey(), new Slot(pos, slot.bytes, slot.spilledAt));
+            }
+            next.flush();
+            synchronized (shard) {
+                if (closed || shard.log != source) {
+                    discard(shard, generation, next);
+                    return;
+                }
+                catchUpLocked(shard, snapshot, copied, next);
+                shard.log = next;
+                shard.generation = generation;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("[STM] 溢出分片压实失败，下次写入时重试 shard={}", shard.id, e);
+            discard(shard, generation, next);
+            return;
+        }
+        try {
+            source.close();
+            Files.deleteIfExists(shardFile(shard.id, generation - 1));
+        } catch (IOException e) {
+            // 部分平台上映射未释放的文件无法删除，下次启动时清理
+            log.warn("[STM] 删除旧溢出文件失败 shard={} generation={}", shard.id, generation - 1, e);
+        }
+        compactions.incrementAndGet();
+        log.info("[STM] 溢出分片已压实 shard={} {} -> {} bytes", shard.id, size, next.size());
+    }
+
+    /**
+     * 在分片锁内补写快照之后的变化并封口新一代，同时生成新一代的索引
+     */
+    private void catchUpLocked(Shard shard, Map<NamespaceKey, Slot> snapshot, Map<NamespaceKey, Slot> copied,
+                               VectorSegmentLog next) throws IOException {
+        long now = System.currentTimeMillis();
+        Map<NamespaceKey, Slot> index = new HashMap<>();
+        long liveBytes = 0;
+        for (Map.Entry<NamespaceKey, Slot> e : shard.index.entrySet()) {
+            Slot slot = e.getValue();
+            Slot copy = copied.get(e.getKey());
+            if (copy == null || snapshot.get(e.getKey()) != slot) {
+                if (expired(slot, now)) continue;
+                copy = new Slot(next.appendRecord(VectorSegmentLog.PUT, shard.log.readMeta(slot.pos), null), slot.bytes, slot.spilledAt);
+            }
+            index.put(e.getKey(), copy);
+            liveBytes += copy.bytes;
+        }
+        for (NamespaceKey namespaceKey : copied.keySet()) {
+            if (!index.containsKey(namespaceKey)) {
+                next.appendRecord(VectorSegmentLog.DELETE, ShortTermRecordCodec.encodeKey(namespaceKey, now), null);
+            }
+        }
+        next.appendRecord(COMPACTED, new byte[0], null);
+        next.flush();
+        shard.index = index;
+        shard.liveBytes = liveBytes;
+    }
+
+    private void discard(Shard shard, long generation, VectorSegmentLog next) {
+        if (next == null) return;
+        try {
+            next.close();
+            Files.deleteIfExists(shardFile(shard.id, generation));
+        } catch (IOException e) {
+            // 未封口的新一代在下次启动时按压实未完成清理
+            log.warn("[STM] 清理未完成的溢出文件失败 shard={} generation={}", shard.id, generation, e);
+        }
+    }
+
+    private Path shardFile(int id, long generation) {
+        return dataDir.resolve("shard-" + id + "." + generation + ".log");
+    }
+}
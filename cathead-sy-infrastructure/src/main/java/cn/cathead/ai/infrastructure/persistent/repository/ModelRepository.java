@@ -17,8 +17,11 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Repository
@@ -270,13 +273,38 @@ public class ModelRepository implements IModelRepository {
         iModelDao.deleteModelRecord(modelId);
     }
 
+    @Override
+    public Map<String, Long> queryAllModelVersions() {
+        List<ModelConfig> rows = iModelDao.queryAllModelVersions();
+        Map<String, Long> versions = new HashMap<>(rows.size() * 2);
+        for (ModelConfig row : rows) {
+            if (row.getModelId() != null && row.getVersion() != null) {
+                versions.put(row.getModelId(), row.getVersion());
+            }
+        }
+        return versions;
+    }
+
+    @Override
+    public List<BaseModelEntity> queryAllModels() {
+        List<ModelConfig> rows = iModelDao.queryAllModels();
+        List<BaseModelEntity> models = new ArrayList<>(rows.size());
+        for (ModelConfig row : rows) {
+            models.add(toModelEntity(row));
+        }
+        return models;
+    }
+
     @Override
     public BaseModelEntity queryModelById(String modelId) {
         ModelConfig modelConfig = iModelDao.queryModelById(modelId);
         if (modelConfig == null) {
             return null;
         }
-        
+        return toModelEntity(modelConfig);
+    }
+
+    private BaseModelEntity toModelEntity(ModelConfig modelConfig) {
         if("chat".equalsIgnoreCase(modelConfig.getType())){
             return ChatModelEntity.builder()
                     .modelId(modelConfig.getModelId())
@@ -1,26 +1,47 @@
 package cn.cathead.ai.infrastructure.persistent.repository;
 
 import cn.cathead.ai.domain.client.model.entity.MemoryChunk;
+import cn.cathead.ai.domain.client.model.valobj.ImportanceScore;
 import cn.cathead.ai.domain.client.repository.ILongTermMemoryRepository;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.MemoryContextHolder;
 import cn.cathead.ai.domain.model.service.IModelService;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.config.MemoryProperties;
+import cn.cathead.ai.infrastructure.persistent.lexical.LexicalTokenizer;
+import cn.cathead.ai.infrastructure.persistent.pgvector.PgVector;
+import cn.cathead.ai.infrastructure.persistent.pgvector.PgVectorIndexManager;
+import cn.cathead.ai.infrastructure.persistent.pgvector.PgVectorTypes;
 import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+@Slf4j
 @Repository
 @Primary
 @RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ai.memory.ltm", name = "store", havingValue = "pgvector", matchIfMissing = true)
 public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
 
     private final JdbcTemplate jdbcTemplate;
@@ -29,6 +50,47 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
 
     private final MemoryProperties props;
 
+    private final PgVectorIndexManager indexManager;
+
+    private static final String LTM_COLUMNS = "id, session_id, knowledge_id, agent_id, title, summary, tags, importance, created_at, last_access_at, access_count";
+
+    private static final String UPSERT_SQL = "INSERT INTO long_term_memory (id, session_id, knowledge_id, agent_id, title, summary, tags, importance, created_at, last_access_at, access_count, embedding) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL) " +
+            "ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, summary = EXCLUDED.summary, tags = EXCLUDED.tags, importance = EXCLUDED.importance, last_access_at = EXCLUDED.last_access_at";
+
+    private static final String UPSERT_WITH_EMBEDDING_SQL = "INSERT INTO long_term_memory (id, session_id, knowledge_id, agent_id, title, summary, tags, importance, created_at, last_access_at, access_count, embedding) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, summary = EXCLUDED.summary, tags = EXCLUDED.tags, importance = EXCLUDED.importance, last_access_at = EXCLUDED.last_access_at, embedding = EXCLUDED.embedding";
+
+    /** 召回次数累加；last_access_at 只前进 */
+    private static final String RECORD_ACCESS_SQL = "UPDATE long_term_memory SET access_count = coalesce(access_count, 0) + ?, " +
+            "last_access_at = greatest(coalesce(last_access_at, ?), ?) WHERE id = ?";
+
+    /** 早期建表脚本没有 access_count 列，启动时补齐 */
+    private static final String ADD_ACCESS_COUNT_DDL = "ALTER TABLE long_term_memory ADD COLUMN IF NOT EXISTS access_count BIGINT NOT NULL DEFAULT 0";
+
+    /** 后台计算下一批向量的线程（向量化请求本身由微批分发器并发发送） */
+    private ExecutorService embeddingExecutor;
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ltm-embed-");
+        threadFactory.setDaemon(true);
+        embeddingExecutor = Executors.newCachedThreadPool(threadFactory);
+        try {
+            jdbcTemplate.execute(ADD_ACCESS_COUNT_DDL);
+        } catch (Exception e) {
+            log.warn("长期记忆表 access_count 列检查失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (embeddingExecutor != null) {
+            embeddingExecutor.shutdownNow();
+        }
+    }
+
     @Override
     public void save(MemoryChunk chunk) {
         saveAll(List.of(chunk));
@@ -37,25 +99,12 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
     @Override
     public void saveAll(List<MemoryChunk> chunks) {
         if (chunks == null || chunks.isEmpty()) return;
-        String sql = "INSERT INTO long_term_memory (id, session_id, knowledge_id, agent_id, title, summary, tags, importance, created_at, last_access_at, embedding) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL) " +
-                "ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, summary = EXCLUDED.summary, tags = EXCLUDED.tags, importance = EXCLUDED.importance, last_access_at = EXCLUDED.last_access_at";
-
-        for (MemoryChunk c : chunks) {
-            String tags = c.getTags() == null ? null : String.join(",", c.getTags());
-            jdbcTemplate.update(sql,
-                    c.getId(),
-                    c.getSessionId(),
-                    c.getKnowledgeId(),
-                    c.getAgentId(),
-                    c.getTitle(),
-                    c.getSummary(),
-                    tags,
-                    c.getImportanceScore() == null ? 0.0 : c.getImportanceScore().getScore(),
-                    toTimestamp(c.getCreatedAt()),
-                    toTimestamp(c.getLastAccessAt())
-            );
+        long start = System.currentTimeMillis();
+        int batchSize = writeBatchSize();
+        for (int from = 0; from < chunks.size(); from += batchSize) {
+            writeBatch(UPSERT_SQL, chunks.subList(from, Math.min(chunks.size(), from + batchSize)), null);
         }
+        logThroughput("saveAll", chunks.size(), batchSize, System.currentTimeMillis() - start);
     }
 
     @Override
@@ -72,12 +121,85 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
             // 调用向量模型失败，返回空结果
             return List.of();
         }
-        String vec = toPgVectorLiteral(queryEmbedding);
-        String sql = "SELECT id, session_id, knowledge_id, agent_id, title, summary, tags, importance, created_at, last_access_at " +
-                "FROM long_term_memory " +
-                "WHERE (session_id IS NULL OR session_id = ?) AND (knowledge_id IS NULL OR knowledge_id = ?) AND (agent_id IS NULL OR agent_id = ?) " +
-                "ORDER BY embedding <=> ?::vector LIMIT ?";
-        return jdbcTemplate.query(sql, ROW_MAPPER, currentSessionId(), knowledgeId, agentId, vec, topK);
+        PgVector vec = PgVector.of(queryEmbedding, props.getLtm().getVectorType());
+        String op = PgVectorIndexManager.operator(indexManager.metricFor(modelId));
+        int candidates = Math.max(topK, topK * Math.max(1, props.getLtm().getIndex().getOverfetch()));
+        String sessionId = currentSessionId();
+
+        // 原先的 (knowledge_id IS NULL OR knowledge_id = ?) 会让 HNSW 索引失效，改写为两个可走索引的分支：
+        // 全局记忆（knowledge_id IS NULL 部分索引）+ 指定知识库（热点知识库走部分索引，其余走全表索引），各取候选后合并，
+        // session/agent 过滤在候选集上完成
+        String knowledgeBranch = null;
+        if (knowledgeId != null) {
+            String partial = indexManager.partialIndexPredicate(knowledgeId);
+            knowledgeBranch = partial != null ? partial : "knowledge_id = ?";
+        }
+        String branch = "(SELECT " + LTM_COLUMNS + ", embedding " + op + " ? AS distance FROM long_term_memory " +
+                "WHERE %s AND embedding IS NOT NULL ORDER BY embedding " + op + " ? LIMIT ?)";
+        String sql = "SELECT " + LTM_COLUMNS + " FROM (" +
+                String.format(branch, "knowledge_id IS NULL") +
+                (knowledgeBranch == null ? "" : " UNION ALL " + String.format(branch, knowledgeBranch)) +
+                ") candidates WHERE (session_id IS NULL OR session_id = ?) AND (agent_id IS NULL OR agent_id = ?) " +
+                "ORDER BY distance LIMIT ?";
+        boolean bindKnowledgeId = "knowledge_id = ?".equals(knowledgeBranch);
+        boolean hasKnowledgeBranch = knowledgeBranch != null;
+
+        return jdbcTemplate.execute((ConnectionCallback<List<MemoryChunk>>) con -> {
+            PgVectorTypes.register(con);
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                indexManager.applySearchSettings(con, candidates);
+                List<MemoryChunk> result = new ArrayList<>();
+                try (PreparedStatement ps = con.prepareStatement(sql)) {
+                    int i = 1;
+                    ps.setObject(i++, vec);
+                    ps.setObject(i++, vec);
+                    ps.setInt(i++, candidates);
+                    if (hasKnowledgeBranch) {
+                        ps.setObject(i++, vec);
+                        if (bindKnowledgeId) {
+                            ps.setString(i++, knowledgeId);
+                        }
+                        ps.setObject(i++, vec);
+                        ps.setInt(i++, candidates);
+                    }
+                    ps.setString(i++, sessionId);
+                    ps.setString(i++, agentId);
+                    ps.setInt(i, topK);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        int row = 0;
+                        while (rs.next()) {
+                            result.add(ROW_MAPPER.mapRow(rs, row++));
+                        }
+                    }
+                }
+                con.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    @Override
+    public List<MemoryChunk> lexicalSearch(String knowledgeId, String agentId, String queryText, int topK) {
+        // 词项取并集（OR），标识符、表名、错误码等只要命中一项即可召回，再按 ts_rank_cd 排序
+        List<String> terms = LexicalTokenizer.asciiTerms(queryText).stream().distinct().limit(32).toList();
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        String tsQuery = String.join(" | ", terms);
+        String config = indexManager.textSearchConfig();
+        String tsVector = indexManager.lexicalTsVector();
+        String sql = "SELECT " + LTM_COLUMNS + " FROM long_term_memory " +
+                "WHERE " + tsVector + " @@ to_tsquery('" + config + "', ?) " +
+                "AND (knowledge_id IS NULL OR knowledge_id = ?) AND (session_id IS NULL OR session_id = ?) AND (agent_id IS NULL OR agent_id = ?) " +
+                "ORDER BY ts_rank_cd(" + tsVector + ", to_tsquery('" + config + "', ?)) DESC LIMIT ?";
+        return jdbcTemplate.query(sql, ROW_MAPPER, tsQuery, knowledgeId, currentSessionId(), agentId, tsQuery, topK);
     }
 
     // 文本检索逻辑应位于中间服务层，这里仅保留向量检索
@@ -89,25 +211,88 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
         jdbcTemplate.update("DELETE FROM long_term_memory WHERE id = ?", id);
     }
 
-    private void saveWithEmbeddingVector(MemoryChunk chunk, float[] embedding) {
-        String sql = "INSERT INTO long_term_memory (id, session_id, knowledge_id, agent_id, title, summary, tags, importance, created_at, last_access_at, embedding) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::vector) " +
-                "ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, summary = EXCLUDED.summary, tags = EXCLUDED.tags, importance = EXCLUDED.importance, last_access_at = EXCLUDED.last_access_at, embedding = EXCLUDED.embedding";
+    @Override
+    public boolean supportsLifecycle() {
+        return true;
+    }
 
-        String tags = chunk.getTags() == null ? null : String.join(",", chunk.getTags());
-        jdbcTemplate.update(sql,
-                chunk.getId(),
-                chunk.getSessionId(),
-                chunk.getKnowledgeId(),
-                chunk.getAgentId(),
-                chunk.getTitle(),
-                chunk.getSummary(),
-                tags,
-                chunk.getImportanceScore() == null ? 0.0 : chunk.getImportanceScore().getScore(),
-                toTimestamp(chunk.getCreatedAt()),
-                toTimestamp(chunk.getLastAccessAt()),
-                toPgVectorLiteral(embedding)
-        );
+    @Override
+    public void recordAccess(Map<String, Integer> accessCounts, Instant accessedAt) {
+        if (accessCounts == null || accessCounts.isEmpty()) return;
+        java.sql.Timestamp at = toTimestamp(accessedAt);
+        List<Object[]> args = new ArrayList<>(accessCounts.size());
+        accessCounts.forEach((id, count) -> args.add(new Object[]{count, at, at, id}));
+        jdbcTemplate.batchUpdate(RECORD_ACCESS_SQL, args);
+    }
+
+    @Override
+    public List<MemoryChunk> scanChunks(String afterId, int limit) {
+        return jdbcTemplate.query("SELECT " + LTM_COLUMNS + " FROM long_term_memory WHERE id > ? ORDER BY id LIMIT ?",
+                ROW_MAPPER, afterId == null ? "" : afterId, limit);
+    }
+
+    @Override
+    public void updateImportance(Map<String, Double> importance) {
+        if (importance == null || importance.isEmpty()) return;
+        List<Object[]> args = new ArrayList<>(importance.size());
+        importance.forEach((id, score) -> args.add(new Object[]{score, id}));
+        jdbcTemplate.batchUpdate("UPDATE long_term_memory SET importance = ? WHERE id = ?", args);
+    }
+
+    @Override
+    public void deleteByIds(List<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        List<Object[]> args = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            args.add(new Object[]{id});
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM long_term_memory WHERE id = ?", args);
+    }
+
+    /**
+     * 一个事务内以 JDBC batch 写入一批记录，连接只在写库期间占用
+     * @param vectors 与 batch 一一对应的向量；为null时写入不带向量的记录
+     */
+    private void writeBatch(String sql, List<MemoryChunk> batch, List<float[]> vectors) {
+        String vectorType = props.getLtm().getVectorType();
+        jdbcTemplate.execute((ConnectionCallback<int[]>) con -> {
+            PgVectorTypes.register(con);
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    MemoryChunk c = batch.get(i);
+                    ps.setString(1, c.getId());
+                    ps.setString(2, c.getSessionId());
+                    ps.setString(3, c.getKnowledgeId());
+                    ps.setString(4, c.getAgentId());
+                    ps.setString(5, c.getTitle());
+                    ps.setString(6, c.getSummary());
+                    ps.setString(7, c.getTags() == null ? null : String.join(",", c.getTags()));
+                    // 未标注重要性写 NULL，生命周期打分按默认值处理，避免被当作最低重要性
+                    if (c.getImportanceScore() == null) {
+                        ps.setNull(8, Types.DOUBLE);
+                    } else {
+                        ps.setDouble(8, c.getImportanceScore().getScore());
+                    }
+                    ps.setTimestamp(9, toTimestamp(c.getCreatedAt()));
+                    ps.setTimestamp(10, toTimestamp(c.getLastAccessAt()));
+                    ps.setLong(11, c.getAccessCount());
+                    if (vectors != null) {
+                        ps.setObject(12, PgVector.of(vectors.get(i), vectorType));
+                    }
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                con.commit();
+                return counts;
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        });
     }
 
     @Override
@@ -120,10 +305,59 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
     public void saveAllAndEmbed(List<MemoryChunk> chunks, String embeddingModelId) {
         if (chunks == null || chunks.isEmpty()) return;
         String modelId = (embeddingModelId == null || embeddingModelId.isBlank()) ? props.getLtm().getDefaultEmbeddingModelId() : embeddingModelId;
-        for (MemoryChunk c : chunks) {
-            float[] vec = toFloatArray(modelService.embedText(new EmbeddingRequestDTO(modelId, List.of(c.getSummary()))).getResults().get(0).getOutput());
-            saveWithEmbeddingVector(c, vec);
+        long start = System.currentTimeMillis();
+        int batchSize = writeBatchSize();
+        List<List<MemoryChunk>> batches = new ArrayList<>();
+        for (int from = 0; from < chunks.size(); from += batchSize) {
+            batches.add(chunks.subList(from, Math.min(chunks.size(), from + batchSize)));
         }
+
+        // 流水线：写入第 N 批时，第 N+1 批的向量已在后台计算
+        CompletableFuture<List<float[]>> next = embedAsync(batches.get(0), modelId);
+        for (int i = 0; i < batches.size(); i++) {
+            List<float[]> vectors = join(next);
+            if (i + 1 < batches.size()) {
+                next = embedAsync(batches.get(i + 1), modelId);
+            }
+            writeBatch(UPSERT_WITH_EMBEDDING_SQL, batches.get(i), vectors);
+        }
+        logThroughput("saveAllAndEmbed", chunks.size(), batchSize, System.currentTimeMillis() - start);
+    }
+
+    private CompletableFuture<List<float[]>> embedAsync(List<MemoryChunk> batch, String modelId) {
+        return CompletableFuture.supplyAsync(() -> {
+            // 一次提交整批文本，由向量化服务按模型的 maxBatchSize 分批发送
+            List<String> texts = new ArrayList<>(batch.size());
+            for (MemoryChunk c : batch) {
+                texts.add(c.getSummary());
+            }
+            List<Embedding> results = modelService.embedText(new EmbeddingRequestDTO(modelId, texts)).getResults();
+            List<float[]> vectors = new ArrayList<>(results.size());
+            for (Embedding e : results) {
+                vectors.add(toFloatArray(e.getOutput()));
+            }
+            return vectors;
+        }, embeddingExecutor);
+    }
+
+    private static List<float[]> join(CompletableFuture<List<float[]>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private int writeBatchSize() {
+        return Math.max(1, props.getLtm().getWriteBatchSize());
+    }
+
+    private static void logThroughput(String op, int rows, int batchSize, long elapsedMs) {
+        log.info("长期记忆批量写入完成，操作: {}, 行数: {}, 批大小: {}, 耗时: {}ms, 速率: {} rows/s",
+                op, rows, batchSize, elapsedMs, elapsedMs == 0 ? rows * 1000L : rows * 1000L / elapsedMs);
     }
 
     // 便捷文本保存由上层服务实现，这里删除
@@ -137,6 +371,8 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
         public MemoryChunk mapRow(ResultSet rs, int rowNum) throws SQLException {
             String tagsStr = rs.getString("tags");
             List<String> tags = tagsStr == null ? new ArrayList<>() : List.of(tagsStr.split(","));
+            double importance = rs.getDouble("importance");
+            ImportanceScore importanceScore = rs.wasNull() ? null : ImportanceScore.of(importance, "stored");
             return MemoryChunk.builder()
                     .id(rs.getString("id"))
                     .sessionId(rs.getString("session_id"))
@@ -147,7 +383,8 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
                     .tags(tags)
                     .createdAt(rs.getTimestamp("created_at").toInstant())
                     .lastAccessAt(rs.getTimestamp("last_access_at") == null ? null : rs.getTimestamp("last_access_at").toInstant())
-                    .importanceScore(null)
+                    .importanceScore(importanceScore)
+                    .accessCount(rs.getLong("access_count"))
                     .build();
         }
     };
@@ -158,18 +395,6 @@ public class PgVectorLongTermRepository implements ILongTermMemoryRepository {
 
     // 向量生成与文本切分交由上层服务处理
 
-    private static String toPgVectorLiteral(float[] vec) {
-        if (vec == null || vec.length == 0) return "[]";
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        for (int i = 0; i < vec.length; i++) {
-            if (i > 0) sb.append(',');
-            sb.append(vec[i]);
-        }
-        sb.append(']');
-        return sb.toString();
-    }
-
     private static float[] toFloatArray(Object output) {
         if (output == null) return new float[0];
         if (output instanceof float[] f) {
@@ -0,0 +1,57 @@
+package cn.cathead.ai.trigger.http;
+
+import cn.cathead.ai.domain.client.model.valobj.ClusterNode;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.ClusteredShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.HttpStmPeerClient;
+import cn.cathead.ai.types.enums.ResponseCode;
+import cn.cathead.ai.types.model.Response;
+import jakarta.annotation.Resource;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 短期记忆集群管理（仅启用集群时注册），请求须携带集群共享密钥
+ */
+@RestController
+@RequestMapping("/api/v1/memory/cluster")
+@ConditionalOnProperty(prefix = "ai.memory.stm.cluster", name = "enabled", havingValue = "true")
+@Slf4j
+public class MemoryClusterController {
+
+    @Resource
+    private ClusteredShortTermMemoryService clusteredShortTermMemoryService;
+
+    /**
+     * 更新短期记忆集群成员（由部署系统在扩缩容时调用），触发命名空间交接
+     */
+    @PutMapping("members")
+    public Response<Map<String, Object>> updateMembers(@RequestHeader(value = HttpStmPeerClient.SECRET_HEADER, required = false) String secret,
+                                                       @RequestBody List<ClusterMemberRequest> members) {
+        if (!clusteredShortTermMemoryService.isPeerAuthorized(secret)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "invalid cluster secret");
+        }
+        try {
+            clusteredShortTermMemoryService.updateMembership(members.stream()
+                    .map(m -> ClusterNode.of(m.getId(), m.getUrl()))
+                    .toList());
+            return new Response<>(ResponseCode.SUCCESS.getCode(), "cluster members updated",
+                    clusteredShortTermMemoryService.getClusterStats());
+        } catch (Exception e) {
+            log.error("update cluster members failed: {}", e.getMessage(), e);
+            return new Response<>(ResponseCode.FAILED.getCode(), e.getMessage(), null);
+        }
+    }
+
+    @Data
+    public static class ClusterMemberRequest {
+        private String id;
+        private String url;
+    }
+}
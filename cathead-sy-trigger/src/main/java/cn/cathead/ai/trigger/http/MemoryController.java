@@ -1,6 +1,11 @@
 package cn.cathead.ai.trigger.http;
 
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.MemoryAdvisor;
 import cn.cathead.ai.domain.client.service.advisor.memory.manager.IMemoryManager;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.ClusteredShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.ILongTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.longterm.LongTermLifecycleEngine;
 import cn.cathead.ai.types.model.Response;
 import cn.cathead.ai.types.enums.ResponseCode;
 import jakarta.annotation.Resource;
@@ -8,7 +13,9 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/memory")
@@ -18,6 +25,18 @@ public class MemoryController {
     @Resource
     private IMemoryManager memoryManager;
 
+    @Resource
+    private ILongTermMemoryService longTermMemoryService;
+
+    @Resource
+    private MemoryAdvisor memoryAdvisor;
+
+    @Resource
+    private ClusteredShortTermMemoryService clusteredShortTermMemoryService;
+
+    @Resource
+    private LongTermLifecycleEngine longTermLifecycleEngine;
+
     @PostMapping("commit")
     public Response<String> commit(@RequestBody CommitMemoryRequest req) {
         try {
@@ -31,6 +50,47 @@ public class MemoryController {
         }
     }
 
+    @GetMapping("stats")
+    public Response<Map<String, Object>> stats() {
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("retrieval", longTermMemoryService.getRetrievalStats());
+            stats.put("advisor", memoryAdvisor.getStats());
+            stats.put("compression", clusteredShortTermMemoryService.getCompressionStats());
+            stats.put("spill", clusteredShortTermMemoryService.getSpillStats());
+            stats.put("cluster", clusteredShortTermMemoryService.getClusterStats());
+            stats.put("lifecycle", longTermLifecycleEngine.getStats());
+            return new Response<>(ResponseCode.SUCCESS.getCode(), "memory stats", stats);
+        } catch (Exception e) {
+            log.error("get memory stats failed: {}", e.getMessage(), e);
+            return new Response<>(ResponseCode.FAILED.getCode(), e.getMessage(), null);
+        }
+    }
+
+    /**
+     * 立即执行一轮长期记忆生命周期（衰减、合并、遗忘），返回本轮结果
+     */
+    @PostMapping("ltm/lifecycle/run")
+    public Response<Map<String, Object>> runLifecycle() {
+        try {
+            return new Response<>(ResponseCode.SUCCESS.getCode(), "lifecycle finished", longTermLifecycleEngine.runOnce());
+        } catch (Exception e) {
+            log.error("run memory lifecycle failed: {}", e.getMessage(), e);
+            return new Response<>(ResponseCode.FAILED.getCode(), e.getMessage(), null);
+        }
+    }
+
+    /**
+     * 会话亲和提示：返回命名空间的主节点与副本（未启用集群时 clustered=false）
+     */
+    @GetMapping("affinity")
+    public Response<Map<String, Object>> affinity(@RequestParam String sessionId,
+                                                  @RequestParam(required = false) String agentId,
+                                                  @RequestParam(required = false) String knowledgeId) {
+        return new Response<>(ResponseCode.SUCCESS.getCode(), "memory affinity",
+                clusteredShortTermMemoryService.getAffinity(NamespaceKey.of(knowledgeId, agentId, sessionId)));
+    }
+
     @Data
     public static class CommitMemoryRequest {
         private String sessionId;
@@ -0,0 +1,77 @@
+package cn.cathead.ai.trigger.http;
+
+import cn.cathead.ai.domain.client.model.entity.MemoryMessage;
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.ClusteredShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.HttpStmPeerClient;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.tools.ShortTermRecordCodec;
+import jakarta.annotation.Resource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * 短期记忆集群的节点间 RPC（仅启用集群时注册，应只在内网暴露）
+ * 请求与响应体为 ShortTermRecordCodec 编码的二进制，见 HttpStmPeerClient；请求须携带集群共享密钥。
+ */
+@RestController
+@RequestMapping("/api/v1/memory/peer")
+@ConditionalOnProperty(prefix = "ai.memory.stm.cluster", name = "enabled", havingValue = "true")
+public class MemoryPeerController {
+
+    @Resource
+    private ClusteredShortTermMemoryService clusteredShortTermMemoryService;
+
+    /**
+     * 所有节点 RPC 先校验共享密钥
+     */
+    @ModelAttribute
+    public void authorize(@RequestHeader(value = HttpStmPeerClient.SECRET_HEADER, required = false) String secret) {
+        if (!clusteredShortTermMemoryService.isPeerAuthorized(secret)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "invalid cluster secret");
+        }
+    }
+
+    @PostMapping(value = "get", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] get(@RequestBody byte[] body) {
+        NamespaceKey ns = namespace(body);
+        return ShortTermRecordCodec.encode(ns, clusteredShortTermMemoryService.peerGet(ns), 0L);
+    }
+
+    @PostMapping(value = "stats", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] stats(@RequestBody byte[] body) {
+        return ShortTermRecordCodec.encodeStats(clusteredShortTermMemoryService.peerStats(namespace(body)));
+    }
+
+    @PostMapping(value = "append", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void append(@RequestBody byte[] body, @RequestParam(defaultValue = "false") boolean replica) {
+        clusteredShortTermMemoryService.peerAppend(namespace(body), messages(body), replica);
+    }
+
+    @PostMapping(value = "replace", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void replace(@RequestBody byte[] body, @RequestParam(defaultValue = "false") boolean replica) {
+        clusteredShortTermMemoryService.peerReplace(namespace(body), messages(body), replica);
+    }
+
+    @PostMapping(value = "clear", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void clear(@RequestBody byte[] body) {
+        clusteredShortTermMemoryService.peerClear(namespace(body));
+    }
+
+    @PostMapping(value = "compress", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void compress(@RequestBody byte[] body, @RequestParam(required = false) String modelId) {
+        clusteredShortTermMemoryService.peerCompress(namespace(body), modelId == null || modelId.isBlank() ? null : modelId);
+    }
+
+    private static NamespaceKey namespace(byte[] body) {
+        return ShortTermRecordCodec.decodeHeader(body).namespaceKey;
+    }
+
+    private static List<MemoryMessage> messages(byte[] body) {
+        return ShortTermRecordCodec.decodeMessages(body);
+    }
+}
@@ -1,6 +1,10 @@
 package cn.cathead.ai.trigger.http;
 import cn.cathead.ai.domain.model.model.entity.BaseModelEntity;
+import cn.cathead.ai.domain.model.model.entity.ModelWarmupResult;
 import cn.cathead.ai.domain.model.service.registry.modelcache.IModelCacheManager;
+import cn.cathead.ai.domain.model.service.registry.provider.http.UpstreamHttpClientRegistry;
+import cn.cathead.ai.domain.model.service.runtime.embedding.batch.EmbeddingBatchDispatcher;
+import cn.cathead.ai.domain.model.service.runtime.embedding.cache.EmbeddingCache;
 import cn.cathead.ai.domain.model.service.IModelService;
 
 import cn.cathead.ai.types.model.Response;
@@ -35,6 +39,15 @@ public class ModelManageController {
     @Resource
     private IModelCacheManager modelBeanManager;
 
+    @Resource
+    private UpstreamHttpClientRegistry httpClientRegistry;
+
+    @Resource
+    private EmbeddingCache embeddingCache;
+
+    @Resource
+    private EmbeddingBatchDispatcher embeddingBatchDispatcher;
+
     // 统一从 IModelService 暴露的创建入口调用
 
 
@@ -138,15 +151,14 @@ public class ModelManageController {
 
     /**
      * 批量刷新所有模型缓存
-     * @return 操作结果
+     * @return 操作结果，含各模型构建耗时
      */
     @RequestMapping(value = "model/refresh-all",method = RequestMethod.POST)
-    public Response<String> refreshAllModelCache() {
+    public Response<ModelWarmupResult> refreshAllModelCache() {
         try {
             log.info("收到批量刷新所有模型缓存请求");
-            // todo 里可以实现批量刷新的逻辑
-            // 暂时返回成功，具体实现可以根据需要添加
-            return new Response<>(ResponseCode.SUCCESS_REFRESH_ALL_CACHE.getCode(), ResponseCode.SUCCESS_REFRESH_ALL_CACHE.getInfo(), null);
+            ModelWarmupResult result = modelService.refreshAllModelCache();
+            return new Response<>(ResponseCode.SUCCESS_REFRESH_ALL_CACHE.getCode(), ResponseCode.SUCCESS_REFRESH_ALL_CACHE.getInfo(), result);
         } catch (Exception e) {
             log.error("批量刷新模型缓存失败，错误: {}", e.getMessage(), e);
             return new Response<>(ResponseCode.FAILED_REFRESH_ALL_CACHE.getCode(), ResponseCode.FAILED_REFRESH_ALL_CACHE.getInfo() + ": " + e.getMessage(), null);
@@ -164,6 +176,9 @@ public class ModelManageController {
             stats.put("beanStats", modelBeanManager.getModelBeanStats());
             stats.put("chatModelCache", modelBeanManager.getAllChatModelCache().size());
             stats.put("embeddingModelCache", modelBeanManager.getAllEmbeddingModelCache().size());
+            stats.put("upstreamHttp", httpClientRegistry.getStats());
+            stats.put("embeddingCache", embeddingCache.getStats());
+            stats.put("embeddingBatch", embeddingBatchDispatcher.getStats());
 
             return new Response<>(ResponseCode.SUCCESS_GET_BEAN_STATS.getCode(), ResponseCode.SUCCESS_GET_BEAN_STATS.getInfo(), stats);
         } catch (Exception e) {
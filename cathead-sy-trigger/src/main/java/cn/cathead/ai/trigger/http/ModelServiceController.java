@@ -1,5 +1,8 @@
 package cn.cathead.ai.trigger.http;
 
+import cn.cathead.ai.domain.client.model.valobj.NamespaceKey;
+import cn.cathead.ai.domain.client.service.advisor.memory.manager.instant.cluster.ClusteredShortTermMemoryService;
+import cn.cathead.ai.domain.client.service.build.IClientBuilderService;
 import cn.cathead.ai.domain.model.service.IModelService;
 import cn.cathead.ai.types.dto.ChatRequestDTO;
 import cn.cathead.ai.types.dto.EmbeddingRequestDTO;
@@ -8,14 +11,19 @@ import cn.cathead.ai.types.exception.AppException;
 import cn.cathead.ai.types.model.Response;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.Map;
+
 /**
  * 模型相关的服务接口
  * URL
@@ -31,6 +39,16 @@ public class ModelServiceController {
     @Resource
     private IModelService modelService;
 
+    @Resource
+    private IClientBuilderService clientBuilderService;
+
+    @Resource
+    private ClusteredShortTermMemoryService clusteredShortTermMemoryService;
+
+    /** 集群模式下会话短期记忆所在的主节点，负载均衡可据此把后续请求粘到该节点 */
+    public static final String MEMORY_OWNER_HEADER = "X-Memory-Owner";
+    public static final String MEMORY_OWNER_URL_HEADER = "X-Memory-Owner-Url";
+
     @PostMapping("chat-with")
     public ResponseEntity<?> chatWith(@RequestBody ChatRequestDTO chatRequestDto) {
         try {
@@ -41,7 +59,7 @@ public class ModelServiceController {
                 ResponseBodyEmitter emitter = new ResponseBodyEmitter(Long.MAX_VALUE);
                 ObjectMapper objectMapper = new ObjectMapper();
 
-                modelService.chatWithStream(chatRequestDto)
+                chatStream(chatRequestDto)
                         .subscribe(resp -> {
                                     try {
                                         String idLine = "id: " + System.currentTimeMillis() + "\n";
@@ -67,22 +85,25 @@ public class ModelServiceController {
                                 });
 
                 return ResponseEntity.ok()
+                        .headers(affinityHeaders(chatRequestDto))
                         .contentType(MediaType.TEXT_EVENT_STREAM)
                         .body(emitter);
 
             } else {
                 if (!onlyText) {
                     log.info("普通响应 非纯文本启动");
-                    ChatResponse response = modelService.chatWith(chatRequestDto);
+                    ChatResponse response = chat(chatRequestDto);
                     return ResponseEntity.ok()
+                            .headers(affinityHeaders(chatRequestDto))
                             .contentType(MediaType.APPLICATION_JSON)
                             .body(new Response<>(ResponseCode.SUCCESS_CHAT.getCode(),
                                     ResponseCode.SUCCESS_CHAT.getInfo(),
                                     response));
                 }
                 log.info("普通响应 纯文本启动");
-                String response = modelService.chatWith(chatRequestDto).getResults().get(0).getOutput().getText();
+                String response = chat(chatRequestDto).getResults().get(0).getOutput().getText();
                 return ResponseEntity.ok()
+                        .headers(affinityHeaders(chatRequestDto))
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(new Response<>(ResponseCode.SUCCESS_CHAT.getCode(),
                                 ResponseCode.SUCCESS_CHAT.getInfo(),
@@ -120,4 +141,55 @@ public class ModelServiceController {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * 带 sessionId 的纯文本请求（流式与非流式）经 ChatClient 调用，由记忆 Advisor 注入上下文并在回答完成后写入短期记忆；
+     * 其余请求（无会话或带图片）直接调用模型。
+     */
+    private Flux<ChatResponse> chatStream(ChatRequestDTO chatRequestDto) {
+        if (!useMemory(chatRequestDto)) {
+            return modelService.chatWithStream(chatRequestDto);
+        }
+        log.info("流式响应 启用记忆, sessionId={}", chatRequestDto.getSessionId());
+        return memoryPrompt(chatRequestDto).stream().chatResponse();
+    }
+
+    private ChatResponse chat(ChatRequestDTO chatRequestDto) {
+        if (!useMemory(chatRequestDto)) {
+            return modelService.chatWith(chatRequestDto);
+        }
+        log.info("普通响应 启用记忆, sessionId={}", chatRequestDto.getSessionId());
+        return memoryPrompt(chatRequestDto).call().chatResponse();
+    }
+
+    private static boolean useMemory(ChatRequestDTO chatRequestDto) {
+        String sessionId = chatRequestDto.getSessionId();
+        byte[] image = chatRequestDto.getImage();
+        return sessionId != null && !sessionId.isBlank() && (image == null || image.length == 0);
+    }
+
+    private ChatClient.ChatClientRequestSpec memoryPrompt(ChatRequestDTO chatRequestDto) {
+        return clientBuilderService.build(chatRequestDto.getModelId())
+                .prompt(chatRequestDto.getPrompt())
+                .advisors(a -> {
+                    a.param("x-session-id", chatRequestDto.getSessionId());
+                    if (chatRequestDto.getAgentId() != null) a.param("x-agent-id", chatRequestDto.getAgentId());
+                    if (chatRequestDto.getKnowledgeId() != null) a.param("x-knowledge-id", chatRequestDto.getKnowledgeId());
+                });
+    }
+
+    /**
+     * 会话亲和提示：未启用集群或无 sessionId 时不附加
+     */
+    private HttpHeaders affinityHeaders(ChatRequestDTO chatRequestDto) {
+        HttpHeaders headers = new HttpHeaders();
+        String sessionId = chatRequestDto.getSessionId();
+        if (sessionId == null || sessionId.isBlank()) return headers;
+        Map<String, Object> affinity = clusteredShortTermMemoryService.getAffinity(
+                NamespaceKey.of(chatRequestDto.getKnowledgeId(), chatRequestDto.getAgentId(), sessionId));
+        if (Boolean.TRUE.equals(affinity.get("clustered"))) {
+            headers.set(MEMORY_OWNER_HEADER, String.valueOf(affinity.get("owner")));
+            if (affinity.get("ownerUrl") != null) headers.set(MEMORY_OWNER_URL_HEADER, String.valueOf(affinity.get("ownerUrl")));
+        }
+        return headers;
+    }
+}
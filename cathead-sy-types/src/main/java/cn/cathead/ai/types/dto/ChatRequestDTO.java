@@ -24,4 +24,14 @@ public class ChatRequestDTO implements Serializable {
 
     private String imageDescription;
 
+    /**
+     * 会话ID：非空时（流式与非流式均可）经记忆 Advisor 调用，注入短期/长期记忆并在回答完成后写入短期记忆；
+     * 带图片的请求不经记忆
+     */
+    private String sessionId;
+
+    private String agentId;
+
+    private String knowledgeId;
+
 } 
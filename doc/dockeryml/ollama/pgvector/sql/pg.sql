@@ -10,10 +10,18 @@ CREATE TABLE IF NOT EXISTS long_term_memory (
                                                 importance DOUBLE PRECISION,
                                                 created_at TIMESTAMP,
                                                 last_access_at TIMESTAMP,
+                                                access_count BIGINT NOT NULL DEFAULT 0,
                                                 embedding VECTOR(1536)
+    -- 如需半精度存储（pgvector 0.7+），改为 embedding HALFVEC(1536)，并配置 ai.memory.ltm.vector-type: halfvec
 );
 
 -- 常用索引（可选）
 CREATE INDEX IF NOT EXISTS idx_ltm_session ON long_term_memory(session_id);
 CREATE INDEX IF NOT EXISTS idx_ltm_knowledge ON long_term_memory(knowledge_id);
-CREATE INDEX IF NOT EXISTS idx_ltm_agent ON long_term_memory(agent_id);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_ltm_agent ON long_term_memory(agent_id);
+
+-- 已有表补齐召回次数列（长期记忆生命周期打分使用，应用启动时也会自动执行）
+ALTER TABLE long_term_memory ADD COLUMN IF NOT EXISTS access_count BIGINT NOT NULL DEFAULT 0;
+
+-- 混合检索的词法一路（ai.memory.ltm.hybrid.enabled），表达式需与应用中的 text-search-config 一致
+CREATE INDEX IF NOT EXISTS idx_ltm_summary_fts ON long_term_memory USING gin (to_tsvector('simple', coalesce(summary, '')));